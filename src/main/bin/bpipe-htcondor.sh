@@ -17,6 +17,11 @@
 #
 #    ./bpipe-htcondor.sh status my_job_id
 #
+# Getting the status of several jobs (given the job ids on the standard input,
+# one per line)
+#
+#    printf "id1\nid2\n" | ./bpipe-htcondor.sh statusall
+#
 # Notes:
 #
 # None of the commands are guaranteed to succeed. An exit status of 0 for this script
@@ -60,7 +65,7 @@ DEFAULT_JOBTYPE=single	#Should be single, smp or mpi
 
 # Print a usage message
 usage () {
-   echo "usage: $program_name (start | stop ID | status ID)"
+   echo "usage: $program_name (start | stop ID | status ID | statusall)"
    echo "start needs these environment variables: $ESSENTIAL_ENV_VARS"
    echo "start will use these variables if defined: $OPTIONAL_ENV_VARS"
 }
@@ -273,6 +278,58 @@ status () {
    fi
 }
 
+# get the status of several jobs given their ids on the standard input, one
+# id per line. A single condor_q query and a single condor_history query are
+# used for all the jobs and a line with the id and the status of each job is
+# printed
+statusall () {
+   job_ids=`cat`
+
+   if [[ -z "$job_ids" ]]
+   then
+         exit $SUCCESS
+   fi
+
+   # get the state of the jobs still in the queue
+   queue_output=`condor_q -af ClusterId ProcId JobStatus ExitCode $job_ids`
+   if [[ $? -ne 0 ]]
+   then
+         exit $CONDOR_Q_FAILED
+   fi
+
+   # get the state of the jobs that have left the queue
+   missing_ids=`awk 'FILENAME == ARGV[1] { seen[$1 "." $2] = 1; next }
+      $1 != "" && !($1 in seen) { print $1 }' <(echo "$queue_output") <(echo "$job_ids")`
+   history_output=""
+   if [[ -n "$missing_ids" ]]
+   then
+         history_output=`condor_history -af ClusterId ProcId JobStatus ExitCode $missing_ids`
+         if [[ $? -ne 0 ]]
+         then
+               exit $CONDOR_Q_FAILED
+         fi
+   fi
+
+   awk '
+      FILENAME == ARGV[1] { if ($1 != "") ids[++n] = $1; next }
+      NF >= 3 {
+         id = $1 "." $2
+         if (!(id in states)) { states[id] = $3; codes[id] = $4 }
+      }
+      END {
+         for (i = 1; i <= n; i++) {
+            id = ids[i]
+            s = states[id]
+            if (s == "5" || s == "1") print id " WAITING"
+            else if (s == "2") print id " RUNNING"
+            # Artificial exit code because HTCondor does not provide one
+            else if (s == "3") print id " COMPLETE 999"
+            else if (s == "4" && codes[id] ~ /^-?[0-9]+$/) print id " COMPLETE " codes[id]
+            else print id " UNKNOWN"
+         }
+      }' <(echo "$job_ids") <(echo "$queue_output") <(echo "$history_output")
+}
+
 # run the whole thing
 main () {
    # check that we have at least one command
@@ -284,6 +341,7 @@ main () {
                       stop "$@";;
             status) shift
                       status "$@";;
+            statusall) statusall;;
             *) usage
                exit $INCORRECT_FIRST_ARGUMENT
             ;;
@@ -16,6 +16,11 @@
 #
 #    ./bpipe-torque.sh status my_job_id
 #
+# Getting the status of several jobs (given the job ids on the standard input,
+# one per line)
+#
+#    printf "id1\nid2\n" | ./bpipe-torque.sh statusall
+#
 # Notes:
 #
 # None of the commands are guaranteed to succeed. An exit status of 0 for this script
@@ -56,7 +61,7 @@ function join { local IFS="$1"; shift; echo "$*"; }
 
 # Print a usage message
 usage () {
-	echo "usage: $program_name (start | stop ID | status ID)"
+	echo "usage: $program_name (start | stop ID | status ID | statusall)"
 	echo "start needs these environment variables: $ESSENTIAL_ENV_VARS"
 	echo "start will use these variables if defined: $OPTIONAL_ENV_VARS"
 }
@@ -252,6 +257,45 @@ status () {
 	fi
 }
 
+# get the status of several jobs given their ids on the standard input, one
+# id per line. A single qstat query is used for all the jobs and a line
+# with the id and the status of each job is printed
+statusall () {
+	job_ids=`cat`
+
+	if [[ -z "$job_ids" ]]
+		then
+			exit $SUCCESS
+	fi
+
+	# qstat returns 153 if some of the job ids are unknown
+	qstat_output=`qstat -x -f $job_ids 2> /dev/null`
+	qstat_success=$?
+	if [[ $qstat_success != 0 && $qstat_success != 153 ]]
+		then
+			exit $QSTAT_FAILED
+	fi
+
+	# the job ids are compared without the server name suffix
+	awk '
+		FILENAME == ARGV[1] { if ($1 != "") ids[++n] = $1; next }
+		/^Job Id:/ { id = $3; sub(/\..*/, "", id); next }
+		$1 == "job_state" { states[id] = $3 }
+		$1 == "Exit_status" { codes[id] = $3 }
+		END {
+			for (i = 1; i <= n; i++) {
+				id = ids[i]
+				k = id
+				sub(/\..*/, "", k)
+				s = states[k]
+				if (s ~ /^[QHW]$/) print id " WAITING"
+				else if (s ~ /^[RE]$/) print id " RUNNING"
+				else if (s == "F") print id " COMPLETE " codes[k]
+				else print id " UNKNOWN"
+			}
+		}' <(echo "$job_ids") <(echo "$qstat_output")
+}
+
 # run the whole thing
 main () {
 	# check that we have at least one command
@@ -263,6 +307,7 @@ main () {
 	        	stop "$@";;
 			status) shift
 	       		status "$@";;
+			statusall) statusall;;
 			*) usage
 	  			exit $INCORRECT_FIRST_ARGUMENT;;
 		esac
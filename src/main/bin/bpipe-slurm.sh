@@ -17,6 +17,11 @@
 #
 #    ./bpipe-slurm.sh status my_job_id
 #
+# Getting the status of several jobs (given the job ids on the standard input,
+# one per line)
+#
+#    printf "id1\nid2\n" | ./bpipe-slurm.sh statusall
+#
 # Notes:
 #
 # None of the commands are guaranteed to succeed. An exit status of 0 for this script
@@ -80,6 +85,7 @@ SCONTROL_FAILED=6             # scontrol command returned non-zero exit status
 SBATCH_FAILED=7              # sbatch command returned non-zero exit status
 MKDIR_JOBDIR_FAILED=8
 JOBTYPE_FAILED=9              # jobtype variable led to non-zero exit status
+SQUEUE_FAILED=10              # squeue command returned non-zero exit status
 
 ESSENTIAL_ENV_VARS="COMMAND NAME"
 OPTIONAL_ENV_VARS="WALLTIME PROCS QUEUE JOBDIR JOBTYPE MEMORY"
@@ -91,7 +97,7 @@ DEFAULT_JOBTYPE=single	#Should be single, smp or mpi
 
 # Print a usage message
 usage () {
-   echo "usage: $program_name (start | stop ID | status ID)"
+   echo "usage: $program_name (start | stop ID | status ID | statusall)"
    echo "start needs these environment variables: $ESSENTIAL_ENV_VARS"
    echo "start will use these variables if defined: $OPTIONAL_ENV_VARS"
 }
@@ -314,6 +320,128 @@ status () {
    fi
 }
 
+# get the status of several jobs given their ids on the standard input, one
+# id per line. A single squeue query is used for the requested jobs, the jobs
+# that are no more pending or running are then searched with a single sacct
+# query to get their exit code, and with a single scontrol query if they are
+# not in the accounting. A line with the id and the status of each job is
+# printed
+statusall () {
+   # read the job ids
+   ids=""
+   while read -r id
+   do
+         if [[ -n $id ]]
+         then
+               ids="${ids:+$ids,}$id"
+         fi
+   done
+
+   if [[ -z $ids ]]
+   then
+         return
+   fi
+
+   # get the state of the requested jobs known by the controller
+   squeue_output=`squeue -h -j "$ids" -o "%i %T" 2>&1`
+   squeue_success=$?
+   if [[ $squeue_success != 0 ]]
+   then
+         # squeue fails if none of the jobs is known by the controller
+         if [[ $squeue_output == *"Invalid job id specified"* ]]
+         then
+               squeue_output=""
+         else
+               exit $SQUEUE_FAILED
+         fi
+   fi
+
+   # get the jobs that are no more pending or running
+   finished_ids=`echo "$squeue_output" | awk -v ids="$ids" '
+      NF >= 2 { states[$1] = $2 }
+      END {
+         n = split(ids, list, ",")
+         for (i = 1; i <= n; i++)
+            if (states[list[i]] !~ /^(CONFIGURING|PENDING|SUSPENDED|COMPLETING|RUNNING)$/)
+               printf "%s%s", (m++ ? "," : ""), list[i]
+      }'`
+
+   # get the final state and the exit code of these jobs from the accounting.
+   # sacct fails if the accounting is not enabled
+   sacct_output=""
+   if [[ -n $finished_ids ]]
+   then
+         sacct_output=`sacct -n -X -P -j "$finished_ids" -o JobID,State,ExitCode 2>/dev/null`
+   fi
+
+   # get the finished jobs that are not in the accounting
+   missing_ids=`echo "$sacct_output" | awk -F"|" -v ids="$finished_ids" '
+      $1 != "" { found[$1] = 1 }
+      END {
+         n = split(ids, list, ",")
+         for (i = 1; i <= n; i++)
+            if (!(list[i] in found))
+               printf "%s%s", (m++ ? "," : ""), list[i]
+      }'`
+
+   # a single scontrol query is used for these jobs, the controller only
+   # remembers the jobs for a few minutes after their end
+   scontrol_output=""
+   if [[ -n $missing_ids ]]
+   then
+         scontrol_output=`scontrol -o show job 2>/dev/null`
+   fi
+
+   awk -v ids="$ids" '
+      # squeue output: JobId State
+      FILENAME == ARGV[1] { if (NF >= 2) squeue[$1] = $2; next }
+      # sacct output: JobId|State|ExitCode, the state may be followed by a
+      # reason (e.g. "CANCELLED by 1000")
+      FILENAME == ARGV[2] {
+         split($0, f, "|")
+         if (f[1] == "") next
+         split(f[2], st, " ")
+         # ExitCode=N:M, where the N is exit code and M is signal (ignored)
+         split(f[3], c, ":")
+         sacct[f[1]] = st[1]; sacctcodes[f[1]] = c[1]
+         next
+      }
+      # scontrol output: one line per job with Key=Value fields
+      {
+         id = ""; state = ""; code = ""
+         for (i = 1; i <= NF; i++) {
+            p = index($i, "=")
+            if (p == 0) continue
+            k = substr($i, 1, p - 1)
+            v = substr($i, p + 1)
+            if (k == "JobId" && id == "") id = v
+            else if (k == "JobState" && state == "") state = v
+            else if (k == "ExitCode" && code == "") { split(v, c, ":"); code = c[1] }
+         }
+         if (id != "") { scontrol[id] = state; scontrolcodes[id] = code }
+      }
+      END {
+         n = split(ids, list, ",")
+         for (i = 1; i <= n; i++) {
+            id = list[i]
+            s = squeue[id]
+            code = ""
+            if (s !~ /^(CONFIGURING|PENDING|SUSPENDED|COMPLETING|RUNNING)$/) {
+               if (id in sacct) { s = sacct[id]; code = sacctcodes[id] }
+               else if (id in scontrol) { s = scontrol[id]; code = scontrolcodes[id] }
+            }
+            if (s ~ /^(CONFIGURING|PENDING|SUSPENDED)$/) print id " WAITING"
+            else if (s ~ /^(COMPLETING|RUNNING)$/) print id " RUNNING"
+            # Artificial exit code because Slurm does not provide one
+            else if (s == "CANCELLED") print id " COMPLETE 999"
+            else if (s ~ /^(COMPLETED|FAILED|NODE_FAIL|PREEMPTED|TIMEOUT)$/ && code ~ /^[0-9]+$/) print id " COMPLETE " code
+            # the job is unknown, too old to be remembered by Slurm or its
+            # exit code is not known
+            else print id " UNKNOWN"
+         }
+      }' <(echo "$squeue_output") <(echo "$sacct_output") <(echo "$scontrol_output")
+}
+
 # run the whole thing
 main () {
    # check that we have at least one command
@@ -325,6 +453,7 @@ main () {
                       stop "$@";;
             status) shift
                       status "$@";;
+            statusall) statusall;;
             *) usage
                exit $INCORRECT_FIRST_ARGUMENT
             ;;
@@ -296,6 +296,31 @@ public final class Common {
     return threads;
   }
 
+  /**
+   * Get the number of threads to use by a task from localThreads,
+   * maxLocalThreads, global threads number and the number of processors
+   * required by the step of the task. With the resource aware scheduler, a
+   * task cannot use more threads than the processors reserved by the
+   * scheduler.
+   * @param localThreads number of threads
+   * @param maxLocalThreads maximum number of threads
+   * @param requiredProcessors number of processors required by the step, 0 or
+   *          less if not defined
+   * @return the number of threads to use
+   */
+  public static int getThreadsNumber(final int localThreads,
+      final int maxLocalThreads, final int requiredProcessors) {
+
+    final int threads = getThreadsNumber(localThreads, maxLocalThreads);
+
+    if (requiredProcessors > 0
+        && EoulsanRuntime.getSettings().isLocalResourceAwareScheduler()) {
+      return Math.min(threads, requiredProcessors);
+    }
+
+    return threads;
+  }
+
   /**
    * Print warning.
    * @param message message to print
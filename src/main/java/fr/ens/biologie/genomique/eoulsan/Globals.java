@@ -237,6 +237,35 @@ public final class Globals {
   /** Enable standard external modules. */
   public static final boolean STANDARD_EXTERNAL_MODULES_ENABLED_DEFAULT = true;
 
+  /** Enable parallel gzip compression. */
+  public static final boolean PARALLEL_GZIP_COMPRESSION_DEFAULT = false;
+
+  /** Default block size for parallel gzip compression. */
+  public static final int PARALLEL_GZIP_COMPRESSION_BLOCK_SIZE_DEFAULT =
+      1024 * 1024;
+
+  /** Enable the resource aware local task scheduler. */
+  public static final boolean LOCAL_RESOURCE_AWARE_SCHEDULER_DEFAULT = false;
+
+  /** Enable read-ahead decompression. */
+  public static final boolean READ_AHEAD_DECOMPRESSION_DEFAULT = false;
+
+  /** Default buffer size for read-ahead decompression. */
+  public static final int READ_AHEAD_DECOMPRESSION_BUFFER_SIZE_DEFAULT =
+      1024 * 1024;
+
+  /** Default number of worker JVMs in cluster mode. */
+  public static final int CLUSTER_WORKER_COUNT_DEFAULT = 0;
+
+  /** Default number of processors of the worker JVMs in cluster mode. */
+  public static final int CLUSTER_WORKER_PROCESSORS_DEFAULT = 1;
+
+  /** Default idle timeout of the worker JVMs in seconds. */
+  public static final int CLUSTER_WORKER_IDLE_TIMEOUT_DEFAULT = 60;
+
+  /** Default maximal size in MB of the mapper index cache, 0 for no limit. */
+  public static final int MAPPER_INDEX_CACHE_MAX_SIZE_DEFAULT = 0;
+
   /** Server name to check internet connection. */
   public static final String INTERNET_CHECK_SERVER =
       "raw.githubusercontent.com";
@@ -530,6 +530,8 @@ public class Infos {
     ListInfo li = new ListInfo();
 
     li.add("Genome description path", settings.getGenomeDescStoragePath());
+    li.add("Annotation index storage path",
+        settings.getAnnotationIndexStoragePath());
     li.add("Genome mapper index storage path",
         settings.getGenomeMapperIndexStoragePath());
     li.add("Genome storage path", settings.getGenomeStoragePath());
@@ -78,6 +78,12 @@ public final class Settings implements Serializable {
   private static final String LOCAL_THREADS_NUMBER =
       MAIN_PREFIX_KEY + "local.threads";
 
+  private static final String LOCAL_MEMORY_KEY =
+      MAIN_PREFIX_KEY + "local.memory";
+
+  private static final String LOCAL_RESOURCE_AWARE_SCHEDULER_KEY =
+      MAIN_PREFIX_KEY + "local.resource.aware.scheduler";
+
   private static final String OUTPUT_TREE_TYPE =
       MAIN_PREFIX_KEY + "output.tree.type";
 
@@ -101,6 +107,15 @@ public final class Settings implements Serializable {
   private static final String CLUSTER_DEFAULT_MEMORY_REQUIRED =
       MAIN_PREFIX_KEY + "cluster.memory.required";
 
+  private static final String CLUSTER_WORKER_COUNT_KEY =
+      MAIN_PREFIX_KEY + "cluster.worker.count";
+
+  private static final String CLUSTER_WORKER_PROCESSORS_KEY =
+      MAIN_PREFIX_KEY + "cluster.worker.processors";
+
+  private static final String CLUSTER_WORKER_IDLE_TIMEOUT_KEY =
+      MAIN_PREFIX_KEY + "cluster.worker.idle.timeout";
+
   private static final String HADOOP_LOG_LEVEL_KEY =
       MAIN_PREFIX_KEY + "hadoop.log.level";
 
@@ -129,6 +144,15 @@ public final class Settings implements Serializable {
   private static final String GENOME_DESC_STORAGE_KEY =
       MAIN_PREFIX_KEY + "genome.desc.storage.path";
 
+  private static final String ANNOTATION_INDEX_STORAGE_KEY =
+      MAIN_PREFIX_KEY + "annotation.index.storage.path";
+
+  private static final String MAPPER_INDEX_CACHE_KEY =
+      MAIN_PREFIX_KEY + "mapper.index.cache.path";
+
+  private static final String MAPPER_INDEX_CACHE_MAX_SIZE_KEY =
+      MAIN_PREFIX_KEY + "mapper.index.cache.max.size";
+
   private static final String GENOME_STORAGE_KEY =
       MAIN_PREFIX_KEY + "genome.storage.path";
 
@@ -181,6 +205,21 @@ public final class Settings implements Serializable {
   public static final String STANDARD_EXTERNAL_MODULES_ENABLED_KEY =
       MAIN_PREFIX_KEY + "standard.external.modules.enabled";
 
+  private static final String PARALLEL_GZIP_COMPRESSION_KEY =
+      MAIN_PREFIX_KEY + "parallel.gzip.compression";
+
+  private static final String PARALLEL_GZIP_COMPRESSION_THREADS_KEY =
+      MAIN_PREFIX_KEY + "parallel.gzip.compression.threads";
+
+  private static final String PARALLEL_GZIP_COMPRESSION_BLOCK_SIZE_KEY =
+      MAIN_PREFIX_KEY + "parallel.gzip.compression.block.size";
+
+  private static final String READ_AHEAD_DECOMPRESSION_KEY =
+      MAIN_PREFIX_KEY + "read.ahead.decompression";
+
+  private static final String READ_AHEAD_DECOMPRESSION_BUFFER_SIZE_KEY =
+      MAIN_PREFIX_KEY + "read.ahead.decompression.buffer.size";
+
   private static final Set<String> FORBIDDEN_KEYS = Utils.unmodifiableSet(
       new String[] {HADOOP_AWS_ACCESS_KEY, HADOOP_AWS_SECRET_KEY});
 
@@ -282,6 +321,39 @@ public final class Settings implements Serializable {
     return Integer.parseInt(value);
   }
 
+  /**
+   * Get the number of worker JVMs that execute the tasks in cluster mode. If
+   * the value is 0, each task is submitted as a cluster job.
+   * @return the number of worker JVMs
+   */
+  public int getClusterWorkerCount() {
+
+    return Integer.parseInt(this.properties.getProperty(
+        CLUSTER_WORKER_COUNT_KEY, "" + Globals.CLUSTER_WORKER_COUNT_DEFAULT));
+  }
+
+  /**
+   * Get the number of processors of the worker JVMs in cluster mode.
+   * @return the number of processors of the worker JVMs
+   */
+  public int getClusterWorkerProcessors() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(CLUSTER_WORKER_PROCESSORS_KEY,
+            "" + Globals.CLUSTER_WORKER_PROCESSORS_DEFAULT));
+  }
+
+  /**
+   * Get the idle timeout of the worker JVMs in cluster mode.
+   * @return the idle timeout in seconds
+   */
+  public int getClusterWorkerIdleTimeout() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(CLUSTER_WORKER_IDLE_TIMEOUT_KEY,
+            "" + Globals.CLUSTER_WORKER_IDLE_TIMEOUT_DEFAULT));
+  }
+
   /**
    * Test if RServe is enabled.
    * @return true if the RServe server is enabled
@@ -399,6 +471,30 @@ public final class Settings implements Serializable {
         "" + Runtime.getRuntime().availableProcessors()));
   }
 
+  /**
+   * Get the memory in MB available for the tasks in local mode. If not set,
+   * the total memory of the host is used.
+   * @return the memory in MB available for the tasks in local mode or 0 if
+   *         not set
+   */
+  public int getLocalMemory() {
+
+    return Integer
+        .parseInt(this.properties.getProperty(LOCAL_MEMORY_KEY, "0"));
+  }
+
+  /**
+   * Test if the local task scheduler must schedule the tasks according to the
+   * processors and the memory required by the steps.
+   * @return true if the local task scheduler is resource aware
+   */
+  public boolean isLocalResourceAwareScheduler() {
+
+    return Boolean.parseBoolean(
+        this.properties.getProperty(LOCAL_RESOURCE_AWARE_SCHEDULER_KEY,
+            "" + Globals.LOCAL_RESOURCE_AWARE_SCHEDULER_DEFAULT));
+  }
+
   /**
    * Get the default fastq format.
    * @return the default fastq format
@@ -437,6 +533,36 @@ public final class Settings implements Serializable {
     return this.properties.getProperty(GENOME_DESC_STORAGE_KEY);
   }
 
+  /**
+   * Get the annotation index storage path.
+   * @return the path to annotation index storage path
+   */
+  public String getAnnotationIndexStoragePath() {
+
+    return this.properties.getProperty(ANNOTATION_INDEX_STORAGE_KEY);
+  }
+
+  /**
+   * Get the path of the node-local cache of the unpacked mapper indexes.
+   * @return the path of the mapper index cache or null if not set
+   */
+  public String getMapperIndexCachePath() {
+
+    return this.properties.getProperty(MAPPER_INDEX_CACHE_KEY);
+  }
+
+  /**
+   * Get the maximal size of the node-local cache of the unpacked mapper
+   * indexes.
+   * @return the maximal size of the cache in MB, 0 if there is no limit
+   */
+  public int getMapperIndexCacheMaxSize() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(MAPPER_INDEX_CACHE_MAX_SIZE_KEY,
+            "" + Globals.MAPPER_INDEX_CACHE_MAX_SIZE_DEFAULT));
+  }
+
   /**
    * Get the genome storage path.
    * @return the path to genome storage path
@@ -714,6 +840,64 @@ public final class Settings implements Serializable {
             "" + Globals.STANDARD_EXTERNAL_MODULES_ENABLED_DEFAULT));
   }
 
+  /**
+   * Test if gzip files must be compressed using several threads.
+   * @return true if gzip files must be compressed using several threads
+   */
+  public boolean isParallelGZipCompression() {
+
+    return Boolean
+        .parseBoolean(this.properties.getProperty(PARALLEL_GZIP_COMPRESSION_KEY,
+            "" + Globals.PARALLEL_GZIP_COMPRESSION_DEFAULT));
+  }
+
+  /**
+   * Get the number of threads to use for parallel gzip compression. If not
+   * set, the number of local threads is used.
+   * @return the number of threads to use for parallel gzip compression
+   */
+  public int getParallelGZipCompressionThreads() {
+
+    final int threads = Integer.parseInt(this.properties
+        .getProperty(PARALLEL_GZIP_COMPRESSION_THREADS_KEY, "0"));
+
+    return threads > 0 ? threads : getLocalThreadsNumber();
+  }
+
+  /**
+   * Get the size of the blocks for parallel gzip compression.
+   * @return the size of the blocks in bytes
+   */
+  public int getParallelGZipCompressionBlockSize() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(PARALLEL_GZIP_COMPRESSION_BLOCK_SIZE_KEY,
+            "" + Globals.PARALLEL_GZIP_COMPRESSION_BLOCK_SIZE_DEFAULT));
+  }
+
+  /**
+   * Test if compressed files must be uncompressed in a background thread.
+   * @return true if compressed files must be uncompressed in a background
+   *         thread
+   */
+  public boolean isReadAheadDecompression() {
+
+    return Boolean
+        .parseBoolean(this.properties.getProperty(READ_AHEAD_DECOMPRESSION_KEY,
+            "" + Globals.READ_AHEAD_DECOMPRESSION_DEFAULT));
+  }
+
+  /**
+   * Get the size of the buffers for read-ahead decompression.
+   * @return the size of the buffers in bytes
+   */
+  public int getReadAheadDecompressionBufferSize() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(READ_AHEAD_DECOMPRESSION_BUFFER_SIZE_KEY,
+            "" + Globals.READ_AHEAD_DECOMPRESSION_BUFFER_SIZE_DEFAULT));
+  }
+
   /**
    * Get a setting value.
    * @return settingName value as a String
@@ -896,6 +1080,35 @@ public final class Settings implements Serializable {
     this.properties.setProperty(CLUSTER_DEFAULT_MEMORY_REQUIRED, "" + memory);
   }
 
+  /**
+   * Set the number of worker JVMs that execute the tasks in cluster mode.
+   * @param count the number of worker JVMs
+   */
+  public void setClusterWorkerCount(final int count) {
+
+    this.properties.setProperty(CLUSTER_WORKER_COUNT_KEY, "" + count);
+  }
+
+  /**
+   * Set the number of processors of the worker JVMs in cluster mode.
+   * @param processors the number of processors
+   */
+  public void setClusterWorkerProcessors(final int processors) {
+
+    this.properties.setProperty(CLUSTER_WORKER_PROCESSORS_KEY,
+        "" + processors);
+  }
+
+  /**
+   * Set the idle timeout of the worker JVMs in cluster mode.
+   * @param timeout the idle timeout in seconds
+   */
+  public void setClusterWorkerIdleTimeout(final int timeout) {
+
+    this.properties.setProperty(CLUSTER_WORKER_IDLE_TIMEOUT_KEY,
+        "" + timeout);
+  }
+
   /**
    * Set if RServe is enabled.
    * @param enable true if the RServe server is enable
@@ -992,6 +1205,30 @@ public final class Settings implements Serializable {
         Integer.toString(threadsNumber));
   }
 
+  /**
+   * Set the memory in MB available for the tasks in local mode.
+   * @param memory the memory in MB
+   */
+  public void setLocalMemory(final int memory) {
+
+    if (memory < 0) {
+      return;
+    }
+
+    this.properties.setProperty(LOCAL_MEMORY_KEY, Integer.toString(memory));
+  }
+
+  /**
+   * Set if the local task scheduler must schedule the tasks according to the
+   * processors and the memory required by the steps.
+   * @param enable the value
+   */
+  public void setLocalResourceAwareScheduler(final boolean enable) {
+
+    this.properties.setProperty(LOCAL_RESOURCE_AWARE_SCHEDULER_KEY,
+        "" + enable);
+  }
+
   /**
    * Set the Fastq format default value.
    * @param format the value to set
@@ -1035,6 +1272,38 @@ public final class Settings implements Serializable {
     this.properties.setProperty(GENOME_DESC_STORAGE_KEY, genomeDescStoragePath);
   }
 
+  /**
+   * Set the annotation index storage path.
+   * @param annotationIndexStoragePath the path to annotation index storage
+   *          path
+   */
+  public void setAnnotationIndexStoragePath(
+      final String annotationIndexStoragePath) {
+
+    this.properties.setProperty(ANNOTATION_INDEX_STORAGE_KEY,
+        annotationIndexStoragePath);
+  }
+
+  /**
+   * Set the path of the node-local cache of the unpacked mapper indexes.
+   * @param mapperIndexCachePath the path of the mapper index cache
+   */
+  public void setMapperIndexCachePath(final String mapperIndexCachePath) {
+
+    this.properties.setProperty(MAPPER_INDEX_CACHE_KEY, mapperIndexCachePath);
+  }
+
+  /**
+   * Set the maximal size of the node-local cache of the unpacked mapper
+   * indexes.
+   * @param maxSize the maximal size of the cache in MB, 0 if there is no limit
+   */
+  public void setMapperIndexCacheMaxSize(final int maxSize) {
+
+    this.properties.setProperty(MAPPER_INDEX_CACHE_MAX_SIZE_KEY,
+        "" + maxSize);
+  }
+
   /**
    * Set the genome storage path.
    * @param genomeStoragePath the path to genome index storage path
@@ -1291,6 +1560,54 @@ public final class Settings implements Serializable {
         "" + enable);
   }
 
+  /**
+   * Set if gzip files must be compressed using several threads.
+   * @param enable the value
+   */
+  public void setParallelGZipCompression(final boolean enable) {
+
+    this.properties.setProperty(PARALLEL_GZIP_COMPRESSION_KEY, "" + enable);
+  }
+
+  /**
+   * Set the number of threads to use for parallel gzip compression.
+   * @param threads the number of threads
+   */
+  public void setParallelGZipCompressionThreads(final int threads) {
+
+    this.properties.setProperty(PARALLEL_GZIP_COMPRESSION_THREADS_KEY,
+        "" + threads);
+  }
+
+  /**
+   * Set the size of the blocks for parallel gzip compression.
+   * @param blockSize the size of the blocks in bytes
+   */
+  public void setParallelGZipCompressionBlockSize(final int blockSize) {
+
+    this.properties.setProperty(PARALLEL_GZIP_COMPRESSION_BLOCK_SIZE_KEY,
+        "" + blockSize);
+  }
+
+  /**
+   * Set if compressed files must be uncompressed in a background thread.
+   * @param enable the value
+   */
+  public void setReadAheadDecompression(final boolean enable) {
+
+    this.properties.setProperty(READ_AHEAD_DECOMPRESSION_KEY, "" + enable);
+  }
+
+  /**
+   * Set the size of the buffers for read-ahead decompression.
+   * @param bufferSize the size of the buffers in bytes
+   */
+  public void setReadAheadDecompressionBufferSize(final int bufferSize) {
+
+    this.properties.setProperty(READ_AHEAD_DECOMPRESSION_BUFFER_SIZE_KEY,
+        "" + bufferSize);
+  }
+
   /**
    * Set a setting value.
    * @param settingName name of the setting to set
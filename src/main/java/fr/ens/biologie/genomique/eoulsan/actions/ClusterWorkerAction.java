@@ -0,0 +1,203 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.actions;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import fr.ens.biologie.genomique.eoulsan.AbstractEoulsanRuntime.EoulsanExecMode;
+import fr.ens.biologie.genomique.eoulsan.Common;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.LocalEoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.TaskWorker;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.TaskWorkerQueue;
+
+/**
+ * This class define an action to launch a worker that executes cluster tasks
+ * in a long-lived JVM.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class ClusterWorkerAction extends AbstractAction {
+
+  /** Name of this action. */
+  public static final String ACTION_NAME = "clusterworker";
+
+  @Override
+  public String getName() {
+
+    return ACTION_NAME;
+  }
+
+  @Override
+  public String getDescription() {
+
+    return "execute cluster tasks in a worker";
+  }
+
+  @Override
+  public boolean isHidden() {
+
+    return true;
+  }
+
+  @Override
+  public void action(final List<String> arguments) {
+
+    final Options options = makeOptions();
+    final CommandLineParser parser = new GnuParser();
+
+    int workerId = 0;
+    int idleTimeout = Globals.CLUSTER_WORKER_IDLE_TIMEOUT_DEFAULT;
+    int argsOptions = 0;
+
+    try {
+
+      // parse the command line arguments
+      final CommandLine line =
+          parser.parse(options, arguments.toArray(new String[0]), true);
+
+      // Help option
+      if (line.hasOption("help")) {
+        help(options);
+      }
+
+      if (line.hasOption("i")) {
+
+        workerId = Integer.parseInt(line.getOptionValue("i"));
+        argsOptions += 2;
+      }
+
+      if (line.hasOption("t")) {
+
+        idleTimeout = Integer.parseInt(line.getOptionValue("t"));
+        argsOptions += 2;
+      }
+
+    } catch (ParseException | NumberFormatException e) {
+      Common.errorExit(e,
+          "Error while parsing command line arguments: " + e.getMessage());
+    }
+
+    if (arguments.size() != argsOptions + 1) {
+      help(options);
+    }
+
+    final File queueDirectory = new File(arguments.get(argsOptions));
+
+    // Execute the tasks of the queue
+    run(queueDirectory, workerId, idleTimeout);
+  }
+
+  //
+  // Command line parsing
+  //
+
+  /**
+   * Create options for command line
+   * @return an Options object
+   */
+  @SuppressWarnings("static-access")
+  private static Options makeOptions() {
+
+    // create Options object
+    final Options options = new Options();
+
+    // Help option
+    options.addOption("h", "help", false, "display this help");
+
+    // Worker id option
+    options.addOption(OptionBuilder.withArgName("id").hasArg()
+        .withDescription("worker id").withLongOpt("id").create('i'));
+
+    // Idle timeout option
+    options.addOption(OptionBuilder.withArgName("seconds").hasArg()
+        .withDescription("idle timeout in seconds").withLongOpt("timeout")
+        .create('t'));
+
+    return options;
+  }
+
+  /**
+   * Show command line help.
+   * @param options Options of the software
+   */
+  private void help(final Options options) {
+
+    // Show help message
+    final HelpFormatter formatter = new HelpFormatter();
+    formatter.printHelp(Globals.APP_NAME_LOWER_CASE
+        + ".sh " + getName() + " [options] queue_directory", options);
+
+    Common.exit(0);
+  }
+
+  //
+  // Execution
+  //
+
+  /**
+   * Execute the tasks of a queue.
+   * @param queueDirectory the queue directory
+   * @param workerId the id of the worker
+   * @param idleTimeout the idle timeout in seconds
+   */
+  private static void run(final File queueDirectory, final int workerId,
+      final int idleTimeout) {
+
+    requireNonNull(queueDirectory, "queueDirectory is null");
+
+    // Get Eoulsan runtime
+    final LocalEoulsanRuntime localRuntime =
+        (LocalEoulsanRuntime) EoulsanRuntime.getRuntime();
+
+    // Set the cluster task mode
+    localRuntime.setMode(EoulsanExecMode.CLUSTER_TASK);
+
+    try {
+
+      // Execute the tasks
+      new TaskWorker(new TaskWorkerQueue(queueDirectory), workerId,
+          idleTimeout * 1000L).run();
+
+    } catch (IOException e) {
+      Common.errorExit(e, "IOException: " + e.getMessage());
+    }
+  }
+
+}
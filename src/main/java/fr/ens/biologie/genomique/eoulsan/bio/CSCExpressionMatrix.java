@@ -0,0 +1,665 @@
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This class define a compact sparse expression matrix. The values are stored
+ * in compressed sparse column (CSC) format: each column contains a sorted array
+ * of row indexes and an array of values. The values are stored as int values
+ * while they are all integers, as for the counts of the single cell
+ * experiments, and as double values otherwise. Only the values that are
+ * different from the default value are stored.
+ * <p>
+ * Adding the values of a column in increasing order of row is done in constant
+ * time, so reading a matrix sorted by column or by row does not require any
+ * copy of the data. The indexes of the rows and of the columns are always the
+ * positions of the rows and of the columns in the matrix.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class CSCExpressionMatrix extends AbstractMatrix<Double>
+    implements ExpressionMatrix {
+
+  private static final double DEFAULT_DEFAULT_VALUE = 0.0;
+  private static final int INITIAL_COLUMN_CAPACITY = 8;
+  private static final long NEGATIVE_ZERO_BITS =
+      Double.doubleToRawLongBits(-0.0);
+
+  private final List<String> rowNames = new ArrayList<>();
+  private final Map<String, Integer> rowIndexes = new HashMap<>();
+  private final List<Column> columns = new ArrayList<>();
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  private final double defaultValue;
+
+  /**
+   * This class define a column of the matrix.
+   */
+  private static final class Column {
+
+    private String name;
+    private int[] rows = new int[0];
+    private int[] intValues = new int[0];
+    private double[] doubleValues;
+    private int size;
+
+    /**
+     * Get the value of a row.
+     * @param row row index
+     * @param defaultValue default value
+     * @return the value of the row
+     */
+    private double get(final int row, final double defaultValue) {
+
+      final int i = Arrays.binarySearch(this.rows, 0, this.size, row);
+
+      return i < 0 ? defaultValue : value(i);
+    }
+
+    /**
+     * Get a stored value.
+     * @param i the index of the value in the column
+     * @return the stored value
+     */
+    private double value(final int i) {
+
+      return this.doubleValues == null
+          ? this.intValues[i] : this.doubleValues[i];
+    }
+
+    /**
+     * Set the value of a row.
+     * @param row row index
+     * @param value the value to store
+     */
+    private void set(final int row, final double value) {
+
+      // Fast path for values added in increasing order of row
+      int i = this.size == 0 || this.rows[this.size - 1] < row
+          ? -this.size - 1 : Arrays.binarySearch(this.rows, 0, this.size, row);
+
+      if (this.doubleValues == null && !isIntValue(value)) {
+        this.doubleValues = new double[this.intValues.length];
+        for (int j = 0; j < this.size; j++) {
+          this.doubleValues[j] = this.intValues[j];
+        }
+        this.intValues = null;
+      }
+
+      if (i < 0) {
+
+        i = -i - 1;
+        ensureCapacity(this.size + 1);
+        System.arraycopy(this.rows, i, this.rows, i + 1, this.size - i);
+        if (this.doubleValues == null) {
+          System.arraycopy(this.intValues, i, this.intValues, i + 1,
+              this.size - i);
+        } else {
+          System.arraycopy(this.doubleValues, i, this.doubleValues, i + 1,
+              this.size - i);
+        }
+        this.rows[i] = row;
+        this.size++;
+      }
+
+      if (this.doubleValues == null) {
+        this.intValues[i] = (int) value;
+      } else {
+        this.doubleValues[i] = value;
+      }
+    }
+
+    /**
+     * Remove the value of a row.
+     * @param row row index
+     */
+    private void remove(final int row) {
+
+      final int i = Arrays.binarySearch(this.rows, 0, this.size, row);
+
+      if (i < 0) {
+        return;
+      }
+
+      final int count = this.size - i - 1;
+      System.arraycopy(this.rows, i + 1, this.rows, i, count);
+      if (this.doubleValues == null) {
+        System.arraycopy(this.intValues, i + 1, this.intValues, i, count);
+      } else {
+        System.arraycopy(this.doubleValues, i + 1, this.doubleValues, i,
+            count);
+      }
+      this.size--;
+    }
+
+    /**
+     * Update the row indexes after the removal of rows.
+     * @param newRows array with the new indexes of the rows, -1 for the
+     *          removed rows
+     */
+    private void reindexRows(final int[] newRows) {
+
+      int n = 0;
+      for (int i = 0; i < this.size; i++) {
+
+        final int row = newRows[this.rows[i]];
+
+        if (row != -1) {
+          this.rows[n] = row;
+          if (this.doubleValues == null) {
+            this.intValues[n] = this.intValues[i];
+          } else {
+            this.doubleValues[n] = this.doubleValues[i];
+          }
+          n++;
+        }
+      }
+
+      this.size = n;
+    }
+
+    /**
+     * Ensure that the arrays of the column can contains a number of values.
+     * @param capacity the number of values
+     */
+    private void ensureCapacity(final int capacity) {
+
+      if (capacity <= this.rows.length) {
+        return;
+      }
+
+      final int newCapacity = Math.max(capacity,
+          Math.max(INITIAL_COLUMN_CAPACITY, this.rows.length * 3 / 2));
+
+      this.rows = Arrays.copyOf(this.rows, newCapacity);
+      if (this.doubleValues == null) {
+        this.intValues = Arrays.copyOf(this.intValues, newCapacity);
+      } else {
+        this.doubleValues = Arrays.copyOf(this.doubleValues, newCapacity);
+      }
+    }
+
+    private Column(final String name) {
+      this.name = name;
+    }
+  }
+
+  @Override
+  public List<String> getRowNames() {
+
+    return Collections.unmodifiableList(new ArrayList<>(this.rowNames));
+  }
+
+  @Override
+  public int getRowCount() {
+
+    return this.rowNames.size();
+  }
+
+  @Override
+  public List<String> getColumnNames() {
+
+    final List<String> result = new ArrayList<>(this.columns.size());
+    for (Column c : this.columns) {
+      result.add(c.name);
+    }
+
+    return Collections.unmodifiableList(result);
+  }
+
+  @Override
+  public int getColumnCount() {
+
+    return this.columns.size();
+  }
+
+  @Override
+  public List<Double> getColumnValues(final String columnName) {
+
+    final Column column = this.columns.get(getColumnIndex(columnName));
+
+    final double[] values = new double[this.rowNames.size()];
+    Arrays.fill(values, this.defaultValue);
+    for (int i = 0; i < column.size; i++) {
+      values[column.rows[i]] = column.value(i);
+    }
+
+    final List<Double> result = new ArrayList<>(values.length);
+    for (double v : values) {
+      result.add(v);
+    }
+
+    return result;
+  }
+
+  @Override
+  public List<Double> getRowValues(final String rowName) {
+
+    final int row = getRowIndex(rowName);
+    final List<Double> result = new ArrayList<>(this.columns.size());
+
+    for (Column c : this.columns) {
+      result.add(c.get(row, this.defaultValue));
+    }
+
+    return result;
+  }
+
+  @Override
+  public Iterable<Entry<Double>> nonZeroValues() {
+
+    return new Iterable<Entry<Double>>() {
+
+      @Override
+      public Iterator<Entry<Double>> iterator() {
+
+        return new Iterator<Entry<Double>>() {
+
+          int column;
+          int i;
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException("remove");
+          }
+
+          @Override
+          public boolean hasNext() {
+
+            while (this.column < columns.size()
+                && this.i >= columns.get(this.column).size) {
+              this.column++;
+              this.i = 0;
+            }
+
+            return this.column < columns.size();
+          }
+
+          @Override
+          public Entry<Double> next() {
+
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+
+            final Column c = columns.get(this.column);
+            final int index = this.i++;
+
+            return new BasicEntry<>(rowNames.get(c.rows[index]), c.name,
+                c.value(index));
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public Double getValue(final String rowName, final String columnName) {
+
+    final int row = getRowIndex(rowName);
+
+    return this.columns.get(getColumnIndex(columnName)).get(row,
+        this.defaultValue);
+  }
+
+  @Override
+  public boolean containsColumn(final String columnName) {
+
+    Objects.requireNonNull(columnName, "columnName argument cannot be null");
+
+    return this.columnIndexes.containsKey(columnName);
+  }
+
+  @Override
+  public boolean containsRow(final String rowName) {
+
+    Objects.requireNonNull(rowName, "rowName argument cannot be null");
+
+    return this.rowIndexes.containsKey(rowName);
+  }
+
+  @Override
+  public void setValue(final String rowName, final String columnName,
+      final Double value) {
+
+    Objects.requireNonNull(value, "value argument cannot be null");
+
+    setValue(rowName, columnName, value.doubleValue());
+  }
+
+  @Override
+  public void setValue(final String rowName, final String columnName,
+      final double value) {
+
+    Objects.requireNonNull(rowName, "rowName argument cannot be null");
+    Objects.requireNonNull(columnName, "columnName argument cannot be null");
+
+    // Get the row index
+    Integer row = this.rowIndexes.get(rowName);
+    if (row == null) {
+      addRow(rowName);
+      row = this.rowNames.size() - 1;
+    }
+
+    // Get the column index
+    Integer column = this.columnIndexes.get(columnName);
+    if (column == null) {
+      addColumn(columnName);
+      column = this.columns.size() - 1;
+    }
+
+    // The default value is never stored
+    if (Double.compare(value, this.defaultValue) == 0) {
+      this.columns.get(column).remove(row);
+    } else {
+      this.columns.get(column).set(row, value);
+    }
+  }
+
+  @Override
+  public void addRow(final String rowName) {
+
+    Objects.requireNonNull(rowName, "rowName argument cannot be null");
+
+    if (this.rowIndexes.containsKey(rowName)) {
+      return;
+    }
+
+    this.rowIndexes.put(rowName, this.rowNames.size());
+    this.rowNames.add(rowName);
+  }
+
+  @Override
+  public void addColumn(final String columnName) {
+
+    Objects.requireNonNull(columnName, "columnName argument cannot be null");
+
+    if (this.columnIndexes.containsKey(columnName)) {
+      return;
+    }
+
+    this.columnIndexes.put(columnName, this.columns.size());
+    this.columns.add(new Column(columnName));
+  }
+
+  @Override
+  public void renameColumn(final String oldColumnName,
+      final String newColumnName) {
+
+    Objects.requireNonNull(oldColumnName, "oldColumnName cannot be null");
+    Objects.requireNonNull(newColumnName, "newColumnName cannot be null");
+
+    if (!containsColumn(oldColumnName)) {
+      throw new IllegalArgumentException(
+          "Unknown column name: " + oldColumnName);
+    }
+
+    if (containsColumn(newColumnName)) {
+      throw new IllegalArgumentException(
+          "The new column name already exists: " + newColumnName);
+    }
+
+    final Integer column = this.columnIndexes.remove(oldColumnName);
+    this.columnIndexes.put(newColumnName, column);
+    this.columns.get(column).name = newColumnName;
+  }
+
+  @Override
+  public void removeColumn(final String columnName) {
+
+    Objects.requireNonNull(columnName, "columnName argument cannot be null");
+
+    removeColumns(Collections.singleton(columnName));
+  }
+
+  @Override
+  public void removeColumns(final Collection<String> columnNames) {
+
+    Objects.requireNonNull(columnNames, "columnNames argument cannot be null");
+
+    for (String columnName : columnNames) {
+      if (!this.columnIndexes.containsKey(columnName)) {
+        throw new IllegalArgumentException(
+            "columnName does not exists: " + columnName);
+      }
+    }
+
+    final Set<String> toRemove = new HashSet<>(columnNames);
+    this.columns.removeIf(c -> toRemove.contains(c.name));
+
+    // Update the indexes of the columns
+    this.columnIndexes.clear();
+    for (int i = 0; i < this.columns.size(); i++) {
+      this.columnIndexes.put(this.columns.get(i).name, i);
+    }
+  }
+
+  @Override
+  public void retainColumns(final Collection<String> columnNames) {
+
+    Objects.requireNonNull(columnNames, "columnNames argument cannot be null");
+
+    final Set<String> toRetain = new HashSet<>(columnNames);
+    final List<String> toRemove = new ArrayList<>();
+
+    for (Column c : this.columns) {
+      if (!toRetain.contains(c.name)) {
+        toRemove.add(c.name);
+      }
+    }
+
+    removeColumns(toRemove);
+  }
+
+  @Override
+  public void removeRow(final String rowName) {
+
+    Objects.requireNonNull(rowName, "rowName argument cannot be null");
+
+    removeRows(Collections.singleton(rowName));
+  }
+
+  @Override
+  public void removeRows(final Collection<String> rowNames) {
+
+    Objects.requireNonNull(rowNames, "rowNames argument cannot be null");
+
+    final int[] newRows = new int[this.rowNames.size()];
+
+    for (String rowName : rowNames) {
+
+      final Integer row = this.rowIndexes.get(rowName);
+      if (row == null) {
+        throw new IllegalArgumentException(
+            "rowName does not exists: " + rowName);
+      }
+      newRows[row] = -1;
+    }
+
+    // Compute the new indexes of the rows
+    final List<String> newRowNames = new ArrayList<>();
+    for (int i = 0; i < newRows.length; i++) {
+
+      if (newRows[i] != -1) {
+        newRows[i] = newRowNames.size();
+        newRowNames.add(this.rowNames.get(i));
+      }
+    }
+
+    if (newRowNames.size() == this.rowNames.size()) {
+      return;
+    }
+
+    // Update the values in all the columns in one pass
+    for (Column c : this.columns) {
+      c.reindexRows(newRows);
+    }
+
+    this.rowNames.clear();
+    this.rowNames.addAll(newRowNames);
+    this.rowIndexes.clear();
+    for (int i = 0; i < this.rowNames.size(); i++) {
+      this.rowIndexes.put(this.rowNames.get(i), i);
+    }
+  }
+
+  @Override
+  public void retainRows(final Collection<String> rowNames) {
+
+    Objects.requireNonNull(rowNames, "rowNames argument cannot be null");
+
+    final Set<String> toRetain = new HashSet<>(rowNames);
+    final List<String> toRemove = new ArrayList<>();
+
+    for (String rowName : this.rowNames) {
+      if (!toRetain.contains(rowName)) {
+        toRemove.add(rowName);
+      }
+    }
+
+    removeRows(toRemove);
+  }
+
+  @Override
+  public Double getDefaultValue() {
+
+    return this.defaultValue;
+  }
+
+  //
+  // Primitive access methods
+  //
+
+  /**
+   * Get the number of stored values, the values that are different from the
+   * default value.
+   * @return the number of stored values
+   */
+  public long getNonZeroCount() {
+
+    long result = 0;
+    for (Column c : this.columns) {
+      result += c.size;
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of stored values of a column.
+   * @param columnIndex the index of the column
+   * @return the number of stored values of the column
+   */
+  public int getColumnNonZeroCount(final int columnIndex) {
+
+    return this.columns.get(columnIndex).size;
+  }
+
+  /**
+   * Get the row index of a stored value of a column. The row indexes of a
+   * column are sorted in increasing order.
+   * @param columnIndex the index of the column
+   * @param i the index of the stored value in the column
+   * @return the index of the row of the value
+   */
+  public int getColumnNonZeroRowIndex(final int columnIndex, final int i) {
+
+    final Column column = this.columns.get(columnIndex);
+    checkStoredValueIndex(column, i);
+
+    return column.rows[i];
+  }
+
+  /**
+   * Get a stored value of a column.
+   * @param columnIndex the index of the column
+   * @param i the index of the stored value in the column
+   * @return the value
+   */
+  public double getColumnNonZeroValue(final int columnIndex, final int i) {
+
+    final Column column = this.columns.get(columnIndex);
+    checkStoredValueIndex(column, i);
+
+    return column.value(i);
+  }
+
+  //
+  // Internal methods
+  //
+
+  private int getColumnIndex(final String columnName) {
+
+    Objects.requireNonNull(columnName, "columnName argument cannot be null");
+
+    final Integer result = this.columnIndexes.get(columnName);
+
+    if (result == null) {
+      throw new IllegalArgumentException("Unknown column name: " + columnName);
+    }
+
+    return result;
+  }
+
+  private int getRowIndex(final String rowName) {
+
+    Objects.requireNonNull(rowName, "rowName argument cannot be null");
+
+    final Integer result = this.rowIndexes.get(rowName);
+
+    if (result == null) {
+      throw new IllegalArgumentException("Unknown row name: " + rowName);
+    }
+
+    return result;
+  }
+
+  private static void checkStoredValueIndex(final Column column, final int i) {
+
+    if (i < 0 || i >= column.size) {
+      throw new IndexOutOfBoundsException(
+          "Invalid value index: " + i + ", size: " + column.size);
+    }
+  }
+
+  /**
+   * Test if a value can be stored as an int without loss.
+   * @param value the value to test
+   * @return true if the value can be stored as an int
+   */
+  private static boolean isIntValue(final double value) {
+
+    return value == (int) value
+        && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   */
+  public CSCExpressionMatrix() {
+    this(DEFAULT_DEFAULT_VALUE);
+  }
+
+  /**
+   * Public constructor.
+   * @param defaultValue the default value of the matrix
+   */
+  public CSCExpressionMatrix(final double defaultValue) {
+    this.defaultValue = defaultValue;
+  }
+
+}
@@ -42,7 +42,7 @@ import fr.ens.biologie.genomique.eoulsan.util.Utils;
  * @since 1.2
  * @author Laurent Jourdren
  */
-public class GenomicArray<T> implements Serializable {
+public class GenomicArray<T> implements GenomicIndex<T>, Serializable {
 
   private static final long serialVersionUID = 539825064205425262L;
 
@@ -724,6 +724,7 @@ public class GenomicArray<T> implements Serializable {
    * @param interval the genomic interval
    * @return a map with the values
    */
+  @Override
   public Map<GenomicInterval, Set<T>> getEntries(
       final GenomicInterval interval) {
 
@@ -742,6 +743,7 @@ public class GenomicArray<T> implements Serializable {
    * @param end end of the interval
    * @return a map with the values
    */
+  @Override
   public Map<GenomicInterval, Set<T>> getEntries(final String chromosome,
       final int start, final int end) {
 
@@ -763,6 +765,7 @@ public class GenomicArray<T> implements Serializable {
    * @param chromosomeName name of the chromosome to test
    * @return true if the GenomicArray contains the chromosome
    */
+  @Override
   public boolean containsChromosome(final String chromosomeName) {
 
     if (chromosomeName == null) {
@@ -776,6 +779,7 @@ public class GenomicArray<T> implements Serializable {
    * Get a set with zone identifiers.
    * @return a set of strings with identifiers
    */
+  @Override
   public Set<String> getFeaturesIds() {
 
     Set<String> results = new TreeSet<>();
@@ -810,6 +814,7 @@ public class GenomicArray<T> implements Serializable {
    * Get the names of the chromosomes that contains the GenomicArray.
    * @return a set with the name of the chromosomes
    */
+  @Override
   public Set<String> getChromosomesNames() {
 
     return Collections.unmodifiableSet(this.chromosomes.keySet());
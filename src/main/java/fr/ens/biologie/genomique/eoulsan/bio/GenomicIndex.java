@@ -0,0 +1,76 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This interface define the query methods of a genomic array. It is
+ * implemented by the mutable GenomicArray class and by the
+ * ImmutableGenomicArray class.
+ * @param <T> type of the values of the genomic array
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public interface GenomicIndex<T> {
+
+  /**
+   * Get entries in an interval.
+   * @param interval the genomic interval
+   * @return a map with the values
+   */
+  Map<GenomicInterval, Set<T>> getEntries(GenomicInterval interval);
+
+  /**
+   * Get entries in an interval
+   * @param chromosome chromosome of the interval
+   * @param start start of the interval
+   * @param end end of the interval
+   * @return a map with the values or null if the chromosome is unknown
+   */
+  Map<GenomicInterval, Set<T>> getEntries(String chromosome, int start,
+      int end);
+
+  /**
+   * Test if the genomic array contains a chromosome.
+   * @param chromosomeName name of the chromosome to test
+   * @return true if the genomic array contains the chromosome
+   */
+  boolean containsChromosome(String chromosomeName);
+
+  /**
+   * Get a set with zone identifiers.
+   * @return a set of strings with identifiers
+   */
+  Set<String> getFeaturesIds();
+
+  /**
+   * Get the names of the chromosomes that contains the genomic array.
+   * @return a set with the name of the chromosomes
+   */
+  Set<String> getChromosomesNames();
+
+}
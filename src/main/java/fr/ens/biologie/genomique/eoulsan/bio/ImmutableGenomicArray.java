@@ -0,0 +1,1068 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class define an immutable genomic array. Unlike GenomicArray, the zones
+ * of the chromosomes are not stored as objects but in parallel arrays of
+ * primitives that are searched using a binary search. The sets of values of
+ * the zones are interned: all the zones with the same values share the same
+ * set. An ImmutableGenomicArray is created using a Builder and returns the
+ * same entries as a GenomicArray filled with the same intervals. A genomic
+ * array with String values can be saved in a compact binary format. Each value
+ * has a dense integer identifier, and the zones that overlap an interval can be
+ * retrieved as arrays of identifiers in a reusable Zones object without
+ * creating any object.
+ * @param <T> type of the values of the genomic array
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public final class ImmutableGenomicArray<T>
+    implements GenomicIndex<T>, Serializable {
+
+  private static final long serialVersionUID = -2862329315412519327L;
+
+  private static final int NO_VALUE = -1;
+  private static final int[] NO_VALUE_IDS = new int[0];
+
+  private static final int FILE_MAGIC_NUMBER = 0x45474131;
+  private static final StrandIndex EMPTY_STRAND_INDEX =
+      new StrandIndex("", new int[0], new int[0], new char[0], new int[0]);
+
+  private final Map<String, ChromosomeIndex> chromosomes;
+  private final Set<T>[] valueSets;
+  private final int[][] valueSetIds;
+  private final List<T> values;
+
+  /**
+   * This class define a reusable list of zones. For each zone, the strand and
+   * the sorted identifiers of the values of the zone are stored.
+   */
+  public static final class Zones {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private char[] strands = new char[INITIAL_CAPACITY];
+    private int[][] valueIds = new int[INITIAL_CAPACITY][];
+    private int size;
+
+    /**
+     * Get the number of zones.
+     * @return the number of zones
+     */
+    public int size() {
+
+      return this.size;
+    }
+
+    /**
+     * Get the strand of a zone.
+     * @param index index of the zone
+     * @return the strand of the zone
+     */
+    public char getStrand(final int index) {
+
+      checkIndex(index);
+
+      return this.strands[index];
+    }
+
+    /**
+     * Get the sorted identifiers of the values of a zone. The returned array is
+     * shared and must not be modified.
+     * @param index index of the zone
+     * @return an array with the identifiers of the values of the zone
+     */
+    public int[] getValueIds(final int index) {
+
+      checkIndex(index);
+
+      return this.valueIds[index];
+    }
+
+    /**
+     * Check the index of a zone.
+     * @param index index of the zone
+     */
+    private void checkIndex(final int index) {
+
+      if (index < 0 || index >= this.size) {
+        throw new IndexOutOfBoundsException(
+            "Index: " + index + ", Size: " + this.size);
+      }
+    }
+
+    /**
+     * Add a zone.
+     * @param strand strand of the zone
+     * @param valueIds identifiers of the values of the zone
+     */
+    private void add(final char strand, final int[] valueIds) {
+
+      if (this.size == this.strands.length) {
+        this.strands = Arrays.copyOf(this.strands, this.size * 2);
+        this.valueIds = Arrays.copyOf(this.valueIds, this.size * 2);
+      }
+
+      this.strands[this.size] = strand;
+      this.valueIds[this.size] = valueIds;
+      this.size++;
+    }
+
+    /**
+     * Remove all the zones.
+     */
+    private void clear() {
+
+      this.size = 0;
+    }
+  }
+
+  /**
+   * This class define the zones of a strand of a chromosome.
+   */
+  private static final class StrandIndex implements Serializable {
+
+    private static final long serialVersionUID = 2925698460779919337L;
+
+    private final String chromosomeName;
+    private final int length;
+    private final int[] starts;
+    private final int[] ends;
+    private final char[] strands;
+    private final int[] valueSetIndexes;
+
+    /**
+     * Find the zone index for a position.
+     * @param pos the position on the chromosome
+     * @return the index of the zone or -1 if the position if lower than 1 or
+     *         greater than the length of the chromosome
+     */
+    private int findIndexPos(final int pos) {
+
+      if (pos < 1 || pos > this.length) {
+        return -1;
+      }
+
+      final int index = Arrays.binarySearch(this.starts, pos);
+
+      return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Get entries.
+     * @param start start of the interval
+     * @param stop end of the interval
+     * @param valueSets interned sets of values
+     * @param result the map where to put the values
+     */
+    private <T> void getEntries(final int start, final int stop,
+        final Set<T>[] valueSets, final Map<GenomicInterval, Set<T>> result) {
+
+      final int indexStart = findIndexPos(start);
+
+      if (indexStart == -1) {
+        return;
+      }
+
+      final int indexEnd = findIndexPos(stop);
+      final int to = indexEnd == -1 ? this.starts.length - 1 : indexEnd;
+
+      for (int i = indexStart; i <= to; i++) {
+
+        final int zoneStart = this.starts[i];
+        final int zoneEnd = this.ends[i];
+
+        if (intersect(start, stop, zoneStart, zoneEnd)) {
+
+          final int valueSetIndex = this.valueSetIndexes[i];
+
+          result.put(
+              new GenomicInterval(this.chromosomeName, zoneStart, zoneEnd,
+                  this.strands[i]),
+              valueSetIndex == NO_VALUE
+                  ? new HashSet<T>() : valueSets[valueSetIndex]);
+        }
+      }
+
+      // Add an empty interval for the part of the interval after the last zone
+      final int lastStart = this.starts[to];
+      final int lastEnd = this.ends[to];
+      final char lastStrand = this.strands[to];
+
+      if (stop > lastEnd && start > lastStart) {
+        result.put(
+            new GenomicInterval(this.chromosomeName, start, stop, lastStrand),
+            new HashSet<T>());
+      } else if (stop > lastEnd) {
+        result.put(new GenomicInterval(this.chromosomeName, lastEnd + 1, stop,
+            lastStrand), new HashSet<T>());
+      }
+    }
+
+    /**
+     * Get the zones. The zones are the same as the keys of the map filled by
+     * the getEntries() method.
+     * @param start start of the interval
+     * @param stop end of the interval
+     * @param valueSetIds identifiers of the values of the interned sets
+     * @param zones the object where to put the zones
+     */
+    private void getZones(final int start, final int stop,
+        final int[][] valueSetIds, final Zones zones) {
+
+      final int indexStart = findIndexPos(start);
+
+      if (indexStart == -1) {
+        return;
+      }
+
+      final int indexEnd = findIndexPos(stop);
+      final int to = indexEnd == -1 ? this.starts.length - 1 : indexEnd;
+
+      for (int i = indexStart; i <= to; i++) {
+
+        if (intersect(start, stop, this.starts[i], this.ends[i])) {
+
+          final int valueSetIndex = this.valueSetIndexes[i];
+
+          zones.add(this.strands[i], valueSetIndex == NO_VALUE
+              ? NO_VALUE_IDS : valueSetIds[valueSetIndex]);
+        }
+      }
+
+      // Add an empty zone for the part of the interval after the last zone
+      if (stop > this.ends[to]) {
+        zones.add(this.strands[to], NO_VALUE_IDS);
+      }
+    }
+
+    /**
+     * Test if an interval intersect a zone.
+     * @param start start of the interval
+     * @param end end of the interval
+     * @param startZone start of the zone
+     * @param endZone end of the zone
+     * @return true if the interval intersect a zone
+     */
+    private static boolean intersect(final int start, final int end,
+        final int startZone, final int endZone) {
+
+      return (start >= startZone && start <= endZone)
+          || (end >= startZone && end <= endZone)
+          || (start < startZone && end > endZone);
+    }
+
+    /**
+     * Save the zones.
+     * @param out the output
+     * @throws IOException if an error occurs while writing the zones
+     */
+    private void save(final DataOutputStream out) throws IOException {
+
+      final int n = this.starts.length;
+
+      out.writeInt(n);
+      for (int i = 0; i < n; i++) {
+        out.writeInt(this.starts[i]);
+        out.writeInt(this.ends[i]);
+        out.writeChar(this.strands[i]);
+        out.writeInt(this.valueSetIndexes[i]);
+      }
+    }
+
+    /**
+     * Load zones.
+     * @param chromosomeName the name of the chromosome
+     * @param in the input
+     * @return a new StrandIndex object
+     * @throws IOException if an error occurs while reading the zones
+     */
+    private static StrandIndex load(final String chromosomeName,
+        final DataInputStream in) throws IOException {
+
+      final int n = in.readInt();
+      final int[] starts = new int[n];
+      final int[] ends = new int[n];
+      final char[] strands = new char[n];
+      final int[] valueSetIndexes = new int[n];
+
+      for (int i = 0; i < n; i++) {
+        starts[i] = in.readInt();
+        ends[i] = in.readInt();
+        strands[i] = in.readChar();
+        valueSetIndexes[i] = in.readInt();
+      }
+
+      return new StrandIndex(chromosomeName, starts, ends, strands,
+          valueSetIndexes);
+    }
+
+    //
+    // Constructor
+    //
+
+    private StrandIndex(final String chromosomeName, final int[] starts,
+        final int[] ends, final char[] strands, final int[] valueSetIndexes) {
+
+      this.chromosomeName = chromosomeName;
+      this.length = ends.length == 0 ? 0 : ends[ends.length - 1];
+      this.starts = starts;
+      this.ends = ends;
+      this.strands = strands;
+      this.valueSetIndexes = valueSetIndexes;
+    }
+  }
+
+  /**
+   * This class define the zones of the two strands of a chromosome.
+   */
+  private static final class ChromosomeIndex implements Serializable {
+
+    private static final long serialVersionUID = -4185545914427788024L;
+
+    private final StrandIndex plus;
+    private final StrandIndex minus;
+
+    private ChromosomeIndex(final StrandIndex plus, final StrandIndex minus) {
+
+      this.plus = plus;
+      this.minus = minus;
+    }
+  }
+
+  /**
+   * This class allow to build an ImmutableGenomicArray. The intervals are
+   * stored in arrays of primitives until the build() method is called.
+   * @param <T> type of the values of the genomic array
+   */
+  public static final class Builder<T> {
+
+    private final Map<String, StrandEntries> plusEntries =
+        new LinkedHashMap<>();
+    private final Map<String, StrandEntries> minusEntries = new HashMap<>();
+    private final Map<T, Integer> valueIds = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    /**
+     * Add an entry on the genomic array.
+     * @param interval genomic interval
+     * @param value value to add
+     * @return the builder
+     */
+    public Builder<T> addEntry(final GenomicInterval interval, final T value) {
+
+      if (interval == null) {
+        throw new NullPointerException("interval argument cannot be null");
+      }
+
+      if (value == null) {
+        throw new NullPointerException("value argument cannot be null");
+      }
+
+      final String chromosomeName = interval.getChromosome();
+      final char strand = interval.getStrand();
+
+      addChromosome(chromosomeName);
+
+      // Intern the value
+      Integer valueId = this.valueIds.get(value);
+      if (valueId == null) {
+        valueId = this.values.size();
+        this.values.add(value);
+        this.valueIds.put(value, valueId);
+      }
+
+      if (strand == '+' || strand == '.') {
+        this.plusEntries.get(chromosomeName).add(interval, valueId);
+      } else if (strand == '-') {
+        this.minusEntries.get(chromosomeName).add(interval, valueId);
+      }
+
+      return this;
+    }
+
+    /**
+     * Add a chromosome.
+     * @param chromosomeName name of the chromosome to add
+     * @return the builder
+     */
+    public Builder<T> addChromosome(final String chromosomeName) {
+
+      if (chromosomeName == null) {
+        throw new NullPointerException(
+            "chromosomeName argument cannot be null");
+      }
+
+      if (!this.plusEntries.containsKey(chromosomeName)) {
+        this.plusEntries.put(chromosomeName, new StrandEntries());
+        this.minusEntries.put(chromosomeName, new StrandEntries());
+      }
+
+      return this;
+    }
+
+    /**
+     * Add chromosomes from the list of sequence in a GenomeDescription object.
+     * @param gd genome description
+     * @return the builder
+     */
+    public Builder<T> addChromosomes(final GenomeDescription gd) {
+
+      if (gd == null) {
+        throw new NullPointerException("gd argument cannot be null");
+      }
+
+      for (String chromosomeName : gd.getSequencesNames()) {
+        addChromosome(chromosomeName);
+      }
+
+      return this;
+    }
+
+    /**
+     * Create the ImmutableGenomicArray.
+     * @return a new ImmutableGenomicArray
+     */
+    public ImmutableGenomicArray<T> build() {
+
+      final Map<ValueSetKey, Integer> valueSetIndexes = new HashMap<>();
+      final List<int[]> valueSets = new ArrayList<>();
+      final Map<String, ChromosomeIndex> chromosomes =
+          new HashMap<>(this.plusEntries.size() * 2);
+
+      for (Map.Entry<String, StrandEntries> e : this.plusEntries.entrySet()) {
+
+        final String chromosomeName = e.getKey();
+
+        chromosomes.put(chromosomeName,
+            new ChromosomeIndex(
+                e.getValue().createIndex(chromosomeName, this.values.size(),
+                    valueSetIndexes, valueSets),
+                this.minusEntries.get(chromosomeName).createIndex(
+                    chromosomeName, this.values.size(), valueSetIndexes,
+                    valueSets)));
+      }
+
+      return new ImmutableGenomicArray<>(chromosomes,
+          valueSets.toArray(new int[0][]), new ArrayList<>(this.values));
+    }
+  }
+
+  /**
+   * This class store the intervals of a strand of a chromosome in arrays of
+   * primitives. The intervals are stored in their insertion order.
+   */
+  private static final class StrandEntries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private char[] strands = new char[INITIAL_CAPACITY];
+    private int[] valueIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Add an interval.
+     * @param interval the interval
+     * @param valueId the identifier of the value of the interval
+     */
+    private void add(final GenomicInterval interval, final int valueId) {
+
+      if (this.size == this.starts.length) {
+        final int newCapacity = this.size * 2;
+        this.starts = Arrays.copyOf(this.starts, newCapacity);
+        this.ends = Arrays.copyOf(this.ends, newCapacity);
+        this.strands = Arrays.copyOf(this.strands, newCapacity);
+        this.valueIds = Arrays.copyOf(this.valueIds, newCapacity);
+      }
+
+      this.starts[this.size] = interval.getStart();
+      this.ends[this.size] = interval.getEnd();
+      this.strands[this.size] = interval.getStrand();
+      this.valueIds[this.size] = valueId;
+      this.size++;
+    }
+
+    /**
+     * Create the index of the zones. The zones are the same as the zones
+     * created by the GenomicArray class: a zone starts at position 1, at each
+     * start of an interval and after each end of an interval. The strand of a
+     * zone is the strand of the interval that has extended the length of the
+     * chromosome to this zone.
+     * @param chromosomeName name of the chromosome
+     * @param valueCount the number of values
+     * @param valueSetIndexes indexes of the interned sets of values
+     * @param valueSets interned sets of values
+     * @return a new StrandIndex object
+     */
+    private StrandIndex createIndex(final String chromosomeName,
+        final int valueCount, final Map<ValueSetKey, Integer> valueSetIndexes,
+        final List<int[]> valueSets) {
+
+      final int n = this.size;
+
+      // Compute the chromosome extensions in insertion order
+      final int[] extensionStarts = new int[n];
+      final char[] extensionStrands = new char[n];
+      int extensionCount = 0;
+      int length = 0;
+
+      for (int i = 0; i < n; i++) {
+        if (this.ends[i] > length) {
+          extensionStarts[extensionCount] = length + 1;
+          extensionStrands[extensionCount] = this.strands[i];
+          extensionCount++;
+          length = this.ends[i];
+        }
+      }
+
+      // Compute the zone boundaries
+      final int[] boundaries = new int[2 * n + 1];
+      int boundaryCount = 0;
+      if (n > 0) {
+        boundaries[boundaryCount++] = 1;
+      }
+      for (int i = 0; i < n; i++) {
+        boundaries[boundaryCount++] = this.starts[i];
+        if (this.ends[i] < length) {
+          boundaries[boundaryCount++] = this.ends[i] + 1;
+        }
+      }
+      Arrays.sort(boundaries, 0, boundaryCount);
+      final int zoneCount = unique(boundaries, boundaryCount);
+
+      final int[] zoneStarts = Arrays.copyOf(boundaries, zoneCount);
+      final int[] zoneEnds = new int[zoneCount];
+      final char[] zoneStrands = new char[zoneCount];
+      final int[] zoneValueSets = new int[zoneCount];
+
+      // Sort the intervals by start and by end
+      final int[] byStart = sortedIndexes(this.starts, n);
+      final int[] byEnd = sortedIndexes(this.ends, n);
+
+      final int[] valueCounts = new int[valueCount];
+      int[] active = new int[INITIAL_CAPACITY];
+      int activeCount = 0;
+      int startIndex = 0;
+      int endIndex = 0;
+      int extensionIndex = 0;
+
+      for (int z = 0; z < zoneCount; z++) {
+
+        final int zoneStart = zoneStarts[z];
+        zoneEnds[z] = z + 1 < zoneCount ? zoneStarts[z + 1] - 1 : length;
+
+        while (extensionIndex + 1 < extensionCount
+            && extensionStarts[extensionIndex + 1] <= zoneStart) {
+          extensionIndex++;
+        }
+        zoneStrands[z] = extensionStrands[extensionIndex];
+
+        // Remove the values of the intervals that end before the zone
+        while (endIndex < n && this.ends[byEnd[endIndex]] < zoneStart) {
+
+          final int valueId = this.valueIds[byEnd[endIndex++]];
+
+          if (--valueCounts[valueId] == 0) {
+            for (int i = 0; i < activeCount; i++) {
+              if (active[i] == valueId) {
+                active[i] = active[--activeCount];
+                break;
+              }
+            }
+          }
+        }
+
+        // Add the values of the intervals that start at the zone
+        while (startIndex < n
+            && this.starts[byStart[startIndex]] <= zoneStart) {
+
+          final int valueId = this.valueIds[byStart[startIndex++]];
+
+          if (valueCounts[valueId]++ == 0) {
+            if (activeCount == active.length) {
+              active = Arrays.copyOf(active, activeCount * 2);
+            }
+            active[activeCount++] = valueId;
+          }
+        }
+
+        zoneValueSets[z] = activeCount == 0
+            ? NO_VALUE : internValueSet(Arrays.copyOf(active, activeCount),
+                valueSetIndexes, valueSets);
+      }
+
+      return new StrandIndex(chromosomeName, zoneStarts, zoneEnds, zoneStrands,
+          zoneValueSets);
+    }
+
+    /**
+     * Remove the duplicated values of a sorted array.
+     * @param array the array
+     * @param length the length of the data in the array
+     * @return the number of unique values
+     */
+    private static int unique(final int[] array, final int length) {
+
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        if (count == 0 || array[count - 1] != array[i]) {
+          array[count++] = array[i];
+        }
+      }
+
+      return count;
+    }
+
+    /**
+     * Get the indexes of an array sorted by the values of the array.
+     * @param array the array
+     * @param length the length of the data in the array
+     * @return an array with the sorted indexes
+     */
+    private static int[] sortedIndexes(final int[] array, final int length) {
+
+      // Pack the value and the index in a long to sort them together
+      final long[] packed = new long[length];
+      for (int i = 0; i < length; i++) {
+        packed[i] = ((long) array[i] << 32) | i;
+      }
+      Arrays.sort(packed);
+
+      final int[] result = new int[length];
+      for (int i = 0; i < length; i++) {
+        result[i] = (int) packed[i];
+      }
+
+      return result;
+    }
+
+    /**
+     * Get the index of an interned set of values.
+     * @param valueIds identifiers of the values
+     * @param valueSetIndexes indexes of the interned sets of values
+     * @param valueSets interned sets of values
+     * @return the index of the set of values
+     */
+    private static int internValueSet(final int[] valueIds,
+        final Map<ValueSetKey, Integer> valueSetIndexes,
+        final List<int[]> valueSets) {
+
+      Arrays.sort(valueIds);
+      final ValueSetKey key = new ValueSetKey(valueIds);
+
+      final Integer index = valueSetIndexes.get(key);
+      if (index != null) {
+        return index;
+      }
+
+      final int result = valueSets.size();
+      valueSets.add(valueIds);
+      valueSetIndexes.put(key, result);
+
+      return result;
+    }
+  }
+
+  /**
+   * This class define the key of an interned set of values.
+   */
+  private static final class ValueSetKey {
+
+    private final int[] valueIds;
+    private final int hashCode;
+
+    @Override
+    public boolean equals(final Object o) {
+
+      return o instanceof ValueSetKey
+          && Arrays.equals(this.valueIds, ((ValueSetKey) o).valueIds);
+    }
+
+    @Override
+    public int hashCode() {
+
+      return this.hashCode;
+    }
+
+    private ValueSetKey(final int[] valueIds) {
+
+      this.valueIds = valueIds;
+      this.hashCode = Arrays.hashCode(valueIds);
+    }
+  }
+
+  //
+  // GenomicIndex methods
+  //
+
+  @Override
+  public Map<GenomicInterval, Set<T>> getEntries(
+      final GenomicInterval interval) {
+
+    if (interval == null) {
+      throw new NullPointerException("interval argument cannot be null");
+    }
+
+    return getEntries(interval.getChromosome(), interval.getStart(),
+        interval.getEnd());
+  }
+
+  @Override
+  public Map<GenomicInterval, Set<T>> getEntries(final String chromosome,
+      final int start, final int end) {
+
+    if (chromosome == null) {
+      throw new NullPointerException("chromosome argument cannot be null");
+    }
+
+    final ChromosomeIndex chr = this.chromosomes.get(chromosome);
+
+    if (chr == null) {
+      return null;
+    }
+
+    final Map<GenomicInterval, Set<T>> result = new HashMap<>();
+    chr.plus.getEntries(start, end, this.valueSets, result);
+    chr.minus.getEntries(start, end, this.valueSets, result);
+
+    return result;
+  }
+
+  @Override
+  public boolean containsChromosome(final String chromosomeName) {
+
+    if (chromosomeName == null) {
+      return false;
+    }
+
+    return this.chromosomes.containsKey(chromosomeName);
+  }
+
+  @Override
+  public Set<String> getFeaturesIds() {
+
+    final Set<String> result = new TreeSet<>();
+
+    for (T value : this.values) {
+      result.add(String.valueOf(value));
+    }
+
+    return result;
+  }
+
+  @Override
+  public Set<String> getChromosomesNames() {
+
+    return Collections.unmodifiableSet(this.chromosomes.keySet());
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the number of values of the genomic array.
+   * @return the number of values
+   */
+  public int getValueCount() {
+
+    return this.values.size();
+  }
+
+  /**
+   * Get a value from its identifier.
+   * @param valueId identifier of the value
+   * @return the value
+   */
+  public T getValue(final int valueId) {
+
+    return this.values.get(valueId);
+  }
+
+  /**
+   * Get the zones that overlap an interval. The zones are the same as the keys
+   * of the map returned by the getEntries() method.
+   * @param chromosome name of the chromosome
+   * @param start start of the interval
+   * @param end end of the interval
+   * @param zones the object where to put the zones
+   * @return false if the chromosome is unknown
+   */
+  public boolean getZones(final String chromosome, final int start,
+      final int end, final Zones zones) {
+
+    if (chromosome == null) {
+      throw new NullPointerException("chromosome argument cannot be null");
+    }
+
+    if (zones == null) {
+      throw new NullPointerException("zones argument cannot be null");
+    }
+
+    zones.clear();
+
+    final ChromosomeIndex chr = this.chromosomes.get(chromosome);
+
+    if (chr == null) {
+      return false;
+    }
+
+    chr.plus.getZones(start, end, this.valueSetIds, zones);
+    chr.minus.getZones(start, end, this.valueSetIds, zones);
+
+    return true;
+  }
+
+  /**
+   * Create a genomic array that contains additional chromosomes without
+   * entries. The zones of the current object are shared with the new object.
+   * @param chromosomeNames names of the chromosomes to add
+   * @return a new ImmutableGenomicArray object
+   */
+  public ImmutableGenomicArray<T> withChromosomes(
+      final Collection<String> chromosomeNames) {
+
+    if (chromosomeNames == null) {
+      throw new NullPointerException(
+          "chromosomeNames argument cannot be null");
+    }
+
+    final Map<String, ChromosomeIndex> chromosomes =
+        new HashMap<>(this.chromosomes);
+
+    for (String chromosomeName : chromosomeNames) {
+      if (!chromosomes.containsKey(chromosomeName)) {
+        chromosomes.put(chromosomeName,
+            new ChromosomeIndex(EMPTY_STRAND_INDEX, EMPTY_STRAND_INDEX));
+      }
+    }
+
+    return new ImmutableGenomicArray<>(chromosomes, this.valueSets,
+        this.valueSetIds, this.values);
+  }
+
+  /**
+   * Save the genomic array in a binary format. The values are saved as
+   * strings.
+   * @param os the output stream
+   * @throws IOException if an error occurs while saving the genomic array
+   */
+  public void save(final OutputStream os) throws IOException {
+
+    if (os == null) {
+      throw new NullPointerException("os argument cannot be null");
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(os))) {
+
+      out.writeInt(FILE_MAGIC_NUMBER);
+
+      // Values
+      out.writeInt(this.values.size());
+      for (T value : this.values) {
+        out.writeUTF(String.valueOf(value));
+      }
+
+      // Sets of values
+      out.writeInt(this.valueSetIds.length);
+      for (int[] valueIds : this.valueSetIds) {
+        out.writeInt(valueIds.length);
+        for (int valueId : valueIds) {
+          out.writeInt(valueId);
+        }
+      }
+
+      // Zones
+      out.writeInt(this.chromosomes.size());
+      for (Map.Entry<String, ChromosomeIndex> e : this.chromosomes
+          .entrySet()) {
+        out.writeUTF(e.getKey());
+        e.getValue().plus.save(out);
+        e.getValue().minus.save(out);
+      }
+    }
+  }
+
+  /**
+   * Load a genomic array saved in a binary format.
+   * @param is the input stream
+   * @return a new ImmutableGenomicArray object
+   * @throws IOException if an error occurs while loading the genomic array
+   */
+  public static ImmutableGenomicArray<String> load(final InputStream is)
+      throws IOException {
+
+    if (is == null) {
+      throw new NullPointerException("is argument cannot be null");
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(is))) {
+
+      if (in.readInt() != FILE_MAGIC_NUMBER) {
+        throw new IOException("Invalid genomic array file format");
+      }
+
+      // Values
+      final int valueCount = in.readInt();
+      final List<String> values = new ArrayList<>(valueCount);
+      for (int i = 0; i < valueCount; i++) {
+        values.add(in.readUTF());
+      }
+
+      // Sets of values
+      final int valueSetCount = in.readInt();
+      final int[][] valueSetIds = new int[valueSetCount][];
+      for (int i = 0; i < valueSetCount; i++) {
+
+        final int[] valueIds = new int[in.readInt()];
+        for (int j = 0; j < valueIds.length; j++) {
+
+          valueIds[j] = in.readInt();
+          if (valueIds[j] < 0 || valueIds[j] >= valueCount) {
+            throw new IOException("Invalid value identifier: " + valueIds[j]);
+          }
+        }
+        Arrays.sort(valueIds);
+        valueSetIds[i] = valueIds;
+      }
+
+      // Zones
+      final int chromosomeCount = in.readInt();
+      final Map<String, ChromosomeIndex> chromosomes =
+          new HashMap<>(chromosomeCount * 2);
+      for (int i = 0; i < chromosomeCount; i++) {
+
+        final String chromosomeName = in.readUTF();
+        final StrandIndex plus = StrandIndex.load(chromosomeName, in);
+        final StrandIndex minus = StrandIndex.load(chromosomeName, in);
+        chromosomes.put(chromosomeName, new ChromosomeIndex(plus, minus));
+      }
+
+      return new ImmutableGenomicArray<>(chromosomes, valueSetIds, values);
+    }
+  }
+
+  //
+  // Object methods
+  //
+
+  @Override
+  public String toString() {
+
+    return this.getClass().getSimpleName()
+        + "{chromosomes=" + this.chromosomes.keySet() + ", values="
+        + this.values.size() + ", valueSets=" + this.valueSets.length + "}";
+  }
+
+  /**
+   * Create the interned sets of values from the identifiers of the values.
+   * @param valueSetIds identifiers of the values of the sets
+   * @param values the values
+   * @return an array with the sets of values
+   */
+  private static <T> Set<T>[] createValueSets(final int[][] valueSetIds,
+      final List<T> values) {
+
+    @SuppressWarnings("unchecked")
+    final Set<T>[] result = new Set[valueSetIds.length];
+
+    for (int i = 0; i < valueSetIds.length; i++) {
+
+      final int[] valueIds = valueSetIds[i];
+
+      if (valueIds.length == 1) {
+        result[i] = Collections.singleton(values.get(valueIds[0]));
+      } else {
+        final Set<T> set = new HashSet<>(valueIds.length * 2);
+        for (int valueId : valueIds) {
+          set.add(values.get(valueId));
+        }
+        result[i] = Collections.unmodifiableSet(set);
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Private constructor.
+   * @param chromosomes the zones of the chromosomes
+   * @param valueSetIds identifiers of the values of the interned sets
+   * @param values the values
+   */
+  private ImmutableGenomicArray(final Map<String, ChromosomeIndex> chromosomes,
+      final int[][] valueSetIds, final List<T> values) {
+
+    this(chromosomes, createValueSets(valueSetIds, values), valueSetIds,
+        values);
+  }
+
+  /**
+   * Private constructor.
+   * @param chromosomes the zones of the chromosomes
+   * @param valueSets the interned sets of values
+   * @param valueSetIds identifiers of the values of the interned sets
+   * @param values the values
+   */
+  private ImmutableGenomicArray(final Map<String, ChromosomeIndex> chromosomes,
+      final Set<T>[] valueSets, final int[][] valueSetIds,
+      final List<T> values) {
+
+    this.chromosomes = chromosomes;
+    this.valueSets = valueSets;
+    this.valueSetIds = valueSetIds;
+    this.values = values;
+  }
+
+}
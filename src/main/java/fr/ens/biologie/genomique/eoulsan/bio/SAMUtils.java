@@ -31,6 +31,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -55,6 +56,8 @@ import htsjdk.samtools.SamReaderFactory;
  */
 public class SAMUtils {
 
+  private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
   /**
    * Read the SAM header of a SAM file.
    * @param file file to read
@@ -112,6 +115,77 @@ public class SAMUtils {
     return headerTextBuffer.toString();
   }
 
+  /**
+   * Copy SAM data and count the alignments. The data is copied as bytes, the
+   * lines are not decoded. A line is an alignment if it is not a header line
+   * and if it contains a tabulation between two non blank characters. An end
+   * of line is added at the end of the data if missing.
+   * @param is input stream
+   * @param os output stream
+   * @return the number of alignments
+   * @throws IOException if an error occurs while copying the data
+   */
+  public static long copyAndCountAlignments(final InputStream is,
+      final OutputStream os) throws IOException {
+
+    Objects.requireNonNull(is, "is argument cannot be null");
+    Objects.requireNonNull(os, "os argument cannot be null");
+
+    final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    long count = 0;
+
+    // State of the current line
+    boolean content = false;
+    boolean header = false;
+    boolean tab = false;
+    boolean alignment = false;
+    byte last = '\n';
+
+    int n;
+    while ((n = is.read(buffer)) != -1) {
+
+      for (int i = 0; i < n; i++) {
+
+        final byte b = buffer[i];
+
+        if (b == '\n') {
+
+          if (alignment) {
+            count++;
+          }
+          content = header = tab = alignment = false;
+
+        } else if ((b & 0xff) > ' ') {
+
+          if (!content) {
+            content = true;
+            header = b == '@';
+          } else if (tab && !header) {
+            alignment = true;
+          }
+
+        } else if (b == '\t' && content) {
+          tab = true;
+        }
+      }
+
+      if (n > 0) {
+        os.write(buffer, 0, n);
+        last = buffer[n - 1];
+      }
+    }
+
+    // Last line without end of line
+    if (last != '\n') {
+      os.write('\n');
+      if (alignment) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
   /**
    * Create a GenomeDescription object from a SAM header.
    * @param file SAM file witch header must be read
@@ -167,7 +167,8 @@ public abstract class AbstractExpressionCounter implements ExpressionCounter {
   public void init(final DataFile genomeDescFile, final DataFile annotationFile,
       final boolean gtfFormat) throws EoulsanException, IOException {
 
-    init(genomeDescFile.open(), annotationFile.open(), gtfFormat);
+    init(GenomeDescription.load(genomeDescFile.open()), annotationFile,
+        gtfFormat);
   }
 
   @Override
@@ -193,6 +194,39 @@ public abstract class AbstractExpressionCounter implements ExpressionCounter {
     return count(samFile.open(), reporter, counterGroup);
   }
 
+  @Override
+  public Map<String, Integer> count(final DataFile samFile,
+      final ReporterIncrementer reporter, final String counterGroup,
+      final int threads) throws EoulsanException, IOException {
+
+    if (samFile == null) {
+      throw new NullPointerException("the samFile argument is null");
+    }
+
+    try (SamReader reader = SamReaderFactory.makeDefault()
+        .open(SamInputResource.of(samFile.open()))) {
+
+      return count(reader, reporter, counterGroup, threads);
+    }
+  }
+
+  /**
+   * Count the features using several threads. By default, this method
+   * counts the features in the current thread.
+   * @param samRecords SAM entries
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @param threads number of threads to use
+   * @return a map with the counts
+   * @throws EoulsanException if an error occurs while counting
+   */
+  protected Map<String, Integer> count(final Iterable<SAMRecord> samRecords,
+      final ReporterIncrementer reporter, final String counterGroup,
+      final int threads) throws EoulsanException {
+
+    return count(samRecords, reporter, counterGroup);
+  }
+
   @Override
   public Map<String, Integer> count(final InputStream inputSam,
       final ReporterIncrementer reporter, final String counterGroup)
@@ -0,0 +1,132 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import java.util.Arrays;
+
+/**
+ * This class define a reusable list of the genomic intervals of alignments.
+ * Unlike a list of GenomicInterval objects, the intervals are stored in arrays
+ * of primitives, so adding intervals does not create any object once the
+ * arrays are large enough.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class AlignmentIntervals {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] chromosomes = new String[INITIAL_CAPACITY];
+  private int[] starts = new int[INITIAL_CAPACITY];
+  private int[] ends = new int[INITIAL_CAPACITY];
+  private char[] strands = new char[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Get the number of intervals.
+   * @return the number of intervals
+   */
+  int size() {
+
+    return this.size;
+  }
+
+  /**
+   * Get the chromosome of an interval.
+   * @param index index of the interval
+   * @return the chromosome of the interval
+   */
+  String getChromosome(final int index) {
+
+    return this.chromosomes[index];
+  }
+
+  /**
+   * Get the start of an interval.
+   * @param index index of the interval
+   * @return the start of the interval
+   */
+  int getStart(final int index) {
+
+    return this.starts[index];
+  }
+
+  /**
+   * Get the end of an interval.
+   * @param index index of the interval
+   * @return the end of the interval
+   */
+  int getEnd(final int index) {
+
+    return this.ends[index];
+  }
+
+  /**
+   * Get the strand of an interval.
+   * @param index index of the interval
+   * @return the strand of the interval
+   */
+  char getStrand(final int index) {
+
+    return this.strands[index];
+  }
+
+  /**
+   * Add an interval.
+   * @param chromosome chromosome of the interval
+   * @param start start of the interval
+   * @param end end of the interval
+   * @param strand strand of the interval
+   */
+  void add(final String chromosome, final int start, final int end,
+      final char strand) {
+
+    if (this.size == this.starts.length) {
+      final int newCapacity = this.size * 2;
+      this.chromosomes = Arrays.copyOf(this.chromosomes, newCapacity);
+      this.starts = Arrays.copyOf(this.starts, newCapacity);
+      this.ends = Arrays.copyOf(this.ends, newCapacity);
+      this.strands = Arrays.copyOf(this.strands, newCapacity);
+    }
+
+    this.chromosomes[this.size] = chromosome;
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.strands[this.size] = strand;
+    this.size++;
+  }
+
+  /**
+   * Remove all the intervals.
+   */
+  void clear() {
+
+    // Release the references to the chromosome names
+    Arrays.fill(this.chromosomes, 0, this.size, null);
+    this.size = 0;
+  }
+
+}
@@ -139,6 +139,20 @@ public interface ExpressionCounter {
   Map<String, Integer> count(DataFile samFile, ReporterIncrementer reporter,
       String counterGroup) throws EoulsanException, IOException;
 
+  /**
+   * Count the features using several threads. The counts are the same
+   * whatever the number of threads.
+   * @param samFile SAM file
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @param threads number of threads to use
+   * @return a map with the counts
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  Map<String, Integer> count(DataFile samFile, ReporterIncrementer reporter,
+      String counterGroup, int threads) throws EoulsanException, IOException;
+
   /**
    * Count the the features.
    * @param inputSam SAM file as an InputStream
@@ -175,6 +189,35 @@ public interface ExpressionCounter {
       ReporterIncrementer reporter, String counterGroup)
       throws EoulsanException;
 
+  /**
+   * Count the features in an array indexed by the identifiers of the features.
+   * The counts are added to the values of the array, so the same array can be
+   * used to count many SAM entries.
+   * @param samRecords SAM entries
+   * @param counts the array of counts, its length must be at least the number
+   *          of features
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @throws EoulsanException if an error occurs while counting
+   */
+  void count(Iterable<SAMRecord> samRecords, long[] counts,
+      ReporterIncrementer reporter, String counterGroup)
+      throws EoulsanException;
+
+  /**
+   * Get the number of features. The identifiers of the features are the
+   * integers between 0 and the number of features.
+   * @return the number of features
+   */
+  int getFeatureCount();
+
+  /**
+   * Get the name of a feature.
+   * @param featureId the identifier of the feature
+   * @return the name of the feature
+   */
+  String getFeatureName(int featureId);
+
   /**
    * Add missing zero count features.
    * @param counts the counts
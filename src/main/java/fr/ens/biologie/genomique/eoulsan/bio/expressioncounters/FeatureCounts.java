@@ -0,0 +1,178 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
+
+/**
+ * This class define the counts of features indexed by their identifiers. The
+ * first counted features are stored in small arrays, so counting the
+ * alignments of a single read is cheap. When more features are counted, the
+ * counts are stored in an array indexed by the identifiers of the features.
+ * The feature names are only used when the counts are converted to a map.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class FeatureCounts {
+
+  private static final int SPARSE_MAX_SIZE = 16;
+
+  private final int featureCount;
+
+  private final int[] sparseIds = new int[SPARSE_MAX_SIZE];
+  private final int[] sparseCounts = new int[SPARSE_MAX_SIZE];
+  private int sparseSize;
+
+  private int[] counts;
+
+  /**
+   * Increment the count of a feature.
+   * @param id identifier of the feature
+   */
+  void increment(final int id) {
+
+    add(id, 1);
+  }
+
+  /**
+   * Add a value to the count of a feature.
+   * @param id identifier of the feature
+   * @param value the value to add
+   */
+  void add(final int id, final int value) {
+
+    if (this.counts != null) {
+      this.counts[id] += value;
+      return;
+    }
+
+    for (int i = 0; i < this.sparseSize; i++) {
+      if (this.sparseIds[i] == id) {
+        this.sparseCounts[i] += value;
+        return;
+      }
+    }
+
+    if (this.sparseSize < SPARSE_MAX_SIZE) {
+      this.sparseIds[this.sparseSize] = id;
+      this.sparseCounts[this.sparseSize] = value;
+      this.sparseSize++;
+      return;
+    }
+
+    // Too many features, switch to an array indexed by the identifiers
+    this.counts = new int[this.featureCount];
+    for (int i = 0; i < this.sparseSize; i++) {
+      this.counts[this.sparseIds[i]] = this.sparseCounts[i];
+    }
+    this.sparseSize = 0;
+    this.counts[id] += value;
+  }
+
+  /**
+   * Add the counts of another object.
+   * @param counts the counts to add
+   */
+  void addAll(final FeatureCounts counts) {
+
+    if (counts.counts != null) {
+
+      for (int id = 0; id < counts.counts.length; id++) {
+        if (counts.counts[id] != 0) {
+          add(id, counts.counts[id]);
+        }
+      }
+    } else {
+
+      for (int i = 0; i < counts.sparseSize; i++) {
+        add(counts.sparseIds[i], counts.sparseCounts[i]);
+      }
+    }
+  }
+
+  /**
+   * Add the counts to an array indexed by the identifiers of the features.
+   * @param result the array where to add the counts
+   */
+  void addTo(final long[] result) {
+
+    if (this.counts != null) {
+
+      for (int id = 0; id < this.counts.length; id++) {
+        result[id] += this.counts[id];
+      }
+    } else {
+
+      for (int i = 0; i < this.sparseSize; i++) {
+        result[this.sparseIds[i]] += this.sparseCounts[i];
+      }
+    }
+  }
+
+  /**
+   * Convert the counts to a map. Only the features with a count are added to
+   * the map.
+   * @param features the features
+   * @return a map with the counts
+   */
+  Map<String, Integer> toMap(final ImmutableGenomicArray<String> features) {
+
+    final Map<String, Integer> result = new HashMap<>();
+
+    if (this.counts != null) {
+
+      for (int id = 0; id < this.counts.length; id++) {
+        if (this.counts[id] != 0) {
+          result.put(features.getValue(id), this.counts[id]);
+        }
+      }
+    } else {
+
+      for (int i = 0; i < this.sparseSize; i++) {
+        result.put(features.getValue(this.sparseIds[i]), this.sparseCounts[i]);
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param featureCount the number of features
+   */
+  FeatureCounts(final int featureCount) {
+
+    this.featureCount = featureCount;
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import java.util.Arrays;
+
+/**
+ * This class define a reusable set of feature identifiers. The identifiers are
+ * stored in an array of primitives in their insertion order. As a read only
+ * overlaps a few features, the operations on the set use a linear search and
+ * do not create any object once the array is large enough.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class FeatureIdSet {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int[] ids = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Get the number of identifiers in the set.
+   * @return the number of identifiers
+   */
+  int size() {
+
+    return this.size;
+  }
+
+  /**
+   * Get an identifier of the set.
+   * @param index index of the identifier
+   * @return the identifier
+   */
+  int get(final int index) {
+
+    return this.ids[index];
+  }
+
+  /**
+   * Add an identifier if it is not already in the set.
+   * @param id the identifier to add
+   */
+  void add(final int id) {
+
+    for (int i = 0; i < this.size; i++) {
+      if (this.ids[i] == id) {
+        return;
+      }
+    }
+
+    if (this.size == this.ids.length) {
+      this.ids = Arrays.copyOf(this.ids, this.size * 2);
+    }
+
+    this.ids[this.size++] = id;
+  }
+
+  /**
+   * Add identifiers.
+   * @param ids the identifiers to add
+   */
+  void addAll(final int[] ids) {
+
+    for (int id : ids) {
+      add(id);
+    }
+  }
+
+  /**
+   * Retain only the identifiers that are in an array.
+   * @param sortedIds a sorted array of identifiers
+   */
+  void retainAll(final int[] sortedIds) {
+
+    int count = 0;
+    for (int i = 0; i < this.size; i++) {
+      if (Arrays.binarySearch(sortedIds, this.ids[i]) >= 0) {
+        this.ids[count++] = this.ids[i];
+      }
+    }
+
+    this.size = count;
+  }
+
+  /**
+   * Remove all the identifiers.
+   */
+  void clear() {
+
+    this.size = 0;
+  }
+
+}
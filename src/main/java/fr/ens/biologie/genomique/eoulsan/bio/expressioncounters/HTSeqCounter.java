@@ -24,24 +24,37 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
 
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static fr.ens.biologie.genomique.eoulsan.util.StringUtils.join;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Splitter;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.GFFEntry;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
-import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqUtils.UnknownChromosomeException;
+import fr.ens.biologie.genomique.eoulsan.bio.io.GFFReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.GTFReader;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.storages.AnnotationIndexStorage;
+import fr.ens.biologie.genomique.eoulsan.data.storages.SimpleAnnotationIndexStorage;
 import fr.ens.biologie.genomique.eoulsan.modules.expression.ExpressionCounterCounter;
 import fr.ens.biologie.genomique.eoulsan.util.GuavaCompatibility;
 import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
@@ -56,7 +69,7 @@ import htsjdk.samtools.SAMRecord;
 public class HTSeqCounter extends AbstractExpressionCounter
     implements Serializable {
 
-  private static final long serialVersionUID = 4750866178483111062L;
+  private static final long serialVersionUID = 6408409979965932976L;
 
   /** Counter name. */
   public static final String COUNTER_NAME = "htseq-count";
@@ -84,6 +97,10 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
   public static final String SAM_TAG_DEFAULT = "XF";
 
+  private static final int ALIGNMENT_BATCH_SIZE = 1000;
+  private static final List<Alignment> END_OF_ALIGNMENTS =
+      Collections.emptyList();
+
   private String genomicType = "exon";
   private String attributeId = "PARENT";
   private boolean splitAttributeValues = false;
@@ -98,7 +115,7 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
   private String samTag = SAM_TAG_DEFAULT;
 
-  private final GenomicArray<String> features = new GenomicArray<>();
+  private ImmutableGenomicArray<String> features;
   private boolean initialized;
 
   /**
@@ -108,6 +125,7 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
     final ReporterIncrementer reporter;
     final String counterGroup;
+    final boolean assignFeatures;
 
     private int input;
     private int empty;
@@ -154,15 +172,71 @@ public class HTSeqCounter extends AbstractExpressionCounter
               + this.missingMate);
     }
 
+    /**
+     * Add the values of other counters.
+     * @param counters the counters to add
+     */
+    private void add(final InternalCounters counters) {
+
+      this.input += counters.input;
+      this.empty += counters.empty;
+      this.ambiguous += counters.ambiguous;
+      this.notAligned += counters.notAligned;
+      this.lowQual += counters.lowQual;
+      this.secondaryAlignments += counters.secondaryAlignments;
+      this.supplementaryAlignments += counters.supplementaryAlignments;
+      this.nonUnique += counters.nonUnique;
+      this.missingMate += counters.missingMate;
+    }
+
     private InternalCounters(final ReporterIncrementer reporter,
-        final String counterGroup) {
+        final String counterGroup, final boolean assignFeatures) {
 
       this.reporter = reporter;
       this.counterGroup = counterGroup;
+      this.assignFeatures = assignFeatures;
     }
 
   }
 
+  /**
+   * This class define an alignment to count by a worker thread.
+   */
+  private static final class Alignment {
+
+    final SAMRecord sam1;
+    final SAMRecord sam2;
+    final SAMRecord previousSingleEnd;
+
+    private Alignment(final SAMRecord sam1, final SAMRecord sam2,
+        final SAMRecord previousSingleEnd) {
+
+      this.sam1 = sam1;
+      this.sam2 = sam2;
+      this.previousSingleEnd = previousSingleEnd;
+    }
+  }
+
+  /**
+   * This class define the counts and the reusable buffers used to count the
+   * alignments in a thread.
+   */
+  private static final class CountBuffers {
+
+    final AlignmentIntervals ivSeq = new AlignmentIntervals();
+    final ImmutableGenomicArray.Zones zones = new ImmutableGenomicArray.Zones();
+    final FeatureIdSet featureIds = new FeatureIdSet();
+    final FeatureCounts counts;
+    final InternalCounters counters;
+
+    private CountBuffers(final int featureCount,
+        final InternalCounters counters) {
+
+      this.counts = new FeatureCounts(featureCount);
+      this.counters = counters;
+    }
+  }
+
   @Override
   public String getName() {
 
@@ -298,7 +372,76 @@ public class HTSeqCounter extends AbstractExpressionCounter
     // Check configuration
     checkConfiguration();
 
-    this.features.addChromosomes(desc);
+    setFeatures(desc, createFeatures(annotations));
+  }
+
+  @Override
+  public void init(final GenomeDescription desc, final DataFile annotationFile,
+      final boolean gtfFormat) throws EoulsanException, IOException {
+
+    final AnnotationIndexStorage storage = checkForAnnotationIndexStorage();
+
+    // Parse the annotation if no annotation index storage has been defined
+    if (storage == null) {
+      super.init(desc, annotationFile, gtfFormat);
+      return;
+    }
+
+    if (desc == null) {
+      throw new NullPointerException("the desc argument is null");
+    }
+
+    if (annotationFile == null) {
+      throw new NullPointerException("the annotationFile argument is null");
+    }
+
+    if (this.initialized) {
+      throw new IllegalStateException(
+          "the counter has been already initialized");
+    }
+
+    // Check configuration
+    checkConfiguration();
+
+    final String indexKey = getAnnotationIndexKey(gtfFormat);
+    ImmutableGenomicArray<String> index =
+        storage.get(annotationFile, indexKey);
+
+    if (index == null) {
+
+      try (GFFReader gffReader = gtfFormat
+          ? new GTFReader(annotationFile.open())
+          : new GFFReader(annotationFile.open())) {
+
+        index = createFeatures(gffReader);
+
+        // Only store indexes of annotations that have been fully read
+        try {
+          gffReader.throwException();
+          storage.put(annotationFile, indexKey, index);
+        } catch (IOException | BadBioEntryException e) {
+          getLogger().warning("The annotation index of "
+              + annotationFile.getName() + " will not be stored: "
+              + e.getMessage());
+        }
+      }
+    }
+
+    setFeatures(desc, index);
+  }
+
+  /**
+   * Create the genomic array of the features from the annotation entries.
+   * @param annotations annotation entries
+   * @return a new ImmutableGenomicArray object
+   * @throws EoulsanException if an error occurs while creating the genomic
+   *           array
+   */
+  private ImmutableGenomicArray<String> createFeatures(
+      final Iterable<GFFEntry> annotations) throws EoulsanException {
+
+    final ImmutableGenomicArray.Builder<String> builder =
+        new ImmutableGenomicArray.Builder<>();
 
     final Splitter splitter = Splitter.on(',').omitEmptyStrings().trimResults();
 
@@ -338,21 +481,74 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
         // Split parent if needed
         for (String f : featureIds) {
-          this.features.addEntry(
+          builder.addEntry(
               new GenomicInterval(gff, this.stranded.isSaveStrandInfo()), f);
         }
       }
     }
 
-    if (this.features.getFeaturesIds().size() == 0) {
+    final ImmutableGenomicArray<String> result = builder.build();
+
+    if (result.getFeaturesIds().size() == 0) {
       throw new EoulsanException(
           "Warning: No features of type '" + this.genomicType + "' found.\n");
     }
 
+    return result;
+  }
+
+  /**
+   * Set the features of the counter.
+   * @param desc genome description
+   * @param features genomic array of the features
+   */
+  private void setFeatures(final GenomeDescription desc,
+      final ImmutableGenomicArray<String> features) {
+
+    this.features = features.withChromosomes(desc.getSequencesNames());
+
     // The counter is now initialized
     this.initialized = true;
   }
 
+  /**
+   * Get the key of the annotation index. This key contains all the parameters
+   * used to create the genomic array of the features.
+   * @param gtfFormat true if the annotation is in GTF format
+   * @return a string with the key of the annotation index
+   */
+  private String getAnnotationIndexKey(final boolean gtfFormat) {
+
+    return COUNTER_NAME
+        + ",gtf=" + gtfFormat + ',' + GENOMIC_TYPE_PARAMETER_NAME + '='
+        + this.genomicType + ',' + ATTRIBUTE_ID_PARAMETER_NAME + '='
+        + this.attributeId + ',' + STRANDED_PARAMETER_NAME + '='
+        + this.stranded.getName() + ',' + SPLIT_ATTRIBUTE_VALUES_PARAMETER_NAME
+        + '=' + this.splitAttributeValues;
+  }
+
+  /**
+   * Check if an annotation index storage has been defined.
+   * @return an AnnotationIndexStorage object if an annotation index storage has
+   *         been defined or null if not
+   */
+  private static AnnotationIndexStorage checkForAnnotationIndexStorage() {
+
+    if (!EoulsanRuntime.isRuntime()) {
+      return null;
+    }
+
+    final String annotationIndexStoragePath =
+        EoulsanRuntime.getSettings().getAnnotationIndexStoragePath();
+
+    if (annotationIndexStoragePath == null) {
+      return null;
+    }
+
+    return SimpleAnnotationIndexStorage
+        .getInstance(new DataFile(annotationIndexStoragePath));
+  }
+
   @Override
   public Map<String, Integer> count(final Iterable<SAMRecord> samRecords,
       final ReporterIncrementer reporter, final String counterGroup)
@@ -370,11 +566,71 @@ public class HTSeqCounter extends AbstractExpressionCounter
       throw new IllegalStateException("the counter has not been initialized");
     }
 
-    SAMRecord sam1 = null, sam2 = null;
-    final Map<String, Integer> counts = new HashMap<>();
-    final List<GenomicInterval> ivSeq = new ArrayList<>();
     final InternalCounters internalCounters =
-        new InternalCounters(reporter, counterGroup);
+        new InternalCounters(reporter, counterGroup, true);
+    final CountBuffers buffers =
+        new CountBuffers(this.features.getValueCount(), internalCounters);
+
+    countRecords(samRecords, buffers);
+
+    // Set the counters in the reporter
+    internalCounters.fillReporter(this);
+
+    return buffers.counts.toMap(this.features);
+  }
+
+  @Override
+  public void count(final Iterable<SAMRecord> samRecords, final long[] counts,
+      final ReporterIncrementer reporter, final String counterGroup)
+      throws EoulsanException {
+
+    if (counts == null) {
+      throw new NullPointerException("the counts argument is null");
+    }
+
+    if (reporter == null) {
+      throw new NullPointerException("the reporter argument is null");
+    }
+
+    if (counterGroup == null) {
+      throw new NullPointerException("the counterGroup argument is null");
+    }
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    if (counts.length < this.features.getValueCount()) {
+      throw new IllegalArgumentException(
+          "the counts array is too small: " + counts.length);
+    }
+
+    // The SAM entries are not written, so the features are not assigned
+    final InternalCounters internalCounters =
+        new InternalCounters(reporter, counterGroup, false);
+    final CountBuffers buffers =
+        new CountBuffers(this.features.getValueCount(), internalCounters);
+
+    countRecords(samRecords, buffers);
+
+    // Set the counters in the reporter
+    internalCounters.fillReporter(this);
+
+    buffers.counts.addTo(counts);
+  }
+
+  /**
+   * Count SAM entries.
+   * @param samRecords SAM entries
+   * @param buffers the counts and the buffers to use
+   * @throws EoulsanException if an error occurs while counting
+   */
+  private void countRecords(final Iterable<SAMRecord> samRecords,
+      final CountBuffers buffers) throws EoulsanException {
+
+    SAMRecord sam1 = null, sam2 = null;
+    final InternalCounters internalCounters = buffers.counters;
+    final AlignmentIntervals ivSeq = buffers.ivSeq;
 
     // Read the SAM file
     for (final SAMRecord samRecord : samRecords) {
@@ -428,19 +684,280 @@ public class HTSeqCounter extends AbstractExpressionCounter
       }
 
       // Update counts
-      updateCounts(sam1, sam2, ivSeq, counts, internalCounters);
+      updateCounts(sam1, sam2, buffers);
     }
+  }
 
-    // Set the counters in the reporter
-    internalCounters.fillReporter(this);
+  @Override
+  protected Map<String, Integer> count(final Iterable<SAMRecord> samRecords,
+      final ReporterIncrementer reporter, final String counterGroup,
+      final int threads) throws EoulsanException {
+
+    if (threads <= 1) {
+      return count(samRecords, reporter, counterGroup);
+    }
+
+    if (reporter == null) {
+      throw new NullPointerException("the reporter argument is null");
+    }
+
+    if (counterGroup == null) {
+      throw new NullPointerException("the counterGroup argument is null");
+    }
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    // The SAM entries are not modified in this mode, so the workers never
+    // write in entries that may be read by other workers
+    final InternalCounters readerCounters =
+        new InternalCounters(reporter, counterGroup, false);
+    final BlockingQueue<List<Alignment>> queue =
+        new ArrayBlockingQueue<>(2 * threads);
+    final AtomicReference<Exception> workerException = new AtomicReference<>();
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(threads, r -> {
+          final Thread t = new Thread(r, "htseq-count-worker");
+          t.setDaemon(true);
+          return t;
+        });
+
+    final List<Future<CountBuffers>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(() -> countAlignments(queue, reporter,
+          counterGroup, workerException)));
+    }
 
-    return counts;
+    try {
+
+      try {
+        readAlignments(samRecords, queue, readerCounters, workerException);
+      } finally {
+
+        // Stop the workers
+        for (int i = 0; i < threads; i++) {
+          queue.put(END_OF_ALIGNMENTS);
+        }
+      }
+
+      // Merge the results of the workers
+      final FeatureCounts counts =
+          new FeatureCounts(this.features.getValueCount());
+      for (Future<CountBuffers> future : futures) {
+
+        final CountBuffers result = future.get();
+        readerCounters.add(result.counters);
+        counts.addAll(result.counts);
+      }
+
+      if (workerException.get() != null) {
+        throw workerException.get();
+      }
+
+      // Set the counters in the reporter
+      readerCounters.fillReporter(this);
+
+      return counts.toMap(this.features);
+
+    } catch (EoulsanException | RuntimeException e) {
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EoulsanException("Interrupted while counting alignments", e);
+    } catch (Exception e) {
+      throw new EoulsanException(e);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   //
   // Other methods
   //
 
+  /**
+   * Read the SAM entries, pair them as in the count() method and send them to
+   * the workers by batches.
+   * @param samRecords SAM entries
+   * @param queue the queue of the batches
+   * @param counters the counters
+   * @param workerException exception thrown by a worker
+   * @throws EoulsanException if the SAM entries cannot be counted
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private static void readAlignments(final Iterable<SAMRecord> samRecords,
+      final BlockingQueue<List<Alignment>> queue,
+      final InternalCounters counters,
+      final AtomicReference<Exception> workerException)
+      throws EoulsanException, InterruptedException {
+
+    SAMRecord sam1 = null, sam2 = null, previousSingleEnd = null;
+    List<Alignment> batch = new ArrayList<>(ALIGNMENT_BATCH_SIZE);
+
+    for (final SAMRecord samRecord : samRecords) {
+
+      // Decode the entry in this thread as the lazy decoding of the BAM
+      // entries is not thread safe
+      samRecord.getCigar();
+      samRecord.getAttribute("NH");
+
+      counters.input++;
+
+      // single-end mode
+      if (!samRecord.getReadPairedFlag()) {
+
+        sam1 = samRecord;
+        previousSingleEnd = samRecord;
+        batch.add(new Alignment(samRecord, null, null));
+      }
+
+      // paired-end mode
+      else {
+
+        if (samRecord.getHeader().getSortOrder() == SortOrder.coordinate) {
+          throw new EoulsanException(
+              "The counter does not support SAM data sorted by coordinate in paired-end mode");
+        }
+
+        if (sam1 != null && sam2 != null) {
+          sam1 = null;
+          sam2 = null;
+          previousSingleEnd = null;
+        }
+
+        if (samRecord.getFirstOfPairFlag()) {
+          sam1 = samRecord;
+        } else {
+          sam2 = samRecord;
+        }
+
+        if (sam1 == null || sam2 == null) {
+          continue;
+        }
+
+        if (!sam1.getReadName().equals(sam2.getReadName())) {
+          sam1 = sam2;
+          sam2 = null;
+          counters.missingMate++;
+          continue;
+        }
+
+        batch.add(new Alignment(sam1, sam2, previousSingleEnd));
+      }
+
+      if (batch.size() == ALIGNMENT_BATCH_SIZE) {
+
+        // Stop reading if a worker has failed
+        if (workerException.get() != null) {
+          return;
+        }
+
+        queue.put(batch);
+        batch = new ArrayList<>(ALIGNMENT_BATCH_SIZE);
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      queue.put(batch);
+    }
+  }
+
+  /**
+   * Count the alignments of the batches until the end of the alignments. This
+   * method is executed by the worker threads.
+   * @param queue the queue of the batches
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @param workerException exception thrown by a worker
+   * @return the counts and the counters of the worker
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private CountBuffers countAlignments(
+      final BlockingQueue<List<Alignment>> queue,
+      final ReporterIncrementer reporter, final String counterGroup,
+      final AtomicReference<Exception> workerException)
+      throws InterruptedException {
+
+    final CountBuffers result = new CountBuffers(
+        this.features.getValueCount(),
+        new InternalCounters(reporter, counterGroup, false));
+
+    List<Alignment> batch;
+    while ((batch = queue.take()) != END_OF_ALIGNMENTS) {
+
+      // Only consume the remaining batches if a worker has failed
+      if (workerException.get() != null) {
+        continue;
+      }
+
+      try {
+        for (Alignment a : batch) {
+          countAlignment(a, result);
+        }
+      } catch (EoulsanException | RuntimeException e) {
+        workerException.compareAndSet(null, e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Count an alignment.
+   * @param alignment the alignment
+   * @param buffers the counts and the buffers of the thread
+   * @throws EoulsanException if an error occurs while counting
+   */
+  private void countAlignment(final Alignment alignment,
+      final CountBuffers buffers) throws EoulsanException {
+
+    final AlignmentIntervals ivSeq = buffers.ivSeq;
+
+    // single-end mode
+    if (alignment.sam2 == null) {
+
+      if (processSingleEnd(alignment.sam1, ivSeq, buffers.counters)) {
+        updateCounts(alignment.sam1, null, buffers);
+      }
+      return;
+    }
+
+    // paired-end mode, in the count() method the genomic intervals may still
+    // contain the intervals of a previous single-end alignment
+    ivSeq.clear();
+    if (alignment.previousSingleEnd != null
+        && isSingleEndProcessed(alignment.previousSingleEnd)) {
+      HTSeqUtils.addIntervals(alignment.previousSingleEnd, this.stranded,
+          ivSeq);
+    }
+
+    if (pairedEnd(alignment.sam1, alignment.sam2, ivSeq, buffers.counters)) {
+      updateCounts(alignment.sam1, alignment.sam2, buffers);
+    }
+  }
+
+  /**
+   * Test if a single-end alignment is processed by the processSingleEnd()
+   * method, without updating the counters.
+   * @param samRecord SAM record
+   * @return true if the alignment is processed
+   */
+  private boolean isSingleEndProcessed(final SAMRecord samRecord) {
+
+    return !samRecord.getReadUnmappedFlag()
+        && !(this.removeSecondaryAlignments
+            && samRecord.getNotPrimaryAlignmentFlag())
+        && !(this.removeSupplementaryAlignments
+            && samRecord.getSupplementaryAlignmentFlag())
+        && !(this.removeNonUnique
+            && samRecord.getAttribute("NH") != null
+            && samRecord.getIntegerAttribute("NH") > 1)
+        && samRecord.getMappingQuality() >= this.minimalQuality;
+  }
+
+
   /**
    * Process single-end alignment.
    * @param samRecord SAM record
@@ -449,14 +966,14 @@ public class HTSeqCounter extends AbstractExpressionCounter
    * @return false if the alignment has not been processed
    */
   private boolean processSingleEnd(final SAMRecord samRecord,
-      final List<GenomicInterval> ivSeq, final InternalCounters counters) {
+      final AlignmentIntervals ivSeq, final InternalCounters counters) {
 
     ivSeq.clear();
 
     // unmapped read
     if (samRecord.getReadUnmappedFlag()) {
       counters.notAligned++;
-      assignment(samRecord, null, "__not_aligned");
+      assignment(counters, samRecord, null, "__not_aligned");
       return false;
     }
 
@@ -478,7 +995,7 @@ public class HTSeqCounter extends AbstractExpressionCounter
     if (samRecord.getAttribute("NH") != null
         && samRecord.getIntegerAttribute("NH") > 1) {
       counters.nonUnique++;
-      assignment(samRecord, null, "__alignment_not_unique");
+      assignment(counters, samRecord, null, "__alignment_not_unique");
       if (this.removeNonUnique) {
         return false;
       }
@@ -487,11 +1004,11 @@ public class HTSeqCounter extends AbstractExpressionCounter
     // too low quality
     if (samRecord.getMappingQuality() < this.minimalQuality) {
       counters.lowQual++;
-      assignment(samRecord, null, "__too_low_aQual");
+      assignment(counters, samRecord, null, "__too_low_aQual");
       return false;
     }
 
-    ivSeq.addAll(HTSeqUtils.addIntervals(samRecord, this.stranded));
+    HTSeqUtils.addIntervals(samRecord, this.stranded, ivSeq);
 
     return true;
   }
@@ -505,20 +1022,20 @@ public class HTSeqCounter extends AbstractExpressionCounter
    * @return false if the alignments has not been processed
    */
   private boolean pairedEnd(final SAMRecord sam1, final SAMRecord sam2,
-      final List<GenomicInterval> ivSeq, final InternalCounters counters) {
+      final AlignmentIntervals ivSeq, final InternalCounters counters) {
 
     if (!sam1.getReadUnmappedFlag()) {
-      ivSeq.addAll(HTSeqUtils.addIntervals(sam1, this.stranded));
+      HTSeqUtils.addIntervals(sam1, this.stranded, ivSeq);
     }
 
     if (!sam2.getReadUnmappedFlag()) {
-      ivSeq.addAll(HTSeqUtils.addIntervals(sam2, this.stranded));
+      HTSeqUtils.addIntervals(sam2, this.stranded, ivSeq);
     }
 
     // unmapped read
     if (sam1.getReadUnmappedFlag() && sam2.getReadUnmappedFlag()) {
       counters.notAligned++;
-      assignment(sam1, sam2, "__not_aligned");
+      assignment(counters, sam1, sam2, "__not_aligned");
       return false;
     }
 
@@ -547,7 +1064,7 @@ public class HTSeqCounter extends AbstractExpressionCounter
         || (sam2.getAttribute("NH") != null
             && sam2.getIntegerAttribute("NH") > 1)) {
       counters.nonUnique++;
-      assignment(sam1, sam2, "__alignment_not_unique");
+      assignment(counters, sam1, sam2, "__alignment_not_unique");
       if (this.removeNonUnique) {
         return false;
       }
@@ -557,7 +1074,7 @@ public class HTSeqCounter extends AbstractExpressionCounter
     if (sam1.getMappingQuality() < this.minimalQuality
         || sam2.getMappingQuality() < this.minimalQuality) {
       counters.lowQual++;
-      assignment(sam1, sam2, "__too_low_aQual");
+      assignment(counters, sam1, sam2, "__too_low_aQual");
       return false;
     }
 
@@ -566,73 +1083,67 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
   /**
    * Update the counts.
-   * @param ivSeq the genomic intervals
-   * @param counts the counts
-   * @param internalCounters the counters
+   * @param samRecord1 first entry
+   * @param samRecord2 second entry
+   * @param buffers the counts, the genomic intervals and the counters
    * @throws EoulsanException if an error occurs while counting
    */
   private void updateCounts(final SAMRecord samRecord1,
-      final SAMRecord samRecord2, final List<GenomicInterval> ivSeq,
-      final Map<String, Integer> counts,
-      final InternalCounters internalCounters) throws EoulsanException {
+      final SAMRecord samRecord2, final CountBuffers buffers)
+      throws EoulsanException {
+
+    final InternalCounters internalCounters = buffers.counters;
 
     try {
-      Set<String> fs = HTSeqUtils.featuresOverlapped(ivSeq, this.features,
-          this.overlapMode, this.stranded);
+      final FeatureIdSet fs = buffers.featureIds;
+      HTSeqUtils.featuresOverlapped(buffers.ivSeq, this.features,
+          this.overlapMode, this.stranded, buffers.zones, fs);
 
       switch (fs.size()) {
       case 0:
         internalCounters.empty++;
-        assignment(samRecord1, samRecord2, "__no_feature");
+        assignment(internalCounters, samRecord1, samRecord2, "__no_feature");
         break;
 
       case 1:
-        String id = fs.iterator().next();
-        increment(counts, id);
-        assignment(samRecord1, samRecord2, id);
+        final int id = fs.get(0);
+        buffers.counts.increment(id);
+        assignment(internalCounters, samRecord1, samRecord2,
+            this.features.getValue(id));
         break;
 
       default:
 
         internalCounters.ambiguous++;
-        assignment(samRecord1, samRecord2, fs);
+        assignment(internalCounters, samRecord1, samRecord2, fs);
 
         if (!this.removeAmbiguousCases) {
-          for (String id2 : fs) {
-            increment(counts, id2);
+          for (int i = 0; i < fs.size(); i++) {
+            buffers.counts.increment(fs.get(i));
           }
         }
         break;
       }
     } catch (UnknownChromosomeException e) {
       internalCounters.empty++;
-      assignment(samRecord1, samRecord2, "__no_feature");
-    }
-  }
-
-  /**
-   * Increment a count.
-   * @param counts the counts
-   * @param key the feature to increment
-   */
-  private static void increment(final Map<String, Integer> counts,
-      final String key) {
-
-    if (!counts.containsKey(key)) {
-      counts.put(key, 1);
-    } else {
-      counts.put(key, counts.get(key) + 1);
+      assignment(internalCounters, samRecord1, samRecord2, "__no_feature");
     }
   }
 
   /**
    * Assign a feature to SAM entries.
+   * @param counters the counters
    * @param samRecord1 first entry
    * @param samRecord2 second entry
    * @param assignment the value of the assignment
    */
-  private void assignment(final SAMRecord samRecord1,
-      final SAMRecord samRecord2, final String assignment) {
+  private void assignment(final InternalCounters counters,
+      final SAMRecord samRecord1, final SAMRecord samRecord2,
+      final String assignment) {
+
+    if (!counters.assignFeatures) {
+      return;
+    }
 
     if (this.removeNonAssignedFeatureSamTags && assignment.startsWith("__")) {
       return;
@@ -649,18 +1160,49 @@ public class HTSeqCounter extends AbstractExpressionCounter
 
   /**
    * Assign features to SAM entries.
+   * @param counters the counters
    * @param samRecord1 first entry
    * @param samRecord2 second entry
-   * @param features ambiguous features of the assignment
+   * @param featureIds identifiers of the ambiguous features of the assignment
    */
-  private void assignment(final SAMRecord samRecord1,
-      final SAMRecord samRecord2, final Set<String> features) {
+  private void assignment(final InternalCounters counters,
+      final SAMRecord samRecord1, final SAMRecord samRecord2,
+      final FeatureIdSet featureIds) {
+
+    // The names of the features are only required for the SAM tags
+    if (!counters.assignFeatures) {
+      return;
+    }
 
     // Sort the features to always have the same feature order in outputs
-    List<String> list = new ArrayList<>(features);
+    List<String> list = new ArrayList<>(featureIds.size());
+    for (int i = 0; i < featureIds.size(); i++) {
+      list.add(this.features.getValue(featureIds.get(i)));
+    }
     Collections.sort(list);
 
-    assignment(samRecord1, samRecord2, "__ambiguous[" + join(list, "+") + ']');
+    assignment(counters, samRecord1, samRecord2,
+        "__ambiguous[" + join(list, "+") + ']');
+  }
+
+  @Override
+  public int getFeatureCount() {
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    return this.features.getValueCount();
+  }
+
+  @Override
+  public String getFeatureName(final int featureId) {
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    return this.features.getValue(featureId);
   }
 
   @Override
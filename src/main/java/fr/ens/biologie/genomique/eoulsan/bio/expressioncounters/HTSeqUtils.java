@@ -45,7 +45,9 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.GFFEntry;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomicIndex;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.io.GFFReader;
 import fr.ens.biologie.genomique.eoulsan.bio.io.GTFReader;
 import fr.ens.biologie.genomique.eoulsan.util.GuavaCompatibility;
@@ -194,6 +196,54 @@ public class HTSeqUtils {
     return result;
   }
 
+  /**
+   * Add intervals of a SAM record that are alignment matches (thanks to the
+   * CIGAR code). This method returns the same intervals as the
+   * addIntervals(SAMRecord, StrandUsage) method without creating any object.
+   * @param record the SAM record to treat.
+   * @param stranded strand to consider.
+   * @param intervals the object where to add the intervals
+   */
+  static void addIntervals(final SAMRecord record, final StrandUsage stranded,
+      final AlignmentIntervals intervals) {
+
+    // The strand of the read is reversed for the first read in reverse mode
+    // and for the second read in the other modes
+    final boolean firstRead =
+        !record.getReadPairedFlag() || record.getFirstOfPairFlag();
+    final boolean reverse = (stranded == REVERSE) == firstRead;
+    final char strand =
+        record.getReadNegativeStrandFlag() != reverse ? '-' : '+';
+
+    final String chromosome = record.getReferenceName();
+    int pos = record.getAlignmentStart();
+
+    for (CigarElement ce : record.getCigar().getCigarElements()) {
+
+      final int len = ce.getLength();
+      final CigarOperator co = ce.getOperator();
+
+      switch (co) {
+
+      // the CIGAR element correspond to a mapped region
+      case M:
+      case EQ:
+      case X:
+        intervals.add(chromosome, pos, pos + len - 1, strand);
+        pos += len;
+        break;
+
+      // the CIGAR element did not correspond to a mapped region
+      default:
+        if (co.consumesReferenceBases()) {
+          pos += len;
+        }
+
+        break;
+      }
+    }
+  }
+
   /**
    * Parse a CIGAR string to have intervals of a chromosome that are alignments
    * matches.
@@ -255,7 +305,7 @@ public class HTSeqUtils {
    *           features
    */
   public static Set<String> featuresOverlapped(
-      final List<GenomicInterval> ivList, final GenomicArray<String> features,
+      final List<GenomicInterval> ivList, final GenomicIndex<String> features,
       final OverlapMode mode, final StrandUsage stranded)
       throws EoulsanException {
 
@@ -355,7 +405,104 @@ public class HTSeqUtils {
   }
 
   /**
-   * Filter the output of GenomicArray.getEntries() by keeping only features on
+   * Determine features that overlap genomic intervals. This method returns the
+   * same features as the featuresOverlapped(List, GenomicIndex, OverlapMode,
+   * StrandUsage) method but works on the identifiers of the features and does
+   * not create any object.
+   * @param ivSeq the genomic intervals.
+   * @param features the features.
+   * @param mode the overlap mode.
+   * @param stranded strand to consider.
+   * @param zones a reusable object for the zones of the features
+   * @param result the object where to put the identifiers of the features
+   * @throws EoulsanException if an error occurs while getting overlapped
+   *           features
+   */
+  static void featuresOverlapped(final AlignmentIntervals ivSeq,
+      final ImmutableGenomicArray<String> features, final OverlapMode mode,
+      final StrandUsage stranded, final ImmutableGenomicArray.Zones zones,
+      final FeatureIdSet result) throws EoulsanException {
+
+    final boolean filterStrands = stranded == YES || stranded == REVERSE;
+
+    result.clear();
+
+    // Overlap mode "union"
+    if (mode == UNION) {
+
+      for (int i = 0; i < ivSeq.size(); i++) {
+
+        final String chr = ivSeq.getChromosome(i);
+
+        // Get features that overlap the current interval of the read
+        if (!features.getZones(chr, ivSeq.getStart(i), ivSeq.getEnd(i),
+            zones)) {
+          throw new UnknownChromosomeException(chr);
+        }
+
+        for (int j = 0; j < zones.size(); j++) {
+
+          // Filter zones if necessary
+          if (filterStrands && zones.getStrand(j) != ivSeq.getStrand(i)) {
+            continue;
+          }
+
+          result.addAll(zones.getValueIds(j));
+        }
+      }
+    }
+
+    // Overlap modes : "intersection-nonempty" or "intersection-strict"
+    else if (mode == INTERSECTION_NONEMPTY || mode == INTERSECTION_STRICT) {
+
+      boolean empty = true;
+
+      for (int i = 0; i < ivSeq.size(); i++) {
+
+        final String chr = ivSeq.getChromosome(i);
+
+        // Get features that overlap the current interval of the read
+        if (!features.getZones(chr, ivSeq.getStart(i), ivSeq.getEnd(i),
+            zones)) {
+          throw new EoulsanException("Unknown chromosome: " + chr);
+        }
+
+        int zoneCount = 0;
+
+        for (int j = 0; j < zones.size(); j++) {
+
+          // Filter zones if necessary
+          if (filterStrands && zones.getStrand(j) != ivSeq.getStrand(i)) {
+            continue;
+          }
+
+          zoneCount++;
+          final int[] ids = zones.getValueIds(j);
+
+          if (ids.length > 0 || mode == INTERSECTION_STRICT) {
+            if (empty) {
+              result.addAll(ids);
+              empty = false;
+            } else {
+              result.retainAll(ids);
+            }
+          }
+        }
+
+        // If no zone has been found, the interval is handled as a zone without
+        // features (HTSeq compatibility)
+        if (zoneCount == 0 && mode == INTERSECTION_STRICT) {
+          result.clear();
+          empty = false;
+        }
+      }
+    } else {
+      throw new EoulsanException("Error : illegal overlap mode.");
+    }
+  }
+
+  /**
+   * Filter the output of GenomicIndex.getEntries() by keeping only features on
    * a strand
    * @param intervals intervals to filter
    * @param strand strand to keep
@@ -0,0 +1,215 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTQ_CHARSET;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class implements a writer for block compressed FASTQ files. The entries
+ * are written in blocks of a fixed number of entries, each block is a gzip
+ * member, so the file can be read by all the gzip readers. The index of the
+ * blocks is written in a sidecar file when the writer is closed.
+ * @see FastqIndex
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class BlockCompressedFastqWriter implements ReadSequenceWriter {
+
+  /** Default number of entries by block. */
+  public static final int DEFAULT_READS_PER_BLOCK = 10000;
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream os;
+  private final OutputStream indexOs;
+  private final int readsPerBlock;
+
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream compressedBlock =
+      new ByteArrayOutputStream();
+  private int blockReadCount;
+
+  private long readCount;
+  private long offset;
+  private long[] firstReads = new long[16];
+  private long[] offsets = new long[16];
+  private int blockCount;
+  private boolean closed;
+
+  @Override
+  public void write(final ReadSequence readSequence) throws IOException {
+
+    if (readSequence == null) {
+      return;
+    }
+
+    if (this.closed) {
+      throw new IOException("Writer closed");
+    }
+
+    final byte[] entry =
+        (readSequence.toFastQ() + '\n').getBytes(FASTQ_CHARSET);
+    this.block.write(entry, 0, entry.length);
+    this.blockReadCount++;
+
+    if (this.blockReadCount == this.readsPerBlock) {
+      writeBlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    try {
+
+      // An empty file is an empty gzip member
+      if (this.blockReadCount > 0 || this.blockCount == 0) {
+        writeBlock();
+      }
+      this.os.close();
+
+      // Add the end entry
+      addIndexEntry();
+
+      new FastqIndex(Arrays.copyOf(this.firstReads, this.blockCount),
+          Arrays.copyOf(this.offsets, this.blockCount)).save(this.indexOs);
+
+    } finally {
+      this.indexOs.close();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Compress and write the current block.
+   * @throws IOException if an error occurs while writing the block
+   */
+  private void writeBlock() throws IOException {
+
+    addIndexEntry();
+
+    this.compressedBlock.reset();
+    try (GZIPOutputStream gzos =
+        new GZIPOutputStream(this.compressedBlock, GZIP_BUFFER_SIZE)) {
+      this.block.writeTo(gzos);
+    }
+
+    this.compressedBlock.writeTo(this.os);
+
+    this.offset += this.compressedBlock.size();
+    this.readCount += this.blockReadCount;
+    this.block.reset();
+    this.blockReadCount = 0;
+  }
+
+  /**
+   * Add an entry to the index.
+   */
+  private void addIndexEntry() {
+
+    if (this.blockCount == this.offsets.length) {
+      this.firstReads = Arrays.copyOf(this.firstReads, 2 * this.blockCount);
+      this.offsets = Arrays.copyOf(this.offsets, 2 * this.blockCount);
+    }
+
+    this.firstReads[this.blockCount] = this.readCount;
+    this.offsets[this.blockCount] = this.offset;
+    this.blockCount++;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor. The index is written in the index file of the FASTQ
+   * file.
+   * @param file the FASTQ file
+   * @throws IOException if an error occurs while creating the files
+   */
+  public BlockCompressedFastqWriter(final DataFile file) throws IOException {
+
+    this(file.rawCreate(), FastqIndex.getIndexFile(file).rawCreate());
+  }
+
+  /**
+   * Public constructor.
+   * @param os the output stream of the FASTQ file
+   * @param indexOs the output stream of the index
+   */
+  public BlockCompressedFastqWriter(final OutputStream os,
+      final OutputStream indexOs) {
+
+    this(os, indexOs, DEFAULT_READS_PER_BLOCK);
+  }
+
+  /**
+   * Public constructor.
+   * @param os the output stream of the FASTQ file
+   * @param indexOs the output stream of the index
+   * @param readsPerBlock the number of entries by block
+   */
+  public BlockCompressedFastqWriter(final OutputStream os,
+      final OutputStream indexOs, final int readsPerBlock) {
+
+    if (os == null) {
+      throw new NullPointerException("os argument cannot be null");
+    }
+
+    if (indexOs == null) {
+      throw new NullPointerException("indexOs argument cannot be null");
+    }
+
+    if (readsPerBlock < 1) {
+      throw new IllegalArgumentException(
+          "the number of reads by block must be greater than 0: "
+              + readsPerBlock);
+    }
+
+    this.os = os;
+    this.indexOs = indexOs;
+    this.readsPerBlock = readsPerBlock;
+  }
+
+}
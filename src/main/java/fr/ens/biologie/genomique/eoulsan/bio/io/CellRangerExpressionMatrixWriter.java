@@ -18,8 +18,11 @@ import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.zip.GZIPOutputStream;
 
 import fr.ens.biologie.genomique.eoulsan.bio.AnnotationMatrix;
@@ -48,22 +51,53 @@ public class CellRangerExpressionMatrixWriter
     super.write(matrix, rowNamesToWrite);
 
     // Write barcodes
-    writeBarcodes(matrix);
+    writeBarcodes(matrix.getColumnNames());
 
     // Write genes
-    writeFeatures(matrix, rowNamesToWrite);
+    writeFeatures(matrix.getRowNames(),
+        rowNamesToWrite instanceof Set
+            ? (Set<String>) rowNamesToWrite : new HashSet<>(rowNamesToWrite));
+  }
+
+  /**
+   * Create a writer for the entries of the matrix. The barcodes and the
+   * features files are written by this method, so a matrix can be written in
+   * streaming, without storing it in memory.
+   * @param rowNames the names of the rows of the matrix
+   * @param columnNames the names of the columns of the matrix
+   * @param entryCount the number of entries to write
+   * @param integerMatrix true if the values are integers
+   * @return a new MarketMatrixEntryWriter object
+   * @throws IOException if an error occurs while writing the barcodes or the
+   *           features
+   */
+  public MarketMatrixEntryWriter createEntryWriter(final List<String> rowNames,
+      final List<String> columnNames, final long entryCount,
+      final boolean integerMatrix) throws IOException {
+
+    Objects.requireNonNull(rowNames, "rowNames argument cannot be null");
+    Objects.requireNonNull(columnNames, "columnNames argument cannot be null");
+
+    // Write barcodes
+    writeBarcodes(columnNames);
+
+    // Write genes
+    writeFeatures(rowNames, null);
+
+    return createEntryWriter(rowNames.size(), columnNames.size(), entryCount,
+        integerMatrix);
   }
 
   /**
    * Write barcodes.
-   * @param matrix the matrix
+   * @param barcodes the barcodes
    * @throws IOException if an error occurs while writing the barcodes
    */
-  private void writeBarcodes(final ExpressionMatrix matrix) throws IOException {
+  private void writeBarcodes(final List<String> barcodes) throws IOException {
 
     try (Writer writer = createWriter(this.barcodesFile)) {
 
-      for (String barcode : matrix.getColumnNames()) {
+      for (String barcode : barcodes) {
         writer.write(barcode + '\n');
       }
     }
@@ -71,17 +105,18 @@ public class CellRangerExpressionMatrixWriter
 
   /**
    * Write features.
-   * @param matrix the matrix
+   * @param rowNames the row names of the matrix
+   * @param rowNamesToWrite the row names to write, null to write all the rows
    * @throws IOException if an error occurs while writing the features
    */
-  private void writeFeatures(final ExpressionMatrix matrix,
-      final Collection<String> rowNamesToWrite) throws IOException {
+  private void writeFeatures(final List<String> rowNames,
+      final Set<String> rowNamesToWrite) throws IOException {
 
     try (Writer writer = createWriter(this.featuresFile)) {
 
-      for (String geneName : matrix.getRowNames()) {
+      for (String geneName : rowNames) {
 
-        if (rowNamesToWrite.contains(geneName)) {
+        if (rowNamesToWrite == null || rowNamesToWrite.contains(geneName)) {
 
           String alias = this.geneAliases.get(geneName);
           writer.write(geneName
@@ -40,7 +40,7 @@ public class ExpressionMatrixFormatFinderInputStream extends InputStream {
 
     final byte[] readed = new byte[CACHE_SIZE];
 
-    int count = is.read(readed);
+    int count = Math.max(0, is.read(readed));
 
     if (count != CACHE_SIZE) {
       this.cache = new byte[count];
@@ -90,8 +90,10 @@ public class ExpressionMatrixFormatFinderInputStream extends InputStream {
    */
   public MatrixFormat getExpressionMatrixFormat() throws IOException {
 
-    if (!this.testFormatDone)
+    if (!this.testFormatDone) {
       this.format = findMatrixFormat();
+      this.testFormatDone = true;
+    }
 
     return this.format;
   }
@@ -133,11 +135,36 @@ public class ExpressionMatrixFormatFinderInputStream extends InputStream {
     }
 
     if (this.cacheIndex < this.cache.length)
-      return this.cache[this.cacheIndex++];
+      return this.cache[this.cacheIndex++] & 0xff;
 
     return this.is.read();
   }
 
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (this.cacheIndex == -1) {
+      return -1;
+    }
+
+    if (len == 0) {
+      return 0;
+    }
+
+    // Read the cache before the underlying stream
+    if (this.cacheIndex < this.cache.length) {
+
+      final int n = Math.min(len, this.cache.length - this.cacheIndex);
+      System.arraycopy(this.cache, this.cacheIndex, b, off, n);
+      this.cacheIndex += n;
+
+      return n;
+    }
+
+    return this.is.read(b, off, len);
+  }
+
   @Override
   public void close() throws IOException {
 
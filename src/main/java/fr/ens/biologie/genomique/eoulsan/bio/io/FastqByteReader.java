@@ -0,0 +1,378 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTQ_CHARSET;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+/**
+ * This class implements a Fastq reader that works directly on bytes. Unlike
+ * FastqReader, lines are not decoded and joined before parsing: the entry
+ * boundaries are searched in a large byte buffer and only the name, the
+ * sequence and the quality of the entry are converted to strings. The reader
+ * can optionally reuse the same ReadSequence object for all the entries.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class FastqByteReader implements ReadSequenceReader {
+
+  /** Default size of the buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  private static final int LINES_PER_ENTRY = 4;
+
+  private final InputStream is;
+  private final boolean reuse;
+
+  private byte[] buffer;
+  private int pos;
+  private int limit;
+  private boolean eof;
+
+  private final int[] lineStarts = new int[LINES_PER_ENTRY];
+  private final int[] lineEnds = new int[LINES_PER_ENTRY];
+
+  private ReadSequence result = null;
+  private long lineCount = 0;
+
+  private boolean end = false;
+  private boolean nextCallDone = true;
+  protected IOException ioException;
+  protected BadBioEntryException bbeException;
+
+  @Override
+  public void close() throws IOException {
+
+    this.is.close();
+  }
+
+  @Override
+  public Iterator<ReadSequence> iterator() {
+
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+
+    if (this.end) {
+      return false;
+    }
+
+    this.nextCallDone = false;
+
+    try {
+
+      if (!readEntry()) {
+        this.end = true;
+        return false;
+      }
+
+      // Fill the ReadSequence object
+      final ReadSequence read = this.reuse && this.result != null
+          ? this.result : new ReadSequence();
+      read.setName(newString(this.lineStarts[0] + 1, this.lineEnds[0]));
+      read.setSequence(newString(this.lineStarts[1], this.lineEnds[1]));
+      read.setQuality(newString(this.lineStarts[3], this.lineEnds[3]));
+      this.result = read;
+
+      return true;
+
+    } catch (IOException e) {
+
+      this.ioException = e;
+      this.end = true;
+      return false;
+    } catch (BadBioEntryException e) {
+
+      this.bbeException = e;
+      this.end = true;
+      return false;
+    }
+  }
+
+  @Override
+  public ReadSequence next() {
+
+    if (this.nextCallDone) {
+      throw new NoSuchElementException();
+    }
+
+    this.nextCallDone = true;
+
+    return this.result;
+  }
+
+  @Override
+  public void remove() {
+
+    throw new UnsupportedOperationException("Unsupported operation");
+  }
+
+  @Override
+  public void throwException() throws IOException, BadBioEntryException {
+
+    if (this.ioException != null) {
+      throw this.ioException;
+    }
+
+    if (this.bbeException != null) {
+      throw this.bbeException;
+    }
+  }
+
+  //
+  // Parsing methods
+  //
+
+  /**
+   * Locate the four lines of the next entry in the buffer. The bounds of the
+   * trimmed lines are stored in the lineStarts and lineEnds arrays.
+   * @return true if a complete entry has been found
+   * @throws IOException if an error occurs while reading data
+   * @throws BadBioEntryException if the entry is invalid
+   */
+  private boolean readEntry() throws IOException, BadBioEntryException {
+
+    int lineIndex = 0;
+    int scan = this.pos;
+
+    while (lineIndex < LINES_PER_ENTRY) {
+
+      int eol = indexOfNewLine(scan);
+
+      if (eol == -1) {
+
+        if (!this.eof) {
+
+          // Not enough data in the buffer, fill it and update the offsets
+          final int shift = fillBuffer();
+          scan -= shift;
+          for (int i = 0; i < lineIndex; i++) {
+            this.lineStarts[i] -= shift;
+            this.lineEnds[i] -= shift;
+          }
+          continue;
+        }
+
+        // Incomplete entry at the end of the file are ignored as in
+        // FastqReader
+        if (scan >= this.limit) {
+          this.pos = this.limit;
+          return false;
+        }
+
+        // Last line without end of line character
+        eol = this.limit;
+      }
+
+      // Trim the line
+      int start = scan;
+      int end = eol;
+      while (start < end && this.buffer[start] <= ' ') {
+        start++;
+      }
+      while (end > start && this.buffer[end - 1] <= ' ') {
+        end--;
+      }
+
+      // Increment line count
+      this.lineCount++;
+
+      // Skip empty lines between entries
+      if (lineIndex == 0 && start == end) {
+        scan = eol + 1;
+        this.pos = Math.min(scan, this.limit);
+        continue;
+      }
+
+      if (lineIndex == 0 && this.buffer[start] != '@') {
+        throw new BadBioEntryException(
+            "Invalid Fastq file. First line of the entry don't start with '@' at line "
+                + this.lineCount,
+            newString(scan, eol));
+      }
+
+      if (lineIndex == 2 && (start == end || this.buffer[start] != '+')) {
+        throw new BadBioEntryException(
+            "Invalid Fastq file. Third line of the entry don't start with '+' at line "
+                + this.lineCount,
+            newString(scan, eol));
+      }
+
+      this.lineStarts[lineIndex] = start;
+      this.lineEnds[lineIndex] = end;
+      lineIndex++;
+      scan = eol + 1;
+    }
+
+    this.pos = Math.min(scan, this.limit);
+
+    return true;
+  }
+
+  /**
+   * Search the next new line character in the buffer.
+   * @param from the index where to start the search
+   * @return the index of the new line character or -1 if not found
+   */
+  private int indexOfNewLine(final int from) {
+
+    final byte[] buffer = this.buffer;
+    final int limit = this.limit;
+
+    for (int i = from; i < limit; i++) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Read more data in the buffer. The unread data is first moved at the
+   * beginning of the buffer and the buffer is enlarged if it is full.
+   * @return the shift of the unread data in the buffer
+   * @throws IOException if an error occurs while reading data
+   */
+  private int fillBuffer() throws IOException {
+
+    final int shift = this.pos;
+
+    // Move the unread data at the beginning of the buffer
+    if (shift > 0) {
+      System.arraycopy(this.buffer, shift, this.buffer, 0, this.limit - shift);
+      this.limit -= shift;
+      this.pos = 0;
+    }
+
+    // Enlarge the buffer if an entry is larger than the buffer
+    if (this.limit == this.buffer.length) {
+      final byte[] newBuffer = new byte[this.buffer.length * 2];
+      System.arraycopy(this.buffer, 0, newBuffer, 0, this.limit);
+      this.buffer = newBuffer;
+    }
+
+    final int n =
+        this.is.read(this.buffer, this.limit, this.buffer.length - this.limit);
+
+    if (n == -1) {
+      this.eof = true;
+    } else {
+      this.limit += n;
+    }
+
+    return shift;
+  }
+
+  /**
+   * Create a string from a range of the buffer.
+   * @param start start of the range
+   * @param end end of the range
+   * @return a new String
+   */
+  private String newString(final int start, final int end) {
+
+    return new String(this.buffer, start, end - start, FASTQ_CHARSET);
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor
+   * @param is InputStream to use
+   */
+  public FastqByteReader(final InputStream is) {
+
+    this(is, false);
+  }
+
+  /**
+   * Public constructor
+   * @param is InputStream to use
+   * @param reuse true if the same ReadSequence object must be returned for all
+   *          the entries
+   */
+  public FastqByteReader(final InputStream is, final boolean reuse) {
+
+    this(is, reuse, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Public constructor
+   * @param is InputStream to use
+   * @param reuse true if the same ReadSequence object must be returned for all
+   *          the entries
+   * @param bufferSize initial size of the buffer
+   */
+  public FastqByteReader(final InputStream is, final boolean reuse,
+      final int bufferSize) {
+
+    if (is == null) {
+      throw new NullPointerException("InputStream is null");
+    }
+
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException(
+          "Invalid buffer size: " + bufferSize);
+    }
+
+    this.is = is;
+    this.reuse = reuse;
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * Public constructor
+   * @param file File to use
+   */
+  public FastqByteReader(final File file) throws FileNotFoundException {
+
+    this(FileUtils.createInputStream(file));
+  }
+
+  /**
+   * Public constructor
+   * @param filename File to use
+   */
+  public FastqByteReader(final String filename) throws FileNotFoundException {
+
+    this(FileUtils.createInputStream(filename));
+  }
+
+}
@@ -0,0 +1,392 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.io.AbstractConcatInputStream;
+import fr.ens.biologie.genomique.eoulsan.io.MaxByteInputStream;
+
+/**
+ * This class define the index of a block compressed FASTQ file. A block
+ * compressed FASTQ file is a gzip file where each gzip member contains only
+ * complete FASTQ entries, so each block can be decompressed without reading the
+ * previous blocks. The index is stored in a small sidecar file and contains,
+ * for each block, the number of the first read of the block and the offset of
+ * the block in the compressed file. The last entry of the index contains the
+ * number of reads and the length of the compressed file.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public final class FastqIndex {
+
+  /** Extension of the index files. */
+  public static final String EXTENSION = ".fqi";
+
+  private static final String HEADER = "#eoulsan-fastq-index\t1";
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private final long[] firstReads;
+  private final long[] offsets;
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the number of blocks.
+   * @return the number of blocks
+   */
+  public int getBlockCount() {
+
+    return this.offsets.length - 1;
+  }
+
+  /**
+   * Get the number of reads.
+   * @return the number of reads
+   */
+  public long getReadCount() {
+
+    return this.firstReads[this.firstReads.length - 1];
+  }
+
+  /**
+   * Get the length of the compressed file.
+   * @return the length of the compressed file
+   */
+  public long getFileLength() {
+
+    return this.offsets[this.offsets.length - 1];
+  }
+
+  /**
+   * Get the number of the first read of a block.
+   * @param block the number of the block. If the number of the block is the
+   *          number of blocks, the number of reads is returned
+   * @return the number of the first read of a block
+   */
+  public long getBlockFirstRead(final int block) {
+
+    checkBlock(block);
+
+    return this.firstReads[block];
+  }
+
+  /**
+   * Get the offset of a block in the compressed file.
+   * @param block the number of the block. If the number of the block is the
+   *          number of blocks, the length of the file is returned
+   * @return the offset of the block
+   */
+  public long getBlockOffset(final int block) {
+
+    checkBlock(block);
+
+    return this.offsets[block];
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the block that starts at an offset.
+   * @param offset the offset
+   * @return the number of the block or -1 if no block starts at this offset.
+   *         If the offset is the length of the file, the number of blocks is
+   *         returned
+   */
+  public int getBlockAtOffset(final long offset) {
+
+    final int result = Arrays.binarySearch(this.offsets, offset);
+
+    return result < 0 ? -1 : result;
+  }
+
+  /**
+   * Get the block that contains a read.
+   * @param read the number of the read
+   * @return the number of the block that contains the read
+   */
+  public int getBlockOfRead(final long read) {
+
+    if (read < 0 || read >= getReadCount()) {
+      throw new IndexOutOfBoundsException("Invalid read number: " + read);
+    }
+
+    int result = Arrays.binarySearch(this.firstReads, read);
+
+    if (result < 0) {
+      return -result - 2;
+    }
+
+    // Skip the empty blocks
+    while (this.firstReads[result + 1] == read) {
+      result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Check a block number.
+   * @param block the block number to check
+   */
+  private void checkBlock(final int block) {
+
+    if (block < 0 || block >= this.offsets.length) {
+      throw new IndexOutOfBoundsException("Invalid block number: " + block);
+    }
+  }
+
+  /**
+   * Create an input stream with the uncompressed data of a range of blocks.
+   * Each block is decompressed independently.
+   * @param is the compressed file input stream, its current position must be
+   *          the offset of the first block. This stream will be closed when
+   *          the returned stream is closed
+   * @param firstBlock the first block of the range
+   * @param endBlock the block after the last block of the range
+   * @return an input stream with the uncompressed data
+   */
+  public InputStream openBlocks(final InputStream is, final int firstBlock,
+      final int endBlock) {
+
+    if (is == null) {
+      throw new NullPointerException("is argument cannot be null");
+    }
+
+    checkBlock(firstBlock);
+    checkBlock(endBlock);
+
+    if (firstBlock > endBlock) {
+      throw new IllegalArgumentException(
+          "the first block is after the end block: "
+              + firstBlock + " > " + endBlock);
+    }
+
+    return new AbstractConcatInputStream() {
+
+      private int block = firstBlock;
+
+      @Override
+      protected boolean hasNextInputStream() {
+
+        // Skip empty blocks
+        while (this.block < endBlock && getBlockLength(this.block) == 0) {
+          this.block++;
+        }
+
+        return this.block < endBlock;
+      }
+
+      @Override
+      protected InputStream nextInputStream() throws IOException {
+
+        final long length = getBlockLength(this.block++);
+
+        return new GZIPInputStream(new MaxByteInputStream(is, length),
+            GZIP_BUFFER_SIZE);
+      }
+
+      @Override
+      public void close() throws IOException {
+
+        super.close();
+        is.close();
+      }
+    };
+  }
+
+  /**
+   * Get the length of a block in the compressed file.
+   * @param block the number of the block
+   * @return the length of the block
+   */
+  private long getBlockLength(final int block) {
+
+    return this.offsets[block + 1] - this.offsets[block];
+  }
+
+  /**
+   * Save the index.
+   * @param os the output stream
+   * @throws IOException if an error occurs while writing the index
+   */
+  public void save(final OutputStream os) throws IOException {
+
+    if (os == null) {
+      throw new NullPointerException("os argument cannot be null");
+    }
+
+    try (Writer writer = new OutputStreamWriter(os, US_ASCII)) {
+
+      writer.write(HEADER + '\n');
+
+      for (int i = 0; i < this.offsets.length; i++) {
+        writer.write(Long.toString(this.firstReads[i]));
+        writer.write('\t');
+        writer.write(Long.toString(this.offsets[i]));
+        writer.write('\n');
+      }
+    }
+  }
+
+  /**
+   * Load an index.
+   * @param is the input stream
+   * @return a FastqIndex object
+   * @throws IOException if an error occurs while reading the index
+   */
+  public static FastqIndex load(final InputStream is) throws IOException {
+
+    if (is == null) {
+      throw new NullPointerException("is argument cannot be null");
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(is, US_ASCII))) {
+
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IOException("Invalid FASTQ index header");
+      }
+
+      long[] firstReads = new long[16];
+      long[] offsets = new long[16];
+      int count = 0;
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+
+        if (line.isEmpty()) {
+          continue;
+        }
+
+        final int pos = line.indexOf('\t');
+
+        if (pos == -1) {
+          throw new IOException("Invalid FASTQ index entry: " + line);
+        }
+
+        if (count == offsets.length) {
+          firstReads = Arrays.copyOf(firstReads, 2 * count);
+          offsets = Arrays.copyOf(offsets, 2 * count);
+        }
+
+        try {
+          firstReads[count] = Long.parseLong(line.substring(0, pos));
+          offsets[count] = Long.parseLong(line.substring(pos + 1));
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid FASTQ index entry: " + line);
+        }
+        count++;
+      }
+
+      try {
+        return new FastqIndex(Arrays.copyOf(firstReads, count),
+            Arrays.copyOf(offsets, count));
+      } catch (IllegalArgumentException e) {
+        throw new IOException(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Get the index file of a FASTQ file.
+   * @param fastqFile the FASTQ file
+   * @return the index file of the FASTQ file
+   * @throws IOException if an error occurs while getting the parent of the
+   *           file
+   */
+  public static DataFile getIndexFile(final DataFile fastqFile)
+      throws IOException {
+
+    if (fastqFile == null) {
+      throw new NullPointerException("fastqFile argument cannot be null");
+    }
+
+    return new DataFile(fastqFile.getParent(), fastqFile.getName() + EXTENSION);
+  }
+
+  /**
+   * Load the index of a FASTQ file if exists.
+   * @param fastqFile the FASTQ file
+   * @return the index of the file or null if the file has no index
+   * @throws IOException if an error occurs while reading the index
+   */
+  public static FastqIndex loadIndexIfExists(final DataFile fastqFile)
+      throws IOException {
+
+    final DataFile indexFile = getIndexFile(fastqFile);
+
+    if (!indexFile.exists()) {
+      return null;
+    }
+
+    return load(indexFile.rawOpen());
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param firstReads the number of the first read of each block followed by
+   *          the number of reads
+   * @param offsets the offsets of each block followed by the length of the
+   *          file
+   */
+  FastqIndex(final long[] firstReads, final long[] offsets) {
+
+    if (firstReads.length != offsets.length || offsets.length == 0) {
+      throw new IllegalArgumentException("Invalid FASTQ index");
+    }
+
+    for (int i = 1; i < offsets.length; i++) {
+      if (firstReads[i] < firstReads[i - 1] || offsets[i] < offsets[i - 1]) {
+        throw new IllegalArgumentException("Invalid FASTQ index");
+      }
+    }
+
+    this.firstReads = firstReads;
+    this.offsets = offsets;
+  }
+
+}
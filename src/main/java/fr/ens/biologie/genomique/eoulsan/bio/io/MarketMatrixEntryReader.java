@@ -0,0 +1,533 @@
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.MarketMatrixExpressionMatrixReader.MAGIC_KEY;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * This class define a streaming reader for the entries of a file in Market
+ * Matrix format. The header of the file, with the dimensions of the matrix and
+ * the number of entries, is read at the creation of the reader. The entries
+ * are then read one by one with the {@link #next()} method, without storing
+ * the matrix in memory. The file is parsed at the byte level and the parsing
+ * of the entries does not allocate any object.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class MarketMatrixEntryReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Powers of ten that are exactly represented as double values. */
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+      1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+      1e19, 1e20, 1e21, 1e22};
+
+  /** Maximal number of digits of a mantissa exactly represented as double. */
+  private static final int MAX_EXACT_DIGITS = 15;
+
+  private final InputStream is;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int pos;
+  private int limit;
+  private boolean endOfStream;
+  private long lineCount;
+
+  // Current line
+  private int lineStart;
+  private int lineEnd;
+
+  // Header
+  private boolean integerMatrix;
+  private int rowCount;
+  private int columnCount;
+  private long entryCount;
+
+  // Current entry
+  private long entriesRead;
+  private int rowNumber;
+  private int columnNumber;
+  private double value;
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the number of rows of the matrix.
+   * @return the number of rows of the matrix
+   */
+  public int getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Get the number of columns of the matrix.
+   * @return the number of columns of the matrix
+   */
+  public int getColumnCount() {
+    return this.columnCount;
+  }
+
+  /**
+   * Get the number of entries of the matrix.
+   * @return the number of entries of the matrix
+   */
+  public long getEntryCount() {
+    return this.entryCount;
+  }
+
+  /**
+   * Test if the header of the file declares an integer matrix.
+   * @return true if the matrix is an integer matrix
+   */
+  public boolean isIntegerMatrix() {
+    return this.integerMatrix;
+  }
+
+  /**
+   * Get the row number of the current entry. The row numbers start at 1.
+   * @return the row number of the current entry
+   */
+  public int getRowNumber() {
+    return this.rowNumber;
+  }
+
+  /**
+   * Get the column number of the current entry. The column numbers start at 1.
+   * @return the column number of the current entry
+   */
+  public int getColumnNumber() {
+    return this.columnNumber;
+  }
+
+  /**
+   * Get the value of the current entry.
+   * @return the value of the current entry
+   */
+  public double getValue() {
+    return this.value;
+  }
+
+  //
+  // Reading methods
+  //
+
+  /**
+   * Read the next entry of the matrix.
+   * @return false if there is no more entry to read
+   * @throws IOException if an error occurs while reading the entry
+   */
+  public boolean next() throws IOException {
+
+    if (!nextDataLine()) {
+
+      if (this.entriesRead != this.entryCount) {
+        throw new IOException("Unexpected end of file: "
+            + this.entriesRead + " entries read, " + this.entryCount
+            + " expected");
+      }
+
+      return false;
+    }
+
+    if (this.entriesRead == this.entryCount) {
+      throw new IOException("More entries than declared in the header ("
+          + this.entryCount + ") line #" + this.lineCount + ": "
+          + lineToString());
+    }
+
+    // Parse the three fields of the line
+    int start = skipSpaces(this.lineStart);
+    int end = tokenEnd(start);
+    this.rowNumber = parseInt(start, end);
+
+    start = skipSpaces(end);
+    end = tokenEnd(start);
+    this.columnNumber = parseInt(start, end);
+
+    start = skipSpaces(end);
+    end = tokenEnd(start);
+    this.value = parseDouble(start, end);
+
+    if (skipSpaces(end) != this.lineEnd) {
+      throw new IOException("3 values are expected line #"
+          + this.lineCount + ": " + lineToString());
+    }
+
+    if (this.rowNumber < 1
+        || this.rowNumber > this.rowCount || this.columnNumber < 1
+        || this.columnNumber > this.columnCount) {
+      throw new IOException("Entry out of the bounds of the matrix line #"
+          + this.lineCount + ": " + lineToString());
+    }
+
+    this.entriesRead++;
+
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.is.close();
+  }
+
+  //
+  // Header parsing
+  //
+
+  /**
+   * Read the header of the file.
+   * @throws IOException if the header is invalid
+   */
+  private void readHeader() throws IOException {
+
+    if (!nextLine()) {
+      throw new IOException("Empty Market Matrix file");
+    }
+
+    final String line = lineToString();
+
+    if (!line.startsWith(MAGIC_KEY)) {
+      throw new IOException("Invalid Market Matrice header: " + line);
+    }
+
+    final String[] fields = line.trim().split(" +");
+
+    if (fields.length < 2) {
+      throw new IOException("Invalid Market Matrice header: " + line);
+    }
+
+    if (!"matrix".equals(fields[1])) {
+      throw new IOException("The reader only handle matrix files");
+    }
+
+    for (int i = 2; i < fields.length; i++) {
+
+      switch (fields[i].toLowerCase()) {
+      case "integer":
+        this.integerMatrix = true;
+        break;
+
+      case "coordinate":
+      case "real":
+      case "general":
+        break;
+
+      default:
+        throw new IOException(
+            "The reader does not support qualifier: " + fields[i]);
+      }
+    }
+
+    // Read the size of the matrix
+    if (!nextDataLine()) {
+      throw new IOException("No size line in Market Matrix file");
+    }
+
+    int start = skipSpaces(this.lineStart);
+    int end = tokenEnd(start);
+    this.rowCount = parseInt(start, end);
+
+    start = skipSpaces(end);
+    end = tokenEnd(start);
+    this.columnCount = parseInt(start, end);
+
+    start = skipSpaces(end);
+    end = tokenEnd(start);
+    this.entryCount = parseLong(start, end);
+
+    if (skipSpaces(end) != this.lineEnd) {
+      throw new IOException("3 values are expected line #"
+          + this.lineCount + ": " + lineToString());
+    }
+  }
+
+  //
+  // Line reading
+  //
+
+  /**
+   * Read the next line that is not a comment or an empty line.
+   * @return false if the end of the stream has been reached
+   * @throws IOException if an error occurs while reading the line
+   */
+  private boolean nextDataLine() throws IOException {
+
+    while (nextLine()) {
+
+      if (this.lineStart < this.lineEnd
+          && this.buffer[this.lineStart] == '%') {
+        continue;
+      }
+
+      if (skipSpaces(this.lineStart) != this.lineEnd) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Read the next line. The bounds of the line in the buffer are set in the
+   * lineStart and lineEnd fields, without the end of line characters.
+   * @return false if the end of the stream has been reached
+   * @throws IOException if an error occurs while reading the line
+   */
+  private boolean nextLine() throws IOException {
+
+    int i = this.pos;
+
+    while (true) {
+
+      // Search the end of the line in the buffer
+      while (i < this.limit && this.buffer[i] != '\n') {
+        i++;
+      }
+
+      if (i < this.limit || this.endOfStream) {
+        break;
+      }
+
+      // Move the start of the line at the beginning of the buffer
+      if (this.pos > 0) {
+        System.arraycopy(this.buffer, this.pos, this.buffer, 0,
+            this.limit - this.pos);
+        i -= this.pos;
+        this.limit -= this.pos;
+        this.pos = 0;
+      }
+
+      if (this.limit == this.buffer.length) {
+        throw new IOException("Invalid line length (>"
+            + this.buffer.length + "), line #" + (this.lineCount + 1));
+      }
+
+      final int n = this.is.read(this.buffer, this.limit,
+          this.buffer.length - this.limit);
+
+      if (n == -1) {
+        this.endOfStream = true;
+      } else {
+        this.limit += n;
+      }
+    }
+
+    if (this.pos == this.limit) {
+      return false;
+    }
+
+    this.lineCount++;
+    this.lineStart = this.pos;
+    this.lineEnd = i;
+    this.pos = i < this.limit ? i + 1 : i;
+
+    if (this.lineEnd > this.lineStart
+        && this.buffer[this.lineEnd - 1] == '\r') {
+      this.lineEnd--;
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the current line as a String. This method is only used for the header
+   * and the error messages.
+   * @return the current line
+   */
+  private String lineToString() {
+
+    return new String(this.buffer, this.lineStart,
+        this.lineEnd - this.lineStart, StandardCharsets.US_ASCII);
+  }
+
+  //
+  // Number parsing
+  //
+
+  private int skipSpaces(final int start) {
+
+    int i = start;
+    while (i < this.lineEnd
+        && (this.buffer[i] == ' ' || this.buffer[i] == '\t')) {
+      i++;
+    }
+
+    return i;
+  }
+
+  private int tokenEnd(final int start) {
+
+    int i = start;
+    while (i < this.lineEnd
+        && this.buffer[i] != ' ' && this.buffer[i] != '\t') {
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * Parse an int value.
+   * @param start start of the value in the buffer
+   * @param end end of the value in the buffer
+   * @return the parsed value
+   * @throws IOException if the value is not a valid int
+   */
+  private int parseInt(final int start, final int end) throws IOException {
+
+    final long result = parseLong(start, end);
+
+    if (result > Integer.MAX_VALUE) {
+      throw invalidNumber();
+    }
+
+    return (int) result;
+  }
+
+  /**
+   * Parse a positive long value.
+   * @param start start of the value in the buffer
+   * @param end end of the value in the buffer
+   * @return the parsed value
+   * @throws IOException if the value is not a valid positive long
+   */
+  private long parseLong(final int start, final int end) throws IOException {
+
+    if (start == end || end - start > 18) {
+      throw invalidNumber();
+    }
+
+    long result = 0;
+    for (int i = start; i < end; i++) {
+
+      final int digit = this.buffer[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw invalidNumber();
+      }
+      result = result * 10 + digit;
+    }
+
+    return result;
+  }
+
+  /**
+   * Parse a double value. Values without exponent and with at most 15
+   * significant digits are parsed without any allocation. The result is the
+   * same as the result of Double.parseDouble() as the mantissa and the power
+   * of ten are exactly represented and the division is correctly rounded.
+   * @param start start of the value in the buffer
+   * @param end end of the value in the buffer
+   * @return the parsed value
+   * @throws IOException if the value is not a valid double
+   */
+  private double parseDouble(final int start, final int end)
+      throws IOException {
+
+    if (start == end) {
+      throw invalidNumber();
+    }
+
+    int i = start;
+    final boolean negative = this.buffer[i] == '-';
+    if (negative || this.buffer[i] == '+') {
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    boolean anyDigit = false;
+    int fractionDigits = -1;
+    boolean fastPath = i < end;
+
+    for (; i < end && fastPath; i++) {
+
+      final byte b = this.buffer[i];
+
+      if (b >= '0' && b <= '9') {
+
+        anyDigit = true;
+        if (mantissa != 0 || b != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (fractionDigits >= 0) {
+          fractionDigits++;
+        }
+
+        fastPath = digits <= MAX_EXACT_DIGITS
+            && fractionDigits < POWERS_OF_TEN.length;
+
+      } else if (b == '.' && fractionDigits == -1) {
+        fractionDigits = 0;
+      } else {
+        fastPath = false;
+      }
+    }
+
+    if (fastPath && anyDigit) {
+
+      final double result = fractionDigits > 0
+          ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+
+      return negative ? -result : result;
+    }
+
+    // Slow path for the exponents, the special values and the long mantissas
+    try {
+      return Double.parseDouble(new String(this.buffer, start, end - start,
+          StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      throw invalidNumber();
+    }
+  }
+
+  private IOException invalidNumber() {
+
+    return new IOException("Invalid number format line #"
+        + this.lineCount + ": " + lineToString());
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param is InputStream to use
+   * @throws IOException if an error occurs while reading the header
+   */
+  public MarketMatrixEntryReader(final InputStream is) throws IOException {
+
+    Objects.requireNonNull(is, "is argument cannot be null");
+
+    this.is = is;
+
+    try {
+      readHeader();
+    } catch (IOException | RuntimeException e) {
+      is.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Public constructor. If the filename ends with ".gz" the file will be
+   * uncompressed while reading.
+   * @param file File to use
+   * @throws IOException if an error occurs while reading the header
+   */
+  public MarketMatrixEntryReader(final File file) throws IOException {
+
+    this(MarketMatrixExpressionMatrixReader.createInputstream(
+        Objects.requireNonNull(file, "file argument cannot be null")));
+  }
+
+}
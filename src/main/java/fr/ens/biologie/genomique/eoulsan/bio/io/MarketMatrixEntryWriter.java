@@ -0,0 +1,196 @@
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * This class define a streaming writer for the entries of a file in Market
+ * Matrix format. The header of the file is written at the creation of the
+ * writer, so the dimensions of the matrix and the number of entries must be
+ * known before writing the entries. The entries are formatted at the byte
+ * level and the integer values are written without any allocation.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class MarketMatrixEntryWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Maximal length of the line of an entry. */
+  private static final int MAX_LINE_LENGTH = 64;
+
+  private final OutputStream os;
+  private final boolean integerMatrix;
+  private final int rowCount;
+  private final int columnCount;
+  private final long entryCount;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private final byte[] digits = new byte[20];
+  private int count;
+  private long entriesWritten;
+  private boolean closed;
+
+  /**
+   * Write an entry.
+   * @param rowNumber the row number of the entry, starting at 1
+   * @param columnNumber the column number of the entry, starting at 1
+   * @param value the value of the entry
+   * @throws IOException if an error occurs while writing the entry
+   */
+  public void write(final int rowNumber, final int columnNumber,
+      final double value) throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Writer closed");
+    }
+
+    if (rowNumber < 1
+        || rowNumber > this.rowCount || columnNumber < 1
+        || columnNumber > this.columnCount) {
+      throw new IllegalArgumentException(
+          "Entry out of the bounds of the matrix: "
+              + rowNumber + ", " + columnNumber);
+    }
+
+    if (this.entriesWritten == this.entryCount) {
+      throw new IOException(
+          "More entries than declared in the header: " + this.entryCount);
+    }
+
+    if (this.buffer.length - this.count < MAX_LINE_LENGTH) {
+      flushBuffer();
+    }
+
+    appendLong(rowNumber);
+    this.buffer[this.count++] = ' ';
+    appendLong(columnNumber);
+    this.buffer[this.count++] = ' ';
+
+    if (this.integerMatrix) {
+      appendLong((long) value);
+    } else {
+      appendString(Double.toString(value));
+    }
+
+    this.buffer[this.count++] = '\n';
+    this.entriesWritten++;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    try {
+      flushBuffer();
+    } finally {
+      this.os.close();
+    }
+
+    if (this.entriesWritten != this.entryCount) {
+      throw new IOException("Invalid number of entries written: "
+          + this.entriesWritten + ", " + this.entryCount
+          + " declared in the header");
+    }
+  }
+
+  //
+  // Internal methods
+  //
+
+  private void flushBuffer() throws IOException {
+
+    this.os.write(this.buffer, 0, this.count);
+    this.count = 0;
+  }
+
+  /**
+   * Append a long value to the buffer.
+   * @param value the value to append
+   */
+  private void appendLong(final long value) {
+
+    long v = value;
+
+    if (v < 0) {
+      if (v == Long.MIN_VALUE) {
+        appendString(Long.toString(v));
+        return;
+      }
+      this.buffer[this.count++] = '-';
+      v = -v;
+    }
+
+    int n = 0;
+    do {
+      this.digits[n++] = (byte) ('0' + v % 10);
+      v /= 10;
+    } while (v != 0);
+
+    while (n > 0) {
+      this.buffer[this.count++] = this.digits[--n];
+    }
+  }
+
+  /**
+   * Append an ASCII string to the buffer.
+   * @param s the string to append
+   */
+  private void appendString(final String s) {
+
+    final byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+    System.arraycopy(bytes, 0, this.buffer, this.count, bytes.length);
+    this.count += bytes.length;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param os output stream
+   * @param rowCount number of rows of the matrix
+   * @param columnCount number of columns of the matrix
+   * @param entryCount number of entries to write
+   * @param integerMatrix true if the values are integers
+   */
+  public MarketMatrixEntryWriter(final OutputStream os, final int rowCount,
+      final int columnCount, final long entryCount,
+      final boolean integerMatrix) {
+
+    Objects.requireNonNull(os, "os argument cannot be null");
+
+    if (rowCount < 0 || columnCount < 0 || entryCount < 0) {
+      throw new IllegalArgumentException("Invalid matrix size: "
+          + rowCount + " " + columnCount + " " + entryCount);
+    }
+
+    this.os = os;
+    this.rowCount = rowCount;
+    this.columnCount = columnCount;
+    this.entryCount = entryCount;
+    this.integerMatrix = integerMatrix;
+
+    // Write the header
+    appendString(MarketMatrixExpressionMatrixReader.MAGIC_KEY);
+    appendString("matrix coordinate "
+        + (integerMatrix ? "integer" : "real") + " general\n");
+
+    // Write the size of the matrix
+    appendLong(rowCount);
+    this.buffer[this.count++] = ' ';
+    appendLong(columnCount);
+    this.buffer[this.count++] = ' ';
+    appendLong(entryCount);
+    this.buffer[this.count++] = '\n';
+  }
+
+}
@@ -1,20 +1,14 @@
 package fr.ens.biologie.genomique.eoulsan.bio.io;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
 import java.util.Objects;
 import java.util.zip.GZIPInputStream;
 
-import com.google.common.base.Splitter;
-
-import fr.ens.biologie.genomique.eoulsan.bio.DenseExpressionMatrix;
+import fr.ens.biologie.genomique.eoulsan.bio.CSCExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.ExpressionMatrix;
-import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
-import fr.ens.biologie.genomique.eoulsan.util.GuavaCompatibility;
 
 /**
  * This class define a reader for matrix saved at Market Matrix format.
@@ -49,7 +43,7 @@ public class MarketMatrixExpressionMatrixReader
   @Override
   public ExpressionMatrix read() throws IOException {
 
-    return read(new DenseExpressionMatrix());
+    return read(new CSCExpressionMatrix());
   }
 
   @Override
@@ -58,112 +52,25 @@ public class MarketMatrixExpressionMatrixReader
 
     Objects.requireNonNull(matrix, "matrix argument cannot be null");
 
-    boolean first = true;
-
-    int rowCount = -1;
-    int columnCount = -1;
-    int nonzero = -1;
-
-    String line;
-    int lineCount = 0;
-
-    try (BufferedReader reader = FileUtils.createBufferedReader(is)) {
-
-      while ((line = reader.readLine()) != null) {
-
-        lineCount++;
-        if (first) {
-
-          if (!line.startsWith(MAGIC_KEY)) {
-            throw new IOException("Invalid Market Matrice header: " + line);
-          }
-
-          List<String> fields = GuavaCompatibility.splitToList(
-              Splitter.on(' ').trimResults().omitEmptyStrings(), line);
-
-          if (fields.size() < 2) {
-            throw new IOException("Invalid Market Matrice header: " + line);
-          }
-
-          if (!"matrix".equals(fields.get(1))) {
-            throw new IOException("The reader only handle matrix files");
-          }
-
-          for (String s : fields.subList(2, fields.size() - 1)) {
-
-            switch (s.toLowerCase()) {
-            case "coordinate":
-            case "real":
-            case "integer":
-            case "general":
-              break;
-
-            default:
-              throw new IOException(
-                  "The reader does not support qualifier: " + s);
-            }
-          }
-
-          first = false;
-          continue;
-        }
-
-        // Skip comments
-        if (line.startsWith("%")) {
-          continue;
-        }
-
-        // Throw an error if the line is too long
-        if (line.length() > 1024) {
-          throw new IOException(
-              "Invalide line length (>1024), line#" + lineCount + ": " + line);
-        }
-
-        line = line.trim();
-
-        // Skip empty lines
-        if (line.isEmpty()) {
-          continue;
-        }
-
-        List<String> fields =
-            GuavaCompatibility.splitToList(Splitter.on(' '), line);
-        if (fields.size() != 3) {
-          throw new IOException(
-              "3 values are expected line #" + lineCount + ": " + line);
-        }
-
-        int i;
-        int j;
-        double value;
-
-        try {
-          i = Integer.parseInt(fields.get(0));
-          j = Integer.parseInt(fields.get(1));
-          value = Double.parseDouble(fields.get(2));
-        } catch (NumberFormatException e) {
-          throw new IOException(
-              "Invalid number format line #" + lineCount + ": " + line);
-        }
-
-        if (nonzero == -1) {
-          rowCount = i;
-          columnCount = j;
-          nonzero = (int) value;
-
-          // Fill row names
-          for (int k = 1; k <= rowCount; k++) {
-            matrix.addRow(getRowName(k));
-          }
-
-          // Fill column names
-          for (int k = 1; k <= columnCount; k++) {
-            matrix.addColumn(getColumnName(k));
-          }
-
-        } else {
-          matrix.setValue(getRowName(i), getColumnName(j), value);
-        }
+    try (MarketMatrixEntryReader reader = new MarketMatrixEntryReader(is)) {
+
+      // Fill row names
+      final String[] rowNames = new String[reader.getRowCount()];
+      for (int k = 1; k <= rowNames.length; k++) {
+        rowNames[k - 1] = getRowName(k);
+        matrix.addRow(rowNames[k - 1]);
+      }
+
+      // Fill column names
+      final String[] columnNames = new String[reader.getColumnCount()];
+      for (int k = 1; k <= columnNames.length; k++) {
+        columnNames[k - 1] = getColumnName(k);
+        matrix.addColumn(columnNames[k - 1]);
+      }
+
+      while (reader.next()) {
+        matrix.setValue(rowNames[reader.getRowNumber() - 1],
+            columnNames[reader.getColumnNumber() - 1], reader.getValue());
       }
     }
 
@@ -201,7 +108,7 @@ public class MarketMatrixExpressionMatrixReader
    * @return a InputStream object
    * @throws IOException if an error occurs when opening the file
    */
-  private static InputStream createInputstream(final File file)
+  static InputStream createInputstream(final File file)
       throws IOException {
 
     if (file.getName().endsWith(".gz")) {
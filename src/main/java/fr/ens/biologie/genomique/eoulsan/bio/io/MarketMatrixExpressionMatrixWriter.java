@@ -4,8 +4,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,6 +15,7 @@ import java.util.zip.GZIPOutputStream;
 
 import com.google.common.math.DoubleMath;
 
+import fr.ens.biologie.genomique.eoulsan.bio.CSCExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.ExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.Matrix;
 
@@ -49,33 +48,121 @@ public class MarketMatrixExpressionMatrixWriter
     Set<String> rowNames = rowNamesToWrite instanceof Set
         ? (Set<String>) rowNamesToWrite : new HashSet<>(rowNamesToWrite);
 
-    int entryCount = entryCount(matrix, rowNames);
-    boolean intMatrix = entryCount < -1;
-    entryCount = Math.abs(entryCount);
+    if (matrix instanceof CSCExpressionMatrix) {
+      writeCSCMatrix((CSCExpressionMatrix) matrix, rowNames);
+    } else {
+      writeMatrix(matrix, rowNames);
+    }
+  }
+
+  /**
+   * Create a writer for the entries of the matrix. This allow to write a
+   * matrix in streaming, without storing it in memory.
+   * @param rowCount number of rows of the matrix
+   * @param columnCount number of columns of the matrix
+   * @param entryCount number of entries to write
+   * @param integerMatrix true if the values are integers
+   * @return a new MarketMatrixEntryWriter object
+   */
+  public MarketMatrixEntryWriter createEntryWriter(final int rowCount,
+      final int columnCount, final long entryCount,
+      final boolean integerMatrix) {
+
+    return new MarketMatrixEntryWriter(this.os, rowCount, columnCount,
+        entryCount, integerMatrix);
+  }
+
+  /**
+   * Write a matrix using the entries of the matrix.
+   * @param matrix the matrix
+   * @param rowNames the row names to write
+   * @throws IOException if an error occurs while writing the matrix
+   */
+  private void writeMatrix(final ExpressionMatrix matrix,
+      final Set<String> rowNames) throws IOException {
 
-    try (Writer writer = new OutputStreamWriter(this.os)) {
+    // Count the entries to write
+    long entryCount = 0;
+    boolean intMatrix = true;
+
+    for (Matrix.Entry<Double> e : matrix.nonZeroValues()) {
 
-      // Write header
-      writer.write(MarketMatrixExpressionMatrixReader.MAGIC_KEY);
-      writer.write("matrix coordinate "
-          + (intMatrix ? "integer" : "real") + " general\n");
+      if (rowNames.contains(e.getRowName())) {
+        if (intMatrix && !DoubleMath.isMathematicalInteger(e.getValue())) {
+          intMatrix = false;
+        }
+        entryCount++;
+      }
+    }
 
-      // Write the size of the matrix
-      writer.write(""
-          + matrix.getRowCount() + ' ' + matrix.getColumnCount() + ' '
-          + entryCount + '\n');
+    Map<String, Integer> rowPositions = keyPositions(matrix.getRowNames());
+    Map<String, Integer> columnPositions =
+        keyPositions(matrix.getColumnNames());
 
-      Map<String, Integer> rowPositions = keyPositions(matrix.getRowNames());
-      Map<String, Integer> columnPositions =
-          keyPositions(matrix.getColumnNames());
+    try (MarketMatrixEntryWriter writer = createEntryWriter(
+        matrix.getRowCount(), matrix.getColumnCount(), entryCount, intMatrix)) {
 
       for (Matrix.Entry<Double> e : matrix.nonZeroValues()) {
         if (rowNames.contains(e.getRowName())) {
-          String value =
-              intMatrix ? "" + e.getValue().intValue() : "" + e.getValue();
-          writer.write(""
-              + rowPositions.get(e.getRowName()) + ' '
-              + columnPositions.get(e.getColumnName()) + ' ' + value + '\n');
+          writer.write(rowPositions.get(e.getRowName()),
+              columnPositions.get(e.getColumnName()), e.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Write a CSC matrix. The values are directly read in the columns of the
+   * matrix, without any boxing or lookup of the names of the entries.
+   * @param matrix the matrix
+   * @param rowNames the row names to write
+   * @throws IOException if an error occurs while writing the matrix
+   */
+  private void writeCSCMatrix(final CSCExpressionMatrix matrix,
+      final Set<String> rowNames) throws IOException {
+
+    // Get the rows to write
+    final List<String> matrixRowNames = matrix.getRowNames();
+    final boolean[] rowsToWrite = new boolean[matrixRowNames.size()];
+    for (int i = 0; i < rowsToWrite.length; i++) {
+      rowsToWrite[i] = rowNames.contains(matrixRowNames.get(i));
+    }
+
+    final int columnCount = matrix.getColumnCount();
+
+    // Count the entries to write
+    long entryCount = 0;
+    boolean intMatrix = true;
+
+    for (int col = 0; col < columnCount; col++) {
+
+      final int n = matrix.getColumnNonZeroCount(col);
+      for (int i = 0; i < n; i++) {
+
+        if (rowsToWrite[matrix.getColumnNonZeroRowIndex(col, i)]) {
+
+          if (intMatrix && !DoubleMath
+              .isMathematicalInteger(matrix.getColumnNonZeroValue(col, i))) {
+            intMatrix = false;
+          }
+          entryCount++;
+        }
+      }
+    }
+
+    try (MarketMatrixEntryWriter writer = createEntryWriter(
+        matrix.getRowCount(), columnCount, entryCount, intMatrix)) {
+
+      for (int col = 0; col < columnCount; col++) {
+
+        final int n = matrix.getColumnNonZeroCount(col);
+        for (int i = 0; i < n; i++) {
+
+          final int row = matrix.getColumnNonZeroRowIndex(col, i);
+          if (rowsToWrite[row]) {
+            writer.write(row + 1, col + 1,
+                matrix.getColumnNonZeroValue(col, i));
+          }
         }
       }
     }
@@ -99,31 +186,6 @@ public class MarketMatrixExpressionMatrixWriter
     return result;
   }
 
-  /**
-   * Count the number of entries in the matrix.
-   * @param matrix the matrix
-   * @param rowNames the row names to write
-   * @return the number of the entries in the matrix. If the result is negative
-   *         the matrix is an integer matrix
-   */
-  private static int entryCount(ExpressionMatrix matrix, Set<String> rowNames) {
-
-    int entryCount = 0;
-    boolean intMatrix = true;
-
-    for (Matrix.Entry<Double> e : matrix.nonZeroValues()) {
-
-      if (rowNames.contains(e.getRowName())) {
-        if (!intMatrix && DoubleMath.isMathematicalInteger(e.getValue())) {
-          intMatrix = false;
-        }
-        entryCount++;
-      }
-    }
-
-    return entryCount * (intMatrix ? -1 : 1);
-  }
-
   @Override
   public void close() throws IOException {
 
@@ -11,7 +11,7 @@ import java.util.Objects;
 
 import com.google.common.base.Splitter;
 
-import fr.ens.biologie.genomique.eoulsan.bio.DenseExpressionMatrix;
+import fr.ens.biologie.genomique.eoulsan.bio.CSCExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.ExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 import fr.ens.biologie.genomique.eoulsan.util.GuavaCompatibility;
@@ -31,7 +31,24 @@ public class SparseExpressionMatrixReader implements ExpressionMatrixReader {
 
     // TODO Create a Factory for ExpressionMatrix with newMatrix() for the
     // default one
-    return read(new DenseExpressionMatrix());
+    return read(new CSCExpressionMatrix());
+  }
+
+  /**
+   * This interface define a handler for the entries of a matrix read in
+   * streaming.
+   */
+  public interface EntryHandler {
+
+    /**
+     * Handle an entry of the matrix.
+     * @param rowName the row name of the entry
+     * @param columnName the column name of the entry
+     * @param value the value of the entry
+     * @throws IOException if an error occurs while handling the entry
+     */
+    void handle(String rowName, String columnName, int value)
+        throws IOException;
   }
 
   @Override
@@ -39,6 +56,21 @@ public class SparseExpressionMatrixReader implements ExpressionMatrixReader {
 
     Objects.requireNonNull(matrix, "matrix argument cannot be null");
 
+    read(matrix::setValue);
+
+    return matrix;
+  }
+
+  /**
+   * Read the entries of the matrix without storing them. The entries are
+   * handled in the order of the file.
+   * @param handler the handler of the entries
+   * @throws IOException if an error occurs while reading the matrix
+   */
+  public void read(final EntryHandler handler) throws IOException {
+
+    Objects.requireNonNull(handler, "handler argument cannot be null");
+
     String line;
     boolean first = true;
     Splitter splitter = Splitter.on('\t');
@@ -71,17 +103,17 @@ public class SparseExpressionMatrixReader implements ExpressionMatrixReader {
               + ", expected 3 fields: " + line);
         }
 
+        final int count;
         try {
-          matrix.setValue(fields.get(0), fields.get(1),
-              Integer.parseInt(fields.get(2)));
+          count = Integer.parseInt(fields.get(2));
         } catch (NumberFormatException e) {
           throw new IOException(
               "Invalid count at line " + lineCount + ": " + line);
         }
+
+        handler.handle(fields.get(0), fields.get(1), count);
       }
     }
-
-    return matrix;
   }
 
   @Override
@@ -24,6 +24,14 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.io.hadoop;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
@@ -34,10 +42,15 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqIndex;
 
 /**
  * This class define an InputFormat for FASTQ files for the Hadoop MapReduce
- * framework.
+ * framework. The block compressed FASTQ files with an index are split on the
+ * boundaries of their blocks.
+ * @see FastqIndex
  * @since 1.0
  * @author Laurent Jourdren
  */
@@ -64,4 +77,95 @@ public class FastqInputFormat extends FileInputFormat<Text, Text> {
     return codec instanceof SplittableCompressionCodec;
   }
 
+  @Override
+  public List<InputSplit> getSplits(final JobContext job) throws IOException {
+
+    final List<InputSplit> result = new ArrayList<>();
+
+    for (InputSplit split : super.getSplits(job)) {
+
+      final FileSplit fileSplit = (FileSplit) split;
+      final FastqIndex index = fileSplit.getStart() == 0
+          ? loadIndex(fileSplit.getPath(), job.getConfiguration()) : null;
+
+      if (index == null || index.getFileLength() != fileSplit.getLength()) {
+        result.add(split);
+      } else {
+        result.addAll(createIndexedSplits(job, fileSplit.getPath(), index));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create the splits of a block compressed FASTQ file.
+   * @param job the job context
+   * @param file the file to split
+   * @param index the index of the file
+   * @return a list with the splits
+   * @throws IOException if an error occurs while getting the locations of the
+   *           blocks of the file
+   */
+  private List<InputSplit> createIndexedSplits(final JobContext job,
+      final Path file, final FastqIndex index) throws IOException {
+
+    final FileSystem fs = file.getFileSystem(job.getConfiguration());
+    final FileStatus status = fs.getFileStatus(file);
+    final BlockLocation[] locations =
+        fs.getFileBlockLocations(status, 0, status.getLen());
+    final long splitSize = computeSplitSize(status.getBlockSize(),
+        Math.max(getFormatMinSplitSize(), getMinSplitSize(job)),
+        getMaxSplitSize(job));
+
+    final List<InputSplit> result = new ArrayList<>();
+    final int blockCount = index.getBlockCount();
+    int first = 0;
+
+    while (first < blockCount) {
+
+      // A split contains at least one block
+      int end = first + 1;
+      while (end < blockCount
+          && index.getBlockOffset(end + 1)
+              - index.getBlockOffset(first) <= splitSize) {
+        end++;
+      }
+
+      // Ignore the ranges without entries
+      if (index.getBlockFirstRead(end) > index.getBlockFirstRead(first)) {
+
+        final long start = index.getBlockOffset(first);
+        result.add(new FileSplit(file, start,
+            index.getBlockOffset(end) - start,
+            locations[getBlockIndex(locations, start)].getHosts()));
+      }
+
+      first = end;
+    }
+
+    return result;
+  }
+
+  /**
+   * Load the index of a FASTQ file if exists.
+   * @param file the FASTQ file
+   * @param conf the Hadoop configuration
+   * @return the index of the file or null if the file has no index
+   * @throws IOException if an error occurs while reading the index
+   */
+  static FastqIndex loadIndex(final Path file, final Configuration conf)
+      throws IOException {
+
+    final Path indexPath =
+        new Path(file.getParent(), file.getName() + FastqIndex.EXTENSION);
+    final FileSystem fs = indexPath.getFileSystem(conf);
+
+    if (!fs.exists(indexPath)) {
+      return null;
+    }
+
+    return FastqIndex.load(fs.open(indexPath));
+  }
+
 }
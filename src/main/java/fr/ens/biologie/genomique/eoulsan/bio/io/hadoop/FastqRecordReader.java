@@ -28,14 +28,24 @@ import static fr.ens.biologie.genomique.eoulsan.bio.io.hadoop.Counters.ENTRIES_W
 
 import java.io.IOException;
 
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqIndex;
 
 /**
  * This class define a RecordReader for FASTQ files for the Hadoop MapReduce
- * framework.
+ * framework. The splits of block compressed FASTQ files with an index only
+ * decompress the blocks of the split.
  * @since 1.0
  * @author Laurent Jourdren
  */
@@ -51,10 +61,19 @@ public class FastqRecordReader extends RecordReader<Text, Text> {
 
   private FastqLineRecordReader lrr;
 
+  // Reader for block compressed files
+  private FastqByteReader reader;
+  private long splitReadCount;
+  private long readCount;
+
   @Override
   public synchronized void close() throws IOException {
 
-    this.lrr.close();
+    if (this.reader != null) {
+      this.reader.close();
+    } else {
+      this.lrr.close();
+    }
   }
 
   @Override
@@ -72,6 +91,11 @@ public class FastqRecordReader extends RecordReader<Text, Text> {
   @Override
   public float getProgress() throws IOException, InterruptedException {
 
+    if (this.reader != null) {
+      return this.splitReadCount == 0
+          ? 0.0f : (float) this.readCount / this.splitReadCount;
+    }
+
     return this.lrr.getProgress();
   }
 
@@ -80,14 +104,47 @@ public class FastqRecordReader extends RecordReader<Text, Text> {
       final TaskAttemptContext taskAttemptContext)
       throws IOException, InterruptedException {
 
-    this.lrr = new FastqLineRecordReader();
-    this.lrr.initialize(inputSplit, taskAttemptContext);
+    final FileSplit split = (FileSplit) inputSplit;
+    final Path file = split.getPath();
+    final FileSystem fs =
+        file.getFileSystem(taskAttemptContext.getConfiguration());
+    final FastqIndex index = FastqInputFormat.loadIndex(file,
+        taskAttemptContext.getConfiguration());
+
+    // Like FastqInputFormat.getSplits(), ignore the stale indexes
+    if (index == null
+        || index.getFileLength() != fs.getFileStatus(file).getLen()) {
+      this.lrr = new FastqLineRecordReader();
+      this.lrr.initialize(inputSplit, taskAttemptContext);
+      return;
+    }
+
+    final int firstBlock = index.getBlockAtOffset(split.getStart());
+    final int endBlock =
+        index.getBlockAtOffset(split.getStart() + split.getLength());
+
+    if (firstBlock == -1 || endBlock == -1) {
+      throw new IOException(
+          "The split does not match the blocks of the FASTQ index: " + split);
+    }
+
+    final FSDataInputStream in = fs.open(file);
+    in.seek(split.getStart());
+
+    this.reader =
+        new FastqByteReader(index.openBlocks(in, firstBlock, endBlock), true);
+    this.splitReadCount = index.getBlockFirstRead(endBlock)
+        - index.getBlockFirstRead(firstBlock);
   }
 
   @Override
   public synchronized boolean nextKeyValue()
       throws IOException, InterruptedException {
 
+    if (this.reader != null) {
+      return nextIndexedKeyValue();
+    }
+
     int count = 0;
     boolean found = false;
 
@@ -137,6 +194,39 @@ public class FastqRecordReader extends RecordReader<Text, Text> {
     return true;
   }
 
+  /**
+   * Read the next entry of a block compressed FASTQ file.
+   * @return true if an entry has been read
+   * @throws IOException if an error occurs while reading the entry
+   */
+  private boolean nextIndexedKeyValue() throws IOException {
+
+    if (!this.reader.hasNext()) {
+
+      try {
+        this.reader.throwException();
+      } catch (BadBioEntryException e) {
+        throw new IOException(e);
+      }
+
+      return false;
+    }
+
+    final ReadSequence read = this.reader.next();
+
+    // Set key
+    this.key = new Text(memberId(read.getName()));
+
+    // Set value
+    this.value = new Text(
+        read.getName() + '\t' + read.getSequence() + '\t' + read.getQuality());
+
+    this.readCount++;
+    this.context.getCounter(COUNTERS_GROUP, ENTRIES_WRITTEN).increment(1);
+
+    return true;
+  }
+
   /**
    * Get the member id of a sequence Id
    * @param s sequence id
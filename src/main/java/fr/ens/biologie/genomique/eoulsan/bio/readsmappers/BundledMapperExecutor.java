@@ -77,6 +77,16 @@ public class BundledMapperExecutor implements MapperExecutor {
       }
     }
 
+    @Override
+    public void destroy() throws IOException {
+
+      try {
+        this.process.destroyForcibly().waitFor();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
     //
     // Constructor
     //
@@ -119,6 +119,15 @@ public class DockerMapperExecutor implements MapperExecutor {
       return result;
     }
 
+    @Override
+    public void destroy() {
+
+      // The container process cannot be killed, the container will end when
+      // the mapper will fail to write its output
+      getLogger().warning("Unable to destroy the Docker container of the "
+          + "mapper, it will end after its standard output is closed");
+    }
+
     //
     // Constructor
     //
@@ -56,6 +56,12 @@ interface MapperExecutor {
      * @throws IOException if an error occurs while waiting the process
      */
     int waitFor() throws IOException;
+
+    /**
+     * Destroy the process and wait its end.
+     * @throws IOException if an error occurs while destroying the process
+     */
+    void destroy() throws IOException;
   }
 
   /**
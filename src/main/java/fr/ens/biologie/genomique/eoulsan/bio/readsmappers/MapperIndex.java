@@ -132,7 +132,7 @@ public class MapperIndex {
     synchronized (this) {
       if (!unzipped) {
         unzipArchiveIndexFile(getInputStream(), getIndexDirectory());
-        this.unzipped = false;
+        this.unzipped = true;
       }
     }
 
@@ -182,7 +182,7 @@ public class MapperIndex {
     synchronized (this) {
       if (!unzipped) {
         unzipArchiveIndexFile(getInputStream(), getIndexDirectory());
-        this.unzipped = false;
+        this.unzipped = true;
       }
     }
 
@@ -252,4 +252,20 @@ public class MapperIndex {
     this.in = archiveIndexFileInputStream;
     this.indexDirectory = indexOutputDirectory;
   }
+
+  /**
+   * Constructor for an already unpacked index.
+   * @param mapperInstance mapper instance object
+   * @param indexDirectory unpacked index directory
+   */
+  MapperIndex(final MapperInstance mapperInstance, final File indexDirectory) {
+
+    requireNonNull(mapperInstance, "mapperInstance cannot be null");
+    requireNonNull(indexDirectory, "indexDirectory cannot be null");
+
+    this.mapperInstance = mapperInstance;
+    this.in = null;
+    this.indexDirectory = indexDirectory;
+    this.unzipped = true;
+  }
 }
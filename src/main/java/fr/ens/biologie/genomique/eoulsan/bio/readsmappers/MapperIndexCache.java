@@ -0,0 +1,590 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.Settings;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a node-local cache of unpacked mapper indexes. An index is
+ * unpacked only once in the cache directory and shared by all the tasks of the
+ * node, even if they run in different JVMs. The key of an index is computed
+ * from the central directory of its archive (entry names, sizes and CRC32), so
+ * two copies of the same archive share the same cached index.
+ * <p>
+ * Each JVM that uses an index holds a shared lock on its ".use" file. The least
+ * recently used indexes that are not locked are removed when the size of the
+ * cache exceeds its maximal size.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class MapperIndexCache {
+
+  private static final String LOCK_EXTENSION = ".lock";
+  static final String USE_EXTENSION = ".use";
+  private static final String TMP_EXTENSION = ".tmp";
+  private static final String CACHE_LOCK_FILENAME = "cache" + LOCK_EXTENSION;
+
+  private static final Map<File, MapperIndexCache> instances = new HashMap<>();
+
+  private final File directory;
+  private final long maxSize;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, ReentrantLock> keyLocks = new HashMap<>();
+  private final Object evictionLock = new Object();
+
+  /**
+   * This class define an index used by the current JVM.
+   */
+  private static final class Entry {
+
+    private final RandomAccessFile useFile;
+    private final FileLock useLock;
+    private int references;
+
+    private Entry(final RandomAccessFile useFile, final FileLock useLock) {
+
+      this.useFile = useFile;
+      this.useLock = useLock;
+    }
+  }
+
+  /**
+   * This class define a reference to a cached index. The index cannot be
+   * removed from the cache until the reference is closed.
+   */
+  public final class CachedIndex implements Closeable {
+
+    private final String key;
+    private final File indexDirectory;
+    private boolean closed;
+
+    /**
+     * Get the directory of the unpacked index.
+     * @return the directory of the unpacked index
+     */
+    public File getIndexDirectory() {
+      return this.indexDirectory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+      if (this.closed) {
+        return;
+      }
+
+      this.closed = true;
+      release(this.key);
+    }
+
+    private CachedIndex(final String key) {
+
+      this.key = key;
+      this.indexDirectory = new File(MapperIndexCache.this.directory, key);
+    }
+  }
+
+  //
+  // Cache methods
+  //
+
+  /**
+   * Get an unpacked index from the cache. The archive is unpacked if the
+   * index is not already in the cache.
+   * @param mapperName name of the mapper
+   * @param archiveFile the index archive file
+   * @return a reference to the cached index that must be closed once the
+   *         index is no more used
+   * @throws IOException if an error occurs while unpacking the index
+   */
+  public CachedIndex acquire(final String mapperName, final File archiveFile)
+      throws IOException {
+
+    requireNonNull(mapperName, "mapperName argument cannot be null");
+    requireNonNull(archiveFile, "archiveFile argument cannot be null");
+
+    // Read the central directory of the archive
+    final MessageDigest md5Digest;
+    try {
+      md5Digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+
+    long unpackedSize = 0;
+    try (ZipFile zf = new ZipFile(archiveFile)) {
+
+      final Enumeration<? extends ZipEntry> zipEntries = zf.entries();
+      while (zipEntries.hasMoreElements()) {
+
+        final ZipEntry e = zipEntries.nextElement();
+        md5Digest.update(e.getName().getBytes(Globals.DEFAULT_CHARSET));
+        md5Digest.update((e.getSize() + "\t" + e.getCrc() + "\n")
+            .getBytes(Globals.DEFAULT_CHARSET));
+        unpackedSize += Math.max(0, e.getSize());
+      }
+    }
+
+    final String key = mapperName.toLowerCase().trim()
+        + "-" + StringUtils.md5DigestToString(md5Digest);
+
+    final ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+
+    try {
+
+      // The index is already used by the current JVM
+      synchronized (this) {
+        final Entry entry = this.entries.get(key);
+        if (entry != null) {
+          entry.references++;
+          touch(key);
+          return new CachedIndex(key);
+        }
+      }
+
+      // Lock the index for the other JVMs of the node
+      try (RandomAccessFile lockFile =
+          new RandomAccessFile(new File(this.directory, key + LOCK_EXTENSION),
+              "rw"); FileLock lock = lockFile.getChannel().lock()) {
+
+        final File indexDir = new File(this.directory, key);
+
+        if (!indexDir.isDirectory()) {
+          evict(unpackedSize);
+          unpack(archiveFile, indexDir);
+        } else {
+          getLogger().info("Use cached mapper index: " + indexDir);
+        }
+
+        // A shared lock on the use file prevents the removal of the index
+        final RandomAccessFile useFile = new RandomAccessFile(
+            new File(this.directory, key + USE_EXTENSION), "rw");
+        final FileLock useLock;
+        try {
+          useLock = useFile.getChannel().lock(0, Long.MAX_VALUE, true);
+        } catch (IOException e) {
+          useFile.close();
+          throw e;
+        }
+
+        final Entry entry = new Entry(useFile, useLock);
+        entry.references = 1;
+
+        synchronized (this) {
+          this.entries.put(key, entry);
+          touch(key);
+        }
+      }
+
+    } finally {
+      keyLock.unlock();
+    }
+
+    return new CachedIndex(key);
+  }
+
+  /**
+   * Release a reference to a cached index.
+   * @param key key of the index
+   * @throws IOException if an error occurs while releasing the lock
+   */
+  private synchronized void release(final String key) throws IOException {
+
+    final Entry entry = this.entries.get(key);
+
+    if (entry == null) {
+      return;
+    }
+
+    touch(key);
+
+    if (--entry.references == 0) {
+
+      this.entries.remove(key);
+      try {
+        entry.useLock.release();
+      } finally {
+        entry.useFile.close();
+      }
+    }
+  }
+
+  /**
+   * Close a reference to a cached index, logging the errors instead of
+   * throwing them.
+   * @param cachedIndex the reference to close, can be null
+   */
+  public static void closeQuietly(final CachedIndex cachedIndex) {
+
+    if (cachedIndex == null) {
+      return;
+    }
+
+    try {
+      cachedIndex.close();
+    } catch (IOException e) {
+      getLogger().warning(
+          "Unable to release the cached mapper index: " + e.getMessage());
+    }
+  }
+
+  //
+  // Internal methods
+  //
+
+  /**
+   * Unpack an archive.
+   * @param archiveFile the archive
+   * @param indexDir the output directory
+   * @throws IOException if an error occurs while unpacking the archive
+   */
+  private void unpack(final File archiveFile, final File indexDir)
+      throws IOException {
+
+    final File tmpDir =
+        new File(this.directory, indexDir.getName() + TMP_EXTENSION);
+
+    // Remove the remains of an interrupted unpacking
+    if (tmpDir.exists() && !FileUtils.recursiveDelete(tmpDir)) {
+      throw new IOException("Unable to remove directory: " + tmpDir);
+    }
+
+    if (!tmpDir.mkdir()) {
+      throw new IOException("Unable to create directory: " + tmpDir);
+    }
+
+    getLogger().info("Unpack " + archiveFile + " in " + indexDir);
+
+    try (InputStream in = new FileInputStream(archiveFile)) {
+      FileUtils.unzip(in, tmpDir);
+    }
+
+    // The index becomes visible once complete
+    if (!tmpDir.renameTo(indexDir)) {
+      throw new IOException("Unable to rename " + tmpDir + " to " + indexDir);
+    }
+  }
+
+  /**
+   * Remove the least recently used indexes that are not used to make room for
+   * a new index.
+   * @param requiredSize the size of the new index
+   * @throws IOException if an error occurs while locking the cache
+   */
+  private void evict(final long requiredSize) throws IOException {
+
+    if (this.maxSize <= 0) {
+      return;
+    }
+
+    // Only one thread of one JVM removes indexes at the same time
+    synchronized (this.evictionLock) {
+      try (RandomAccessFile lockFile = new RandomAccessFile(
+          new File(this.directory, CACHE_LOCK_FILENAME), "rw");
+          FileLock lock = lockFile.getChannel().lock()) {
+        evictLocked(requiredSize);
+      }
+    }
+  }
+
+  /**
+   * Remove the least recently used indexes once the cache is locked.
+   * @param requiredSize the size of the new index
+   * @throws IOException if an error occurs while listing the cache
+   */
+  private void evictLocked(final long requiredSize) throws IOException {
+
+    final File[] dirs = this.directory.listFiles(File::isDirectory);
+    if (dirs == null) {
+      throw new IOException(
+          "Unable to list the mapper index cache directory: "
+              + this.directory);
+    }
+
+    final List<File> indexDirs = new ArrayList<>();
+    final Map<File, Long> sizes = new HashMap<>();
+    long size = 0;
+
+    for (File dir : dirs) {
+      if (!dir.getName().endsWith(TMP_EXTENSION)) {
+        final long dirSize = directorySize(dir);
+        indexDirs.add(dir);
+        sizes.put(dir, dirSize);
+        size += dirSize;
+      }
+    }
+
+    // Least recently used first
+    Collections.sort(indexDirs, Comparator.comparingLong(
+        dir -> new File(this.directory, dir.getName() + USE_EXTENSION)
+            .lastModified()));
+
+    for (File dir : indexDirs) {
+
+      if (size + requiredSize <= this.maxSize) {
+        break;
+      }
+
+      if (remove(dir.getName())) {
+        size -= sizes.get(dir);
+      }
+    }
+
+    if (size + requiredSize > this.maxSize) {
+      getLogger().warning("The mapper index cache will exceed its maximal "
+          + "size as all its indexes are in use: " + this.directory);
+    }
+  }
+
+  /**
+   * Remove an index if it is not used.
+   * @param key key of the index
+   * @return true if the index has been removed
+   */
+  private boolean remove(final String key) {
+
+    // The index is being acquired by another thread of the JVM
+    final ReentrantLock keyLock = getKeyLock(key);
+    if (!keyLock.tryLock()) {
+      return false;
+    }
+
+    try {
+
+      synchronized (this) {
+        if (this.entries.containsKey(key)) {
+          return false;
+        }
+      }
+
+      return removeUnused(key);
+
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  /**
+   * Remove an index if it is not used by another JVM.
+   * @param key key of the index
+   * @return true if the index has been removed
+   */
+  private boolean removeUnused(final String key) {
+
+    final File indexDir = new File(this.directory, key);
+
+    try (
+        RandomAccessFile lockFile = new RandomAccessFile(
+            new File(this.directory, key + LOCK_EXTENSION), "rw");
+        RandomAccessFile useFile = new RandomAccessFile(
+            new File(this.directory, key + USE_EXTENSION), "rw")) {
+
+      final FileChannel lockChannel = lockFile.getChannel();
+      final FileChannel useChannel = useFile.getChannel();
+
+      // The index is being unpacked or used
+      try (FileLock lock = lockChannel.tryLock()) {
+
+        if (lock == null) {
+          return false;
+        }
+
+        try (FileLock useLock = useChannel.tryLock()) {
+
+          if (useLock == null) {
+            return false;
+          }
+
+          getLogger().info("Remove unused mapper index: " + indexDir);
+
+          // Rename before removing to not leave an incomplete index
+          final File tmpDir = new File(this.directory, key + TMP_EXTENSION);
+          return indexDir.renameTo(tmpDir)
+              && FileUtils.recursiveDelete(tmpDir);
+        }
+      }
+
+    } catch (OverlappingFileLockException e) {
+      // The index is locked by the current JVM
+      return false;
+    } catch (IOException e) {
+      getLogger().warning(
+          "Unable to remove mapper index " + indexDir + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Get the lock of an index for the threads of the current JVM.
+   * @param key key of the index
+   * @return the lock of the index
+   */
+  private synchronized ReentrantLock getKeyLock(final String key) {
+
+    return this.keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+  }
+
+  /**
+   * Update the time of the last usage of an index.
+   * @param key key of the index
+   */
+  private void touch(final String key) {
+
+    new File(this.directory, key + USE_EXTENSION)
+        .setLastModified(System.currentTimeMillis());
+  }
+
+  /**
+   * Get the size of a directory.
+   * @param dir the directory
+   * @return the size of the files of the directory in bytes
+   * @throws IOException if an error occurs while listing the directory
+   */
+  private static long directorySize(final File dir) throws IOException {
+
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      return paths.map(Path::toFile).filter(File::isFile)
+          .mapToLong(File::length).sum();
+    }
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Get an unpacked index from the cache defined in the settings.
+   * @param settings the settings
+   * @param mapperName name of the mapper
+   * @param archiveFile the index archive file
+   * @return a reference to the cached index that must be closed once the
+   *         index is no more used or null if no cache is defined or if the
+   *         archive is not a local file
+   * @throws IOException if an error occurs while unpacking the index
+   */
+  public static CachedIndex acquire(final Settings settings,
+      final String mapperName, final DataFile archiveFile) throws IOException {
+
+    requireNonNull(settings, "settings argument cannot be null");
+    requireNonNull(archiveFile, "archiveFile argument cannot be null");
+
+    final String cachePath = settings.getMapperIndexCachePath();
+    final File file = archiveFile.toFile();
+
+    if (cachePath == null || cachePath.trim().isEmpty() || file == null) {
+      return null;
+    }
+
+    return getInstance(new File(cachePath.trim()),
+        settings.getMapperIndexCacheMaxSize()).acquire(mapperName, file);
+  }
+
+  /**
+   * Get the cache instance for a directory. The same instance is shared by
+   * all the tasks of the JVM.
+   * @param directory the cache directory
+   * @param maxSize maximal size of the cache in MB, 0 for no limit
+   * @return a MapperIndexCache object
+   * @throws IOException if the cache directory does not exist and cannot be
+   *           created
+   */
+  public static MapperIndexCache getInstance(final File directory,
+      final int maxSize) throws IOException {
+
+    requireNonNull(directory, "directory argument cannot be null");
+
+    final File dir = directory.getAbsoluteFile();
+
+    synchronized (instances) {
+
+      MapperIndexCache result = instances.get(dir);
+
+      if (result == null) {
+        result = new MapperIndexCache(dir, maxSize * 1024L * 1024L);
+        instances.put(dir, result);
+      }
+
+      return result;
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   * @param directory the cache directory
+   * @param maxSize maximal size of the cache in bytes, 0 for no limit
+   * @throws IOException if the cache directory cannot be created
+   */
+  private MapperIndexCache(final File directory, final long maxSize)
+      throws IOException {
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new FileNotFoundException(
+          "Unable to create the mapper index cache directory: " + directory);
+    }
+
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+}
@@ -503,6 +503,24 @@ public class MapperInstance {
     return new MapperIndex(this, in, indexOutputDir);
   }
 
+  /**
+   * Create an instance of MapperIndex for an index of the node-local mapper
+   * index cache.
+   * @param cachedIndex the cached index
+   * @return a new instance of MapperIndexArchive
+   * @throws IOException if an error occurs while installing the mapper
+   */
+  public MapperIndex newMapperIndex(
+      final MapperIndexCache.CachedIndex cachedIndex) throws IOException {
+
+    requireNonNull(cachedIndex, "cachedIndex argument cannot be null");
+
+    // Install the mapper
+    installMapper();
+
+    return new MapperIndex(this, cachedIndex.getIndexDirectory());
+  }
+
   //
   // Constructor
   //
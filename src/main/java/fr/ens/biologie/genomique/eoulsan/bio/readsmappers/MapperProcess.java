@@ -32,17 +32,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
-import java.io.Writer;
 import java.nio.channels.Channels;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperExecutor.Result;
@@ -253,22 +250,73 @@ public abstract class MapperProcess {
   }
 
   /**
-   * This class allow to do synchronous writes in a named piped.
+   * This class define a writer that encodes the FASTQ data in a byte buffer.
+   * The FASTQ data only contains ASCII characters, so no charset encoder is
+   * required.
    */
-  static class FastqWriterNoThread implements FastqWriter {
+  private abstract static class AbstractFastqWriter implements FastqWriter {
+
+    /** Size of the buffers. */
+    static final int BUFFER_SIZE = 1024 * 1024;
 
-    final Writer writer;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int length;
 
     @Override
     public void write(final String s) throws IOException {
 
-      this.writer.write(s);
+      final int len = s.length();
+      int i = 0;
+
+      while (i < len) {
+
+        if (this.length == this.buffer.length) {
+          writeBuffer();
+        }
+
+        final int n = Math.min(len - i, this.buffer.length - this.length);
+        final byte[] buffer = this.buffer;
+        final int offset = this.length;
+
+        for (int j = 0; j < n; j++) {
+          buffer[offset + j] = (byte) s.charAt(i + j);
+        }
+
+        this.length += n;
+        i += n;
+      }
+    }
+
+    /**
+     * Write the content of the buffer. After the call of this method, the
+     * buffer must be empty.
+     * @throws IOException if an error occurs while writing the buffer
+     */
+    abstract void writeBuffer() throws IOException;
+  }
+
+  /**
+   * This class allow to do synchronous writes in a named piped.
+   */
+  static class FastqWriterNoThread extends AbstractFastqWriter {
+
+    final OutputStream os;
+
+    @Override
+    void writeBuffer() throws IOException {
+
+      this.os.write(this.buffer, 0, this.length);
+      this.length = 0;
     }
 
     @Override
     public void close() throws IOException {
 
-      this.writer.close();
+      try {
+        writeBuffer();
+      } finally {
+        this.os.close();
+      }
     }
 
     //
@@ -277,11 +325,11 @@ public abstract class MapperProcess {
 
     /**
      * Constructor.
-     * @param writer the writer to use to write data
+     * @param os the output stream to use to write data
      */
-    public FastqWriterNoThread(final Writer writer) {
+    public FastqWriterNoThread(final OutputStream os) {
 
-      this.writer = writer;
+      this.os = os;
     }
 
     /**
@@ -290,61 +338,103 @@ public abstract class MapperProcess {
      */
     public FastqWriterNoThread(final File namedPipeFile) throws IOException {
 
-      this(createPipeWriter(namedPipeFile));
+      this(createPipeOutputStream(namedPipeFile));
     }
   }
 
   /**
-   * This class allow to do asynchronous writes in a named piped.
+   * This class allow to do asynchronous writes in a named piped. The filled
+   * buffers are written by a background thread. When all the buffers are
+   * waiting to be written, the writer blocks until the background thread
+   * releases a buffer.
    */
-  static class FastqWriterThread extends Thread implements FastqWriter {
+  static class FastqWriterThread extends AbstractFastqWriter {
 
-    // The queue can store a little more than 1,00,000 * 1000 = 100,000,000
-    // characters
-    private static final int MAX_CAPACITY = 100000;
-    private static final int MIN_LINE_SIZE = 1000;
+    private static final int BUFFER_COUNT = 8;
 
-    private volatile boolean closed;
-    private final BlockingDeque<String> queue =
-        new LinkedBlockingDeque<>(MAX_CAPACITY);
-    private final Writer writer;
-    private Exception exception;
+    /** Marker for the end of the data. */
+    private static final Block END_OF_DATA = new Block(new byte[0], 0);
 
-    private int lineCount;
-    private final StringBuilder buffer = new StringBuilder();
+    private final BlockingQueue<byte[]> freeBuffers =
+        new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Block> filledBuffers =
+        new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final OutputStream os;
+    private final Thread thread;
+    private volatile IOException exception;
+    private boolean closed;
 
-    @Override
-    public void run() {
+    /**
+     * This class define a filled buffer.
+     */
+    private static final class Block {
+
+      private final byte[] data;
+      private final int length;
+
+      private Block(final byte[] data, final int length) {
+        this.data = data;
+        this.length = length;
+      }
+    }
+
+    /**
+     * Write the filled buffers. This method is executed by the background
+     * thread.
+     */
+    private void writeBuffers() {
 
       try {
-        while (!this.closed || !queue.isEmpty()) {
 
-          if (!this.queue.isEmpty()) {
+        while (true) {
 
-            while (!this.queue.isEmpty()) {
+          final Block block = this.filledBuffers.take();
 
-              this.writer.write(queue.take());
+          if (block == END_OF_DATA) {
+            break;
+          }
+
+          // After an error, the buffers are only recycled to never block the
+          // writer
+          if (this.exception == null) {
+            try {
+              this.os.write(block.data, 0, block.length);
+            } catch (IOException exp) {
+              this.exception = exp;
             }
+          }
 
-          } else {
-            Thread.sleep(1000);
+          this.freeBuffers.put(block.data);
+        }
+
+      } catch (InterruptedException e) {
+        this.exception = new IOException(e);
+      } finally {
+
+        try {
+          this.os.close();
+        } catch (IOException e) {
+          if (this.exception == null) {
+            this.exception = e;
           }
         }
+      }
+    }
 
-        this.writer.close();
+    @Override
+    void writeBuffer() throws IOException {
 
-      } catch (IOException e) {
-        this.exception = e;
+      throwExceptionIfExists();
+
+      try {
+        this.filledBuffers.put(new Block(this.buffer, this.length));
+        this.buffer = this.freeBuffers.take();
+        this.length = 0;
       } catch (InterruptedException e) {
-        this.exception = new IOException(e);
+        throw new IOException(e);
       }
     }
 
-    /**
-     * Write a string to the pipe. This method is not synchronized.
-     * @param s string to write
-     * @throws IOException if an error has occurred in writings
-     */
     @Override
     public void write(final String s) throws IOException {
 
@@ -352,49 +442,29 @@ public abstract class MapperProcess {
         throw new IllegalStateException("FastqWriterThread is closed");
       }
 
-      this.buffer.append(s);
-      this.lineCount++;
+      super.write(s);
+    }
+
+    @Override
+    public void close() throws IOException {
 
-      // We only add lines of about 1000 character in the queue
-      if (this.buffer.length() < MIN_LINE_SIZE || this.lineCount % 4 != 0) {
+      if (this.closed) {
         return;
       }
 
-      if (this.queue.remainingCapacity() == 0) {
-
-        this.writer.flush();
-
-        while (this.queue.remainingCapacity() == 0) {
+      try {
 
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException e) {
-          }
+        if (this.length > 0) {
+          writeBuffer();
         }
-      }
-
-      this.queue.add(this.buffer.toString());
-      this.buffer.setLength(0);
-      this.lineCount = 0;
-
-      throwExceptionIfExists();
-    }
-
-    /**
-     * Asynchronous close. This method is not synchronized. A call to write()
-     * just after close() may to lead to lose data.
-     */
-    @Override
-    public void close() throws IOException {
 
-      this.queue.add(buffer.toString());
-      this.buffer.setLength(0);
-      this.closed = true;
+        this.filledBuffers.put(END_OF_DATA);
+        this.thread.join();
 
-      try {
-        join();
       } catch (InterruptedException e) {
         throw new IOException(e);
+      } finally {
+        this.closed = true;
       }
 
       throwExceptionIfExists();
@@ -417,26 +487,32 @@ public abstract class MapperProcess {
 
     /**
      * Constructor.
-     * @param writer the writer to use to write data
+     * @param os the output stream to use to write data
+     * @param threadName the name of the thread
      */
-    public FastqWriterThread(final Writer writer, final String threadName) {
+    public FastqWriterThread(final OutputStream os, final String threadName) {
 
-      super(threadName);
+      this.os = os;
 
-      this.writer = writer;
+      for (int i = 1; i < BUFFER_COUNT; i++) {
+        this.freeBuffers.add(new byte[BUFFER_SIZE]);
+      }
 
       // Start the thread
-      start();
+      this.thread = new Thread(this::writeBuffers, threadName);
+      this.thread.setDaemon(true);
+      this.thread.start();
     }
 
     /**
      * Constructor.
      * @param namedPipeFile the named pipe file
+     * @param threadName the name of the thread
      */
     public FastqWriterThread(final File namedPipeFile, final String threadName)
         throws IOException {
 
-      this(createPipeWriter(namedPipeFile), threadName);
+      this(createPipeOutputStream(namedPipeFile), threadName);
     }
 
   }
@@ -803,6 +879,23 @@ public abstract class MapperProcess {
     }
   }
 
+  /**
+   * Destroy the process(es) of the mapper and wait their end. This method is
+   * used to stop the mapper when an error occurs.
+   * @throws IOException if an error occurs while destroying the process(es)
+   */
+  public void destroy() throws IOException {
+
+    for (Result result : this.processResults) {
+      result.destroy();
+    }
+
+    // Remove temporary files
+    for (File f : this.filesToRemove) {
+      removeFile(f);
+    }
+  }
+
   /**
    * Remove a temporary file.
    * @param f f file to remove
@@ -818,22 +911,21 @@ public abstract class MapperProcess {
   }
 
   /**
-   * Create pipe writer.
+   * Create pipe output stream.
    * @param file the pipe file to create
-   * @return a writer on the pipe
+   * @return an output stream on the pipe
    * @throws IOException if an error occurs while creating the pipe or the
-   *           writer
+   *           output stream
    */
-  private static Writer createPipeWriter(final File file) throws IOException {
+  private static OutputStream createPipeOutputStream(final File file)
+      throws IOException {
 
     FileUtils.createNamedPipe(file);
 
     @SuppressWarnings("resource")
     final RandomAccessFile raf = new RandomAccessFile(file, "rw");
 
-    final OutputStream os = Channels.newOutputStream(raf.getChannel());
-
-    return new OutputStreamWriter(os, StandardCharsets.ISO_8859_1);
+    return Channels.newOutputStream(raf.getChannel());
   }
 
   /**
@@ -31,8 +31,10 @@ import static java.util.Collections.synchronizedMap;
 import static java.util.Objects.requireNonNull;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -52,14 +54,13 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskRunner;
  */
 public abstract class AbstractTaskScheduler implements TaskScheduler {
 
-  private static final int SLEEP_TIME_IN_MS = 500;
-
   private final Multimap<Step, Integer> submittedContexts;
   private final Multimap<Step, Integer> runningContexts;
   private final Multimap<Step, Integer> doneContexts;
   private final Map<Integer, Step> contexts;
   private final Map<Step, StepStatus> status;
   private final Map<Step, StepResult> results;
+  private final List<Runnable> stateListeners = new CopyOnWriteArrayList<>();
 
   private volatile boolean isStarted;
   private volatile boolean isStopped;
@@ -149,6 +150,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     getLogger().fine("Scheduler: task #"
         + contextId + " (step #" + step.getNumber() + " " + step.getId()
         + ") is running");
+
+    notifyStateChange();
   }
 
   /**
@@ -196,6 +199,7 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
         + contextId + " (step #" + step.getNumber() + " " + step.getId()
         + ") is done");
 
+    notifyStateChange();
   }
 
   /**
@@ -252,6 +256,33 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     return contextRunner.getResult();
   }
 
+  /**
+   * Add a listener that is called each time the state of a task or the state
+   * of the scheduler changes.
+   * @param listener the listener to add
+   */
+  void addStateListener(final Runnable listener) {
+
+    requireNonNull(listener, "listener argument cannot be null");
+
+    this.stateListeners.add(listener);
+  }
+
+  /**
+   * Wake up the threads waiting for a change of the state of the scheduler and
+   * call the state listeners.
+   */
+  protected void notifyStateChange() {
+
+    synchronized (this) {
+      notifyAll();
+    }
+
+    for (Runnable listener : this.stateListeners) {
+      listener.run();
+    }
+  }
+
   //
   // TaskScheduler interface
   //
@@ -298,6 +329,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     getLogger().fine("Scheduler: task #"
         + context.getId() + " (step #" + step.getNumber() + " " + step.getId()
         + ") has been submitted");
+
+    notifyStateChange();
   }
 
   @Override
@@ -381,14 +414,18 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     // Check execution state
     checkExecutionState();
 
-    while (!isStopped()
-        && (getTaskRunningCount(step) > 0
-            || getTaskSubmittedCount(step) > getTaskDoneCount(step))) {
+    // The waiting thread is woken up by notifyStateChange()
+    synchronized (this) {
+
+      while (!isStopped()
+          && (getTaskRunningCount(step) > 0
+              || getTaskSubmittedCount(step) > getTaskDoneCount(step))) {
 
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          getLogger().severe(e.getMessage());
+        }
       }
     }
   }
@@ -417,6 +454,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     synchronized (this) {
       this.isStopped = true;
     }
+
+    notifyStateChange();
   }
 
   protected boolean isStopped() {
@@ -436,6 +475,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     synchronized (this) {
       this.isPaused = true;
     }
+
+    notifyStateChange();
   }
 
   /**
@@ -451,6 +492,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     synchronized (this) {
       this.isPaused = false;
     }
+
+    notifyStateChange();
   }
 
   /**
@@ -29,6 +29,8 @@ import static com.google.common.base.Preconditions.checkState;
 import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
@@ -42,21 +44,23 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
 
 /**
  * This class defined a combined task scheduler that use several context
- * schedulers according to the parallelization mode of the step.
+ * schedulers according to the parallelization mode of the step. When the
+ * scheduler is resource aware, the standard steps and the steps that handle
+ * their own parallelization share the same ResourceAwareTaskScheduler.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class CombinedTaskScheduler implements TaskScheduler, Runnable {
 
-  private static final int SLEEP_TIME_IN_MS = 200;
-
   private final AbstractTaskScheduler noTaskScheduler;
   private final AbstractTaskScheduler stdTaskScheduler;
   private final AbstractTaskScheduler ownTaskScheduler;
   private final AbstractTaskScheduler hadoopCompatibleTaskScheduler;
+  private final boolean resourceAware;
 
   private volatile boolean isStarted;
   private volatile boolean isStopped;
+  private boolean updateRequired = true;
 
   @Override
   public void submit(final Step step, final Set<TaskContextImpl> contexts) {
@@ -137,33 +141,34 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
   @Override
   public int getTotalTaskSubmittedCount() {
 
-    return this.noTaskScheduler.getTotalTaskSubmittedCount()
-        + this.stdTaskScheduler.getTotalTaskSubmittedCount()
-        + this.ownTaskScheduler.getTotalTaskSubmittedCount()
-        + (this.hadoopCompatibleTaskScheduler != null
-            ? this.hadoopCompatibleTaskScheduler.getTotalTaskRunningCount()
-            : 0);
+    int result = 0;
+    for (AbstractTaskScheduler scheduler : getTaskSchedulers()) {
+      result += scheduler.getTotalTaskSubmittedCount();
+    }
+
+    return result;
   }
 
   @Override
   public int getTotalTaskRunningCount() {
 
-    return this.noTaskScheduler.getTotalTaskRunningCount()
-        + this.stdTaskScheduler.getTotalTaskRunningCount()
-        + this.ownTaskScheduler.getTotalTaskRunningCount()
-        + (this.hadoopCompatibleTaskScheduler != null
-            ? this.hadoopCompatibleTaskScheduler.getTotalTaskRunningCount()
-            : 0);
+    int result = 0;
+    for (AbstractTaskScheduler scheduler : getTaskSchedulers()) {
+      result += scheduler.getTotalTaskRunningCount();
+    }
+
+    return result;
   }
 
   @Override
   public int getTotalTaskDoneCount() {
 
-    return this.noTaskScheduler.getTotalTaskDoneCount()
-        + this.stdTaskScheduler.getTotalTaskDoneCount()
-        + this.ownTaskScheduler.getTotalTaskDoneCount()
-        + (this.hadoopCompatibleTaskScheduler != null
-            ? this.hadoopCompatibleTaskScheduler.getTotalTaskDoneCount() : 0);
+    int result = 0;
+    for (AbstractTaskScheduler scheduler : getTaskSchedulers()) {
+      result += scheduler.getTotalTaskDoneCount();
+    }
+
+    return result;
   }
 
   @Override
@@ -177,11 +182,13 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
       this.isStarted = true;
     }
 
-    this.noTaskScheduler.start();
-    this.stdTaskScheduler.start();
-    this.ownTaskScheduler.start();
-    if (this.hadoopCompatibleTaskScheduler != null) {
-      this.hadoopCompatibleTaskScheduler.start();
+    for (AbstractTaskScheduler scheduler : getTaskSchedulers()) {
+      scheduler.start();
+    }
+
+    // The resource aware scheduler runs all the tasks side by side
+    if (this.resourceAware) {
+      return;
     }
 
     // Pause ownTaskScheduler
@@ -199,13 +206,11 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
 
     synchronized (this) {
       this.isStopped = true;
+      notifyAll();
     }
 
-    this.noTaskScheduler.stop();
-    this.stdTaskScheduler.stop();
-    this.ownTaskScheduler.stop();
-    if (this.hadoopCompatibleTaskScheduler != null) {
-      this.hadoopCompatibleTaskScheduler.stop();
+    for (AbstractTaskScheduler scheduler : getTaskSchedulers()) {
+      scheduler.stop();
     }
   }
 
@@ -213,6 +218,41 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
   // Other method
   //
 
+  /**
+   * Get the task schedulers used by the combined task scheduler.
+   * @return a list with the task schedulers
+   */
+  private List<AbstractTaskScheduler> getTaskSchedulers() {
+
+    final List<AbstractTaskScheduler> result = new ArrayList<>();
+
+    result.add(this.noTaskScheduler);
+    result.add(this.stdTaskScheduler);
+
+    // With a resource aware scheduler, the own scheduler is the standard one
+    if (this.ownTaskScheduler != this.stdTaskScheduler) {
+      result.add(this.ownTaskScheduler);
+    }
+
+    if (this.hadoopCompatibleTaskScheduler != null) {
+      result.add(this.hadoopCompatibleTaskScheduler);
+    }
+
+    return result;
+  }
+
+  /**
+   * Wake up the thread that pauses and resumes the schedulers. This method is
+   * called each time the state of the standard or own scheduler changes.
+   */
+  private void requestUpdate() {
+
+    synchronized (this) {
+      this.updateRequired = true;
+      notifyAll();
+    }
+  }
+
   /**
    * Check execution state.
    */
@@ -293,13 +333,25 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
   @Override
   public void run() {
 
-    boolean stopped;
+    while (true) {
 
-    synchronized (this) {
-      stopped = this.isStopped;
-    }
+      // Wait a change of state of the schedulers
+      synchronized (this) {
 
-    while (!stopped) {
+        while (!this.isStopped && !this.updateRequired) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            getLogger().severe(e.getMessage());
+          }
+        }
+
+        if (this.isStopped) {
+          return;
+        }
+
+        this.updateRequired = false;
+      }
 
       // Is there some task to do by ownTaskScheduler ?
       if (this.ownTaskScheduler.isPaused()
@@ -324,17 +376,6 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
         this.ownTaskScheduler.pause();
         this.stdTaskScheduler.resume();
       }
-
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
-      }
-
-      synchronized (this) {
-        stopped = this.isStopped;
-      }
     }
   }
 
@@ -348,12 +389,35 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
    */
   public CombinedTaskScheduler(final int threadNumber) {
 
+    this(threadNumber, -1);
+  }
+
+  /**
+   * Constructor.
+   * @param threadNumber number of thread to use by the task scheduler
+   * @param memory memory in MB available for the tasks. If greater than 0,
+   *          a resource aware scheduler is used for the standard steps and
+   *          the steps that handle their own parallelization
+   */
+  public CombinedTaskScheduler(final int threadNumber, final int memory) {
+
     checkArgument(threadNumber > 0, "threadNumber must be > 0");
 
     // Create the schedulers instances
-    this.stdTaskScheduler = new MultiThreadTaskScheduler(threadNumber);
+    this.resourceAware = memory > 0;
+    if (this.resourceAware) {
+      this.stdTaskScheduler =
+          new ResourceAwareTaskScheduler(threadNumber, memory);
+      this.ownTaskScheduler = this.stdTaskScheduler;
+    } else {
+      this.stdTaskScheduler = new MultiThreadTaskScheduler(threadNumber);
+      this.ownTaskScheduler = new MonoThreadTaskScheduler();
+
+      // Switch between the schedulers when their state change
+      this.stdTaskScheduler.addStateListener(this::requestUpdate);
+      this.ownTaskScheduler.addStateListener(this::requestUpdate);
+    }
     this.noTaskScheduler = new MonoThreadTaskScheduler();
-    this.ownTaskScheduler = new MonoThreadTaskScheduler();
 
     this.hadoopCompatibleTaskScheduler =
         EoulsanRuntime.getRuntime().getMode().isHadoopMode()
@@ -42,7 +42,6 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 public class MonoThreadTaskScheduler extends AbstractTaskScheduler
     implements Runnable {
 
-  private static final int SLEEP_TIME_IN_MS = 100;
   private final Queue<TaskContextImpl> queue = Queues.newLinkedBlockingQueue();
 
   //
@@ -56,6 +55,9 @@ public class MonoThreadTaskScheduler extends AbstractTaskScheduler
     super.submit(step, context);
 
     this.queue.add(context);
+
+    // Wake up the scheduler thread
+    notifyStateChange();
   }
 
   @Override
@@ -76,43 +78,46 @@ public class MonoThreadTaskScheduler extends AbstractTaskScheduler
 
     while (!this.isStopped()) {
 
-      // Do nothing if the queue is empty or the scheduler paused
-      if (!this.isPaused() && !this.queue.isEmpty()) {
+      final TaskContextImpl context;
 
-        // Get context to execute
-        final TaskContextImpl context = this.queue.remove();
+      // Wait while the queue is empty or the scheduler paused
+      synchronized (this) {
 
-        // Do nothing if scheduler is stopped
-        if (isStopped()) {
-          return;
+        while (!isStopped() && (isPaused() || this.queue.isEmpty())) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            getLogger().severe(e.getMessage());
+          }
         }
 
-        // Set task in running state
-        beforeExecuteTask(context);
-
         // Do nothing if scheduler is stopped
         if (isStopped()) {
           return;
         }
 
-        // Execute the context
-        final TaskResultImpl result = executeTask(context);
+        // Get context to execute
+        context = this.queue.remove();
+      }
 
-        // Do nothing if scheduler is stopped
-        if (isStopped()) {
-          return;
-        }
+      // Set task in running state
+      beforeExecuteTask(context);
 
-        // Set task in done state
-        afterExecuteTask(context, result);
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
       }
 
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
+      // Execute the context
+      final TaskResultImpl result = executeTask(context);
+
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
       }
+
+      // Set task in done state
+      afterExecuteTask(context, result);
     }
   }
 
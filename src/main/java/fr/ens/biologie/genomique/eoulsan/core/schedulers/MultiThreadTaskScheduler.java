@@ -27,33 +27,25 @@ package fr.ens.biologie.genomique.eoulsan.core.schedulers;
 import static com.google.common.base.Preconditions.checkArgument;
 import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
-import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeException;
 import fr.ens.biologie.genomique.eoulsan.core.Step;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 
 /**
- * This class define a muti thread scheduler.
+ * This class define a muti thread scheduler. The end of the tasks is handled
+ * by the threads that execute the tasks, so no thread polls the state of the
+ * tasks.
  * @author Laurent Jourdren
  * @since 2.0
  */
-public class MultiThreadTaskScheduler extends AbstractTaskScheduler
-    implements Runnable {
+public class MultiThreadTaskScheduler extends AbstractTaskScheduler {
 
-  private static final int SLEEP_TIME_IN_MS = 500;
   private static final int WAIT_SHUTDOWN_MINUTES = 60;
 
   private final PausableThreadPoolExecutor executor;
-  private final Set<Future<TaskThread>> threads = new HashSet<>();
 
   /**
    * Wrapper class around a call to executeTask methods.
@@ -63,8 +55,6 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
 
     private final TaskContextImpl context;
     private final long submissionTime;
-    private Throwable e;
-    private boolean done;
 
     @Override
     public void run() {
@@ -73,7 +63,6 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
 
         // Do nothing if scheduler is stopped
         if (isStopped()) {
-          this.done = true;
           return;
         }
 
@@ -85,38 +74,39 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
 
         // Do nothing if scheduler is stopped
         if (isStopped()) {
-          this.done = true;
           return;
         }
 
         // Set task in done state
         afterExecuteTask(this.context, result);
 
-        this.done = true;
-
       } catch (Throwable e) {
 
-        this.e = e;
+        if (!isStopped()) {
+          fail(e);
+        }
       }
-
     }
 
-    public void fail(final boolean cancel) {
+    /**
+     * Set the task in done state after an exception.
+     * @param exception the exception
+     */
+    private void fail(final Throwable exception) {
 
       final long endTime = System.currentTimeMillis();
 
-      final Throwable exception = this.e != null
-          ? this.e
-          : new EoulsanRuntimeException("Task #"
-              + context.getId() + "has failed without exception, cancel="
-              + cancel);
-
       final TaskResultImpl result = new TaskResultImpl(this.context,
           new Date(this.submissionTime), new Date(endTime),
           endTime - this.submissionTime, exception, exception.getMessage());
 
-      afterExecuteTask(this.context, result);
-
+      try {
+        afterExecuteTask(this.context, result);
+      } catch (RuntimeException e) {
+        getLogger().severe("Unexcepted exception in "
+            + MultiThreadTaskScheduler.class.getSimpleName() + ": "
+            + e.getMessage());
+      }
     }
 
     //
@@ -148,18 +138,7 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
         context.getCurrentStep().getRequiredProcessors();
 
     // Submit the context thread the thread executor
-    synchronized (this.threads) {
-      this.threads.add(this.executor.submit(st, st, requiredProcessors));
-    }
-  }
-
-  @Override
-  public void start() {
-
-    // Call to the super method
-    super.start();
-
-    new Thread(this, "TaskScheduler_multi_thread").start();
+    this.executor.submit(st, st, requiredProcessors);
   }
 
   @Override
@@ -199,65 +178,6 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
     this.executor.resume();
   }
 
-  //
-  // Runnable method
-  //
-
-  @Override
-  public void run() {
-
-    // The list of finished tasks
-    final List<Future<TaskThread>> threadsToRemove = new ArrayList<>();
-
-    while (!this.isStopped()) {
-
-      for (Future<TaskThread> ftt : this.threads) {
-
-        // For all finished tasks
-        if (ftt.isDone()) {
-
-          try {
-
-            final TaskThread tt = ftt.get();
-
-            // Check if the task has been correctly executed
-            if (!tt.done) {
-
-              tt.fail(ftt.isCancelled());
-            }
-
-            // Add the task to the list of task to remove
-            threadsToRemove.add(ftt);
-
-          } catch (InterruptedException | ExecutionException e) {
-            getLogger().severe("Unexcepted exception in "
-                + this.getClass().getSimpleName() + ".run(): "
-                + e.getMessage());
-          }
-        }
-      }
-
-      // Remove the finished tasks from the list of tasks
-      if (!this.threads.isEmpty()) {
-
-        synchronized (threadsToRemove) {
-          for (Future<TaskThread> ftt : threadsToRemove) {
-            this.threads.remove(ftt);
-          }
-        }
-
-        threadsToRemove.clear();
-      }
-
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
-      }
-    }
-  }
-
   //
   // Constructor
   //
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -35,7 +36,9 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class define a Pausable thread pool executor. This class is based on the
- * javadoc documentation of the ThreadPoolExecutor class.
+ * javadoc documentation of the ThreadPoolExecutor class. A task can require
+ * several threads, in this case the task waits until the other tasks release
+ * enough threads.
  * @since 2.0
  */
 public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
@@ -43,10 +46,11 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
   private boolean isPaused;
   private final ReentrantLock pauseLock = new ReentrantLock();
   private final Condition unPaused = this.pauseLock.newCondition();
+  private final Condition threadsReleased = this.pauseLock.newCondition();
 
   private final int maxThreads;
-  private volatile int threadsAvailable;
-  private final Map<Future<?>, Integer> requirements =
+  private int threadsAvailable;
+  private final Map<Runnable, Integer> requirements =
       new ConcurrentHashMap<>();
 
   /**
@@ -58,14 +62,20 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
    */
   public <T> Future<T> submit(Runnable task, T result, int requiredProcessors) {
 
+    if (task == null) {
+      throw new NullPointerException("task argument cannot be null");
+    }
+
     // The number of thread of the task cannot excess the maximal number of
     // threads and if the number of required processors is not set, use 1 as
     // default value
     int requiredThreads = requiredProcessors < 1
         ? 1 : Math.min(requiredProcessors, this.maxThreads);
 
-    Future<T> submitResult = super.submit(task, result);
+    // Set the requirements before the execution of the task
+    final RunnableFuture<T> submitResult = newTaskFor(task, result);
     this.requirements.put(submitResult, requiredThreads);
+    execute(submitResult);
 
     return submitResult;
   }
@@ -75,47 +85,45 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
     super.beforeExecute(t, r);
 
-    // Wait if requirements has not been yet updated
-    while (!this.requirements.containsKey(r)) {
-      sleep();
-    }
-
-    int requiredThreads = this.requirements.get(r);
+    final int requiredThreads = getRequiredThreads(r);
 
     this.pauseLock.lock();
 
     try {
-      while (this.isPaused) {
-        this.unPaused.await();
+
+      // Wait until the executor is resumed and threads are available
+      while (this.isPaused || this.threadsAvailable < requiredThreads) {
+
+        if (this.isPaused) {
+          this.unPaused.await();
+        } else {
+          this.threadsReleased.await();
+        }
       }
+
     } catch (InterruptedException ie) {
       t.interrupt();
     } finally {
-      this.pauseLock.unlock();
-    }
-
-    // Sleep until threads are available
-    while (this.threadsAvailable - requiredThreads < 0) {
-      sleep();
-    }
-
-    synchronized (this) {
       this.threadsAvailable -= requiredThreads;
+      this.pauseLock.unlock();
     }
-
   }
 
   @Override
   protected void afterExecute(Runnable task, Throwable t) {
 
-    int requiredThreads = this.requirements.get(task);
+    final int requiredThreads = getRequiredThreads(task);
+    this.requirements.remove(task);
+
+    this.pauseLock.lock();
 
-    synchronized (this) {
+    try {
       this.threadsAvailable += requiredThreads;
+      this.threadsReleased.signalAll();
+    } finally {
+      this.pauseLock.unlock();
     }
 
-    this.requirements.remove(task);
-
     super.afterExecute(task, t);
   }
 
@@ -149,15 +157,16 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
   }
 
   /**
-   * Sleep 1 second.
+   * Get the number of threads required by a task.
+   * @param task the task
+   * @return the number of threads required by the task
    */
-  private static void sleep() {
+  private int getRequiredThreads(final Runnable task) {
 
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      // Do nothing
-    }
+    final Integer result = this.requirements.get(task);
+
+    // Tasks submitted with the methods of ThreadPoolExecutor use one thread
+    return result == null ? 1 : result;
   }
 
   //
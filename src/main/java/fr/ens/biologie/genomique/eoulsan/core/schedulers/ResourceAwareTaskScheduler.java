@@ -0,0 +1,405 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.schedulers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode;
+import fr.ens.biologie.genomique.eoulsan.core.Step;
+import fr.ens.biologie.genomique.eoulsan.core.workflow.AbstractStep;
+import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
+import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
+
+/**
+ * This class define a local task scheduler that runs the tasks of all the
+ * steps side by side without exceeding a number of processors and an amount
+ * of memory. The requirements of a task are the required processors and the
+ * required memory of its step. The waiting tasks are started by priority: the
+ * tasks of the first steps of the workflow first, then in submission order. A
+ * task that does not fit in the available resources does not block the next
+ * tasks, but it reserves the available resources it needs to avoid its
+ * starvation.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class ResourceAwareTaskScheduler extends AbstractTaskScheduler {
+
+  private static final int WAIT_SHUTDOWN_MINUTES = 60;
+
+  private final int maxProcessors;
+  private final int maxMemory;
+
+  private final Object lock = new Object();
+  private final NavigableSet<Task> waitingTasks =
+      new TreeSet<>(Comparator.comparingInt((Task t) -> t.priority)
+          .thenComparingLong(t -> t.sequence));
+  private int availableProcessors;
+  private int availableMemory;
+  private long sequence;
+
+  private final ExecutorService executor;
+
+  /**
+   * This class define a task and its requirements.
+   */
+  private final class Task implements Runnable {
+
+    private final Runnable runnable;
+    private final int processors;
+    private final int memory;
+    private final int priority;
+    private final long sequence;
+
+    @Override
+    public void run() {
+
+      try {
+        this.runnable.run();
+      } finally {
+        release(this);
+      }
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param runnable the code of the task
+     * @param processors required processors
+     * @param memory required memory
+     * @param priority priority of the task, the lower the first
+     * @param sequence submission sequence number
+     */
+    Task(final Runnable runnable, final int processors, final int memory,
+        final int priority, final long sequence) {
+
+      this.runnable = runnable;
+      this.processors = processors;
+      this.memory = memory;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+  }
+
+  //
+  // TaskScheduler methods
+  //
+
+  @Override
+  public void submit(final Step step, final TaskContextImpl context) {
+
+    // Call to the super method
+    super.submit(step, context);
+
+    final int processors = getRequiredProcessors(step);
+    final int memory = getRequiredMemory(step);
+
+    getLogger().fine("Scheduler: task #"
+        + context.getId() + " (step #" + step.getNumber() + " " + step.getId()
+        + ") requires " + processors + " processor(s) and " + memory
+        + " MB of memory");
+
+    final long submissionTime = System.currentTimeMillis();
+
+    execute(() -> executeContext(context, submissionTime), processors, memory,
+        step.getNumber());
+  }
+
+  @Override
+  public void stop() {
+
+    // Call to the super method
+    super.stop();
+
+    synchronized (this.lock) {
+      this.waitingTasks.clear();
+    }
+
+    try {
+
+      // Shutdown the executor
+      this.executor.shutdownNow();
+
+      // Wait the termination of current running task
+      this.executor.awaitTermination(WAIT_SHUTDOWN_MINUTES, TimeUnit.MINUTES);
+
+    } catch (InterruptedException e) {
+      getLogger().severe(e.getMessage());
+    }
+  }
+
+  @Override
+  void resume() {
+
+    // Call to the super method
+    super.resume();
+
+    startTasks();
+  }
+
+  //
+  // Context execution methods
+  //
+
+  /**
+   * Execute a context.
+   * @param context the context to execute
+   * @param submissionTime submission time of the context
+   */
+  private void executeContext(final TaskContextImpl context,
+      final long submissionTime) {
+
+    try {
+
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
+      }
+
+      // Set task in running state
+      beforeExecuteTask(context);
+
+      // Execute the context
+      final TaskResultImpl result = executeTask(context);
+
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
+      }
+
+      // Set task in done state
+      afterExecuteTask(context, result);
+
+    } catch (Throwable e) {
+
+      if (!isStopped()) {
+        fail(context, submissionTime, e);
+      }
+    }
+  }
+
+  /**
+   * Set a context in done state after an exception.
+   * @param context the context
+   * @param submissionTime submission time of the context
+   * @param exception the exception
+   */
+  private void fail(final TaskContextImpl context, final long submissionTime,
+      final Throwable exception) {
+
+    final long endTime = System.currentTimeMillis();
+
+    final TaskResultImpl result = new TaskResultImpl(context,
+        new Date(submissionTime), new Date(endTime),
+        endTime - submissionTime, exception, exception.getMessage());
+
+    try {
+      afterExecuteTask(context, result);
+    } catch (RuntimeException e) {
+      getLogger().severe("Unexcepted exception in "
+          + ResourceAwareTaskScheduler.class.getSimpleName() + ": "
+          + e.getMessage());
+    }
+  }
+
+  //
+  // Scheduling methods
+  //
+
+  /**
+   * Execute a task when the resources it requires are available. The
+   * requirements greater than the resources of the scheduler are limited to
+   * the resources of the scheduler.
+   * @param runnable the code of the task
+   * @param processors required processors
+   * @param memory required memory in MB
+   * @param priority priority of the task, the lower the first
+   */
+  void execute(final Runnable runnable, final int processors,
+      final int memory, final int priority) {
+
+    requireNonNull(runnable, "runnable argument cannot be null");
+
+    synchronized (this.lock) {
+      this.waitingTasks.add(new Task(runnable,
+          Math.max(1, Math.min(processors, this.maxProcessors)),
+          Math.max(0, Math.min(memory, this.maxMemory)), priority,
+          this.sequence++));
+    }
+
+    startTasks();
+  }
+
+  /**
+   * Get the number of processors required by the tasks of a step.
+   * @param step the step
+   * @return the number of processors required by the tasks of the step
+   */
+  private int getRequiredProcessors(final Step step) {
+
+    final int processors = step.getRequiredProcessors();
+
+    if (processors > 0) {
+      return processors;
+    }
+
+    // The steps that handle their own parallelization use all the processors
+    if (((AbstractStep) step)
+        .getParallelizationMode() == ParallelizationMode.OWN_PARALLELIZATION) {
+      return this.maxProcessors;
+    }
+
+    return 1;
+  }
+
+  /**
+   * Get the memory required by the tasks of a step.
+   * @param step the step
+   * @return the memory in MB required by the tasks of the step
+   */
+  private int getRequiredMemory(final Step step) {
+
+    final int memory = step.getRequiredMemory();
+
+    if (memory <= 0) {
+      return 0;
+    }
+
+    if (memory > this.maxMemory) {
+      getLogger().warning("The memory required by the step "
+          + step.getId() + " (" + memory
+          + " MB) is greater than the memory available for the tasks ("
+          + this.maxMemory + " MB)");
+    }
+
+    return memory;
+  }
+
+  /**
+   * Start the waiting tasks that fit in the available resources.
+   */
+  private void startTasks() {
+
+    final List<Task> tasksToStart = new ArrayList<>();
+
+    synchronized (this.lock) {
+
+      if (!isStarted() || isStopped() || isPaused()) {
+        return;
+      }
+
+      // Resources reserved by the tasks that cannot be started
+      int reservedProcessors = 0;
+      int reservedMemory = 0;
+
+      final Iterator<Task> it = this.waitingTasks.iterator();
+
+      while (it.hasNext()) {
+
+        final int freeProcessors =
+            this.availableProcessors - reservedProcessors;
+        final int freeMemory = this.availableMemory - reservedMemory;
+
+        if (freeProcessors <= 0) {
+          break;
+        }
+
+        final Task task = it.next();
+
+        if (task.processors <= freeProcessors && task.memory <= freeMemory) {
+
+          it.remove();
+          this.availableProcessors -= task.processors;
+          this.availableMemory -= task.memory;
+          tasksToStart.add(task);
+        } else {
+
+          reservedProcessors += Math.min(freeProcessors, task.processors);
+          reservedMemory += Math.min(freeMemory, task.memory);
+        }
+      }
+    }
+
+    for (Task task : tasksToStart) {
+      this.executor.execute(task);
+    }
+  }
+
+  /**
+   * Release the resources of a task and start the waiting tasks.
+   * @param task the task
+   */
+  private void release(final Task task) {
+
+    synchronized (this.lock) {
+      this.availableProcessors += task.processors;
+      this.availableMemory += task.memory;
+    }
+
+    startTasks();
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param processors number of processors available for the tasks
+   * @param memory memory in MB available for the tasks
+   */
+  public ResourceAwareTaskScheduler(final int processors, final int memory) {
+
+    checkArgument(processors > 0, "processors must be > 0");
+    checkArgument(memory > 0, "memory must be > 0");
+
+    this.maxProcessors = processors;
+    this.maxMemory = memory;
+    this.availableProcessors = processors;
+    this.availableMemory = memory;
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(r -> new Thread(r,
+        "TaskScheduler_resource_aware_" + threadCount.incrementAndGet()));
+  }
+
+}
@@ -32,6 +32,7 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
 import fr.ens.biologie.genomique.eoulsan.Settings;
 import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler;
 import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskSchedulerService;
+import fr.ens.biologie.genomique.eoulsan.util.LinuxMemInfo;
 
 /**
  * This class define a factory for TaskScheduler that can create only one
@@ -88,6 +89,11 @@ public class TaskSchedulerFactory {
       // Set Cluster mode
       scheduler =
           new ClusterCombinedTaskScheduler(threadNumber, clusterScheduler);
+    } else if (settings.isLocalResourceAwareScheduler()) {
+
+      // Standard mode with a resource aware scheduler
+      scheduler =
+          new CombinedTaskScheduler(threadNumber, getLocalMemory(settings));
     } else {
 
       // Standard mode
@@ -96,6 +102,29 @@ public class TaskSchedulerFactory {
 
   }
 
+  /**
+   * Get the memory available for the tasks in local mode.
+   * @param settings the settings
+   * @return the memory in MB available for the tasks
+   */
+  private static int getLocalMemory(final Settings settings) {
+
+    final int memory = settings.getLocalMemory();
+
+    if (memory > 0) {
+      return memory;
+    }
+
+    // Use the total memory of the host
+    final int memTotal = new LinuxMemInfo().getMemTotalInMegaBytes();
+
+    if (memTotal > 0) {
+      return memTotal;
+    }
+
+    return (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+  }
+
   /**
    * Get the scheduler
    * @return the TaskScheduler object
@@ -108,6 +137,15 @@ public class TaskSchedulerFactory {
     return scheduler;
   }
 
+  /**
+   * Test if the factory has been initialized.
+   * @return true if the factory has been initialized
+   */
+  public static boolean isInitialized() {
+
+    return scheduler != null;
+  }
+
   //
   // Constructor
   //
@@ -38,25 +38,41 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.Main;
+import fr.ens.biologie.genomique.eoulsan.Settings;
 import fr.ens.biologie.genomique.eoulsan.actions.ClusterTaskAction;
+import fr.ens.biologie.genomique.eoulsan.actions.ClusterWorkerAction;
 import fr.ens.biologie.genomique.eoulsan.core.Step;
 import fr.ens.biologie.genomique.eoulsan.core.schedulers.AbstractTaskScheduler;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.TaskWorkerQueue.TaskStatus;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskRunner;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 
 /**
- * This class is a scheduler for task running on a cluster.
+ * This class is a scheduler for task running on a cluster. The jobs are
+ * submitted and monitored by a single thread that query the status of all the
+ * active jobs at once, so the load on the cluster scheduler does not depend on
+ * the number of tasks. When worker JVMs are enabled, the tasks are added to a
+ * queue directory and executed by long-lived worker jobs instead of being
+ * submitted as cluster jobs.
  * @author Laurent Jourdren
  * @since 2.0
  */
@@ -64,35 +80,15 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
     implements ClusterTaskScheduler {
 
   private static final int STATUS_UPDATE_DELAY = 1000;
+  static final int MAX_UNKNOWN_WORKER_STATUS = 3;
+  private static final String WORKER_QUEUE_DIRECTORY = "workers";
 
-  private final Queue<TaskThread> queue = new LinkedBlockingQueue<>();
-  private final StatusUpdateWaitingQueue statusUpdateQueue =
-      new StatusUpdateWaitingQueue();
-
-  /**
-   * This class define a waiting queue for status update queries.
-   */
-  private static class StatusUpdateWaitingQueue {
-
-    private final BlockingQueue<TaskThread> queue = new LinkedBlockingDeque<>();
-
-    public void waitTurn(TaskThread l) throws InterruptedException {
-
-      // Add element to queue
-      this.queue.add(l);
-
-      TaskThread e;
-
-      // Wait while the element if not the first element of the queue
-      do {
-        e = this.queue.element();
-        Thread.sleep(STATUS_UPDATE_DELAY);
-      } while (e != l);
-
-      // Remove the element from the queue
-      this.queue.poll();
-    }
-  }
+  private final Queue<ClusterJob> jobs = new ConcurrentLinkedQueue<>();
+  private final BlockingQueue<ClusterJob> submissionQueue =
+      new LinkedBlockingQueue<>();
+  private final Map<String, Integer> workerJobs = new ConcurrentHashMap<>();
+  private JobMonitorThread monitorThread;
+  private volatile boolean stopped;
 
   /**
    * This class allow to fetch standard output or standard error.
@@ -125,22 +121,22 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
   }
 
   /**
-   * Wrapper class around a call to executeTask methods.
+   * This class define a task executed as a cluster job.
    * @author Laurent Jourdren
    */
-  private final class TaskThread extends Thread {
+  private final class ClusterJob {
 
     private final TaskContextImpl context;
     private final File taskDir;
     private final String taskPrefix;
-    private String jobId;
+    private volatile String jobId;
 
     /**
-     * Create the Eoulsan command to submit.
-     * @return a list with the arguments of the command to submit
-     * @throws IOException if an error occurs while creating the process
+     * Serialize the task context.
+     * @return the task context file
+     * @throws IOException if an error occurs while serializing the context
      */
-    private List<String> createJobCommand() throws IOException {
+    private File serializeContext() throws IOException {
 
       // Define the file for the task context
       final File taskContextFile =
@@ -149,27 +145,19 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
       // Serialize the context object
       this.context.serialize(taskContextFile);
 
-      final List<String> command = new ArrayList<>();
-
-      final File eoulsanScriptFile =
-          new File(Main.getInstance().getEoulsanScriptPath());
-      command.add(eoulsanScriptFile.getAbsolutePath());
-
-      // Force the usage of the current JRE by the submitted task
-      command.add("-j");
-      command.add(System.getProperty("java.home"));
-
-      // Set the working directory
-      command.add("-w");
-      command.add(System.getProperty("user.dir"));
+      return taskContextFile;
+    }
 
-      final String logLevel = Main.getInstance().getLogLevelArgument();
+    /**
+     * Create the Eoulsan command to submit.
+     * @return a list with the arguments of the command to submit
+     * @throws IOException if an error occurs while creating the process
+     */
+    private List<String> createJobCommand() throws IOException {
 
-      if (logLevel != null) {
-        command.add("-loglevel");
-        command.add(logLevel);
-      }
+      final File taskContextFile = serializeContext();
 
+      final List<String> command = createEoulsanCommand();
       command.add(ClusterTaskAction.ACTION_NAME);
       command.add(taskContextFile.getAbsolutePath());
 
@@ -228,53 +216,71 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
       }
     }
 
-    @Override
-    public void run() {
-
-      TaskResultImpl result = null;
-
-      try {
+    /**
+     * Submit the job.
+     * @throws IOException if an error occurs while submitting the job
+     */
+    private void submit() throws IOException {
 
-        // Change task state
-        beforeExecuteTask(this.context);
+      // Change task state
+      beforeExecuteTask(this.context);
 
-        final File taskFile = this.context.getTaskOutputDirectory().toFile();
-        final int requiredMemory = getRequiredMemory();
-        final int requiredProcessors =
-            this.context.getCurrentStep().getRequiredProcessors();
+      final File taskFile = this.context.getTaskOutputDirectory().toFile();
+      final int requiredMemory = getRequiredMemory();
+      final int requiredProcessors =
+          this.context.getCurrentStep().getRequiredProcessors();
 
-        // Submit Job
-        this.jobId = submitJob(getJobName(), createJobCommand(), taskFile,
-            this.context.getId(), requiredMemory, requiredProcessors);
+      // Submit Job
+      this.jobId = submitJob(getJobName(), createJobCommand(), taskFile,
+          this.context.getId(), requiredMemory, requiredProcessors);
 
-        // Create a file with the id of the submitted job
-        createJobIdFile();
+      // Create a file with the id of the submitted job
+      createJobIdFile();
+    }
 
-        StatusResult status = null;
+    /**
+     * Add the task to the queue of the worker JVMs.
+     * @param queue the queue of the worker JVMs
+     * @throws IOException if an error occurs while adding the task
+     */
+    private void enqueue(final TaskWorkerQueue queue) throws IOException {
 
-        boolean completed = false;
+      // Change task state
+      beforeExecuteTask(this.context);
 
-        do {
+      queue.enqueue(this.taskPrefix, serializeContext());
+    }
 
-          // Wait turn before querying job status
-          statusUpdateQueue.waitTurn(this);
+    /**
+     * Test if the task can be executed by a worker JVM.
+     * @param workerMemory the memory of the worker JVMs
+     * @param workerProcessors the number of processors of the worker JVMs
+     * @return true if the task can be executed by a worker JVM
+     */
+    private boolean isWorkerCompatible(final int workerMemory,
+        final int workerProcessors) {
 
-          status = statusJob(this.jobId);
+      return getRequiredMemory() <= workerMemory
+          && this.context.getCurrentStep()
+              .getRequiredProcessors() <= workerProcessors;
+    }
 
-          switch (status.getStatusValue()) {
+    /**
+     * Set the result of the task once the job is completed or has failed.
+     * @param status the status of the completed job, null if the job has
+     *          failed
+     * @param exception the exception that has occurred, null if the job is
+     *          completed
+     */
+    private void done(final StatusResult status, final Exception exception) {
 
-          case COMPLETE:
-            completed = true;
-            break;
+      TaskResultImpl result = null;
 
-          case WAITING:
-          case RUNNING:
-          case UNKNOWN:
-          default:
-            break;
-          }
+      try {
 
-        } while (!completed);
+        if (exception != null) {
+          throw exception;
+        }
 
         if (status.getExitCode() != 0) {
           throw new EoulsanException("Invalid task exit code: "
@@ -288,7 +294,7 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
         // Send tokens
         TaskRunner.sendTokens(this.context, result);
 
-      } catch (IOException | EoulsanException | InterruptedException e) {
+      } catch (Exception e) {
         result = TaskRunner.createStepResult(this.context, e);
       } finally {
 
@@ -303,8 +309,8 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
         // Change task state
         afterExecuteTask(this.context, result);
 
-        // Remove the thread from the queue
-        AbstractClusterTaskScheduler.this.queue.remove(this);
+        // Remove the job from the active jobs
+        AbstractClusterTaskScheduler.this.jobs.remove(this);
       }
     }
 
@@ -330,9 +336,9 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
     }
 
     /**
-     * Stop the thread.
+     * Stop the job.
      */
-    public void stopThread() {
+    private void stop() {
 
       if (this.jobId != null) {
 
@@ -353,19 +359,511 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
      * Constructor.
      * @param context context to execute
      */
-    TaskThread(final TaskContextImpl context) {
+    ClusterJob(final TaskContextImpl context) {
 
       requireNonNull(context, "context argument cannot be null");
 
       this.context = context;
       this.taskDir = context.getTaskOutputDirectory().toFile();
       this.taskPrefix = context.getTaskFilePrefix();
+    }
+  }
+
+  /**
+   * This class define the thread that submit the jobs and monitor their
+   * status. The status of all the submitted jobs is queried with a single
+   * call to the statusJobs() method.
+   * @author Laurent Jourdren
+   */
+  private final class JobMonitorThread extends Thread {
+
+    private final Map<String, ClusterJob> submittedJobs =
+        new LinkedHashMap<>();
+    private final Map<String, ClusterJob> queuedJobs = new LinkedHashMap<>();
+    private final Set<Integer> exitedWorkers = new HashSet<>();
+    private final Map<String, Integer> unknownWorkerStatusCounts =
+        new HashMap<>();
+    private long nextStatusUpdate;
+
+    // Worker JVMs configuration
+    private boolean workerConfigured;
+    private volatile TaskWorkerQueue workerQueue;
+    private String workflowJobId;
+    private int workerCount;
+    private int workerMemory;
+    private int workerProcessors;
+    private int workerIdleTimeout;
+    private int lastWorkerId;
+
+    @Override
+    public void run() {
+
+      final BlockingQueue<ClusterJob> queue =
+          AbstractClusterTaskScheduler.this.submissionQueue;
+
+      try {
+
+        while (true) {
+
+          try {
+
+            // Wait for new jobs until the next status update
+            final ClusterJob job;
+            if (!hasActiveJobs()) {
+              job = queue.take();
+            } else {
+              job = queue.poll(Math.max(0,
+                  this.nextStatusUpdate - System.currentTimeMillis()),
+                  TimeUnit.MILLISECONDS);
+            }
+
+            if (job != null) {
+              submitClusterJob(job);
+            }
+
+            if (hasActiveJobs()
+                && System.currentTimeMillis() >= this.nextStatusUpdate) {
+              updateJobStatus();
+            }
+
+          } catch (RuntimeException e) {
+            getLogger().severe(
+                "Error in the cluster job monitor: " + e.getMessage());
+          }
+        }
+
+      } catch (InterruptedException e) {
+        getLogger().severe("Cluster job monitor interrupted");
+      }
+    }
+
+    /**
+     * Test if there is submitted jobs, queued tasks or running workers.
+     * @return true if there is jobs to monitor
+     */
+    private boolean hasActiveJobs() {
+
+      return !this.submittedJobs.isEmpty()
+          || !this.queuedJobs.isEmpty()
+          || !AbstractClusterTaskScheduler.this.workerJobs.isEmpty();
+    }
+
+    /**
+     * Submit a job.
+     * @param job the job to submit
+     */
+    private void submitClusterJob(final ClusterJob job) {
+
+      if (AbstractClusterTaskScheduler.this.stopped) {
+        return;
+      }
+
+      // Wait before querying the status of the first submitted job
+      if (!hasActiveJobs()) {
+        this.nextStatusUpdate =
+            System.currentTimeMillis() + STATUS_UPDATE_DELAY;
+      }
+
+      try {
+
+        configureWorkers(job);
+
+        // Small tasks are executed by the worker JVMs
+        if (this.workerQueue != null
+            && job.isWorkerCompatible(this.workerMemory,
+                this.workerProcessors)) {
+
+          job.enqueue(this.workerQueue);
+          this.queuedJobs.put(job.taskPrefix, job);
+          startWorkers();
+          return;
+        }
+
+        job.submit();
+        this.submittedJobs.put(job.jobId, job);
+      } catch (IOException | RuntimeException e) {
+        job.done(null, e);
+      }
+    }
+
+    /**
+     * Update the status of the submitted jobs and set the result of the
+     * completed jobs.
+     */
+    private void updateJobStatus() {
+
+      final long start = System.currentTimeMillis();
+      final List<String> jobIds = new ArrayList<>(this.submittedJobs.keySet());
+      jobIds.addAll(AbstractClusterTaskScheduler.this.workerJobs.keySet());
+      Map<String, StatusResult> statuses;
+
+      try {
+        statuses = statusJobs(jobIds);
+      } catch (IOException e) {
+
+        getLogger().warning("Error while getting the status of "
+            + jobIds.size() + " jobs, query the jobs one by one: "
+            + e.getMessage());
+
+        // Query the jobs one by one to only fail the jobs in error
+        statuses = new HashMap<>();
+        for (String jobId : jobIds) {
+          try {
+            statuses.put(jobId, statusJob(jobId));
+          } catch (IOException e2) {
+
+            final ClusterJob job = this.submittedJobs.remove(jobId);
+            if (job != null) {
+              job.done(null, e2);
+            }
+          }
+        }
+      }
+
+      // Do not query the cluster scheduler more than half of the time
+      final long end = System.currentTimeMillis();
+      this.nextStatusUpdate = end + Math.max(STATUS_UPDATE_DELAY, end - start);
+
+      for (Map.Entry<String, StatusResult> e : statuses.entrySet()) {
+
+        final StatusResult status = e.getValue();
+
+        if (status != null && status.getStatusValue() == StatusValue.COMPLETE) {
+
+          final ClusterJob job = this.submittedJobs.remove(e.getKey());
+          if (job != null) {
+            job.done(status, null);
+          }
+        }
+      }
+
+      final Map<String, Integer> workers =
+          AbstractClusterTaskScheduler.this.workerJobs;
+
+      for (String jobId : getExitedWorkerJobs(workers.keySet(), statuses,
+          this.unknownWorkerStatusCounts)) {
+
+        final Integer workerId = workers.remove(jobId);
+        if (workerId == null) {
+          continue;
+        }
+
+        final StatusResult status = statuses.get(jobId);
+        if (status != null && status.getStatusValue() == StatusValue.COMPLETE) {
+          getLogger().info("Worker #"
+              + workerId + " (job " + jobId + ") exited with code "
+              + status.getExitCode());
+        } else {
+          getLogger().warning("Worker #"
+              + workerId + " (job " + jobId
+              + ") is considered as exited, its status is unknown");
+        }
+
+        this.exitedWorkers.add(workerId);
+      }
 
-      // Set Thread name
-      setName("TaskThead " + getJobName());
+      if (!this.queuedJobs.isEmpty()) {
+        updateQueuedTaskStatus();
+      }
+    }
+
+    /**
+     * Update the status of the tasks executed by the worker JVMs with a single
+     * listing of the queue directory.
+     */
+    private void updateQueuedTaskStatus() {
+
+      final Map<String, TaskStatus> statuses;
+      try {
+        statuses = this.workerQueue.getTaskStatuses();
+      } catch (IOException e) {
+        getLogger().warning(e.getMessage());
+        return;
+      }
+
+      for (ClusterJob job : new ArrayList<>(this.queuedJobs.values())) {
+
+        final String taskName = job.taskPrefix;
+        final TaskStatus status = statuses.get(taskName);
+
+        if (status == null) {
+          this.queuedJobs.remove(taskName);
+          job.done(null, new EoulsanException(
+              "Task removed from the worker queue: " + taskName));
+          continue;
+        }
+
+        switch (status.getState()) {
+
+        case DONE:
+          this.queuedJobs.remove(taskName);
+          this.workerQueue.remove(taskName);
+          job.done(new StatusResult(StatusValue.COMPLETE, 0), null);
+          break;
+
+        case FAILED:
+          this.queuedJobs.remove(taskName);
+          String message;
+          try {
+            message = this.workerQueue.getFailureMessage(taskName);
+          } catch (IOException e) {
+            message = e.getMessage();
+          }
+          this.workerQueue.remove(taskName);
+          job.done(null, new EoulsanException(
+              "Task " + taskName + " failed in worker JVM: " + message));
+          break;
+
+        case RUNNING:
+          if (this.exitedWorkers.contains(status.getWorkerId())) {
+            this.queuedJobs.remove(taskName);
+            job.done(null, new EoulsanException("Worker #"
+                + status.getWorkerId() + " exited while executing task "
+                + taskName));
+          }
+          break;
+
+        case WAITING:
+        default:
+          break;
+        }
+      }
+
+      // Replace the workers that have exited
+      startWorkers();
+    }
+
+    /**
+     * Read the configuration of the worker JVMs from the settings of the first
+     * submitted task.
+     * @param job the first job
+     * @throws IOException if the queue directory cannot be created
+     */
+    private void configureWorkers(final ClusterJob job) throws IOException {
+
+      if (this.workerConfigured) {
+        return;
+      }
+      this.workerConfigured = true;
+
+      final Settings settings = job.context.getSettings();
+      this.workerCount = settings.getClusterWorkerCount();
+
+      if (this.workerCount <= 0) {
+        return;
+      }
+
+      final File queueDir = new File(job.taskDir, WORKER_QUEUE_DIRECTORY);
+      if (!queueDir.isDirectory() && !queueDir.mkdirs()) {
+        throw new IOException(
+            "Unable to create the worker queue directory: " + queueDir);
+      }
+
+      this.workerQueue = new TaskWorkerQueue(queueDir);
+      this.workflowJobId = job.context.getJobId();
+      this.workerProcessors = settings.getClusterWorkerProcessors();
+      this.workerIdleTimeout = settings.getClusterWorkerIdleTimeout();
+      this.workerMemory = settings.getDefaultClusterMemoryRequired() > 0
+          ? settings.getDefaultClusterMemoryRequired()
+          : Main.getInstance().getEoulsanMemory();
+
+      getLogger().info("Use "
+          + this.workerCount + " worker JVMs with " + this.workerMemory
+          + " MB and " + this.workerProcessors + " processors");
+    }
+
+    /**
+     * Submit worker jobs while there is less workers than queued tasks and
+     * than the maximal number of workers.
+     */
+    private void startWorkers() {
+
+      final Map<String, Integer> workers =
+          AbstractClusterTaskScheduler.this.workerJobs;
+
+      while (!AbstractClusterTaskScheduler.this.stopped
+          && workers.size() < Math.min(this.workerCount,
+              this.queuedJobs.size())) {
+
+        final int workerId = ++this.lastWorkerId;
+        final File workerDir =
+            new File(this.workerQueue.getDirectory(), "worker-" + workerId);
+
+        try {
+
+          if (!workerDir.isDirectory() && !workerDir.mkdirs()) {
+            throw new IOException(
+                "Unable to create the worker directory: " + workerDir);
+          }
+
+          final List<String> command = createEoulsanCommand();
+          command.add(ClusterWorkerAction.ACTION_NAME);
+          command.add("-i");
+          command.add("" + workerId);
+          command.add("-t");
+          command.add("" + this.workerIdleTimeout);
+          command.add(this.workerQueue.getDirectory().getAbsolutePath());
+
+          final String jobId =
+              submitJob(this.workflowJobId + "-worker-" + workerId,
+                  Collections.unmodifiableList(command), workerDir, workerId,
+                  this.workerMemory, this.workerProcessors);
+
+          workers.put(jobId, workerId);
+          getLogger().info("Worker #" + workerId + " submitted: job " + jobId);
+
+        } catch (IOException e) {
+
+          getLogger().severe("Unable to submit worker #"
+              + workerId + ": " + e.getMessage());
+
+          // Without worker, the waiting tasks cannot be executed
+          if (workers.isEmpty()) {
+            cancelWaitingTasks(e);
+          }
+          return;
+        }
+      }
+    }
+
+    /**
+     * Ask the worker JVMs to stop once their current task is done.
+     */
+    private void stopWorkers() {
+
+      final TaskWorkerQueue queue = this.workerQueue;
+
+      if (queue == null) {
+        return;
+      }
+
+      try {
+        queue.stopWorkers();
+      } catch (IOException e) {
+        getLogger().severe(
+            "Error while stopping the worker JVMs: " + e.getMessage());
+      }
+    }
+
+    /**
+     * Remove the waiting tasks from the queue and set them as failed.
+     * @param cause the cause of the failure
+     */
+    private void cancelWaitingTasks(final Exception cause) {
+
+      for (ClusterJob job : new ArrayList<>(this.queuedJobs.values())) {
+
+        if (this.workerQueue.cancel(job.taskPrefix)) {
+          this.queuedJobs.remove(job.taskPrefix);
+          job.done(null, cause);
+        }
+      }
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     */
+    JobMonitorThread() {
+
+      setName("Cluster job monitor " + getSchedulerName());
+      setDaemon(true);
     }
   }
 
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the worker jobs that have exited. A worker job has exited if its job
+   * is complete or if its status is missing or unknown for
+   * MAX_UNKNOWN_WORKER_STATUS consecutive status updates, as the cluster
+   * schedulers forget the jobs some time after their end.
+   * @param workerJobIds the ids of the worker jobs
+   * @param statuses the statuses of the jobs
+   * @param unknownStatusCounts the number of consecutive status updates
+   *          without known status for each worker job. This map is updated
+   *          by this method
+   * @return a list with the ids of the worker jobs that have exited
+   */
+  static List<String> getExitedWorkerJobs(
+      final Collection<String> workerJobIds,
+      final Map<String, StatusResult> statuses,
+      final Map<String, Integer> unknownStatusCounts) {
+
+    requireNonNull(workerJobIds, "workerJobIds argument cannot be null");
+    requireNonNull(statuses, "statuses argument cannot be null");
+    requireNonNull(unknownStatusCounts,
+        "unknownStatusCounts argument cannot be null");
+
+    final List<String> result = new ArrayList<>();
+
+    for (String jobId : workerJobIds) {
+
+      final StatusResult status = statuses.get(jobId);
+      final StatusValue value =
+          status == null ? StatusValue.UNKNOWN : status.getStatusValue();
+
+      switch (value) {
+
+      case COMPLETE:
+        unknownStatusCounts.remove(jobId);
+        result.add(jobId);
+        break;
+
+      case WAITING:
+      case RUNNING:
+        unknownStatusCounts.remove(jobId);
+        break;
+
+      case UNKNOWN:
+      default:
+        final int count = unknownStatusCounts.merge(jobId, 1, Integer::sum);
+        if (count >= MAX_UNKNOWN_WORKER_STATUS) {
+          unknownStatusCounts.remove(jobId);
+          result.add(jobId);
+        }
+        break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create the beginning of the Eoulsan command to submit.
+   * @return a modifiable list with the first arguments of the command
+   */
+  private List<String> createEoulsanCommand() {
+
+    final List<String> command = new ArrayList<>();
+
+    final File eoulsanScriptFile =
+        new File(Main.getInstance().getEoulsanScriptPath());
+    command.add(eoulsanScriptFile.getAbsolutePath());
+
+    // Force the usage of the current JRE by the submitted task
+    command.add("-j");
+    command.add(System.getProperty("java.home"));
+
+    // Set the working directory
+    command.add("-w");
+    command.add(System.getProperty("user.dir"));
+
+    final String logLevel = Main.getInstance().getLogLevelArgument();
+
+    if (logLevel != null) {
+      command.add("-loglevel");
+      command.add(logLevel);
+    }
+
+    return command;
+  }
+
   //
   // Task scheduler methods
   //
@@ -376,26 +874,58 @@ public abstract class AbstractClusterTaskScheduler extends AbstractTaskScheduler
     // Call to the super method
     super.submit(step, context);
 
-    // Create the thread object
-    final TaskThread st = new TaskThread(context);
+    final ClusterJob job = new ClusterJob(context);
+    this.jobs.add(job);
 
-    // Add the thread to the queue
-    this.queue.add(st);
+    synchronized (this) {
 
-    // Start the Thread
-    st.start();
+      // Start the monitor thread with the first job
+      if (this.monitorThread == null) {
+        this.monitorThread = new JobMonitorThread();
+        this.monitorThread.start();
+      }
+    }
+
+    // The job will be submitted by the monitor thread
+    this.submissionQueue.add(job);
   }
 
   @Override
   public void stop() {
 
-    for (TaskThread thread : this.queue) {
+    this.stopped = true;
+
+    // Jobs not yet submitted will not be submitted
+    this.submissionQueue.clear();
+
+    for (ClusterJob job : this.jobs) {
+
+      // Kill the job
+      job.stop();
+    }
+
+    this.jobs.clear();
+
+    // Idle workers exit by themselves, the busy ones are killed below
+    final JobMonitorThread monitor;
+    synchronized (this) {
+      monitor = this.monitorThread;
+    }
+    if (monitor != null) {
+      monitor.stopWorkers();
+    }
 
-      // Kill the subprocess
-      thread.stopThread();
+    // Stop the worker JVMs
+    for (String jobId : this.workerJobs.keySet()) {
+      try {
+        stopJob(jobId);
+      } catch (IOException e) {
+        getLogger().severe(
+            "Error while stopping job " + jobId + ": " + e.getMessage());
+      }
     }
 
-    this.queue.clear();
+    this.workerJobs.clear();
   }
 
 }
@@ -32,8 +32,12 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +57,12 @@ import fr.ens.biologie.genomique.eoulsan.Settings;
 public abstract class BpipeTaskScheduler extends AbstractClusterTaskScheduler {
 
   private static final int MAX_JOB_STATUS_ATTEMPTS = 3;
+  private static final int JOB_STATUS_ATTEMPT_DELAY = 5000;
+
+  /** Exit code of the wrappers for an unknown command. */
+  private static final int INCORRECT_FIRST_ARGUMENT_EXIT_CODE = 1;
+
+  private volatile boolean statusAllUnsupported;
 
   /**
    * Get the path to the Bpipe command wrapper.
@@ -169,7 +179,7 @@ public abstract class BpipeTaskScheduler extends AbstractClusterTaskScheduler {
     // Sleep before a new job status attempt
     if (callCount > 0) {
       try {
-        Thread.sleep(5000);
+        Thread.sleep(JOB_STATUS_ATTEMPT_DELAY);
       } catch (InterruptedException e) {
         // Do nothing
       }
@@ -204,54 +214,217 @@ public abstract class BpipeTaskScheduler extends AbstractClusterTaskScheduler {
             + jobId + " status on " + getSchedulerName()
             + " scheduler. Job status: " + jobStatus);
 
-        final List<String> fields =
-            Lists.newArrayList(Splitter.on(' ').split(jobStatus.trim()));
+        return parseJobStatus(jobId, jobStatus);
 
-        switch (fields.get(0)) {
+      } else {
+        getLogger().warning("Job status command failed for job "
+            + jobId + ". Exit code: " + exitCode);
+        throw new IOException(
+            "Job status failed for job " + jobId + ", exit code: " + exitCode);
+      }
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
 
-        case "WAITING":
-          return new StatusResult(StatusValue.WAITING);
+  }
 
-        case "RUNNING":
-          return new StatusResult(StatusValue.RUNNING);
+  @Override
+  public Map<String, StatusResult> statusJobs(final Collection<String> jobIds)
+      throws IOException {
 
-        case "COMPLETE":
+    requireNonNull(jobIds, "jobIds argument cannot be null");
 
-          // Remove the cluster job to the list of job to kill if workflow fails
-          ClusterJobEmergencyStopTask.removeHadoopJobEmergencyStopTask(this,
-              jobId);
+    // Query the jobs one by one if the wrapper has no statusall command
+    if (this.statusAllUnsupported) {
 
-          if (fields.size() != 2) {
-            throw new IOException(
-                "Invalid complete string for job " + jobId + ": " + jobStatus);
-          }
+      final Map<String, StatusResult> result = new LinkedHashMap<>();
+
+      for (String jobId : jobIds) {
+        result.put(jobId, statusJob(jobId));
+      }
+
+      return result;
+    }
+
+    if (jobIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    // The job ids are given to the wrapper on its standard input
+    final File jobIdsFile = File.createTempFile("eoulsan-job-ids-", ".txt");
+
+    try {
+
+      try (PrintWriter writer = new PrintWriter(jobIdsFile)) {
+        for (String jobId : jobIds) {
+          writer.println(jobId);
+        }
+      }
 
+      for (int i = 0; i < MAX_JOB_STATUS_ATTEMPTS; i++) {
+
+        // Sleep before a new job status attempt
+        if (i > 0) {
           try {
-            return new StatusResult(StatusValue.COMPLETE,
-                Integer.parseInt(fields.get(1)));
-          } catch (NumberFormatException e) {
-            throw new IOException(
-                "Invalid complete string for job " + jobId + ": " + jobStatus,
-                e);
+            Thread.sleep(JOB_STATUS_ATTEMPT_DELAY);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
           }
+        }
+
+        final Process process = statusAllJobsProcess(jobIdsFile);
+
+        // Read output of the status command, one line per job
+        final Map<String, String> jobStatuses = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(process.getInputStream()))) {
 
-        case "UNKNOWN":
-          return new StatusResult(StatusValue.UNKNOWN);
+          String line;
+          while ((line = reader.readLine()) != null) {
 
-        default:
-          throw new IOException("Unknown status: " + jobStatus);
+            line = line.trim();
+            final int pos = line.indexOf(' ');
+
+            if (pos != -1) {
+              jobStatuses.put(line.substring(0, pos),
+                  line.substring(pos + 1).trim());
+            }
+          }
         }
 
-      } else {
-        getLogger().warning("Job status command failed for job "
-            + jobId + ". Exit code: " + exitCode);
-        throw new IOException(
-            "Job status failed for job " + jobId + ", exit code: " + exitCode);
+        final int exitCode;
+        try {
+          exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+
+        if (exitCode == INCORRECT_FIRST_ARGUMENT_EXIT_CODE) {
+
+          getLogger().warning("The Bpipe command wrapper of the "
+              + getSchedulerName()
+              + " scheduler does not support the statusall command,"
+              + " the status of the jobs will be queried one by one");
+          this.statusAllUnsupported = true;
+
+          return statusJobs(jobIds);
+        }
+
+        if (exitCode != 0) {
+          getLogger().warning("Job status command failed for "
+              + jobIds.size() + " jobs. Exit code: " + exitCode + " (try "
+              + (i + 1) + ")");
+          continue;
+        }
+
+        getLogger().fine("Status of "
+            + jobIds.size() + " jobs queried on " + getSchedulerName()
+            + " scheduler");
+
+        final Map<String, StatusResult> result = new LinkedHashMap<>();
+
+        for (String jobId : jobIds) {
+
+          final String jobStatus = jobStatuses.get(jobId);
+
+          // The status of the job will be queried another time
+          if (jobStatus == null || jobStatus.isEmpty()) {
+            result.put(jobId, new StatusResult(StatusValue.UNKNOWN));
+          } else {
+            result.put(jobId, parseJobStatusOrRetry(jobId, jobStatus));
+          }
+        }
+
+        return result;
       }
-    } catch (InterruptedException e) {
-      throw new IOException(e);
+
+    } finally {
+
+      if (!jobIdsFile.delete()) {
+        getLogger().warning("Unable to remove file: " + jobIdsFile);
+      }
+    }
+
+    throw new IOException("Job status failed for "
+        + jobIds.size() + " jobs after " + MAX_JOB_STATUS_ATTEMPTS
+        + " multiple attempts");
+  }
+
+  /**
+   * Parse the status of a job returned by the statusall command of the Bpipe
+   * command wrapper. If the status is invalid, only the status of this job is
+   * queried again.
+   * @param jobId job id
+   * @param jobStatus the status string returned by the wrapper
+   * @return a StatusResult object
+   */
+  private StatusResult parseJobStatusOrRetry(final String jobId,
+      final String jobStatus) {
+
+    try {
+      return parseJobStatus(jobId, jobStatus);
+    } catch (IOException e) {
+      getLogger().warning(e.getMessage() + ", query the job alone");
     }
 
+    try {
+      return statusJob(jobId);
+    } catch (IOException e) {
+
+      // The status of the job will be queried another time
+      getLogger().warning(e.getMessage());
+      return new StatusResult(StatusValue.UNKNOWN);
+    }
+  }
+
+  /**
+   * Parse the status of a job returned by the Bpipe command wrapper.
+   * @param jobId job id
+   * @param jobStatus the status string returned by the wrapper
+   * @return a StatusResult object
+   * @throws IOException if the status string is invalid
+   */
+  private StatusResult parseJobStatus(final String jobId,
+      final String jobStatus) throws IOException {
+
+    final List<String> fields =
+        Lists.newArrayList(Splitter.on(' ').split(jobStatus.trim()));
+
+    switch (fields.get(0)) {
+
+    case "WAITING":
+      return new StatusResult(StatusValue.WAITING);
+
+    case "RUNNING":
+      return new StatusResult(StatusValue.RUNNING);
+
+    case "COMPLETE":
+
+      // Remove the cluster job to the list of job to kill if workflow fails
+      ClusterJobEmergencyStopTask.removeHadoopJobEmergencyStopTask(this,
+          jobId);
+
+      if (fields.size() != 2) {
+        throw new IOException(
+            "Invalid complete string for job " + jobId + ": " + jobStatus);
+      }
+
+      try {
+        return new StatusResult(StatusValue.COMPLETE,
+            Integer.parseInt(fields.get(1)));
+      } catch (NumberFormatException e) {
+        throw new IOException(
+            "Invalid complete string for job " + jobId + ": " + jobStatus,
+            e);
+      }
+
+    case "UNKNOWN":
+      return new StatusResult(StatusValue.UNKNOWN);
+
+    default:
+      throw new IOException("Unknown status: " + jobStatus);
+    }
   }
 
   @Override
@@ -347,6 +520,25 @@ public abstract class BpipeTaskScheduler extends AbstractClusterTaskScheduler {
     return builder.start();
   }
 
+  /**
+   * Create process to get the status of several jobs.
+   * @param jobIdsFile the file with the ids of the jobs, one per line
+   * @return a Process object
+   * @throws IOException if an error occurs while creating the process
+   */
+  private Process statusAllJobsProcess(final File jobIdsFile)
+      throws IOException {
+
+    final List<String> command = new ArrayList<>();
+    command.add(getBpipeCommandWrapperPath());
+    command.add("statusall");
+
+    final ProcessBuilder builder = new ProcessBuilder(command);
+    builder.redirectInput(jobIdsFile);
+
+    return builder.start();
+  }
+
   //
   // Other methods
   //
@@ -24,9 +24,14 @@
 
 package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
 
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.Settings;
@@ -151,6 +156,29 @@ public interface ClusterTaskScheduler extends TaskScheduler {
    */
   StatusResult statusJob(final String jobId) throws IOException;
 
+  /**
+   * Get the status of several jobs. The default implementation query the
+   * status of the jobs one by one. Schedulers that can get the status of many
+   * jobs with a single query must override this method.
+   * @param jobIds the ids of the jobs
+   * @return a map with the status of each job
+   * @throws IOException if an error occurs while getting the status of the
+   *           jobs
+   */
+  default Map<String, StatusResult> statusJobs(
+      final Collection<String> jobIds) throws IOException {
+
+    requireNonNull(jobIds, "jobIds argument cannot be null");
+
+    final Map<String, StatusResult> result = new LinkedHashMap<>();
+
+    for (String jobId : jobIds) {
+      result.put(jobId, statusJob(jobId));
+    }
+
+    return result;
+  }
+
   /**
    * Cleanup after a job.
    * @param jobId job id
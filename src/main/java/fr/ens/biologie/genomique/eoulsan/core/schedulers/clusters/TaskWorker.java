@@ -0,0 +1,185 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskSerializationUtils;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class define a worker that executes the tasks of a task queue in the
+ * current JVM. As the JVM is reused between the tasks, the startup of the JVM,
+ * the loading of the modules and the caches are shared by all the tasks
+ * executed by the worker. The worker stops when the queue is stopped or after
+ * an idle timeout.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class TaskWorker {
+
+  /** Delay between two polls of the queue in milliseconds. */
+  private static final int POLL_DELAY = 500;
+
+  private final TaskWorkerQueue queue;
+  private final int workerId;
+  private final long idleTimeout;
+
+  /**
+   * Execute the tasks of the queue until the queue is stopped or until the
+   * idle timeout is reached.
+   * @return the number of executed tasks
+   * @throws IOException if an error occurs while reading the queue
+   */
+  public int run() throws IOException {
+
+    final long readyTime = System.currentTimeMillis();
+    final long jvmStartTime =
+        ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    getLogger().info("Worker #"
+        + this.workerId + " ready " + (readyTime - jvmStartTime)
+        + " ms after the start of the JVM, waiting tasks in "
+        + this.queue.getDirectory());
+
+    int taskCount = 0;
+    long lastActivity = readyTime;
+
+    while (!this.queue.isStopped()) {
+
+      final String taskName = this.queue.claim(this.workerId);
+
+      if (taskName == null) {
+
+        if (System.currentTimeMillis() - lastActivity >= this.idleTimeout) {
+          getLogger().info("Worker #"
+              + this.workerId + " idle since " + this.idleTimeout + " ms");
+          break;
+        }
+
+        try {
+          Thread.sleep(POLL_DELAY);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+
+        continue;
+      }
+
+      final long startTime = System.currentTimeMillis();
+      final long waitingTime =
+          startTime - this.queue.getEnqueueTime(taskName, this.workerId);
+
+      if (taskCount == 0) {
+        getLogger().info("First task "
+            + taskName + " started " + (startTime - jvmStartTime)
+            + " ms after the start of the JVM (" + waitingTime
+            + " ms in the queue)");
+      } else {
+        getLogger().info("Task "
+            + taskName + " started (" + waitingTime + " ms in the queue)");
+      }
+
+      executeTask(taskName);
+      taskCount++;
+      lastActivity = System.currentTimeMillis();
+
+      getLogger().info("Task "
+          + taskName + " executed in " + (lastActivity - startTime) + " ms");
+    }
+
+    getLogger().info("Worker #"
+        + this.workerId + " stopped after the execution of " + taskCount
+        + " tasks");
+
+    return taskCount;
+  }
+
+  /**
+   * Execute a claimed task.
+   * @param taskName the name of the task
+   * @throws IOException if an error occurs while updating the queue
+   */
+  private void executeTask(final String taskName) throws IOException {
+
+    try {
+
+      final File taskContextFile =
+          this.queue.getTaskContextFile(taskName, this.workerId);
+
+      // Execute the task, the result files are written in the task directory
+      TaskSerializationUtils.execute(new DataFile(taskContextFile));
+
+    } catch (Throwable t) {
+
+      getLogger().severe(
+          "Error while executing task " + taskName + ": " + t.getMessage());
+      this.queue.failed(taskName, this.workerId,
+          t.getClass().getSimpleName() + ": " + t.getMessage());
+
+      // The JVM may be in an inconsistent state, stop the worker
+      if (t instanceof Error) {
+        throw (Error) t;
+      }
+
+      return;
+    }
+
+    this.queue.done(taskName, this.workerId);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param queue the task queue
+   * @param workerId the id of the worker
+   * @param idleTimeout the idle timeout in milliseconds
+   */
+  public TaskWorker(final TaskWorkerQueue queue, final int workerId,
+      final long idleTimeout) {
+
+    requireNonNull(queue, "queue argument cannot be null");
+
+    if (idleTimeout < 0) {
+      throw new IllegalArgumentException(
+          "idleTimeout cannot be lower than 0: " + idleTimeout);
+    }
+
+    this.queue = queue;
+    this.workerId = workerId;
+    this.idleTimeout = idleTimeout;
+  }
+
+}
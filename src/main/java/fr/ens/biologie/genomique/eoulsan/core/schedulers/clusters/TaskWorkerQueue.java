@@ -0,0 +1,399 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class define a queue of tasks stored in a directory shared by the
+ * workflow and the worker JVMs. The state of a task is stored in the name of
+ * its file, so the state of all the tasks can be obtained by listing the
+ * directory and a worker claims a task by renaming its file, which is atomic.
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+public class TaskWorkerQueue {
+
+  private static final String TASK_EXTENSION = ".task";
+  private static final String RUNNING_EXTENSION = ".running.";
+  private static final String DONE_EXTENSION = ".done";
+  private static final String FAILED_EXTENSION = ".failed";
+  private static final String TMP_EXTENSION = ".tmp";
+  private static final String STOP_FILENAME = "stop";
+
+  private final File directory;
+
+  /**
+   * This enum define the states of a task in the queue.
+   */
+  public enum TaskState {
+    WAITING, RUNNING, DONE, FAILED
+  }
+
+  /**
+   * This class define the status of a task in the queue.
+   */
+  public static final class TaskStatus {
+
+    private final TaskState state;
+    private final int workerId;
+
+    /**
+     * Get the state of the task.
+     * @return the state of the task
+     */
+    public TaskState getState() {
+      return this.state;
+    }
+
+    /**
+     * Get the id of the worker that runs the task.
+     * @return the id of the worker that runs the task or -1 if the task is not
+     *         running
+     */
+    public int getWorkerId() {
+      return this.workerId;
+    }
+
+    private TaskStatus(final TaskState state, final int workerId) {
+
+      this.state = state;
+      this.workerId = workerId;
+    }
+  }
+
+  //
+  // Workflow side methods
+  //
+
+  /**
+   * Add a task to the queue.
+   * @param taskName name of the task
+   * @param taskContextFile the task context file
+   * @throws IOException if an error occurs while adding the task
+   */
+  public void enqueue(final String taskName, final File taskContextFile)
+      throws IOException {
+
+    requireNonNull(taskName, "taskName argument cannot be null");
+    requireNonNull(taskContextFile,
+        "taskContextFile argument cannot be null");
+
+    final File tmpFile = new File(this.directory, taskName + TMP_EXTENSION);
+
+    try (PrintWriter out = new PrintWriter(tmpFile, "UTF-8")) {
+      out.println(taskContextFile.getAbsolutePath());
+    }
+
+    // The task becomes visible to the workers once complete
+    if (!tmpFile.renameTo(
+        new File(this.directory, taskName + TASK_EXTENSION))) {
+      throw new IOException("Unable to add task to the queue: " + taskName);
+    }
+  }
+
+  /**
+   * Get the status of all the tasks of the queue with a single listing of the
+   * queue directory.
+   * @return a map with the status of the tasks
+   * @throws IOException if the queue directory cannot be listed
+   */
+  public Map<String, TaskStatus> getTaskStatuses() throws IOException {
+
+    final String[] filenames = this.directory.list();
+
+    if (filenames == null) {
+      throw new IOException(
+          "Unable to list the task queue directory: " + this.directory);
+    }
+
+    final Map<String, TaskStatus> result = new HashMap<>();
+
+    for (String filename : filenames) {
+
+      final String taskName;
+      final TaskStatus status;
+
+      if (filename.endsWith(TASK_EXTENSION)) {
+        taskName = removeSuffix(filename, TASK_EXTENSION);
+        status = new TaskStatus(TaskState.WAITING, -1);
+      } else if (filename.endsWith(DONE_EXTENSION)) {
+        taskName = removeSuffix(filename, DONE_EXTENSION);
+        status = new TaskStatus(TaskState.DONE, -1);
+      } else if (filename.endsWith(FAILED_EXTENSION)) {
+        taskName = removeSuffix(filename, FAILED_EXTENSION);
+        status = new TaskStatus(TaskState.FAILED, -1);
+      } else {
+
+        final int pos = filename.lastIndexOf(RUNNING_EXTENSION);
+        if (pos == -1) {
+          continue;
+        }
+
+        try {
+          taskName = filename.substring(0, pos);
+          status = new TaskStatus(TaskState.RUNNING, Integer.parseInt(
+              filename.substring(pos + RUNNING_EXTENSION.length())));
+        } catch (NumberFormatException e) {
+          continue;
+        }
+      }
+
+      // A finished task may still have its running file
+      final TaskStatus previous = result.get(taskName);
+      if (previous == null || previous.getState() == TaskState.RUNNING) {
+        result.put(taskName, status);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the error message of a failed task.
+   * @param taskName the name of the task
+   * @return the error message of the task
+   * @throws IOException if an error occurs while reading the message
+   */
+  public String getFailureMessage(final String taskName) throws IOException {
+
+    requireNonNull(taskName, "taskName argument cannot be null");
+
+    return new String(Files.readAllBytes(
+        new File(this.directory, taskName + FAILED_EXTENSION).toPath()),
+        StandardCharsets.UTF_8).trim();
+  }
+
+  /**
+   * Remove the files of a finished task.
+   * @param taskName the name of the task
+   */
+  public void remove(final String taskName) {
+
+    requireNonNull(taskName, "taskName argument cannot be null");
+
+    new File(this.directory, taskName + DONE_EXTENSION).delete();
+    new File(this.directory, taskName + FAILED_EXTENSION).delete();
+  }
+
+  /**
+   * Remove a task from the queue if no worker has claimed it.
+   * @param taskName the name of the task
+   * @return true if the task has been removed from the queue
+   */
+  public boolean cancel(final String taskName) {
+
+    requireNonNull(taskName, "taskName argument cannot be null");
+
+    return new File(this.directory, taskName + TASK_EXTENSION).delete();
+  }
+
+  /**
+   * Ask the workers to stop.
+   * @throws IOException if an error occurs while creating the stop file
+   */
+  public void stopWorkers() throws IOException {
+
+    new File(this.directory, STOP_FILENAME).createNewFile();
+  }
+
+  //
+  // Worker side methods
+  //
+
+  /**
+   * Test if the workers must stop.
+   * @return true if the workers must stop
+   */
+  public boolean isStopped() {
+
+    return new File(this.directory, STOP_FILENAME).exists();
+  }
+
+  /**
+   * Claim the oldest waiting task of the queue.
+   * @param workerId id of the worker
+   * @return the name of the claimed task or null if there is no waiting task
+   * @throws IOException if the queue directory cannot be listed
+   */
+  public String claim(final int workerId) throws IOException {
+
+    final File[] files = this.directory
+        .listFiles((dir, name) -> name.endsWith(TASK_EXTENSION));
+
+    if (files == null) {
+      throw new IOException(
+          "Unable to list the task queue directory: " + this.directory);
+    }
+
+    final List<File> list = new ArrayList<>(Arrays.asList(files));
+    Collections.sort(list, Comparator.comparingLong(File::lastModified)
+        .thenComparing(File::getName));
+
+    for (File f : list) {
+
+      final String taskName = removeSuffix(f.getName(), TASK_EXTENSION);
+
+      // Only one worker can rename the file
+      if (f.renameTo(getRunningFile(taskName, workerId))) {
+        return taskName;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the task context file of a claimed task.
+   * @param taskName name of the task
+   * @param workerId id of the worker
+   * @return the task context file
+   * @throws IOException if an error occurs while reading the task file
+   */
+  public File getTaskContextFile(final String taskName, final int workerId)
+      throws IOException {
+
+    final List<String> lines = Files.readAllLines(
+        getRunningFile(taskName, workerId).toPath(), StandardCharsets.UTF_8);
+
+    if (lines.isEmpty()) {
+      throw new IOException("Invalid task file for task: " + taskName);
+    }
+
+    return new File(lines.get(0).trim());
+  }
+
+  /**
+   * Get the time when a claimed task has been added to the queue.
+   * @param taskName name of the task
+   * @param workerId id of the worker
+   * @return the time when the task has been added to the queue in
+   *         milliseconds
+   */
+  public long getEnqueueTime(final String taskName, final int workerId) {
+
+    return getRunningFile(taskName, workerId).lastModified();
+  }
+
+  /**
+   * Set a claimed task as done.
+   * @param taskName name of the task
+   * @param workerId id of the worker
+   * @throws IOException if the task file cannot be renamed
+   */
+  public void done(final String taskName, final int workerId)
+      throws IOException {
+
+    if (!getRunningFile(taskName, workerId)
+        .renameTo(new File(this.directory, taskName + DONE_EXTENSION))) {
+      throw new IOException("Unable to set the task as done: " + taskName);
+    }
+  }
+
+  /**
+   * Set a claimed task as failed.
+   * @param taskName name of the task
+   * @param workerId id of the worker
+   * @param message error message
+   * @throws IOException if an error occurs while writing the failure file
+   */
+  public void failed(final String taskName, final int workerId,
+      final String message) throws IOException {
+
+    final File tmpFile = new File(this.directory, taskName + TMP_EXTENSION);
+
+    try (PrintWriter out = new PrintWriter(tmpFile, "UTF-8")) {
+      out.println(message);
+    }
+
+    if (!tmpFile.renameTo(
+        new File(this.directory, taskName + FAILED_EXTENSION))) {
+      throw new IOException("Unable to set the task as failed: " + taskName);
+    }
+
+    getRunningFile(taskName, workerId).delete();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the queue directory.
+   * @return the queue directory
+   */
+  public File getDirectory() {
+
+    return this.directory;
+  }
+
+  private File getRunningFile(final String taskName, final int workerId) {
+
+    return new File(this.directory,
+        taskName + RUNNING_EXTENSION + workerId);
+  }
+
+  private static String removeSuffix(final String s, final String suffix) {
+
+    return s.substring(0, s.length() - suffix.length());
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param directory the queue directory
+   * @throws FileNotFoundException if the queue directory does not exist
+   */
+  public TaskWorkerQueue(final File directory) throws FileNotFoundException {
+
+    requireNonNull(directory, "directory argument cannot be null");
+
+    if (!directory.isDirectory()) {
+      throw new FileNotFoundException(
+          "The task queue directory does not exist: " + directory);
+    }
+
+    this.directory = directory;
+  }
+
+}
@@ -857,6 +857,15 @@ public abstract class AbstractWorkflow implements Workflow {
         createDirectory(genomeDescriptionDir);
       }
 
+      // Create annotation index storage if not defined
+      if (settings.getAnnotationIndexStoragePath() == null) {
+
+        DataFile annotationIndexDir =
+            new DataFile(this.dataDir, "annotationindexes");
+        settings.setAnnotationIndexStoragePath(annotationIndexDir.getSource());
+        createDirectory(annotationIndexDir);
+      }
+
       // Define singularity directory
       if (settings.getDockerSingularityStoragePath() == null) {
 
@@ -132,11 +132,20 @@ public class TaskSerializationUtils {
     // created
     runner.setForceStepInstanceReuse(true);
 
-    // Initialize scheduler
-    TaskSchedulerFactory.initialize();
+    // Initialize scheduler, only once when the JVM executes several tasks
+    if (!TaskSchedulerFactory.isInitialized()) {
+      TaskSchedulerFactory.initialize();
+    }
+
+    try {
 
-    // Get the result
-    return runner.run();
+      // Get the result
+      return runner.run();
+    } finally {
+
+      // Release the module instance of the task
+      StepInstances.getInstance().removeStep(context.getCurrentStep());
+    }
   }
 
   /**
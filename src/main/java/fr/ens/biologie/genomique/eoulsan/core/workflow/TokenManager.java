@@ -82,7 +82,8 @@ import fr.ens.biologie.genomique.eoulsan.design.Sample;
  */
 public class TokenManager implements Runnable {
 
-  private static final int CHECKING_DELAY_MS = 1000;
+  /** Maximal delay between two checks if no event wakes up the thread. */
+  private static final int CHECKING_DELAY_MS = 5000;
 
   private final AbstractStep step;
   private final TaskScheduler scheduler;
@@ -109,6 +110,9 @@ public class TokenManager implements Runnable {
   private volatile boolean endOfStep;
   private boolean isStarted;
 
+  private final Object checkLock = new Object();
+  private boolean checkRequired = true;
+
   //
   // Getters
   //
@@ -342,6 +346,9 @@ public class TokenManager implements Runnable {
 
         if (sip.getName().equals(linkInputPort.getName())) {
           postToken(linkInputPort, token);
+
+          // New tasks may be created
+          requestCheck();
         }
       }
     }
@@ -353,6 +360,15 @@ public class TokenManager implements Runnable {
     }
   }
 
+  @Subscribe
+  public void stepStateEvent(final StepStateEvent event) {
+
+    // Wake up the thread when the state of the step changes
+    if (event != null && event.getStep() == this.step) {
+      requestCheck();
+    }
+  }
+
   /**
    * Post a token to the the token manager.
    * @param inputPort port where the token must be posted
@@ -944,6 +960,39 @@ public class TokenManager implements Runnable {
 
     this.isStarted = false;
     this.endOfStep = true;
+
+    requestCheck();
+  }
+
+  /**
+   * Wake up the token manager thread to check if new tasks can be created.
+   */
+  private void requestCheck() {
+
+    synchronized (this.checkLock) {
+      this.checkRequired = true;
+      this.checkLock.notifyAll();
+    }
+  }
+
+  /**
+   * Wait a request for checking if new tasks can be created. The waiting
+   * cannot exceed CHECKING_DELAY_MS.
+   */
+  private void waitCheckRequest() {
+
+    synchronized (this.checkLock) {
+
+      if (!this.checkRequired) {
+        try {
+          this.checkLock.wait(CHECKING_DELAY_MS);
+        } catch (InterruptedException e) {
+          getLogger().severe(e.getMessage());
+        }
+      }
+
+      this.checkRequired = false;
+    }
   }
 
   @Override
@@ -956,11 +1005,8 @@ public class TokenManager implements Runnable {
 
       do {
 
-        try {
-          Thread.sleep(CHECKING_DELAY_MS);
-        } catch (InterruptedException e) {
-          getLogger().severe(e.getMessage());
-        }
+        // Wait a new token or a change of the state of the step
+        waitCheckRequest();
 
         // Do nothing until the step is not ready
         final StepState state = this.step.getState();
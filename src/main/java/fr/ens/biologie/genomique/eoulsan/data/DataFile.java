@@ -39,6 +39,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.Settings;
 import fr.ens.biologie.genomique.eoulsan.data.protocols.DataProtocol;
 import fr.ens.biologie.genomique.eoulsan.data.protocols.DataProtocolService;
 import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
@@ -329,6 +331,18 @@ public class DataFile implements Comparable<DataFile>, Serializable {
       return os;
     }
 
+    // Use parallel compression for gzip files if enabled in settings
+    if (ct == CompressionType.GZIP && EoulsanRuntime.isRuntime()) {
+
+      final Settings settings = EoulsanRuntime.getSettings();
+
+      if (settings.isParallelGZipCompression()) {
+        return CompressionType.createParallelGZipOutputStream(os,
+            settings.getParallelGZipCompressionThreads(),
+            settings.getParallelGZipCompressionBlockSize());
+      }
+    }
+
     return ct.createOutputStream(os);
   }
 
@@ -361,6 +375,17 @@ public class DataFile implements Comparable<DataFile>, Serializable {
       return is;
     }
 
+    // Uncompress data in a background thread if enabled in settings
+    if (ct.isCompressed() && EoulsanRuntime.isRuntime()) {
+
+      final Settings settings = EoulsanRuntime.getSettings();
+
+      if (settings.isReadAheadDecompression()) {
+        return CompressionType.createReadAheadInputStream(is, ct,
+            settings.getReadAheadDecompressionBufferSize());
+      }
+    }
+
     return ct.createInputStream(is);
   }
 
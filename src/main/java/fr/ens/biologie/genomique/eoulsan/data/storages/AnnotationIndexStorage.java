@@ -0,0 +1,57 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.data.storages;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This interface define an annotation index storage. An annotation index is
+ * the genomic array of the features of an annotation file for a set of
+ * parameters of the expression counter.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public interface AnnotationIndexStorage {
+
+  /**
+   * Get the annotation index that corresponds to an annotation DataFile.
+   * @param annotationFile annotation DataFile
+   * @param indexKey key of the parameters used to create the index
+   * @return an ImmutableGenomicArray object or null if the annotation index
+   *         has not yet been computed
+   */
+  ImmutableGenomicArray<String> get(DataFile annotationFile, String indexKey);
+
+  /**
+   * Put the annotation index in the storage.
+   * @param annotationFile annotation DataFile
+   * @param indexKey key of the parameters used to create the index
+   * @param index the annotation index
+   */
+  void put(DataFile annotationFile, String indexKey,
+      ImmutableGenomicArray<String> index);
+
+}
@@ -0,0 +1,444 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.data.storages;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.DataFileMetadata;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a basic AnnotationIndexStorage based on an index file. The
+ * annotation indexes are stored in a binary format and are identified by the
+ * MD5 sum and the length of the annotation file and by the key of the
+ * parameters used to create the index.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class SimpleAnnotationIndexStorage implements AnnotationIndexStorage {
+
+  private static final String INDEX_FILENAME = "annotation_index_storage.txt";
+  private static final String INDEX_FILE_EXTENSION = ".gaidx";
+  private static final String LOCK_FILENAME = "annotation_index_storage.lock";
+  private static final String TMP_EXTENSION = ".tmp";
+
+  /** Lock of the index files for the threads of the current JVM. */
+  private static final Object INDEX_FILE_LOCK = new Object();
+
+  private final DataFile dir;
+  private final Map<String, IndexEntry> entries = new LinkedHashMap<>();
+  private String lastMD5Computed;
+  private DataFile lastAnnotationFile;
+  private long lastAnnotationFileModified;
+
+  /**
+   * This inner class define an entry of the index file.
+   * @author Laurent Jourdren
+   */
+  private static final class IndexEntry {
+
+    String annotationName;
+    long annotationFileLength;
+    String annotationFileMD5Sum;
+    String indexKey;
+    DataFile file;
+
+    private String getKey() {
+      return createKey(this.annotationFileLength, this.annotationFileMD5Sum,
+          this.indexKey);
+    }
+
+    @Override
+    public String toString() {
+      return this.getClass().getSimpleName()
+          + "{annotationName=" + this.annotationName
+          + ", annotationFileLength=" + this.annotationFileLength
+          + ", annotationFileMD5Sum=" + this.annotationFileMD5Sum
+          + ", indexKey=" + this.indexKey + ", file=" + this.file + "}";
+    }
+  }
+
+  //
+  // Index management methods
+  //
+
+  /**
+   * Load the information from the index file
+   * @throws IOException if an error occurs while loading the index file
+   */
+  private void load() throws IOException {
+
+    if (!this.dir.exists()) {
+      throw new IOException("Annotation index storage directory not found: "
+          + this.dir.getSource());
+    }
+
+    final DataFile indexFile = new DataFile(this.dir, INDEX_FILENAME);
+
+    // Create an empty index file if no index exists
+    if (!indexFile.exists()) {
+
+      save();
+      return;
+    }
+
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(indexFile.open(), Globals.DEFAULT_CHARSET))) {
+
+      final Pattern pattern = Pattern.compile("\t");
+      String line = null;
+
+      while ((line = br.readLine()) != null) {
+
+        final String trimmedLine = line.trim();
+        if ("".equals(trimmedLine) || trimmedLine.startsWith("#")) {
+          continue;
+        }
+
+        final List<String> fields = Arrays.asList(pattern.split(trimmedLine));
+
+        if (fields.size() != 5) {
+          continue;
+        }
+
+        final IndexEntry e = new IndexEntry();
+        e.annotationName = fields.get(0);
+        e.annotationFileMD5Sum = fields.get(1);
+        e.annotationFileLength = Long.parseLong(fields.get(2));
+        e.indexKey = fields.get(3);
+        e.file = new DataFile(this.dir, fields.get(4));
+
+        if (e.file.exists()) {
+          this.entries.put(e.getKey(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Save the information in the index file. For a local storage, the index
+   * file is replaced atomically to never expose a partial index file to the
+   * other tasks.
+   * @throws IOException if an error occurs while saving the index file
+   */
+  private void save() throws IOException {
+
+    if (!this.dir.exists()) {
+      throw new IOException("Annotation index storage directory not found: "
+          + this.dir.getSource());
+    }
+
+    final DataFile indexFile = new DataFile(this.dir, INDEX_FILENAME);
+    final File localIndexFile = indexFile.toFile();
+    final DataFile outputFile = localIndexFile == null
+        ? indexFile : new DataFile(this.dir, INDEX_FILENAME + TMP_EXTENSION);
+
+    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+        outputFile.create(), Globals.DEFAULT_CHARSET))) {
+
+      writer.write("#Annotation\tAnnotationFileMD5\tAnnotationFileLength"
+          + "\tIndexKey\tIndexFile\n");
+
+      for (Map.Entry<String, IndexEntry> e : this.entries.entrySet()) {
+
+        IndexEntry ie = e.getValue();
+
+        writer.append(ie.annotationName);
+        writer.append("\t");
+        writer.append(ie.annotationFileMD5Sum);
+        writer.append("\t");
+        writer.append(Long.toString(ie.annotationFileLength));
+        writer.append("\t");
+        writer.append(ie.indexKey);
+        writer.append("\t");
+        writer.append(ie.file.getName());
+        writer.append("\n");
+      }
+    }
+
+    if (localIndexFile != null) {
+      Files.move(outputFile.toFile().toPath(), localIndexFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /**
+   * Reload the information from the index file and add an entry to the index
+   * file. For a local storage, the index file is locked during the update to
+   * not lose the entries added by the other tasks.
+   * @param entry the entry to add, can be null
+   * @throws IOException if an error occurs while updating the index file
+   */
+  private void update(final IndexEntry entry) throws IOException {
+
+    final File localDir = this.dir.toFile();
+
+    // Only one thread of one JVM updates the index file at the same time
+    synchronized (INDEX_FILE_LOCK) {
+
+      if (localDir == null || !localDir.isDirectory()) {
+        updateLocked(entry);
+        return;
+      }
+
+      try (RandomAccessFile lockFile =
+          new RandomAccessFile(new File(localDir, LOCK_FILENAME), "rw");
+          FileLock lock = lockFile.getChannel().lock()) {
+        updateLocked(entry);
+      }
+    }
+  }
+
+  /**
+   * Reload the information from the index file and add an entry to the index
+   * file once the index file is locked.
+   * @param entry the entry to add, can be null
+   * @throws IOException if an error occurs while updating the index file
+   */
+  private void updateLocked(final IndexEntry entry) throws IOException {
+
+    this.entries.clear();
+    load();
+
+    if (entry != null) {
+      this.entries.put(entry.getKey(), entry);
+      save();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  private String createKey(final DataFile annotationFile,
+      final String indexKey) {
+
+    try {
+      final DataFileMetadata md = annotationFile.getMetaData();
+
+      final String md5Sum = computeMD5Sum(annotationFile);
+
+      return createKey(md.getContentLength(), md5Sum, indexKey);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String createKey(final long annotationFileLength,
+      final String annotationFileMD5Sum, final String indexKey) {
+
+    return annotationFileMD5Sum + '\t' + annotationFileLength + '\t' + indexKey;
+  }
+
+  private String computeMD5Sum(final DataFile annotationFile)
+      throws IOException {
+
+    DataFileMetadata md = null;
+
+    try {
+      md = annotationFile.getMetaData();
+    } catch (IOException e) {
+    }
+
+    if (md != null
+        && annotationFile.equals(this.lastAnnotationFile)
+        && this.lastAnnotationFileModified == md.getLastModified()
+        && this.lastMD5Computed != null) {
+      return this.lastMD5Computed;
+    }
+
+    final String md5Sum = FileUtils.computeMD5Sum(annotationFile.rawOpen());
+
+    if (md != null && md5Sum != null) {
+      this.lastAnnotationFile = annotationFile;
+      this.lastAnnotationFileModified = md.getLastModified();
+      this.lastMD5Computed = md5Sum;
+    }
+
+    return md5Sum;
+  }
+
+  /**
+   * Compute the MD5 sum of an index key. This sum is used in the name of the
+   * annotation index file.
+   * @param indexKey the index key
+   * @return a string with the MD5 sum of the index key
+   */
+  private static String computeMD5Sum(final String indexKey) {
+
+    try {
+      final MessageDigest md5Digest = MessageDigest.getInstance("MD5");
+      md5Digest.update(indexKey.getBytes(Globals.DEFAULT_CHARSET));
+
+      return StringUtils.md5DigestToString(md5Digest);
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(indexKey.hashCode());
+    }
+  }
+
+  //
+  // Interface methods
+  //
+
+  @Override
+  public ImmutableGenomicArray<String> get(final DataFile annotationFile,
+      final String indexKey) {
+
+    requireNonNull(annotationFile, "Annotation file is null");
+    requireNonNull(indexKey, "Index key is null");
+
+    final IndexEntry entry =
+        this.entries.get(createKey(annotationFile, indexKey));
+
+    if (entry == null || entry.file == null) {
+      return null;
+    }
+
+    try {
+      return ImmutableGenomicArray.load(entry.file.open());
+    } catch (IOException e) {
+      getLogger()
+          .warning("Cannot read annotation index file: " + e.getMessage());
+      return null;
+    }
+  }
+
+  @Override
+  public void put(final DataFile annotationFile, final String indexKey,
+      final ImmutableGenomicArray<String> index) {
+
+    requireNonNull(annotationFile, "Annotation file is null");
+    requireNonNull(indexKey, "Index key is null");
+    requireNonNull(index, "Annotation index is null");
+
+    if (indexKey.indexOf('\t') != -1 || indexKey.indexOf('\n') != -1) {
+      throw new IllegalArgumentException(
+          "Invalid character in index key: " + indexKey);
+    }
+
+    final String key = createKey(annotationFile, indexKey);
+
+    if (this.entries.containsKey(key)) {
+      return;
+    }
+
+    try {
+      final DataFileMetadata md = annotationFile.getMetaData();
+
+      final IndexEntry entry = new IndexEntry();
+      entry.annotationName = annotationFile.getName();
+      entry.annotationFileLength = md.getContentLength();
+      entry.annotationFileMD5Sum = computeMD5Sum(annotationFile);
+      entry.indexKey = indexKey;
+
+      entry.file = new DataFile(this.dir,
+          entry.annotationFileMD5Sum
+              + "_" + entry.annotationFileLength + "_"
+              + computeMD5Sum(indexKey) + INDEX_FILE_EXTENSION);
+
+      // Write the index in a temporary file to never expose a partial index
+      // to the other tasks
+      final DataFile tmpFile =
+          new DataFile(this.dir, entry.file.getName() + TMP_EXTENSION);
+      index.save(tmpFile.create());
+      tmpFile.renameTo(entry.file);
+
+      // Reload the index file to keep the entries added by other tasks
+      update(entry);
+
+      getLogger().info("Successfully added "
+          + entry.annotationName
+          + " annotation index to annotation index storage.");
+    } catch (IOException e) {
+      getLogger().warning(
+          "Cannot add annotation index file to annotation index storage: "
+              + e.getMessage());
+    }
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Create an AnnotationIndexStorage
+   * @param dir the path of the annotation indexes storage
+   * @return an AnnotationIndexStorage object if the path contains an index
+   *         storage or null if no index storage is found
+   */
+  public static AnnotationIndexStorage getInstance(final DataFile dir) {
+
+    try {
+      return new SimpleAnnotationIndexStorage(dir);
+    } catch (IOException | NullPointerException e) {
+      return null;
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   * @param dir Path to the index storage
+   * @throws IOException if an error occurs while testing the index storage
+   */
+  private SimpleAnnotationIndexStorage(final DataFile dir) throws IOException {
+
+    requireNonNull(dir, "Index directory is null");
+
+    this.dir = dir;
+    update(null);
+
+    getLogger().info("Annotation index storage found. "
+        + this.entries.size() + " entries in : " + dir.getSource());
+  }
+
+}
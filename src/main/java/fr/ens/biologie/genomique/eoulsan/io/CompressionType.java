@@ -238,6 +238,26 @@ public enum CompressionType {
         "Unable to find a class to create a BZip2InputStream.");
   }
 
+  /**
+   * Create an input stream that uncompress data in a background thread.
+   * @param is the input stream to uncompress
+   * @param compressionType the compression type of the input stream
+   * @param bufferSize size of the read-ahead buffers
+   * @return a uncompressed input stream
+   * @throws IOException if an error occurs while creating the input stream
+   */
+  public static InputStream createReadAheadInputStream(final InputStream is,
+      final CompressionType compressionType, final int bufferSize)
+      throws IOException {
+
+    if (is == null || compressionType == null) {
+      return null;
+    }
+
+    return new ReadAheadInputStream(compressionType.createInputStream(is),
+        ReadAheadInputStream.DEFAULT_BUFFER_COUNT, bufferSize);
+  }
+
   //
   // OutputStream
   //
@@ -254,6 +274,19 @@ public enum CompressionType {
     return new GZIPOutputStream(os);
   }
 
+  /**
+   * Create a GZip output stream that compress data using several threads.
+   * @param os the output stream to compress
+   * @param threads number of compression threads
+   * @param blockSize size of the independently compressed blocks
+   * @return a compressed output stream
+   */
+  public static OutputStream createParallelGZipOutputStream(
+      final OutputStream os, final int threads, final int blockSize) {
+
+    return new ParallelGZIPOutputStream(os, threads, blockSize);
+  }
+
   /**
    * Create a BZip2 output stream.
    * @param os the output stream to compress
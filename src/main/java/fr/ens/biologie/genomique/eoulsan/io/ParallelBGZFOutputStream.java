@@ -0,0 +1,426 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class define an output stream that compress data in BGZF format using
+ * several threads. BGZF is the block compression format used by BAM files: the
+ * data is split in blocks of at most 64 KB that are compressed independently
+ * as gzip members with an extra field that contains the size of the block.
+ * Several consecutive blocks are compressed by each task and the blocks are
+ * written in order. The stream ends with the BGZF end of file marker.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class ParallelBGZFOutputStream extends OutputStream {
+
+  /** Default compression level, the same as htsjdk. */
+  public static final int DEFAULT_COMPRESSION_LEVEL = 5;
+
+  /** Maximal size of the uncompressed data of a block. */
+  public static final int BLOCK_SIZE = 0xff00;
+
+  // Number of blocks compressed by a task
+  private static final int BLOCKS_PER_TASK = 16;
+
+  private static final int BLOCK_HEADER_LENGTH = 18;
+  private static final int BLOCK_FOOTER_LENGTH = 8;
+  private static final int MAX_BLOCK_LENGTH = 0x10000;
+
+  /** BGZF end of file marker. */
+  private static final byte[] EOF_BLOCK = {0x1f, (byte) 0x8b, 0x08, 0x04, 0x00,
+      0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+      0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+  private static final AtomicInteger STREAM_COUNT = new AtomicInteger();
+
+  private final OutputStream os;
+  private final int compressionLevel;
+  private final ExecutorService executor;
+  private final Deque<Future<byte[]>> pendingTasks = new ArrayDeque<>();
+  private final int maxPendingTasks;
+  private final int taskSize = BLOCK_SIZE * BLOCKS_PER_TASK;
+
+  private byte[] buffer;
+  private int count;
+  private boolean closed;
+
+  //
+  // OutputStream methods
+  //
+
+  @Override
+  public void write(final int b) throws IOException {
+
+    checkClosed();
+
+    this.buffer[this.count++] = (byte) b;
+
+    if (this.count == this.taskSize) {
+      submitTask();
+    }
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (b == null) {
+      throw new NullPointerException(
+          "the array of bytes argument cannot be null");
+    }
+
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    checkClosed();
+
+    int offset = off;
+    int remaining = len;
+
+    while (remaining > 0) {
+
+      final int n = Math.min(remaining, this.taskSize - this.count);
+      System.arraycopy(b, offset, this.buffer, this.count, n);
+      this.count += n;
+      offset += n;
+      remaining -= n;
+
+      if (this.count == this.taskSize) {
+        submitTask();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+
+    checkClosed();
+
+    // Only write the blocks already compressed to keep a good compression
+    // ratio
+    while (!this.pendingTasks.isEmpty()
+        && this.pendingTasks.peekFirst().isDone()) {
+      writeNextTask();
+    }
+
+    this.os.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    // The underlying stream is always closed, without hiding the exception
+    // thrown while writing the last blocks
+    try (OutputStream out = this.os) {
+
+      if (this.count > 0) {
+        submitTask();
+      }
+
+      while (!this.pendingTasks.isEmpty()) {
+        writeNextTask();
+      }
+
+      out.write(EOF_BLOCK);
+
+    } finally {
+      this.closed = true;
+      this.buffer = null;
+      this.executor.shutdownNow();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Check if the stream is closed.
+   * @throws IOException if the stream is closed
+   */
+  private void checkClosed() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Submit the current data to the compression threads.
+   * @throws IOException if an error occurs while writing previous blocks
+   */
+  private void submitTask() throws IOException {
+
+    final byte[] data = this.buffer;
+    final int length = this.count;
+    final int level = this.compressionLevel;
+
+    this.pendingTasks
+        .add(this.executor.submit(() -> compress(data, length, level)));
+
+    this.buffer = new byte[this.taskSize];
+    this.count = 0;
+
+    // Limit the memory used by the blocks waiting to be written
+    while (this.pendingTasks.size() > this.maxPendingTasks) {
+      writeNextTask();
+    }
+  }
+
+  /**
+   * Wait the end of the compression of the next task and write its blocks.
+   * @throws IOException if an error occurs while compressing or writing the
+   *           blocks
+   */
+  private void writeNextTask() throws IOException {
+
+    final Future<byte[]> future = this.pendingTasks.removeFirst();
+
+    try {
+      this.os.write(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting block compression");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Compress data as consecutive BGZF blocks.
+   * @param data the data to compress
+   * @param length the length of the data
+   * @param level the compression level
+   * @return an array of bytes with the BGZF blocks
+   */
+  private static byte[] compress(final byte[] data, final int length,
+      final int level) {
+
+    final ByteArrayOutputStream baos =
+        new ByteArrayOutputStream(length / 2 + MAX_BLOCK_LENGTH);
+    final byte[] block = new byte[MAX_BLOCK_LENGTH];
+    final Deflater deflater = new Deflater(level, true);
+    final CRC32 crc = new CRC32();
+
+    try {
+
+      for (int off = 0; off < length; off += BLOCK_SIZE) {
+
+        final int len = Math.min(BLOCK_SIZE, length - off);
+        int cdataLength =
+            deflate(deflater, data, off, len, block, BLOCK_HEADER_LENGTH);
+
+        // Store the data without compression if the block is too large
+        if (cdataLength == -1) {
+
+          final Deflater noCompression =
+              new Deflater(Deflater.NO_COMPRESSION, true);
+          try {
+            cdataLength = deflate(noCompression, data, off, len, block,
+                BLOCK_HEADER_LENGTH);
+          } finally {
+            noCompression.end();
+          }
+        }
+
+        crc.reset();
+        crc.update(data, off, len);
+
+        final int blockLength =
+            BLOCK_HEADER_LENGTH + cdataLength + BLOCK_FOOTER_LENGTH;
+
+        writeBlockHeader(block, blockLength);
+        int pos = BLOCK_HEADER_LENGTH + cdataLength;
+        pos = writeInt32(block, pos, (int) crc.getValue());
+        writeInt32(block, pos, len);
+
+        baos.write(block, 0, blockLength);
+      }
+
+    } finally {
+      deflater.end();
+    }
+
+    return baos.toByteArray();
+  }
+
+  /**
+   * Deflate data in a block.
+   * @param deflater the deflater to use
+   * @param data the data to compress
+   * @param off the offset of the data
+   * @param len the length of the data
+   * @param block the output block
+   * @param blockOff the offset in the block where to write compressed data
+   * @return the length of the compressed data or -1 if the compressed data
+   *         does not fit in the block
+   */
+  private static int deflate(final Deflater deflater, final byte[] data,
+      final int off, final int len, final byte[] block, final int blockOff) {
+
+    final int maxLength =
+        MAX_BLOCK_LENGTH - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+
+    deflater.reset();
+    deflater.setInput(data, off, len);
+    deflater.finish();
+
+    final int n = deflater.deflate(block, blockOff, maxLength);
+
+    return deflater.finished() ? n : -1;
+  }
+
+  /**
+   * Write the header of a BGZF block.
+   * @param block the block
+   * @param blockLength the total length of the block
+   */
+  private static void writeBlockHeader(final byte[] block,
+      final int blockLength) {
+
+    // ID1, ID2, CM, FLG
+    block[0] = 0x1f;
+    block[1] = (byte) 0x8b;
+    block[2] = 0x08;
+    block[3] = 0x04;
+
+    // MTIME, XFL, OS
+    block[4] = 0;
+    block[5] = 0;
+    block[6] = 0;
+    block[7] = 0;
+    block[8] = 0;
+    block[9] = (byte) 0xff;
+
+    // XLEN
+    block[10] = 6;
+    block[11] = 0;
+
+    // Extra subfield with the size of the block minus 1
+    block[12] = 'B';
+    block[13] = 'C';
+    block[14] = 2;
+    block[15] = 0;
+    block[16] = (byte) (blockLength - 1);
+    block[17] = (byte) ((blockLength - 1) >>> 8);
+  }
+
+  /**
+   * Write a little endian 32 bits integer.
+   * @param block the block
+   * @param pos position in the block
+   * @param value the value to write
+   * @return the position after the value
+   */
+  private static int writeInt32(final byte[] block, final int pos,
+      final int value) {
+
+    block[pos] = (byte) value;
+    block[pos + 1] = (byte) (value >>> 8);
+    block[pos + 2] = (byte) (value >>> 16);
+    block[pos + 3] = (byte) (value >>> 24);
+
+    return pos + 4;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param os output stream
+   * @param threads number of compression threads
+   */
+  public ParallelBGZFOutputStream(final OutputStream os, final int threads) {
+
+    this(os, threads, DEFAULT_COMPRESSION_LEVEL);
+  }
+
+  /**
+   * Public constructor.
+   * @param os output stream
+   * @param threads number of compression threads
+   * @param compressionLevel compression level
+   */
+  public ParallelBGZFOutputStream(final OutputStream os, final int threads,
+      final int compressionLevel) {
+
+    if (os == null) {
+      throw new NullPointerException("the output stream argument is null");
+    }
+
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+          "the number of threads must be greater than 0: " + threads);
+    }
+
+    if (compressionLevel < Deflater.NO_COMPRESSION
+        || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException(
+          "invalid compression level: " + compressionLevel);
+    }
+
+    this.os = os;
+    this.compressionLevel = compressionLevel;
+    this.buffer = new byte[this.taskSize];
+    this.maxPendingTasks = 2 * threads;
+
+    final String threadNamePrefix =
+        "parallel-bgzf-" + STREAM_COUNT.incrementAndGet() + "-";
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+
+      final Thread t =
+          new Thread(r, threadNamePrefix + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+}
@@ -0,0 +1,290 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class define an output stream that compress data in gzip format using
+ * several threads. The data is split in blocks that are compressed
+ * independently as gzip members. The members are written in order and the
+ * result is a multi-member gzip file that can be read by all the standard gzip
+ * readers.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+  /** Default size of the blocks. */
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  private static final AtomicInteger STREAM_COUNT = new AtomicInteger();
+
+  private final OutputStream os;
+  private final ExecutorService executor;
+  private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+  private final int maxPendingBlocks;
+  private final int blockSize;
+
+  private byte[] buffer;
+  private int count;
+  private long blockCount;
+  private boolean closed;
+
+  //
+  // OutputStream methods
+  //
+
+  @Override
+  public void write(final int b) throws IOException {
+
+    checkClosed();
+
+    this.buffer[this.count++] = (byte) b;
+
+    if (this.count == this.blockSize) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (b == null) {
+      throw new NullPointerException(
+          "the array of bytes argument cannot be null");
+    }
+
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    checkClosed();
+
+    int offset = off;
+    int remaining = len;
+
+    while (remaining > 0) {
+
+      final int n = Math.min(remaining, this.blockSize - this.count);
+      System.arraycopy(b, offset, this.buffer, this.count, n);
+      this.count += n;
+      offset += n;
+      remaining -= n;
+
+      if (this.count == this.blockSize) {
+        submitBlock();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+
+    checkClosed();
+
+    // Only write the blocks already compressed to keep a good compression
+    // ratio
+    while (!this.pendingBlocks.isEmpty()
+        && this.pendingBlocks.peekFirst().isDone()) {
+      writeNextBlock();
+    }
+
+    this.os.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    // The underlying stream is always closed, without hiding the exception
+    // thrown while writing the last blocks
+    try (OutputStream out = this.os) {
+
+      // An empty gzip member is required for empty data
+      if (this.count > 0 || this.blockCount == 0) {
+        submitBlock();
+      }
+
+      while (!this.pendingBlocks.isEmpty()) {
+        writeNextBlock();
+      }
+
+    } finally {
+      this.closed = true;
+      this.buffer = null;
+      this.executor.shutdownNow();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Check if the stream is closed.
+   * @throws IOException if the stream is closed
+   */
+  private void checkClosed() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Submit the current block to the compression threads.
+   * @throws IOException if an error occurs while writing a previous block
+   */
+  private void submitBlock() throws IOException {
+
+    final byte[] block = this.buffer;
+    final int length = this.count;
+
+    this.pendingBlocks.add(this.executor.submit(() -> compress(block, length)));
+    this.blockCount++;
+
+    this.buffer = new byte[this.blockSize];
+    this.count = 0;
+
+    // Limit the memory used by the blocks waiting to be written
+    while (this.pendingBlocks.size() > this.maxPendingBlocks) {
+      writeNextBlock();
+    }
+  }
+
+  /**
+   * Wait the end of the compression of the next block and write it.
+   * @throws IOException if an error occurs while compressing or writing the
+   *           block
+   */
+  private void writeNextBlock() throws IOException {
+
+    final Future<byte[]> future = this.pendingBlocks.removeFirst();
+
+    try {
+      this.os.write(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting block compression");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Compress a block as a gzip member.
+   * @param block the block to compress
+   * @param length the length of the data in the block
+   * @return an array of bytes with the gzip member
+   * @throws IOException if an error occurs while compressing the block
+   */
+  private static byte[] compress(final byte[] block, final int length)
+      throws IOException {
+
+    final ByteArrayOutputStream baos =
+        new ByteArrayOutputStream(length / 2 + GZIP_BUFFER_SIZE);
+
+    try (GZIPOutputStream gzos =
+        new GZIPOutputStream(baos, GZIP_BUFFER_SIZE)) {
+      gzos.write(block, 0, length);
+    }
+
+    return baos.toByteArray();
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param os output stream
+   * @param threads number of compression threads
+   */
+  public ParallelGZIPOutputStream(final OutputStream os, final int threads) {
+
+    this(os, threads, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Public constructor.
+   * @param os output stream
+   * @param threads number of compression threads
+   * @param blockSize size of the blocks to compress
+   */
+  public ParallelGZIPOutputStream(final OutputStream os, final int threads,
+      final int blockSize) {
+
+    if (os == null) {
+      throw new NullPointerException("the output stream argument is null");
+    }
+
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+          "the number of threads must be greater than 0: " + threads);
+    }
+
+    if (blockSize < 1) {
+      throw new IllegalArgumentException(
+          "the block size must be greater than 0: " + blockSize);
+    }
+
+    this.os = os;
+    this.blockSize = blockSize;
+    this.buffer = new byte[blockSize];
+    this.maxPendingBlocks = 2 * threads;
+
+    final String threadNamePrefix =
+        "parallel-gzip-" + STREAM_COUNT.incrementAndGet() + "-";
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+
+      final Thread t =
+          new Thread(r, threadNamePrefix + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+}
@@ -0,0 +1,365 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class define an input stream that reads its source stream in a
+ * background thread. The data is read in advance into a ring of buffers, so
+ * when the source stream is a decompression stream, the decompression of the
+ * data runs while the consumer processes the previous buffers. The class
+ * provides the throughput of the stream and the time the consumer has waited
+ * for data.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  /** Default size of the buffers. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  /** Default number of buffers. */
+  public static final int DEFAULT_BUFFER_COUNT = 4;
+
+  private static final AtomicInteger STREAM_COUNT = new AtomicInteger();
+
+  /** Marker for the end of the source stream. */
+  private static final Buffer END_OF_STREAM = new Buffer(0);
+
+  private final InputStream is;
+  private final BlockingQueue<Buffer> filledBuffers;
+  private final BlockingQueue<Buffer> freeBuffers;
+  private final Thread thread;
+
+  private Buffer current;
+  private int pos;
+  private boolean eof;
+  private boolean closed;
+  private volatile IOException exception;
+
+  private long bytesRead;
+  private long stallTimeNanos;
+  private final long startTimeNanos = System.nanoTime();
+
+  /**
+   * This class define a buffer of the ring.
+   */
+  private static final class Buffer {
+
+    private final byte[] data;
+    private int length;
+
+    private Buffer(final int size) {
+      this.data = new byte[size];
+    }
+  }
+
+  //
+  // InputStream methods
+  //
+
+  @Override
+  public int read() throws IOException {
+
+    if (!fillCurrentBuffer()) {
+      return -1;
+    }
+
+    this.bytesRead++;
+
+    return this.current.data[this.pos++] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (b == null) {
+      throw new NullPointerException(
+          "the array of bytes argument cannot be null");
+    }
+
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!fillCurrentBuffer()) {
+      return -1;
+    }
+
+    final int n = Math.min(len, this.current.length - this.pos);
+    System.arraycopy(this.current.data, this.pos, b, off, n);
+    this.pos += n;
+    this.bytesRead += n;
+
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+
+    checkClosed();
+
+    return this.current == null ? 0 : this.current.length - this.pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    // Stop the background thread before closing the source stream
+    this.thread.interrupt();
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    this.is.close();
+
+    getLogger().fine("Read-ahead stream: "
+        + this.bytesRead + " bytes read at "
+        + String.format("%.1f", getReadRate() / (1024.0 * 1024.0))
+        + " MB/s, consumer stalled " + getStallTime() + " ms");
+  }
+
+  //
+  // Metrics
+  //
+
+  /**
+   * Get the number of bytes read by the consumer.
+   * @return the number of bytes read
+   */
+  public long getBytesRead() {
+
+    return this.bytesRead;
+  }
+
+  /**
+   * Get the time the consumer has waited for data.
+   * @return the stall time in milliseconds
+   */
+  public long getStallTime() {
+
+    return TimeUnit.NANOSECONDS.toMillis(this.stallTimeNanos);
+  }
+
+  /**
+   * Get the read rate of the consumer since the creation of the stream.
+   * @return the read rate in bytes per second
+   */
+  public double getReadRate() {
+
+    final long elapsed = System.nanoTime() - this.startTimeNanos;
+
+    if (elapsed <= 0) {
+      return 0;
+    }
+
+    return this.bytesRead * 1e9 / elapsed;
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Check if the stream is closed.
+   * @throws IOException if the stream is closed
+   */
+  private void checkClosed() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Get a current buffer with remaining data.
+   * @return false if the end of the stream has been reached
+   * @throws IOException if an error occurs while reading the source stream
+   */
+  private boolean fillCurrentBuffer() throws IOException {
+
+    checkClosed();
+
+    while (this.current == null || this.pos >= this.current.length) {
+
+      // Give back the consumed buffer to the background thread
+      if (this.current != null) {
+        this.freeBuffers.add(this.current);
+        this.current = null;
+      }
+
+      if (this.eof) {
+        return false;
+      }
+
+      final long start = System.nanoTime();
+      final Buffer buffer;
+      try {
+        buffer = this.filledBuffers.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while waiting data from the read-ahead thread");
+      }
+      this.stallTimeNanos += System.nanoTime() - start;
+
+      if (buffer == END_OF_STREAM) {
+
+        this.eof = true;
+
+        if (this.exception != null) {
+          throw this.exception;
+        }
+
+        return false;
+      }
+
+      this.current = buffer;
+      this.pos = 0;
+    }
+
+    return true;
+  }
+
+  /**
+   * Read the source stream in the buffers. This method is executed by the
+   * background thread.
+   */
+  private void readSource() {
+
+    try {
+
+      boolean sourceEnd = false;
+
+      while (!sourceEnd) {
+
+        final Buffer buffer = this.freeBuffers.take();
+
+        // Fill the buffer
+        int length = 0;
+        while (length < buffer.data.length) {
+
+          final int n =
+              this.is.read(buffer.data, length, buffer.data.length - length);
+
+          if (n == -1) {
+            sourceEnd = true;
+            break;
+          }
+          length += n;
+        }
+
+        if (length > 0) {
+          buffer.length = length;
+          this.filledBuffers.put(buffer);
+        }
+      }
+
+    } catch (IOException e) {
+      this.exception = e;
+    } catch (RuntimeException e) {
+      this.exception = new IOException(e);
+    } catch (InterruptedException e) {
+      // The stream has been closed
+      return;
+    }
+
+    // The queue has a free slot for the marker
+    this.filledBuffers.add(END_OF_STREAM);
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param is source input stream
+   */
+  public ReadAheadInputStream(final InputStream is) {
+
+    this(is, DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Public constructor.
+   * @param is source input stream
+   * @param bufferCount number of buffers
+   * @param bufferSize size of the buffers
+   */
+  public ReadAheadInputStream(final InputStream is, final int bufferCount,
+      final int bufferSize) {
+
+    if (is == null) {
+      throw new NullPointerException("the input stream argument is null");
+    }
+
+    if (bufferCount < 1) {
+      throw new IllegalArgumentException(
+          "the number of buffers must be greater than 0: " + bufferCount);
+    }
+
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException(
+          "the size of the buffers must be greater than 0: " + bufferSize);
+    }
+
+    this.is = is;
+    this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+    this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+
+    for (int i = 0; i < bufferCount; i++) {
+      this.freeBuffers.add(new Buffer(bufferSize));
+    }
+
+    this.thread = new Thread(this::readSource,
+        "read-ahead-" + STREAM_COUNT.incrementAndGet());
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+}
@@ -31,13 +31,32 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 import fr.ens.biologie.genomique.eoulsan.Globals;
 import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
+import fr.ens.biologie.genomique.eoulsan.io.comparators.MultisetDigest.RecordHash;
 import fr.ens.biologie.genomique.eoulsan.util.EnhancedBloomFilter;
 
 /**
  * This abstract class define methods to compare files with use BloomFilter.
+ * In exact comparison mode, an order-independent digest of the records of
+ * each file is computed in parallel instead of the Bloom filter, and the files
+ * are read a second time only if the digests differ, to find the first
+ * differing record.
  * @since 2.0
  * @author Sandrine Perrin
  */
@@ -48,9 +67,117 @@ public abstract class AbstractComparatorWithBloomFilter
   // size of serialize bloomfilter file 27369839 bytes with default parameters
   private static final long SIZE_MINIMAL_CREATE_SERIALIZE_FILE = 40000000;
 
+  /** Number of records hashed by a task in exact comparison mode. */
+  private static final int DIGEST_BATCH_SIZE = 4096;
+
+  // Maximal number of record hashes kept in memory to search the first
+  // difference
+  private static final long MAX_DIFFERENCE_SEARCH_RECORDS = 1000000;
+
   private double falsePositiveProbability = 0.1;
   private int expectedNumberOfElements = 30000000;
   private boolean useSerializeFile = false;
+  private boolean exactComparison = false;
+  private int numberElementsCompared;
+
+  /**
+   * This class compute the digest of the records of a file. The records are
+   * hashed by batches in the threads of an executor.
+   */
+  private final class DigestBuilder implements Consumer<String> {
+
+    private final ExecutorService executor;
+    private final int maxPendingBatches;
+    private final Semaphore semaphore;
+    private final MultisetDigest digest = new MultisetDigest();
+    private List<String> batch = new ArrayList<>(DIGEST_BATCH_SIZE);
+
+    @Override
+    public void accept(final String record) {
+
+      if (!isRecordToCompare(record)) {
+        return;
+      }
+
+      this.batch.add(record);
+
+      if (this.batch.size() == DIGEST_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    /**
+     * Submit the current batch to the executor.
+     */
+    private void flush() {
+
+      if (this.batch.isEmpty()) {
+        return;
+      }
+
+      final List<String> records = this.batch;
+      this.batch = new ArrayList<>(DIGEST_BATCH_SIZE);
+
+      // Limit the number of batches in memory
+      try {
+        this.semaphore.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(
+            new InterruptedIOException("Digest computation interrupted"));
+      }
+
+      try {
+        this.executor.execute(() -> {
+
+          try {
+            final MessageDigest md = MultisetDigest.newMessageDigest();
+            final MultisetDigest partial = new MultisetDigest();
+
+            for (String record : records) {
+              partial.add(MultisetDigest.hash(md, record));
+            }
+
+            synchronized (this.digest) {
+              this.digest.merge(partial);
+            }
+          } finally {
+            this.semaphore.release();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        this.semaphore.release();
+        throw e;
+      }
+    }
+
+    /**
+     * Get the digest once all the records have been parsed.
+     * @return the digest of the records
+     * @throws InterruptedException if interrupted while waiting the end of
+     *           the hash computations
+     */
+    private MultisetDigest getDigest() throws InterruptedException {
+
+      flush();
+
+      // Wait the end of all the batches
+      this.semaphore.acquire(this.maxPendingBatches);
+      this.semaphore.release(this.maxPendingBatches);
+
+      synchronized (this.digest) {
+        return this.digest;
+      }
+    }
+
+    private DigestBuilder(final ExecutorService executor,
+        final int maxPendingBatches) {
+
+      this.executor = executor;
+      this.maxPendingBatches = maxPendingBatches;
+      this.semaphore = new Semaphore(maxPendingBatches);
+    }
+  }
 
   @Override
   public boolean compareFiles(final File fileA, final File fileB)
@@ -66,6 +193,10 @@ public abstract class AbstractComparatorWithBloomFilter
       return true;
     }
 
+    if (this.exactComparison) {
+      return compareFilesWithDigests(fileA, fileB);
+    }
+
     try (InputStream isB = new FileInputStream(fileB)) {
 
       return compareFiles(getBloomFilter(fileA),
@@ -77,6 +208,13 @@ public abstract class AbstractComparatorWithBloomFilter
   @Override
   public boolean compareFiles(final InputStream isA, final InputStream isB)
       throws IOException {
+
+    if (this.exactComparison) {
+
+      // The streams cannot be read again to find the differing record
+      return compareDigests(isA, isB) == null;
+    }
+
     return compareFiles(buildBloomFilter(isA), isB);
   }
 
@@ -160,9 +298,238 @@ public abstract class AbstractComparatorWithBloomFilter
     return filter;
   }
 
+  //
+  // Exact comparison methods
+  //
+
+  /**
+   * Parse the records of a file. By default each line is a record.
+   * @param is the input stream to parse
+   * @param consumer the consumer of the records
+   * @throws IOException if an error occurs while parsing the input stream
+   */
+  protected void parseRecords(final InputStream is,
+      final Consumer<String> consumer) throws IOException {
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(is, Globals.DEFAULT_CHARSET))) {
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        consumer.accept(line);
+      }
+    }
+  }
+
+  /**
+   * Test if a record must be compared in exact comparison mode.
+   * @param record the record to test
+   * @return true if the record must be compared
+   */
+  protected boolean isRecordToCompare(final String record) {
+
+    return true;
+  }
+
+  /**
+   * Compare two files with digests and search the first differing record if
+   * the digests differ.
+   * @param fileA the reference file
+   * @param fileB the tested file
+   * @return true if the files contain the same records
+   * @throws IOException if an error occurs while reading the files
+   */
+  private boolean compareFilesWithDigests(final File fileA, final File fileB)
+      throws IOException {
+
+    final boolean[] differingBuckets;
+
+    try (InputStream isA = openFile(fileA); InputStream isB = openFile(fileB)) {
+      differingBuckets = compareDigests(isA, isB);
+    }
+
+    if (differingBuckets == null) {
+      return true;
+    }
+
+    findFirstDifference(fileA, fileB, differingBuckets);
+
+    return false;
+  }
+
+  /**
+   * Compute in parallel the digests of two input streams.
+   * @param isA the reference input stream
+   * @param isB the tested input stream
+   * @return null if the digests are equal or an array with the buckets of the
+   *         digests that differ, limited to keep a bounded number of records
+   *         in memory while searching the first difference
+   * @throws IOException if an error occurs while reading the streams
+   */
+  private boolean[] compareDigests(final InputStream isA,
+      final InputStream isB) throws IOException {
+
+    final int threads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService hashExecutor = Executors.newFixedThreadPool(threads);
+    final ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+
+    try {
+
+      // Read the two files at the same time
+      final Future<MultisetDigest> futureA = readerExecutor
+          .submit(() -> computeDigest(isA, hashExecutor, 2 * threads));
+      final MultisetDigest digestB =
+          computeDigest(isB, hashExecutor, 2 * threads);
+      final MultisetDigest digestA = futureA.get();
+
+      this.numberElementsCompared = (int) digestB.getCount();
+
+      final boolean[] result =
+          digestA.differingBuckets(digestB, MAX_DIFFERENCE_SEARCH_RECORDS);
+
+      if (result != null) {
+
+        if (digestA.getCount() != digestB.getCount()) {
+          setCauseFailComparison("Different count elements "
+              + digestB.getCount() + " was " + digestA.getCount()
+              + " expected.");
+        } else {
+          setCauseFailComparison("Different records found in the "
+              + digestB.getCount() + " elements compared");
+        }
+      }
+
+      return result;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Digest computation interrupted");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      readerExecutor.shutdownNow();
+      hashExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Compute the digest of an input stream.
+   * @param is the input stream
+   * @param executor the executor that hash the records
+   * @param maxPendingBatches the maximal number of batches waiting to be
+   *          hashed
+   * @return the digest of the input stream
+   * @throws IOException if an error occurs while reading the input stream
+   */
+  private MultisetDigest computeDigest(final InputStream is,
+      final ExecutorService executor, final int maxPendingBatches)
+      throws IOException {
+
+    final DigestBuilder builder =
+        new DigestBuilder(executor, maxPendingBatches);
+
+    try {
+      parseRecords(is, builder);
+      return builder.getDigest();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Digest computation interrupted");
+    }
+  }
+
+  /**
+   * Search the first differing record between two files. Only the hashes of
+   * the records of the selected differing buckets of the digests are kept in
+   * memory, so the record found is the first difference in these buckets.
+   * @param fileA the reference file
+   * @param fileB the tested file
+   * @param buckets the differing buckets of the digests
+   * @throws IOException if an error occurs while reading the files
+   */
+  private void findFirstDifference(final File fileA, final File fileB,
+      final boolean[] buckets) throws IOException {
+
+    final MessageDigest md = MultisetDigest.newMessageDigest();
+    final Map<RecordHash, Integer> counts = new HashMap<>();
+
+    // Count the records of the reference file
+    try (InputStream is = openFile(fileA)) {
+      parseRecords(is, record -> {
+
+        if (isRecordToCompare(record)) {
+          final RecordHash hash = MultisetDigest.hash(md, record);
+          if (buckets[hash.getBucket()]) {
+            counts.merge(hash, 1, Integer::sum);
+          }
+        }
+      });
+    }
+
+    // Search the first record of the tested file not in the reference file
+    final String[] difference = new String[1];
+    try (InputStream is = openFile(fileB)) {
+      parseRecords(is, record -> {
+
+        if (difference[0] == null && isRecordToCompare(record)) {
+          final RecordHash hash = MultisetDigest.hash(md, record);
+          if (buckets[hash.getBucket()]
+              && counts.merge(hash, -1, Integer::sum) < 0) {
+            difference[0] = record;
+          }
+        }
+      });
+    }
+
+    if (difference[0] != null) {
+      setCauseFailComparison(difference[0]);
+      return;
+    }
+
+    // Search the first record of the reference file not in the tested file
+    try (InputStream is = openFile(fileA)) {
+      parseRecords(is, record -> {
+
+        if (difference[0] == null && isRecordToCompare(record)) {
+          final Integer count = counts.get(MultisetDigest.hash(md, record));
+          if (count != null && count > 0) {
+            difference[0] = record;
+          }
+        }
+      });
+    }
+
+    if (difference[0] != null) {
+      setCauseFailComparison(
+          "Record not found in tested file: " + difference[0]);
+    }
+  }
+
+  /**
+   * Open a file, uncompressing it if required.
+   * @param file the file to open
+   * @return an input stream
+   * @throws IOException if an error occurs while opening the file
+   */
+  private static InputStream openFile(final File file) throws IOException {
+
+    return getCompressionTypeByFilename(file.getAbsolutePath())
+        .createInputStream(new FileInputStream(file));
+  }
+
   @Override
   public String toString() {
 
+    if (this.exactComparison) {
+      return getName()
+          + " compares files with extensions " + getExtensions()
+          + " use exact order-independent digests";
+    }
+
     return getName()
         + " compares files with extensions " + getExtensions()
         + " use Bloom filter with parameters: expected numbers elements "
@@ -209,6 +576,44 @@ public abstract class AbstractComparatorWithBloomFilter
     this.useSerializeFile = useSerializeFile;
   }
 
+  /**
+   * Test if the files are compared with exact order-independent digests
+   * instead of a Bloom filter.
+   * @return true if the exact comparison mode is enabled
+   */
+  public boolean isExactComparison() {
+    return this.exactComparison;
+  }
+
+  /**
+   * Set if the files are compared with exact order-independent digests
+   * instead of a Bloom filter.
+   * @param exactComparison true to enable the exact comparison mode
+   */
+  public void setExactComparison(final boolean exactComparison) {
+    this.exactComparison = exactComparison;
+  }
+
+  @Override
+  public int getNumberElementsCompared() {
+    return this.numberElementsCompared;
+  }
+
+  /**
+   * Set the number of elements compared.
+   * @param numberElementsCompared the number of elements compared
+   */
+  protected void setNumberElementsCompared(final int numberElementsCompared) {
+    this.numberElementsCompared = numberElementsCompared;
+  }
+
+  /**
+   * Increment the number of elements compared.
+   */
+  protected void incrementNumberElementsCompared() {
+    this.numberElementsCompared++;
+  }
+
   protected int getExpectedNumberOfElements() {
     return this.expectedNumberOfElements;
   }
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import com.google.common.collect.Sets;
 
@@ -50,14 +51,12 @@ public class BAMComparator extends AbstractComparatorWithBloomFilter {
 
   final Set<String> tagsToNotCompare;
 
-  private int numberElementsCompared;
-
   @Override
   public boolean compareFiles(final EnhancedBloomFilter filter,
       final InputStream in) throws IOException {
 
     String line = null;
-    this.numberElementsCompared = 0;
+    setNumberElementsCompared(0);
 
     // Create Bam reader
     final SamReader bamReader =
@@ -69,7 +68,7 @@ public class BAMComparator extends AbstractComparatorWithBloomFilter {
     for (SAMRecord r : bamReader) {
       // Convert in SAM
       line = r.getSAMString();
-      this.numberElementsCompared++;
+      incrementNumberElementsCompared();
 
       // Header
       if (line.charAt(0) == '@') {
@@ -106,9 +105,9 @@ public class BAMComparator extends AbstractComparatorWithBloomFilter {
     bamReader.close();
 
     // Check count element is the same between two files
-    if (this.numberElementsCompared != filter.getAddedNumberOfElements()) {
+    if (getNumberElementsCompared() != filter.getAddedNumberOfElements()) {
       setCauseFailComparison("Different count elements "
-          + this.numberElementsCompared + " was "
+          + getNumberElementsCompared() + " was "
           + filter.getAddedNumberOfElements() + " expected.");
       return false;
     }
@@ -140,10 +139,34 @@ public class BAMComparator extends AbstractComparatorWithBloomFilter {
     return filter;
   }
 
+  @Override
+  protected void parseRecords(final InputStream is,
+      final Consumer<String> consumer) throws IOException {
+
+    // Parse BAM file
+    try (final SamReader bamReader =
+        SamReaderFactory.makeDefault().open(SamInputResource.of(is))) {
+
+      for (SAMRecord r : bamReader) {
+        // Convert in line in SAM
+        consumer.accept(r.getSAMString());
+      }
+    }
+  }
+
   //
   // Other methods
   //
 
+  @Override
+  protected boolean isRecordToCompare(final String record) {
+
+    // Skip specified tag in header sam file
+    return record.isEmpty()
+        || record.charAt(0) != '@'
+        || !this.tagsToNotCompare.contains(getTag(record));
+  }
+
   private static String getTag(final String samHeaderLine) {
 
     if (samHeaderLine.length() == 0) {
@@ -170,11 +193,6 @@ public class BAMComparator extends AbstractComparatorWithBloomFilter {
     return EXTENSIONS;
   }
 
-  @Override
-  public int getNumberElementsCompared() {
-    return this.numberElementsCompared;
-  }
-
   //
   // Constructor
   //
@@ -27,6 +27,7 @@ package fr.ens.biologie.genomique.eoulsan.io.comparators;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 import com.google.common.collect.Sets;
 
@@ -46,18 +47,16 @@ public class FastqComparator extends AbstractComparatorWithBloomFilter {
   private static final Collection<String> EXTENSIONS =
       Sets.newHashSet(".fastq", ".fq");
 
-  private int numberElementsCompared;
-
   @Override
   public boolean compareFiles(final EnhancedBloomFilter filter,
       final InputStream is) throws IOException {
 
     final FastqReader fastqReader = new FastqReader(is);
-    this.numberElementsCompared = 0;
+    setNumberElementsCompared(0);
 
     // Search each ReadSequence in BFilter source
     for (ReadSequence read : fastqReader) {
-      this.numberElementsCompared++;
+      incrementNumberElementsCompared();
 
       if (!filter.mightContain(read.toFastQ() + '\n')) {
         // Save line occurs fail comparison
@@ -69,9 +68,9 @@ public class FastqComparator extends AbstractComparatorWithBloomFilter {
     fastqReader.close();
 
     // Check count element is the same between two files
-    if (this.numberElementsCompared != filter.getAddedNumberOfElements()) {
+    if (getNumberElementsCompared() != filter.getAddedNumberOfElements()) {
       setCauseFailComparison("Different count elements "
-          + this.numberElementsCompared + " was "
+          + getNumberElementsCompared() + " was "
           + filter.getAddedNumberOfElements() + " expected.");
       return false;
     }
@@ -103,6 +102,24 @@ public class FastqComparator extends AbstractComparatorWithBloomFilter {
     return filter;
   }
 
+  @Override
+  protected void parseRecords(final InputStream is,
+      final Consumer<String> consumer) throws IOException {
+
+    final FastqReader fastqReader = new FastqReader(is);
+
+    for (ReadSequence read : fastqReader) {
+      consumer.accept(read.toFastQ() + '\n');
+    }
+    fastqReader.close();
+
+    try {
+      fastqReader.throwException();
+    } catch (BadBioEntryException e) {
+      throw new IOException("Fail BadBioEntry exception: " + e.getMessage());
+    }
+  }
+
   //
   // Getter and setters
   //
@@ -117,11 +134,6 @@ public class FastqComparator extends AbstractComparatorWithBloomFilter {
     return COMPARATOR_NAME;
   }
 
-  @Override
-  public int getNumberElementsCompared() {
-    return this.numberElementsCompared;
-  }
-
   //
   // Constructor
   //
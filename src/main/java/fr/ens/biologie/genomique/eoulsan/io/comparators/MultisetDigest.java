@@ -0,0 +1,258 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.io.comparators;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import fr.ens.biologie.genomique.eoulsan.Globals;
+
+/**
+ * This class define an order-independent digest of a multiset of records. The
+ * 128 bits hashes of the records are split in buckets, and for each bucket the
+ * number of records, the sum and the xor of the hashes are kept. Two multisets
+ * with the same digest contain the same records with an overwhelming
+ * probability, and the buckets of two different digests that differ allow to
+ * find the differing records by only keeping the hashes of these buckets.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class MultisetDigest {
+
+  /** Number of buckets, selected by the 8 high bits of the hashes. */
+  static final int BUCKET_COUNT = 256;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private final long[] sumHigh = new long[BUCKET_COUNT];
+  private final long[] sumLow = new long[BUCKET_COUNT];
+  private final long[] xorHigh = new long[BUCKET_COUNT];
+  private final long[] xorLow = new long[BUCKET_COUNT];
+
+  /**
+   * This class define the 128 bits hash of a record.
+   */
+  static final class RecordHash {
+
+    private final long high;
+    private final long low;
+
+    /**
+     * Get the bucket of the hash.
+     * @return the bucket of the hash
+     */
+    int getBucket() {
+      return (int) (this.high >>> 56);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+      if (o == this) {
+        return true;
+      }
+
+      if (!(o instanceof RecordHash)) {
+        return false;
+      }
+
+      final RecordHash that = (RecordHash) o;
+
+      return this.high == that.high && this.low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (this.low ^ (this.low >>> 32));
+    }
+
+    private RecordHash(final long high, final long low) {
+
+      this.high = high;
+      this.low = low;
+    }
+  }
+
+  //
+  // Digest methods
+  //
+
+  /**
+   * Add a record hash to the digest.
+   * @param hash the hash to add
+   */
+  void add(final RecordHash hash) {
+
+    final int bucket = hash.getBucket();
+
+    this.counts[bucket]++;
+
+    // 128 bits addition
+    final long low = this.sumLow[bucket] + hash.low;
+    final long carry = Long.compareUnsigned(low, hash.low) < 0 ? 1 : 0;
+    this.sumLow[bucket] = low;
+    this.sumHigh[bucket] += hash.high + carry;
+
+    this.xorHigh[bucket] ^= hash.high;
+    this.xorLow[bucket] ^= hash.low;
+  }
+
+  /**
+   * Merge another digest with this digest.
+   * @param digest the digest to merge
+   */
+  void merge(final MultisetDigest digest) {
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+
+      this.counts[i] += digest.counts[i];
+
+      final long low = this.sumLow[i] + digest.sumLow[i];
+      final long carry =
+          Long.compareUnsigned(low, digest.sumLow[i]) < 0 ? 1 : 0;
+      this.sumLow[i] = low;
+      this.sumHigh[i] += digest.sumHigh[i] + carry;
+
+      this.xorHigh[i] ^= digest.xorHigh[i];
+      this.xorLow[i] ^= digest.xorLow[i];
+    }
+  }
+
+  /**
+   * Get the number of records of the digest.
+   * @return the number of records of the digest
+   */
+  long getCount() {
+
+    long result = 0;
+    for (long c : this.counts) {
+      result += c;
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the buckets that differ between two digests.
+   * @param digest the other digest
+   * @return an array where the differing buckets are set to true or null if
+   *         the two digests are equal
+   */
+  boolean[] differingBuckets(final MultisetDigest digest) {
+
+    boolean[] result = null;
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+
+      if (this.counts[i] != digest.counts[i]
+          || this.sumHigh[i] != digest.sumHigh[i]
+          || this.sumLow[i] != digest.sumLow[i]
+          || this.xorHigh[i] != digest.xorHigh[i]
+          || this.xorLow[i] != digest.xorLow[i]) {
+
+        if (result == null) {
+          result = new boolean[BUCKET_COUNT];
+        }
+        result[i] = true;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the buckets that differ between two digests, limiting the number of
+   * records of this digest in the selected buckets. The first differing bucket
+   * is always selected, as the records of any differing bucket are enough to
+   * find a difference.
+   * @param digest the other digest
+   * @param maxRecords the maximal number of records of this digest in the
+   *          selected buckets
+   * @return an array where the selected differing buckets are set to true or
+   *         null if the two digests are equal
+   */
+  boolean[] differingBuckets(final MultisetDigest digest,
+      final long maxRecords) {
+
+    final boolean[] result = differingBuckets(digest);
+
+    if (result == null) {
+      return null;
+    }
+
+    boolean first = true;
+    long records = 0;
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+
+      if (!result[i]) {
+        continue;
+      }
+
+      if (first || records + this.counts[i] <= maxRecords) {
+        records += this.counts[i];
+        first = false;
+      } else {
+        result[i] = false;
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Create a MessageDigest object to hash the records.
+   * @return a new MessageDigest object
+   */
+  static MessageDigest newMessageDigest() {
+
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // MD5 is available in all the Java platforms
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Compute the hash of a record.
+   * @param md the MessageDigest object to use
+   * @param record the record
+   * @return the hash of the record
+   */
+  static RecordHash hash(final MessageDigest md, final String record) {
+
+    final ByteBuffer bytes = ByteBuffer
+        .wrap(md.digest(record.getBytes(Globals.DEFAULT_CHARSET)));
+
+    return new RecordHash(bytes.getLong(0), bytes.getLong(8));
+  }
+
+}
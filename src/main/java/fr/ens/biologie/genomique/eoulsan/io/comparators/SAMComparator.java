@@ -49,8 +49,6 @@ public class SAMComparator extends AbstractComparatorWithBloomFilter {
 
   final Set<String> tagsToNotCompare;
 
-  private int numberElementsCompared;
-
   @Override
   public boolean compareFiles(final EnhancedBloomFilter filter,
       final InputStream is) throws IOException {
@@ -58,10 +56,10 @@ public class SAMComparator extends AbstractComparatorWithBloomFilter {
     final BufferedReader reader =
         new BufferedReader(new InputStreamReader(is, Globals.DEFAULT_CHARSET));
     String line = null;
-    this.numberElementsCompared = 0;
+    setNumberElementsCompared(0);
 
     while ((line = reader.readLine()) != null) {
-      this.numberElementsCompared++;
+      incrementNumberElementsCompared();
 
       // Header
       if (line.charAt(0) == '@') {
@@ -91,9 +89,9 @@ public class SAMComparator extends AbstractComparatorWithBloomFilter {
     reader.close();
 
     // Check count element is the same between two files
-    if (this.numberElementsCompared != filter.getAddedNumberOfElements()) {
+    if (getNumberElementsCompared() != filter.getAddedNumberOfElements()) {
       setCauseFailComparison("Different count elements "
-          + this.numberElementsCompared + " was "
+          + getNumberElementsCompared() + " was "
           + filter.getAddedNumberOfElements() + " expected.");
       return false;
     }
@@ -105,6 +103,15 @@ public class SAMComparator extends AbstractComparatorWithBloomFilter {
   // Other methods
   //
 
+  @Override
+  protected boolean isRecordToCompare(final String record) {
+
+    // Skip specified tag in header sam file
+    return record.isEmpty()
+        || record.charAt(0) != '@'
+        || !this.tagsToNotCompare.contains(getTag(record));
+  }
+
   private static String getTag(final String samHeaderLine) {
 
     if (samHeaderLine.length() == 0) {
@@ -131,11 +138,6 @@ public class SAMComparator extends AbstractComparatorWithBloomFilter {
     return EXTENSIONS;
   }
 
-  @Override
-  public int getNumberElementsCompared() {
-    return this.numberElementsCompared;
-  }
-
   //
   // Constructor
   //
@@ -45,8 +45,6 @@ public class TextComparator extends AbstractComparatorWithBloomFilter {
   private static final Collection<String> EXTENSIONS =
       Sets.newHashSet(".txt", ".tsv", ".csv", ".xml");
 
-  private int numberElementsCompared;
-
   @Override
   public boolean compareFiles(final EnhancedBloomFilter filter,
       final InputStream is) throws IOException {
@@ -54,10 +52,10 @@ public class TextComparator extends AbstractComparatorWithBloomFilter {
     final BufferedReader reader =
         new BufferedReader(new InputStreamReader(is, Globals.DEFAULT_CHARSET));
     String line = null;
-    this.numberElementsCompared = 0;
+    setNumberElementsCompared(0);
 
     while ((line = reader.readLine()) != null) {
-      this.numberElementsCompared++;
+      incrementNumberElementsCompared();
 
       if (!filter.mightContain(line)) {
         // Save line occurs fail comparison
@@ -70,9 +68,9 @@ public class TextComparator extends AbstractComparatorWithBloomFilter {
     reader.close();
 
     // Check count element is the same between two files
-    if (this.numberElementsCompared != filter.getAddedNumberOfElements()) {
+    if (getNumberElementsCompared() != filter.getAddedNumberOfElements()) {
       setCauseFailComparison("Different count elements "
-          + this.numberElementsCompared + " was "
+          + getNumberElementsCompared() + " was "
           + filter.getAddedNumberOfElements() + " expected.");
       return false;
     }
@@ -93,11 +91,6 @@ public class TextComparator extends AbstractComparatorWithBloomFilter {
     return NAME_COMPARATOR;
   }
 
-  @Override
-  public int getNumberElementsCompared() {
-    return this.numberElementsCompared;
-  }
-
   //
   // Constructor
   //
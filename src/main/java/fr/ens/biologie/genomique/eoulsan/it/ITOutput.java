@@ -46,6 +46,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.io.comparators.AbstractComparatorWithBloomFilter;
 import fr.ens.biologie.genomique.eoulsan.io.comparators.BAMComparator;
 import fr.ens.biologie.genomique.eoulsan.io.comparators.BinaryComparator;
 import fr.ens.biologie.genomique.eoulsan.io.comparators.Comparator;
@@ -771,6 +772,7 @@ public class ITOutput {
 
     private final List<Comparator> comparators = new ArrayList<>();
     private static final boolean USE_SERIALIZATION_FILE = true;
+    private static final boolean USE_EXACT_COMPARISON = true;
 
     private final File fileA;
     private final File fileB;
@@ -816,6 +818,19 @@ public class ITOutput {
       return this.comparators.get(0);
     }
 
+    /**
+     * Set the exact comparison mode of a comparator if required.
+     * @param comparator the comparator
+     * @return the comparator
+     */
+    private static Comparator exact(
+        final AbstractComparatorWithBloomFilter comparator) {
+
+      comparator.setExactComparison(USE_EXACT_COMPARISON);
+
+      return comparator;
+    }
+
     //
     // Getter
     //
@@ -840,12 +855,14 @@ public class ITOutput {
       // Binary comparator is default comparator, always at first position
       this.comparators.add(new BinaryComparator());
 
-      this.comparators.add(new FastqComparator(USE_SERIALIZATION_FILE));
       this.comparators
-          .add(new SAMComparator(USE_SERIALIZATION_FILE, "PG", "HD", "CO"));
+          .add(exact(new FastqComparator(USE_SERIALIZATION_FILE)));
+      this.comparators.add(exact(
+          new SAMComparator(USE_SERIALIZATION_FILE, "PG", "HD", "CO")));
+      this.comparators.add(exact(
+          new BAMComparator(USE_SERIALIZATION_FILE, "PG", "HD", "CO")));
       this.comparators
-          .add(new BAMComparator(USE_SERIALIZATION_FILE, "PG", "HD", "CO"));
-      this.comparators.add(new TextComparator(USE_SERIALIZATION_FILE));
+          .add(exact(new TextComparator(USE_SERIALIZATION_FILE)));
       this.comparators.add(new LogComparator());
 
       this.comparator = findComparator(this.fileA.getName());
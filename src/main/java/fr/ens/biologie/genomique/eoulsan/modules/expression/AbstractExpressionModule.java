@@ -73,6 +73,7 @@ public abstract class AbstractExpressionModule extends AbstractModule {
       "features.file.format";
   public static final String OUTPUT_FILE_FORMAT_PARAMETER_NAME =
       "output.file.format";
+  public static final String LOCAL_THREADS_PARAMETER_NAME = "local.threads";
 
   private static final String OLD_EOULSAN_COUNTER_NAME = "eoulsanCounter";
   private static final String OLD_REMOVE_AMBIGUOUS_CASES_PARAMETER_NAME =
@@ -86,6 +87,7 @@ public abstract class AbstractExpressionModule extends AbstractModule {
   private boolean gtfInputFormat;
   private boolean samOutputFormat;
   private ExpressionCounter counter;
+  private int localThreads = 1;
 
   //
   // Protected methods
@@ -116,6 +118,15 @@ public abstract class AbstractExpressionModule extends AbstractModule {
     return this.counter;
   }
 
+  /**
+   * Get the number of threads to use in local mode.
+   * @return the number of threads to use in local mode
+   */
+  protected int getLocalThreads() {
+
+    return this.localThreads;
+  }
+
   //
   // Module methods
   //
@@ -268,6 +279,10 @@ public abstract class AbstractExpressionModule extends AbstractModule {
         }
         break;
 
+      case LOCAL_THREADS_PARAMETER_NAME:
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       default:
         try {
           this.counter.setParameter(p.getName(), p.getValue());
@@ -43,6 +43,7 @@ import java.util.Set;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
@@ -314,11 +315,13 @@ public class ExpressionHadoopModule extends AbstractExpressionModule {
 
     } else {
 
-      // Set the mapper class for TSV output
+      // Set the mapper class for TSV output, the mapper sums the counts
+      // itself so no combiner is required
       job.setMapperClass(ExpressionMapper.class);
 
-      // Set the combiner class
-      job.setCombinerClass(ExpressionReducer.class);
+      // Set the map output key and value classes
+      job.setMapOutputKeyClass(IntWritable.class);
+      job.setMapOutputValueClass(LongWritable.class);
 
       // Set the reducer class
       job.setReducerClass(ExpressionReducer.class);
@@ -34,11 +34,10 @@ import java.io.ObjectInputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -49,8 +48,7 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
 import fr.ens.biologie.genomique.eoulsan.bio.SAMUtils;
 import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.ExpressionCounter;
-import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
-import fr.ens.biologie.genomique.eoulsan.util.hadoop.HadoopReporterIncrementer;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
 import fr.ens.biologie.genomique.eoulsan.util.hadoop.PathUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFormatException;
@@ -58,23 +56,25 @@ import htsjdk.samtools.SAMLineParser;
 import htsjdk.samtools.SAMRecord;
 
 /**
- * Mapper for the expression estimation.
+ * Mapper for the expression estimation. The counts of the features are summed
+ * in an array indexed by the identifiers of the features and are only written
+ * at the end of the task, with the identifiers of the features as keys.
  * @since 1.2
  * @author Claire Wallon
  */
-public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
+public class ExpressionMapper
+    extends Mapper<Text, Text, IntWritable, LongWritable> {
 
   private ExpressionCounter counter;
   private String counterGroup;
 
   private final SAMLineParser parser = new SAMLineParser(new SAMFileHeader());
-  private final Pattern recordSplitterPattern =
-      Pattern.compile("" + SAM_RECORD_PAIRED_END_SERPARATOR);
 
   private final List<SAMRecord> samRecords = new ArrayList<>();
-  private ReporterIncrementer reporter;
-  private final Text outKey = new Text();
-  private final LongWritable outValue = new LongWritable(1L);
+  private final LocalReporter reporter = new LocalReporter();
+  private long[] counts;
+  private final IntWritable outKey = new IntWritable();
+  private final LongWritable outValue = new LongWritable();
 
   @Override
   public void setup(final Context context)
@@ -91,14 +91,12 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
       throw new IOException("No counter group defined");
     }
 
-    // Define the reporter
-    this.reporter = new HadoopReporterIncrementer(context);
-
     // Get the cache files
     final URI[] localCacheFiles = context.getCacheFiles();
 
     // Initialize counter and parser
     this.counter = initCounterAndParser(conf, this.parser, localCacheFiles);
+    this.counts = new long[this.counter.getFeatureCount()];
 
     getLogger().info("End of setup()");
   }
@@ -109,30 +107,8 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
 
     try {
 
-      if (localCacheFiles == null || localCacheFiles.length == 0) {
-        throw new IOException("Unable to retrieve genome index");
-      }
-
-      if (localCacheFiles.length > 1) {
-        throw new IOException(
-            "Retrieve more than one file in distributed cache");
-      }
-
-      getLogger().info("Genome index compressed file (from distributed cache): "
-          + localCacheFiles[0]);
-
-      if (localCacheFiles == null || localCacheFiles.length == 0) {
-        throw new IOException("Unable to retrieve annotation index");
-      }
-
-      if (localCacheFiles.length > 1) {
-        throw new IOException(
-            "Retrieve more than one file in distributed cache");
-      }
-
       // Deserialize counter
-      ExpressionCounter counter = loadSerializedCounter(
-          PathUtils.createInputStream(new Path(localCacheFiles[0]), conf));
+      final ExpressionCounter counter = loadCounter(conf, localCacheFiles);
 
       // Get the genome description filename
       final String genomeDescFile =
@@ -182,9 +158,14 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
     try {
 
       // Split the entry (handle paired-end reads)
-      for (String field : this.recordSplitterPattern.split(line)) {
-        this.samRecords.add(this.parser.parseLine(field));
+      int start = 0;
+      int end;
+      while ((end =
+          line.indexOf(SAM_RECORD_PAIRED_END_SERPARATOR, start)) != -1) {
+        this.samRecords.add(this.parser.parseLine(line.substring(start, end)));
+        start = end + 1;
       }
+      this.samRecords.add(this.parser.parseLine(line.substring(start)));
 
       // Check if there is only one or two entries in the line
       if (samRecords.isEmpty() || samRecords.size() > 2) {
@@ -194,15 +175,8 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
       }
 
       // Count
-      final Map<String, Integer> counts =
-          this.counter.count(samRecords, this.reporter, this.counterGroup);
-
-      // Write the results
-      for (Map.Entry<String, Integer> e : counts.entrySet()) {
-        this.outKey.set(e.getKey());
-        this.outValue.set(e.getValue());
-        context.write(this.outKey, this.outValue);
-      }
+      this.counter.count(samRecords, this.counts, this.reporter,
+          this.counterGroup);
 
     } catch (SAMFormatException | EoulsanException e) {
 
@@ -216,13 +190,56 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
   }
 
   @Override
-  public void cleanup(final Context context) throws IOException {
+  public void cleanup(final Context context)
+      throws IOException, InterruptedException {
+
+    // Write the counts of the features
+    for (int id = 0; id < this.counts.length; id++) {
+
+      if (this.counts[id] != 0) {
+        this.outKey.set(id);
+        this.outValue.set(this.counts[id]);
+        context.write(this.outKey, this.outValue);
+      }
+    }
+
+    // Set the Hadoop counters
+    for (String counterName : this.reporter
+        .getCounterNames(this.counterGroup)) {
+      context.getCounter(this.counterGroup, counterName).increment(
+          this.reporter.getCounterValue(this.counterGroup, counterName));
+    }
   }
 
   //
   // Other methods
   //
 
+  /**
+   * Load the serialized counter from the distributed cache.
+   * @param conf Hadoop configuration
+   * @param localCacheFiles the files of the distributed cache
+   * @return the counter
+   * @throws IOException if an error occurs while loading the counter
+   */
+  static ExpressionCounter loadCounter(final Configuration conf,
+      final URI[] localCacheFiles) throws IOException {
+
+    if (localCacheFiles == null || localCacheFiles.length == 0) {
+      throw new IOException("Unable to retrieve annotation index");
+    }
+
+    if (localCacheFiles.length > 1) {
+      throw new IOException("Retrieve more than one file in distributed cache");
+    }
+
+    getLogger().info("Annotation index file (from distributed cache): "
+        + localCacheFiles[0]);
+
+    return loadSerializedCounter(
+        PathUtils.createInputStream(new Path(localCacheFiles[0]), conf));
+  }
+
   private static ExpressionCounter loadSerializedCounter(final InputStream in)
       throws IOException {
 
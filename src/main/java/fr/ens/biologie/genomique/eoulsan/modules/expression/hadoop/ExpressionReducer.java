@@ -24,23 +24,45 @@
 
 package fr.ens.biologie.genomique.eoulsan.modules.expression.hadoop;
 
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+
 import java.io.IOException;
 import java.util.Iterator;
 
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.ExpressionCounter;
+
 /**
  * Reducer for the expression estimation.
  * @since 1.2
  * @author Claire Wallon
  */
 public class ExpressionReducer
-    extends Reducer<Text, LongWritable, Text, LongWritable> {
+    extends Reducer<IntWritable, LongWritable, Text, LongWritable> {
 
+  private ExpressionCounter counter;
+  private final Text outKey = new Text();
   final LongWritable outValue = new LongWritable();
 
+  @Override
+  protected void setup(final Context context)
+      throws IOException, InterruptedException {
+
+    EoulsanLogger.initConsoleHandler();
+    getLogger().info("Start of setup()");
+
+    // Load the counter to get the names of the features
+    this.counter = ExpressionMapper.loadCounter(context.getConfiguration(),
+        context.getCacheFiles());
+
+    getLogger().info("End of setup()");
+  }
+
   /**
    * This method allow to sum of the values of an Iterable of longs.
    * @param values values to sum
@@ -59,16 +81,17 @@ public class ExpressionReducer
   }
 
   /**
-   * 'key': annotation identifier of the feature (gene, mRNA, exon...).
-   * 'values': a list of '1', the size of this list is the number of reads found
-   * on the feature.
+   * 'key': identifier of the feature (gene, mRNA, exon...) in the counter.
+   * 'values': the counts of the feature in each map task.
    */
   @Override
-  protected void reduce(final Text key, final Iterable<LongWritable> values,
-      final Context context) throws IOException, InterruptedException {
+  protected void reduce(final IntWritable key,
+      final Iterable<LongWritable> values, final Context context)
+      throws IOException, InterruptedException {
 
+    this.outKey.set(this.counter.getFeatureName(key.get()));
     this.outValue.set(sum(values));
-    context.write(key, this.outValue);
+    context.write(this.outKey, this.outValue);
   }
 
 }
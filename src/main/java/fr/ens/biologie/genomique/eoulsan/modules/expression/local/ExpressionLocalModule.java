@@ -105,7 +105,8 @@ public class ExpressionLocalModule extends AbstractExpressionModule {
             context.getLocalTempDirectory(), reporter, COUNTER_GROUP);
       } else {
         // Launch counting
-        result = counter.count(alignmentFile, reporter, COUNTER_GROUP);
+        result = counter.count(alignmentFile, reporter, COUNTER_GROUP,
+            getLocalThreads());
 
         // Add features with zero count
         counter.addZeroCountFeatures(result);
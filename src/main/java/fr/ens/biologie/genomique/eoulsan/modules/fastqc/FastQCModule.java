@@ -106,10 +106,18 @@ public class FastQCModule extends AbstractModule {
   public static final String FASTQC_CASAVA_PARAMETER_NAME = "fastqc.casava";
   /** Option for filter fastq file if casava=true for all modules */
   public static final String FASTQC_NOFILTER_PARAMETER_NAME = "fastqc.nofilter";
+  /** Number of sequences processed by the sampled modules */
+  public static final String FASTQC_SAMPLE_SIZE_PARAMETER_NAME =
+      "fastqc.sample.size";
+  /** Number of threads to use */
+  public static final String LOCAL_THREADS_PARAMETER_NAME = "local.threads";
 
   /** The input format per default */
   private DataFormat inputFormat = DataFormats.READS_FASTQ;
 
+  private int localThreads = 1;
+  private int sampleSize;
+
   //
   // Module methods
   //
@@ -218,6 +226,17 @@ public class FastQCModule extends AbstractModule {
         System.setProperty("fastqc.nofilter", "" + p.getBooleanValue());
         break;
 
+      case FASTQC_SAMPLE_SIZE_PARAMETER_NAME:
+
+        // Disabled by default
+        this.sampleSize = p.getIntValueGreaterOrEqualsTo(0);
+        break;
+
+      case LOCAL_THREADS_PARAMETER_NAME:
+
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       default:
         Modules.unknownParameter(context, p);
       }
@@ -321,17 +340,22 @@ public class FastQCModule extends AbstractModule {
 
     // Define modules list
     final OverRepresentedSeqs os = new OverRepresentedSeqs();
+    final PerBaseSequenceContent pbsc = new PerBaseSequenceContent();
+    final PerSequenceGCContent psgc = new PerSequenceGCContent();
+    final AdapterContent ac = new AdapterContent();
 
     final List<AbstractQCModule> modules =
         new ArrayList<>(Arrays.asList(new BasicStats(),
             new PerBaseQualityScores(), new PerTileQualityScores(),
-            new PerSequenceQualityScores(), new PerBaseSequenceContent(),
-            new PerSequenceGCContent(), new NContent(),
+            new PerSequenceQualityScores(), pbsc, psgc, new NContent(),
             new SequenceLengthDistribution(), os.duplicationLevelModule(), os,
-            new AdapterContent(), new KmerContent()));
+            ac, new KmerContent()));
+
+    // Modules that only need the distribution of the sequences content
+    final List<AbstractQCModule> sampledModules = Arrays.asList(pbsc, psgc, ac);
 
     // Process sequences
-    processSequences(modules, seqFile);
+    processSequences(modules, sampledModules, seqFile);
 
     // If no entries in the input file use a dedicated module
     final List<AbstractQCModule> reportModules = seqFile.getCount() > 0
@@ -352,11 +376,21 @@ public class FastQCModule extends AbstractModule {
   /**
    * Process sequences.
    * @param modules the modules
+   * @param sampledModules the modules that can process only a sample of the
+   *          sequences
    * @param seqFile the sequence file
    * @throws SequenceFormatException the sequence format exception
+   * @throws IOException if an error occurs while processing the sequences
    */
   private void processSequences(final List<AbstractQCModule> modules,
-      final SequenceFile seqFile) throws SequenceFormatException {
+      final List<AbstractQCModule> sampledModules, final SequenceFile seqFile)
+      throws SequenceFormatException, IOException {
+
+    if (this.localThreads > 1 || this.sampleSize > 0) {
+      new QCModulesPipeline(this.localThreads, this.sampleSize)
+          .process(modules, sampledModules, seqFile);
+      return;
+    }
 
     while (seqFile.hasNext()) {
 
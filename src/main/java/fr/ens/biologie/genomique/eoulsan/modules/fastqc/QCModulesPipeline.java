@@ -0,0 +1,317 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.modules.fastqc;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import uk.ac.babraham.FastQC.Modules.QCModule;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+import uk.ac.babraham.FastQC.Sequence.SequenceFile;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
+/**
+ * This class define a multithreaded pipeline for the FastQC modules. The
+ * current thread parses the input file and creates batches of sequences that
+ * are sent to all the worker threads. As FastQC modules are not thread safe,
+ * each module is owned by a single worker that processes all the sequences in
+ * the input order, so the results of the modules are the same as with a
+ * sequential processing. Optionally, some modules can only process a random
+ * sample of the sequences, selected using reservoir sampling.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class QCModulesPipeline {
+
+  /** Number of sequences in a batch. */
+  static final int DEFAULT_BATCH_SIZE = 10000;
+
+  /** Number of batches waiting for a worker. */
+  private static final int QUEUE_CAPACITY = 4;
+
+  /** Seed of the sampling to get the same report for the same input. */
+  private static final long SAMPLING_SEED = 42;
+
+  /** Marker for the end of the input. */
+  private static final List<Sequence> END_OF_INPUT = new ArrayList<>(0);
+
+  private final int threadCount;
+  private final int batchSize;
+  private final int sampleSize;
+
+  // Written by the parser before the end of input marker
+  private List<Sequence> sample = Collections.emptyList();
+  private volatile boolean failed;
+
+  /**
+   * This class define a worker that owns some of the modules.
+   */
+  private final class Worker implements Callable<Void> {
+
+    private final List<QCModule> modules = new ArrayList<>();
+    private final List<QCModule> sampledModules = new ArrayList<>();
+    private final BlockingQueue<List<Sequence>> queue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    @Override
+    public Void call() throws InterruptedException {
+
+      RuntimeException exception = null;
+      List<Sequence> batch;
+
+      while ((batch = this.queue.take()) != END_OF_INPUT) {
+
+        // After a failure, drain the queue to not block the parser
+        if (exception == null) {
+          try {
+            processBatch(this.modules, batch);
+          } catch (RuntimeException e) {
+            exception = e;
+            QCModulesPipeline.this.failed = true;
+          }
+        }
+      }
+
+      if (exception != null) {
+        throw exception;
+      }
+
+      processBatch(this.sampledModules, QCModulesPipeline.this.sample);
+
+      return null;
+    }
+
+    private void processBatch(final List<QCModule> modules,
+        final List<Sequence> batch) {
+
+      for (final QCModule module : modules) {
+        for (final Sequence seq : batch) {
+          module.processSequence(seq);
+        }
+      }
+    }
+  }
+
+  //
+  // Processing methods
+  //
+
+  /**
+   * Process the sequences of a file with QC modules.
+   * @param modules the modules
+   * @param sampledModules the modules that only process a sample of the
+   *          sequences if sampling is enabled
+   * @param seqFile the sequence file
+   * @throws SequenceFormatException if an error occurs while reading the
+   *           sequences
+   * @throws IOException if an error occurs while processing the sequences
+   */
+  void process(final List<? extends QCModule> modules,
+      final Collection<? extends QCModule> sampledModules,
+      final SequenceFile seqFile) throws SequenceFormatException, IOException {
+
+    requireNonNull(modules, "modules argument cannot be null");
+    requireNonNull(sampledModules, "sampledModules argument cannot be null");
+    requireNonNull(seqFile, "seqFile argument cannot be null");
+
+    if (modules.isEmpty()) {
+      return;
+    }
+
+    // Dispatch the modules between the workers
+    final int workerCount = Math.min(this.threadCount, modules.size());
+    final List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < workerCount; i++) {
+      workers.add(new Worker());
+    }
+
+    int i = 0;
+    for (QCModule module : modules) {
+
+      final Worker worker = workers.get(i++ % workerCount);
+
+      if (this.sampleSize > 0 && sampledModules.contains(module)) {
+        worker.sampledModules.add(module);
+      } else {
+        worker.modules.add(module);
+      }
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+    final List<Future<Void>> futures = new ArrayList<>();
+
+    try {
+
+      for (Worker worker : workers) {
+        futures.add(executor.submit(worker));
+      }
+
+      final List<Sequence> reservoir = new ArrayList<>();
+      final Random random = new Random(SAMPLING_SEED);
+      long count = 0;
+
+      List<Sequence> batch = new ArrayList<>(this.batchSize);
+
+      while (!this.failed && seqFile.hasNext()) {
+
+        final Sequence seq = seqFile.next();
+        batch.add(seq);
+
+        if (this.sampleSize > 0) {
+          sample(reservoir, seq, ++count, random);
+        }
+
+        if (batch.size() == this.batchSize) {
+          submit(batch, workers);
+          batch = new ArrayList<>(this.batchSize);
+        }
+      }
+
+      if (!batch.isEmpty()) {
+        submit(batch, workers);
+      }
+
+      this.sample = reservoir;
+
+      for (Worker worker : workers) {
+        worker.queue.put(END_OF_INPUT);
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("FastQC analysis has been interrupted", e);
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Send a batch of sequences to the workers that process all the sequences.
+   * @param batch the batch
+   * @param workers the workers
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private static void submit(final List<Sequence> batch,
+      final List<Worker> workers) throws InterruptedException {
+
+    for (Worker worker : workers) {
+      if (!worker.modules.isEmpty()) {
+        worker.queue.put(batch);
+      }
+    }
+  }
+
+  /**
+   * Add a sequence to the reservoir of the sampled sequences.
+   * @param reservoir the reservoir
+   * @param seq the sequence
+   * @param count the number of sequences read including this sequence
+   * @param random the random number generator
+   */
+  private void sample(final List<Sequence> reservoir, final Sequence seq,
+      final long count, final Random random) {
+
+    if (count <= this.sampleSize) {
+      reservoir.add(seq);
+      return;
+    }
+
+    // Replace an element of the reservoir with a probability sampleSize/count
+    final long index = (long) (random.nextDouble() * count);
+    if (index < this.sampleSize) {
+      reservoir.set((int) index, seq);
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param threadCount number of workers
+   * @param sampleSize number of sequences to process by the sampled modules,
+   *          0 to disable the sampling
+   */
+  QCModulesPipeline(final int threadCount, final int sampleSize) {
+
+    this(threadCount, DEFAULT_BATCH_SIZE, sampleSize);
+  }
+
+  /**
+   * Constructor.
+   * @param threadCount number of workers
+   * @param batchSize number of sequences in a batch
+   * @param sampleSize number of sequences to process by the sampled modules,
+   *          0 to disable the sampling
+   */
+  QCModulesPipeline(final int threadCount, final int batchSize,
+      final int sampleSize) {
+
+    if (threadCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid thread count: " + threadCount);
+    }
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+
+    if (sampleSize < 0) {
+      throw new IllegalArgumentException("Invalid sample size: " + sampleSize);
+    }
+
+    this.threadCount = threadCount;
+    this.batchSize = batchSize;
+    this.sampleSize = sampleSize;
+  }
+
+}
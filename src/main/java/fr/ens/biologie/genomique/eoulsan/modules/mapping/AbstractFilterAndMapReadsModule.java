@@ -30,15 +30,20 @@ import static fr.ens.biologie.genomique.eoulsan.core.OutputPortsBuilder.singleOu
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.HADOOP_THREADS_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.LOCAL_THREADS_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_DOCKER_IMAGE_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_ARGUMENTS_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_FLAVOR_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_NAME_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_VERSION_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAX_LOCAL_THREADS_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.USE_BUNDLED_BINARIES_PARAMETER_NAME;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
+import fr.ens.biologie.genomique.eoulsan.Common;
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.Globals;
 import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilterBuilder;
@@ -50,6 +55,7 @@ import fr.ens.biologie.genomique.eoulsan.core.Modules;
 import fr.ens.biologie.genomique.eoulsan.core.OutputPorts;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.core.StepConfigurationContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
 import fr.ens.biologie.genomique.eoulsan.core.Version;
 import fr.ens.biologie.genomique.eoulsan.modules.AbstractModule;
 
@@ -79,10 +85,14 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
   private Mapper mapper;
   private String mapperVersion = "";
   private String mapperFlavor = "";
+  private String mapperDockerImage = "";
+  private boolean useBundledBinaries = true;
   private String mapperArguments;
 
   private int reducerTaskCount = -1;
   private int hadoopThreads = -1;
+  private int localThreads;
+  private int maxLocalThreads;
 
   private int hadoopMapperRequiredMemory =
       AbstractReadsMapperModule.DEFAULT_MAPPER_REQUIRED_MEMORY;
@@ -128,7 +138,23 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
    * @return the flavor of the mapper to use
    */
   protected String getMapperFlavor() {
-    return this.mapperVersion;
+    return this.mapperFlavor;
+  }
+
+  /**
+   * Test if the bundled binaries must be used to perform the step.
+   * @return true if the bundled binaries must be used to perform the step
+   */
+  protected boolean isUseBundledBinaries() {
+    return this.useBundledBinaries;
+  }
+
+  /**
+   * Get the mapper Docker image to use.
+   * @return the mapper Docker image to use
+   */
+  protected String getMapperDockerImage() {
+    return this.mapperDockerImage;
   }
 
   /**
@@ -147,6 +173,28 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
     return this.hadoopThreads;
   }
 
+  /**
+   * Get the number of threads to use in local mode.
+   * @return the number of threads to use in local mode
+   */
+  protected int getMapperLocalThreads() {
+
+    return Common.getThreadsNumber(this.localThreads, this.maxLocalThreads);
+  }
+
+  /**
+   * Get the number of threads to use in local mode by a task. With the
+   * resource aware scheduler, this number cannot exceed the number of
+   * processors required by the step.
+   * @param context the context of the task
+   * @return the number of threads to use in local mode
+   */
+  protected int getMapperLocalThreads(final TaskContext context) {
+
+    return Common.getThreadsNumber(this.localThreads, this.maxLocalThreads,
+        context.getCurrentStep().getRequiredProcessors());
+  }
+
   /**
    * Get the amount in MB of memory required to execute the mapper. This value
    * is required by Hadoop scheduler and if the mapper require more memory than
@@ -261,6 +309,14 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
         mapperFlavor = p.getStringValue();
         break;
 
+      case USE_BUNDLED_BINARIES_PARAMETER_NAME:
+        this.useBundledBinaries = p.getBooleanValue();
+        break;
+
+      case MAPPER_DOCKER_IMAGE_PARAMETER_NAME:
+        this.mapperDockerImage = p.getStringValue();
+        break;
+
       case MAPPER_ARGUMENTS_PARAMETER_NAME:
         this.mapperArguments = p.getStringValue();
         break;
@@ -269,6 +325,14 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
         this.hadoopThreads = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
+      case LOCAL_THREADS_PARAMETER_NAME:
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      case MAX_LOCAL_THREADS_PARAMETER_NAME:
+        this.maxLocalThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       case HADOOP_REDUCER_TASK_COUNT_PARAMETER_NAME:
         this.reducerTaskCount = p.getIntValueGreaterOrEqualsTo(1);
         break;
@@ -315,8 +379,8 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
     try {
 
       // Create a new instance of the mapper for required version and flavor
-      this.mapper.newMapperInstance(this.mapperVersion, this.mapperFlavor, true,
-          null);
+      this.mapper.newMapperInstance(this.mapperVersion, this.mapperFlavor,
+          this.useBundledBinaries, this.mapperDockerImage);
 
       // Check if the mapper is not only a generator
       if (mapper.isIndexGeneratorOnly()) {
@@ -56,8 +56,14 @@ public abstract class AbstractReadsFilterModule extends AbstractModule {
 
   protected static final String COUNTER_GROUP = "reads_filtering";
 
+  public static final String LOCAL_THREADS_PARAMETER_NAME = "local.threads";
+
+  public static final String OUTPUT_INDEX_PARAMETER_NAME = "output.index";
+
   private Map<String, String> readsFiltersParameters;
   private int reducerTaskCount = -1;
+  private int localThreads = 1;
+  private boolean outputIndex;
 
   //
   // Getters
@@ -81,6 +87,25 @@ public abstract class AbstractReadsFilterModule extends AbstractModule {
     return this.reducerTaskCount;
   }
 
+  /**
+   * Get the number of threads to use in local mode.
+   * @return the number of threads to use in local mode
+   */
+  protected int getLocalThreads() {
+
+    return this.localThreads;
+  }
+
+  /**
+   * Test if the output files must be block compressed FASTQ files with an
+   * index.
+   * @return true if the output files must be indexed
+   */
+  protected boolean isOutputIndex() {
+
+    return this.outputIndex;
+  }
+
   //
   // Module methods
   //
@@ -131,6 +156,16 @@ public abstract class AbstractReadsFilterModule extends AbstractModule {
 
         break;
 
+      case LOCAL_THREADS_PARAMETER_NAME:
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+
+        break;
+
+      case OUTPUT_INDEX_PARAMETER_NAME:
+        this.outputIndex = p.getBooleanValue();
+
+        break;
+
       default:
         filterBuilder.addParameter(p.getName(), p.getStringValue());
         break;
@@ -40,6 +40,7 @@ import fr.ens.biologie.genomique.eoulsan.core.Modules;
 import fr.ens.biologie.genomique.eoulsan.core.OutputPorts;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.core.StepConfigurationContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
 import fr.ens.biologie.genomique.eoulsan.core.Version;
 import fr.ens.biologie.genomique.eoulsan.modules.AbstractModule;
 
@@ -152,6 +153,19 @@ public abstract class AbstractReadsMapperModule extends AbstractModule {
     return Common.getThreadsNumber(this.localThreads, this.maxLocalThreads);
   }
 
+  /**
+   * Get the number of threads to use in local mode by a task. With the
+   * resource aware scheduler, this number cannot exceed the number of
+   * processors required by the step.
+   * @param context the context of the task
+   * @return the number of threads to use in local mode
+   */
+  protected int getMapperLocalThreads(final TaskContext context) {
+
+    return Common.getThreadsNumber(this.localThreads, this.maxLocalThreads,
+        context.getCurrentStep().getRequiredProcessors());
+  }
+
   /**
    * Get the number of threads to use in local mode.
    * @return Returns the mapperThreads
@@ -58,8 +58,11 @@ public abstract class AbstractSAMFilterModule extends AbstractModule {
 
   protected static final String COUNTER_GROUP = "sam_filtering";
 
+  public static final String LOCAL_THREADS_PARAMETER_NAME = "local.threads";
+
   private Map<String, String> alignmentsFiltersParameters;
   private int reducerTaskCount = -1;
+  private int localThreads = 1;
 
   /**
    * Get the parameters of the alignments filter.
@@ -79,6 +82,15 @@ public abstract class AbstractSAMFilterModule extends AbstractModule {
     return this.reducerTaskCount;
   }
 
+  /**
+   * Get the number of threads to use in local mode.
+   * @return the number of threads to use in local mode
+   */
+  protected int getLocalThreads() {
+
+    return this.localThreads;
+  }
+
   //
   // Module methods
   //
@@ -130,6 +142,10 @@ public abstract class AbstractSAMFilterModule extends AbstractModule {
         this.reducerTaskCount = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
+      case LOCAL_THREADS_PARAMETER_NAME:
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       default:
 
         filterBuilder.addParameter(p.getName(), p.getStringValue());
@@ -0,0 +1,581 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode.OWN_PARALLELIZATION;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_RAW_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.READS_REJECTED_BY_FILTERS_COUNTER;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.google.common.base.Joiner;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.SAMUtils;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilterBuilder;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilterBuilder;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.EntryMapping;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.Mapper;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndex;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndexCache;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperInstance;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess;
+import fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
+import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
+import fr.ens.biologie.genomique.eoulsan.data.Data;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractFilterAndMapReadsModule;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter.Counter;
+import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a module that filter reads, map reads and filter
+ * alignments in a single pass in local mode. The reads are parsed once,
+ * filtered and directly written to the input of the mapper. The output of the
+ * mapper is filtered on the fly, so no intermediate FASTQ or SAM file is
+ * written.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+@LocalOnly
+public class FilterAndMapReadsLocalModule
+    extends AbstractFilterAndMapReadsModule {
+
+  /** Maximal time in milliseconds to wait the reads feeder after an error. */
+  private static final long FEEDER_STOP_TIMEOUT = 10000;
+
+  /**
+   * This class define a thread that filter the reads and write the accepted
+   * reads to the input of the mapper.
+   */
+  private static final class ReadsFeederThread extends Thread {
+
+    private final DataFile inFile1;
+    private final DataFile inFile2;
+    private final FastqFormat fastqFormat;
+    private final ReadFilter filter;
+    private final MapperProcess process;
+    private final Counter inputCounter;
+    private final Counter outputCounter;
+    private final Counter rejectedCounter;
+
+    private volatile IOException exception;
+
+    @Override
+    public void run() {
+
+      try {
+
+        if (this.inFile2 == null) {
+          feedSingleEnd();
+        } else {
+          feedPairedEnd();
+        }
+
+      } catch (IOException e) {
+        this.exception = e;
+      } catch (BadBioEntryException e) {
+        this.exception = new IOException("Invalid Fastq format: "
+            + e.getMessage() + " Entry: " + e.getEntry(), e);
+      } finally {
+
+        // Always close the input of the mapper to allow the mapper to end
+        try {
+          this.process.closeEntriesWriter();
+        } catch (IOException e) {
+          if (this.exception == null) {
+            this.exception = e;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    /**
+     * Filter reads in single-end mode.
+     * @throws IOException if an error occurs while reading or writing reads
+     * @throws BadBioEntryException if an entry of the input file is invalid
+     */
+    private void feedSingleEnd() throws IOException, BadBioEntryException {
+
+      try (FastqByteReader reader =
+          new FastqByteReader(this.inFile1.open(), true)) {
+
+        for (final ReadSequence read : reader) {
+
+          // Set Fastq format
+          read.setFastqFormat(this.fastqFormat);
+
+          this.inputCounter.increment();
+
+          if (this.filter.accept(read)) {
+            this.process.writeEntry1(read);
+            this.outputCounter.increment();
+          } else {
+            this.rejectedCounter.increment();
+          }
+        }
+        reader.throwException();
+      }
+    }
+
+    /**
+     * Filter reads in paired-end mode.
+     * @throws IOException if an error occurs while reading or writing reads
+     * @throws BadBioEntryException if an entry of the input files is invalid
+     */
+    private void feedPairedEnd() throws IOException, BadBioEntryException {
+
+      try (
+          FastqByteReader reader1 =
+              new FastqByteReader(this.inFile1.open(), true);
+          FastqByteReader reader2 =
+              new FastqByteReader(this.inFile2.open(), true)) {
+
+        for (final ReadSequence read1 : reader1) {
+
+          // Test if the second read exists
+          if (!reader2.hasNext()) {
+            reader2.throwException();
+            throw new IOException("Unexcepted end of the second read file. "
+                + this.inFile1.getName() + " and " + this.inFile2.getName()
+                + " must have the same number of entries/lines.");
+          }
+
+          // Get the second read
+          final ReadSequence read2 = reader2.next();
+
+          // Set fastq format
+          read1.setFastqFormat(this.fastqFormat);
+          read2.setFastqFormat(this.fastqFormat);
+
+          this.inputCounter.increment();
+
+          if (this.filter.accept(read1, read2)) {
+            this.process.writeEntry1(read1);
+            this.process.writeEntry2(read2);
+            this.outputCounter.increment();
+          } else {
+            this.rejectedCounter.increment();
+          }
+        }
+        reader1.throwException();
+        reader2.throwException();
+
+        if (reader2.hasNext()) {
+          throw new IOException("Unexcepted end of the first read file. "
+              + this.inFile1.getName() + " and " + this.inFile2.getName()
+              + " must have the same number of entries/lines.");
+        }
+      }
+    }
+
+    /**
+     * Throw the exception that has occurred in the thread if exists.
+     * @throws IOException if an exception has occurred in the thread
+     */
+    void throwException() throws IOException {
+
+      if (this.exception != null) {
+        throw this.exception;
+      }
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param inFile1 first input file
+     * @param inFile2 second input file, null in single-end mode
+     * @param fastqFormat FASTQ format
+     * @param filter reads filter
+     * @param process mapper process
+     * @param reporter reporter
+     * @param counterGroup counter group
+     */
+    private ReadsFeederThread(final DataFile inFile1, final DataFile inFile2,
+        final FastqFormat fastqFormat, final ReadFilter filter,
+        final MapperProcess process, final LocalReporter reporter,
+        final String counterGroup) {
+
+      super("filter-and-map-reads-feeder");
+      setDaemon(true);
+
+      this.inFile1 = inFile1;
+      this.inFile2 = inFile2;
+      this.fastqFormat = fastqFormat;
+      this.filter = filter;
+      this.process = process;
+      this.inputCounter = reporter.getCounter(counterGroup,
+          INPUT_RAW_READS_COUNTER.counterName());
+      this.outputCounter = reporter.getCounter(counterGroup,
+          OUTPUT_FILTERED_READS_COUNTER.counterName());
+      this.rejectedCounter = reporter.getCounter(counterGroup,
+          READS_REJECTED_BY_FILTERS_COUNTER.counterName());
+    }
+  }
+
+  //
+  // Module methods
+  //
+
+  @Override
+  public ParallelizationMode getParallelizationMode() {
+
+    return OWN_PARALLELIZATION;
+  }
+
+  @Override
+  public TaskResult execute(final TaskContext context,
+      final TaskStatus status) {
+
+    // Create the reporter
+    final LocalReporter reporter = new LocalReporter();
+    final String counterGroup = getCounterGroup();
+    MapperIndexCache.CachedIndex cachedIndex = null;
+
+    try {
+
+      // Get input and output data
+      final Data inData = context.getInputData(READS_FASTQ);
+      final Data outData = context.getOutputData(MAPPER_RESULTS_SAM, inData);
+      final DataFile outFile = outData.getDataFile();
+
+      final DataFile archiveIndexFile =
+          context.getInputData(MAPPER_INDEX_PORT_NAME).getDataFile();
+
+      final File indexDir = new File(StringUtils
+          .filenameWithoutExtension(archiveIndexFile.toUri().getPath()));
+
+      // Get FASTQ format
+      final FastqFormat fastqFormat = inData.getMetadata().getFastqFormat();
+
+      // Get input file count for the sample
+      final int inFileCount = inData.getDataFileCount();
+
+      if (inFileCount < 1) {
+        throw new IOException("No reads file found.");
+      }
+
+      if (inFileCount > 2) {
+        throw new IOException(
+            "Cannot handle more than 2 reads files at the same time.");
+      }
+
+      final DataFile inFile1 = inData.getDataFile(0);
+      final DataFile inFile2 = inFileCount == 2 ? inData.getDataFile(1) : null;
+
+      // Get the read filter
+      final MultiReadFilter readFilter =
+          new MultiReadFilterBuilder(getReadFilterParameters())
+              .getReadFilter(reporter, counterGroup);
+      getLogger().info("Reads filters to apply: "
+          + Joiner.on(", ").join(readFilter.getFilterNames()));
+
+      // Get the alignments filter if required
+      final MultiReadAlignmentsFilter alignmentsFilter =
+          getAlignmentsFilterParameters().isEmpty()
+              ? null
+              : new MultiReadAlignmentsFilterBuilder(
+                  getAlignmentsFilterParameters())
+                      .getAlignmentsFilter(reporter, counterGroup);
+      if (alignmentsFilter != null) {
+        getLogger().info("Read alignments filters to apply: "
+            + Joiner.on(", ").join(alignmentsFilter.getFilterNames()));
+      }
+
+      // Get the unpacked index from the node-local cache if enabled
+      cachedIndex = MapperIndexCache.acquire(context.getSettings(),
+          getMapperName(), archiveIndexFile);
+
+      // Initialize the mapper
+      final EntryMapping mapping = initMapper(context, fastqFormat,
+          archiveIndexFile, indexDir, cachedIndex, reporter);
+
+      getLogger().info("Filter and map files: "
+          + inFile1 + (inFile2 == null ? "" : ", " + inFile2)
+          + ", Fastq format: " + fastqFormat + ", use " + mapping.getName()
+          + " with " + mapping.getThreadNumber() + " threads option");
+
+      // Launch the mapper
+      final MapperProcess process =
+          inFile2 == null ? mapping.mapSE() : mapping.mapPE();
+
+      // Set executed command line in status
+      status.setCommandLine(process.getCommandLine());
+
+      // Filter the reads, map them and filter the alignments
+      filterAndMapReads(inFile1, inFile2, fastqFormat, readFilter, process,
+          outFile, reporter, counterGroup, alignmentsFilter,
+          context.getLocalTempDirectory());
+
+      // Set the description of the context
+      status.setDescription("Filter, map reads in "
+          + fastqFormat + " with " + mapping.getName() + " and filter "
+          + "alignments (" + inData.getName() + ", " + inFile1.getName()
+          + (inFile2 == null ? "" : ", " + inFile2.getName()) + ")");
+
+      // Add counters for this sample to log file
+      status.setCounters(reporter, counterGroup);
+
+    } catch (FileNotFoundException e) {
+      return status.createTaskResult(e, "File not found: " + e.getMessage());
+    } catch (IOException e) {
+      return status.createTaskResult(e,
+          "Error while filtering and mapping reads: " + e.getMessage());
+    } catch (EoulsanException e) {
+      return status.createTaskResult(e,
+          "Error while initializing filters: " + e.getMessage());
+    } catch (InterruptedException e) {
+      return status.createTaskResult(e,
+          "Interrupted while filtering and mapping reads: " + e.getMessage());
+    } finally {
+      MapperIndexCache.closeQuietly(cachedIndex);
+    }
+
+    return status.createTaskResult();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Initialize the mapper to use.
+   * @param context Eoulsan context
+   * @param format FASTQ format
+   * @param archiveIndexFile genome index for the mapper as a ZIP file
+   * @param indexDir uncompressed directory for the genome index
+   * @param cachedIndex genome index from the node-local cache, can be null
+   * @param reporter reporter
+   * @return a new EntryMapping object
+   * @throws IOException if an error while initializing the mapper
+   */
+  private EntryMapping initMapper(final TaskContext context,
+      final FastqFormat format, final DataFile archiveIndexFile,
+      final File indexDir, final MapperIndexCache.CachedIndex cachedIndex,
+      final Reporter reporter) throws IOException {
+
+    // Get the mapper object
+    final Mapper mapper = getMapper();
+
+    // Set mapper temporary directory
+    mapper.setTempDirectory(context.getLocalTempDirectory());
+
+    // Set mapper executable temporary directory
+    mapper.setExecutablesTempDirectory(
+        context.getSettings().getExecutablesTempDirectoryFile());
+
+    // Create the mapper instance
+    final MapperInstance mapperInstance =
+        mapper.newMapperInstance(getMapperVersion(), getMapperFlavor(),
+            isUseBundledBinaries(), getMapperDockerImage());
+
+    // Create the MapperIndex object, from the node-local cache if enabled
+    final MapperIndex mapperIndex = cachedIndex != null
+        ? mapperInstance.newMapperIndex(cachedIndex)
+        : mapperInstance.newMapperIndex(archiveIndexFile.open(), indexDir);
+
+    // Get the number of threads to use
+    int mapperThreads = getMapperLocalThreads(context);
+    if (mapperThreads > Runtime.getRuntime().availableProcessors()
+        || mapperThreads < 1) {
+      mapperThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    final EntryMapping mapping = mapperIndex.newEntryMapping(format,
+        getMapperArguments(), mapperThreads, false, reporter,
+        getCounterGroup());
+
+    // Delete the index directory at the end of the workflow
+    if (cachedIndex == null) {
+      context.getWorkflow()
+          .deleteOnExit(new DataFile(mapperIndex.getIndexDirectory()));
+    }
+
+    return mapping;
+  }
+
+  /**
+   * Filter the reads, write them to the input of the mapper in another thread
+   * and parse the output of the mapper. If an error occurs, the mapper process
+   * is destroyed and the reads feeder thread is stopped before throwing the
+   * exception, so the mapper index is no more used when this method returns.
+   * @param inFile1 first input file
+   * @param inFile2 second input file, null in single-end mode
+   * @param fastqFormat FASTQ format
+   * @param readFilter reads filter
+   * @param process mapper process
+   * @param outFile output SAM file
+   * @param reporter reporter
+   * @param counterGroup counter group
+   * @param alignmentsFilter alignments filter, null if the alignments must not
+   *          be filtered
+   * @param tmpDir temporary directory
+   * @throws IOException if an error occurs while filtering or mapping reads
+   * @throws InterruptedException if the current thread has been interrupted
+   */
+  static void filterAndMapReads(final DataFile inFile1, final DataFile inFile2,
+      final FastqFormat fastqFormat, final ReadFilter readFilter,
+      final MapperProcess process, final DataFile outFile,
+      final LocalReporter reporter, final String counterGroup,
+      final ReadAlignmentsFilter alignmentsFilter, final File tmpDir)
+      throws IOException, InterruptedException {
+
+    // Filter the reads and write them to the mapper in another thread
+    final ReadsFeederThread feeder = new ReadsFeederThread(inFile1, inFile2,
+        fastqFormat, readFilter, process, reporter, counterGroup);
+    feeder.start();
+
+    boolean success = false;
+
+    try {
+
+      // Parse and filter the output of the mapper
+      parseSAMResults(process.getStout(), outFile, reporter, counterGroup,
+          alignmentsFilter, tmpDir);
+
+      // Wait the end of the reads filtering
+      feeder.join();
+      feeder.throwException();
+
+      // Wait the end of the process and do cleanup
+      process.waitFor();
+
+      success = true;
+
+    } finally {
+
+      if (!success) {
+        stopMapping(feeder, process);
+      }
+    }
+  }
+
+  /**
+   * Stop the mapper process and the reads feeder thread after an error.
+   * @param feeder reads feeder thread
+   * @param process mapper process
+   */
+  private static void stopMapping(final ReadsFeederThread feeder,
+      final MapperProcess process) {
+
+    // Kill the mapper
+    try {
+      process.destroy();
+    } catch (IOException e) {
+      getLogger().warning("Unable to stop the mapper: " + e.getMessage());
+    }
+
+    // Writes to the mapper input fail once the feeder is interrupted
+    feeder.interrupt();
+
+    try {
+      feeder.join(FEEDER_STOP_TIMEOUT);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (feeder.isAlive()) {
+      getLogger().warning("The reads feeder thread has not been stopped");
+    }
+
+    // Closing the output of the mapper waits the end of the mapper, so it
+    // must be closed after killing the mapper. The exit value of the killed
+    // mapper is not an error
+    try {
+      process.getStout().close();
+    } catch (IOException e) {
+      getLogger().fine("Output of the stopped mapper: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Parse the output the mapper (in SAM format) and filter the alignments if
+   * required.
+   * @param samInputStream SAM input stream
+   * @param samFile output file to be written
+   * @param reporter Eoulsan reporter for the step
+   * @param counterGroup counter group
+   * @param filter alignments filter, null if the alignments must not be
+   *          filtered
+   * @param tmpDir temporary directory
+   * @throws IOException if an error occurs while reading the SAM data
+   */
+  private static void parseSAMResults(final InputStream samInputStream,
+      final DataFile samFile, final LocalReporter reporter,
+      final String counterGroup, final ReadAlignmentsFilter filter,
+      final File tmpDir) throws IOException {
+
+    final long entriesParsed;
+
+    if (filter == null) {
+
+      // Copy the SAM data and count the alignments without decoding the lines
+      try (OutputStream os = samFile.create()) {
+        entriesParsed = SAMUtils.copyAndCountAlignments(samInputStream, os);
+      }
+
+      // Closing the output of the mapper waits the end of the mapper, so it
+      // is only closed on success
+      samInputStream.close();
+
+    } else {
+      entriesParsed = SAMFilterLocalModule.filterAlignments(samInputStream,
+          samFile.create(), reporter, counterGroup, filter, tmpDir);
+    }
+
+    reporter.incrCounter(counterGroup,
+        OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName(), entriesParsed);
+
+    getLogger().info(entriesParsed + " entries parsed in mapper output");
+  }
+
+}
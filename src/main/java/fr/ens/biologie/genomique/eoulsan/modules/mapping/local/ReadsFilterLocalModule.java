@@ -40,8 +40,11 @@ import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.BlockCompressedFastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqIndex;
 import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.ReadSequenceWriter;
 import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
 import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
 import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
@@ -49,9 +52,10 @@ import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
 import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
 import fr.ens.biologie.genomique.eoulsan.data.Data;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsFilterModule;
 import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
-import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter.Counter;
 
 /**
  * This class define a module for reads filtering.
@@ -67,7 +71,7 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
       final TaskStatus status) {
 
     // Create the reporter
-    final Reporter reporter = new LocalReporter();
+    final LocalReporter reporter = new LocalReporter();
 
     try {
 
@@ -95,11 +99,26 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
       getLogger().info("Reads filters to apply: "
           + Joiner.on(", ").join(filter.getFilterNames()));
 
+      // Create the multithreaded pipeline if more than one thread is required
+      final int threads = getLocalThreads();
+      final ReadsFilterPipeline pipeline = threads > 1
+          ? new ReadsFilterPipeline(threads, COUNTER_GROUP,
+              r -> getReadFilter(r, COUNTER_GROUP))
+          : null;
+
+      // Write block compressed files with an index if required
+      final boolean indexedOutput = isOutputIndex();
+      if (pipeline != null) {
+        pipeline.setIndexedOutput(indexedOutput);
+      }
+
       // Run the filter in single or pair-end mode
       if (inFileCount == 1) {
-        singleEnd(inData, outData, fastqFormat, reporter, status, filter);
+        singleEnd(inData, outData, fastqFormat, reporter, status, filter,
+            pipeline, indexedOutput);
       } else {
-        pairedEnd(inData, outData, fastqFormat, reporter, status, filter);
+        pairedEnd(inData, outData, fastqFormat, reporter, status, filter,
+            pipeline, indexedOutput);
       }
 
     } catch (FileNotFoundException e) {
@@ -123,11 +142,15 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param reporter reporter to use
    * @param status step status
    * @param filter reads filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
+   * @param indexedOutput true if the output file must be indexed
    * @throws IOException if an error occurs while filtering reads
    */
   private static void singleEnd(final Data inData, final Data outData,
-      final FastqFormat fastqFormat, final Reporter reporter,
-      final TaskStatus status, final ReadFilter filter) throws IOException {
+      final FastqFormat fastqFormat, final LocalReporter reporter,
+      final TaskStatus status, final ReadFilter filter,
+      final ReadsFilterPipeline pipeline, final boolean indexedOutput)
+      throws IOException {
 
     // Get the source
     final DataFile inFile = inData.getDataFile(0);
@@ -136,7 +159,8 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
     final DataFile outFile = outData.getDataFile(0);
 
     // Filter reads
-    filterFile(inFile, outFile, reporter, filter, fastqFormat);
+    filterFile(inFile, outFile, reporter, filter, pipeline, fastqFormat,
+        indexedOutput);
 
     // Set the description of the context
     status.setDescription(
@@ -153,16 +177,20 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param fastqFormat FASTQ format
    * @param reporter reporter to use
    * @param filter reads filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
+   * @param indexedOutput true if the output files must be indexed
    * @throws IOException if an error occurs while filtering reads
    */
   private static void pairedEnd(final Data inData, final Data outData,
-      final FastqFormat fastqFormat, final Reporter reporter,
-      final TaskStatus status, final ReadFilter filter) throws IOException {
+      final FastqFormat fastqFormat, final LocalReporter reporter,
+      final TaskStatus status, final ReadFilter filter,
+      final ReadsFilterPipeline pipeline, final boolean indexedOutput)
+      throws IOException {
 
     // Filter reads
     filterFile(inData.getDataFile(0), inData.getDataFile(1),
         outData.getDataFile(0), outData.getDataFile(1), reporter, filter,
-        fastqFormat);
+        pipeline, fastqFormat, indexedOutput);
 
     // Set the description of the context
     status.setDescription("Filter reads ("
@@ -179,34 +207,55 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param outFile output file
    * @param reporter reporter to use
    * @param filter reads filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
    * @param fastqFormat FastqFormat
+   * @param indexedOutput true if the output file must be indexed
    * @throws IOException if an error occurs while filtering data
    */
-  private static void filterFile(final DataFile inFile, final DataFile outFile,
-      final Reporter reporter, final ReadFilter filter,
-      final FastqFormat fastqFormat) throws IOException {
+  static void filterFile(final DataFile inFile, final DataFile outFile,
+      final LocalReporter reporter, final ReadFilter filter,
+      final ReadsFilterPipeline pipeline, final FastqFormat fastqFormat,
+      final boolean indexedOutput) throws IOException {
 
     getLogger().info("Filter file: " + inFile);
     getLogger().info("FastqFormat: " + fastqFormat);
 
-    try (FastqReader reader = new FastqReader(inFile.open());
-        FastqWriter writer = new FastqWriter(outFile.create())) {
+    if (pipeline != null) {
+
+      try {
+        pipeline.filter(inFile, outFile, reporter, fastqFormat);
+      } catch (BadBioEntryException e) {
+
+        throw new IOException("Invalid Fastq format: "
+            + e.getMessage() + " File: " + inFile + " Entry: " + e.getEntry());
+      }
+
+      return;
+    }
+
+    // Get the counters
+    final Counter inputCounter = reporter.getCounter(COUNTER_GROUP,
+        INPUT_RAW_READS_COUNTER.counterName());
+    final Counter outputCounter = reporter.getCounter(COUNTER_GROUP,
+        OUTPUT_FILTERED_READS_COUNTER.counterName());
+    final Counter rejectedCounter = reporter.getCounter(COUNTER_GROUP,
+        READS_REJECTED_BY_FILTERS_COUNTER.counterName());
+
+    try (FastqByteReader reader = new FastqByteReader(inFile.open(), true);
+        ReadSequenceWriter writer = createWriter(outFile, indexedOutput)) {
       for (final ReadSequence read : reader) {
 
         // Set Fastq format
         read.setFastqFormat(fastqFormat);
 
-        reporter.incrCounter(COUNTER_GROUP,
-            INPUT_RAW_READS_COUNTER.counterName(), 1);
+        inputCounter.increment();
 
         if (filter.accept(read)) {
 
           writer.write(read);
-          reporter.incrCounter(COUNTER_GROUP,
-              OUTPUT_FILTERED_READS_COUNTER.counterName(), 1);
+          outputCounter.increment();
         } else {
-          reporter.incrCounter(COUNTER_GROUP,
-              READS_REJECTED_BY_FILTERS_COUNTER.counterName(), 1);
+          rejectedCounter.increment();
         }
 
       }
@@ -228,21 +277,47 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param outFile2 second output file
    * @param reporter reporter to use
    * @param filter reads filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
    * @param fastqFormat FastqFormat
+   * @param indexedOutput true if the output files must be indexed
    * @throws IOException if an error occurs while filtering data
    */
-  private static void filterFile(final DataFile inFile1, final DataFile inFile2,
-      final DataFile outFile1, final DataFile outFile2, final Reporter reporter,
-      final ReadFilter filter, final FastqFormat fastqFormat)
-      throws IOException {
+  static void filterFile(final DataFile inFile1, final DataFile inFile2,
+      final DataFile outFile1, final DataFile outFile2,
+      final LocalReporter reporter, final ReadFilter filter,
+      final ReadsFilterPipeline pipeline, final FastqFormat fastqFormat,
+      final boolean indexedOutput) throws IOException {
 
     getLogger().info("Filter files: "
         + inFile1 + ", " + inFile2 + ", Fastq format: " + fastqFormat);
 
-    try (FastqReader reader2 = new FastqReader(inFile2.open());
-        FastqWriter writer1 = new FastqWriter(outFile1.create());
-        FastqWriter writer2 = new FastqWriter(outFile2.create());
-        FastqReader reader1 = new FastqReader(inFile1.open())) {
+    if (pipeline != null) {
+
+      try {
+        pipeline.filter(inFile1, inFile2, outFile1, outFile2, reporter,
+            fastqFormat);
+      } catch (BadBioEntryException e) {
+
+        throw new IOException("Invalid Fastq format: "
+            + e.getMessage() + " File 1: " + inFile1 + " File2:" + inFile2
+            + " Entry: " + e.getEntry());
+      }
+
+      return;
+    }
+
+    // Get the counters
+    final Counter inputCounter = reporter.getCounter(COUNTER_GROUP,
+        INPUT_RAW_READS_COUNTER.counterName());
+    final Counter outputCounter = reporter.getCounter(COUNTER_GROUP,
+        OUTPUT_FILTERED_READS_COUNTER.counterName());
+    final Counter rejectedCounter = reporter.getCounter(COUNTER_GROUP,
+        READS_REJECTED_BY_FILTERS_COUNTER.counterName());
+
+    try (FastqByteReader reader2 = new FastqByteReader(inFile2.open(), true);
+        ReadSequenceWriter writer1 = createWriter(outFile1, indexedOutput);
+        ReadSequenceWriter writer2 = createWriter(outFile2, indexedOutput);
+        FastqByteReader reader1 = new FastqByteReader(inFile1.open(), true)) {
       for (final ReadSequence read1 : reader1) {
 
         // Test if the second read exists
@@ -260,17 +335,14 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
         read1.setFastqFormat(fastqFormat);
         read2.setFastqFormat(fastqFormat);
 
-        reporter.incrCounter(COUNTER_GROUP,
-            INPUT_RAW_READS_COUNTER.counterName(), 1);
+        inputCounter.increment();
 
         if (filter.accept(read1, read2)) {
           writer1.write(read1);
           writer2.write(read2);
-          reporter.incrCounter(COUNTER_GROUP,
-              OUTPUT_FILTERED_READS_COUNTER.counterName(), 1);
+          outputCounter.increment();
         } else {
-          reporter.incrCounter(COUNTER_GROUP,
-              READS_REJECTED_BY_FILTERS_COUNTER.counterName(), 1);
+          rejectedCounter.increment();
         }
 
       }
@@ -293,4 +365,36 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
 
   }
 
+  /**
+   * Create a writer for an output file.
+   * @param outFile the output file
+   * @param indexed true if the output file must be a block compressed FASTQ
+   *          file with an index
+   * @return a new ReadSequenceWriter object
+   * @throws IOException if an error occurs while creating the file
+   */
+  static ReadSequenceWriter createWriter(final DataFile outFile,
+      final boolean indexed) throws IOException {
+
+    if (indexed) {
+
+      // Block compressed files are gzip files
+      if (outFile.getCompressionType() == CompressionType.GZIP) {
+        return new BlockCompressedFastqWriter(outFile);
+      }
+
+      getLogger().warning(
+          "Output file is not compressed with gzip, no index created: "
+              + outFile);
+    }
+
+    // Remove the index of a previous output file
+    final DataFile indexFile = FastqIndex.getIndexFile(outFile);
+    if (indexFile.exists()) {
+      indexFile.delete();
+    }
+
+    return new FastqWriter(outFile.create());
+  }
+
 }
@@ -0,0 +1,442 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_RAW_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.READS_REJECTED_BY_FILTERS_COUNTER;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.ReadSequenceWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+
+/**
+ * This class define a multithreaded pipeline for reads filtering. A reader
+ * thread parses the input files and creates batches of reads, the batches are
+ * filtered by a pool of worker threads and the current thread writes the
+ * batches in the input order. As read filters are not thread safe, each worker
+ * use its own filter instance and its own reporter. The counters of these
+ * reporters are merged in the reporter of the task at the end of the process.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class ReadsFilterPipeline {
+
+  /** Number of reads in a batch. */
+  static final int DEFAULT_BATCH_SIZE = 10000;
+
+  /** Marker for the end of the input. */
+  private static final Future<Batch> END_OF_INPUT =
+      CompletableFuture.completedFuture(null);
+
+  private final String counterGroup;
+  private final int threadCount;
+  private final int batchSize;
+  private final BlockingQueue<ReadFilter> filters;
+  private final List<LocalReporter> filterReporters = new ArrayList<>();
+  private boolean indexedOutput;
+
+  private volatile Exception readerException;
+
+  /**
+   * This interface define a factory for read filters.
+   */
+  interface ReadFilterFactory {
+
+    /**
+     * Create a new read filter.
+     * @param reporter reporter to use by the filter
+     * @return a new ReadFilter object
+     * @throws EoulsanException if an error occurs while creating the filter
+     */
+    ReadFilter create(Reporter reporter) throws EoulsanException;
+  }
+
+  /**
+   * This class define a batch of reads.
+   */
+  private static final class Batch {
+
+    private final ReadSequence[] reads1;
+    private final ReadSequence[] reads2;
+    private final boolean[] accepted;
+    private int size;
+
+    private void add(final ReadSequence read1, final ReadSequence read2) {
+
+      this.reads1[this.size] = read1;
+      if (this.reads2 != null) {
+        this.reads2[this.size] = read2;
+      }
+      this.size++;
+    }
+
+    private boolean isFull() {
+
+      return this.size == this.reads1.length;
+    }
+
+    private Batch(final int capacity, final boolean pairedEnd) {
+
+      this.reads1 = new ReadSequence[capacity];
+      this.reads2 = pairedEnd ? new ReadSequence[capacity] : null;
+      this.accepted = new boolean[capacity];
+    }
+  }
+
+  //
+  // Setter
+  //
+
+  /**
+   * Set if the output files must be block compressed FASTQ files with an
+   * index.
+   * @param indexedOutput true if the output files must be indexed
+   */
+  void setIndexedOutput(final boolean indexedOutput) {
+
+    this.indexedOutput = indexedOutput;
+  }
+
+  //
+  // Filtering methods
+  //
+
+  /**
+   * Filter a file in single end mode.
+   * @param inFile input file
+   * @param outFile output file
+   * @param reporter reporter to use
+   * @param fastqFormat FastqFormat
+   * @throws IOException if an error occurs while filtering data
+   * @throws BadBioEntryException if an input entry is invalid
+   */
+  void filter(final DataFile inFile, final DataFile outFile,
+      final Reporter reporter, final FastqFormat fastqFormat)
+      throws IOException, BadBioEntryException {
+
+    filter(inFile, null, outFile, null, reporter, fastqFormat);
+  }
+
+  /**
+   * Filter a file in single end or paired-end mode.
+   * @param inFile1 first input file
+   * @param inFile2 second input file, null in single end mode
+   * @param outFile1 first output file
+   * @param outFile2 second output file, null in single end mode
+   * @param reporter reporter to use
+   * @param fastqFormat FastqFormat
+   * @throws IOException if an error occurs while filtering data
+   * @throws BadBioEntryException if an input entry is invalid
+   */
+  void filter(final DataFile inFile1, final DataFile inFile2,
+      final DataFile outFile1, final DataFile outFile2, final Reporter reporter,
+      final FastqFormat fastqFormat) throws IOException, BadBioEntryException {
+
+    final boolean pairedEnd = inFile2 != null;
+    final BlockingQueue<Future<Batch>> queue =
+        new ArrayBlockingQueue<>(2 * this.threadCount);
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(this.threadCount);
+
+    final Thread readerThread = new Thread(
+        () -> readInput(inFile1, inFile2, fastqFormat, queue, executor),
+        "filterreads-reader");
+
+    try (
+        ReadSequenceWriter writer1 = ReadsFilterLocalModule
+            .createWriter(outFile1, this.indexedOutput);
+        ReadSequenceWriter writer2 = pairedEnd
+            ? ReadsFilterLocalModule.createWriter(outFile2,
+                this.indexedOutput)
+            : null) {
+
+      readerThread.start();
+
+      Future<Batch> future;
+      while ((future = queue.take()) != END_OF_INPUT) {
+
+        final Batch batch = future.get();
+        int acceptedCount = 0;
+
+        for (int i = 0; i < batch.size; i++) {
+
+          if (batch.accepted[i]) {
+            writer1.write(batch.reads1[i]);
+            if (pairedEnd) {
+              writer2.write(batch.reads2[i]);
+            }
+            acceptedCount++;
+          }
+        }
+
+        reporter.incrCounter(this.counterGroup,
+            INPUT_RAW_READS_COUNTER.counterName(), batch.size);
+        reporter.incrCounter(this.counterGroup,
+            OUTPUT_FILTERED_READS_COUNTER.counterName(), acceptedCount);
+        reporter.incrCounter(this.counterGroup,
+            READS_REJECTED_BY_FILTERS_COUNTER.counterName(),
+            batch.size - acceptedCount);
+      }
+
+      readerThread.join();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Reads filtering has been interrupted", e);
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+
+    } finally {
+      executor.shutdownNow();
+      readerThread.interrupt();
+    }
+
+    // Throw the exception caught by the reader thread
+    final Exception exception = this.readerException;
+    if (exception instanceof IOException) {
+      throw (IOException) exception;
+    }
+    if (exception instanceof BadBioEntryException) {
+      throw (BadBioEntryException) exception;
+    }
+    if (exception instanceof RuntimeException) {
+      throw (RuntimeException) exception;
+    }
+
+    // Merge the counters of the filters
+    for (LocalReporter filterReporter : this.filterReporters) {
+      for (String counterName : filterReporter
+          .getCounterNames(this.counterGroup)) {
+        reporter.incrCounter(this.counterGroup, counterName,
+            filterReporter.getCounterValue(this.counterGroup, counterName));
+      }
+    }
+  }
+
+  /**
+   * Read the input files and submit the batches of reads to the filter
+   * workers. This method is executed by the reader thread.
+   * @param inFile1 first input file
+   * @param inFile2 second input file, null in single end mode
+   * @param fastqFormat FastqFormat
+   * @param queue queue of the filtered batches
+   * @param executor executor of the filter workers
+   */
+  private void readInput(final DataFile inFile1, final DataFile inFile2,
+      final FastqFormat fastqFormat, final BlockingQueue<Future<Batch>> queue,
+      final ExecutorService executor) {
+
+    final boolean pairedEnd = inFile2 != null;
+
+    try (FastqByteReader reader1 = new FastqByteReader(inFile1.open());
+        FastqByteReader reader2 =
+            pairedEnd ? new FastqByteReader(inFile2.open()) : null) {
+
+      Batch batch = new Batch(this.batchSize, pairedEnd);
+
+      for (final ReadSequence read1 : reader1) {
+
+        // Set Fastq format
+        read1.setFastqFormat(fastqFormat);
+
+        ReadSequence read2 = null;
+
+        if (pairedEnd) {
+
+          // Test if the second read exists
+          if (!reader2.hasNext()) {
+            reader2.throwException();
+            throw new IOException("Unexcepted end of the second read file. "
+                + inFile1.getName() + " and " + inFile2.getName()
+                + " must have the same number of entries/lines.");
+          }
+
+          // Get the second read
+          read2 = reader2.next();
+          read2.setFastqFormat(fastqFormat);
+        }
+
+        batch.add(read1, read2);
+
+        if (batch.isFull()) {
+          submit(batch, queue, executor);
+          batch = new Batch(this.batchSize, pairedEnd);
+        }
+      }
+
+      reader1.throwException();
+
+      if (pairedEnd) {
+
+        reader2.throwException();
+
+        if (reader2.hasNext()) {
+          throw new IOException("Unexcepted end of the first read file. "
+              + inFile1.getName() + " and " + inFile2.getName()
+              + " must have the same number of entries/lines.");
+        }
+      }
+
+      if (batch.size > 0) {
+        submit(batch, queue, executor);
+      }
+
+    } catch (IOException | BadBioEntryException | RuntimeException e) {
+      // The end of input must always be sent to not block the writer
+      this.readerException = e;
+    } catch (InterruptedException e) {
+      // The writer has stopped, nothing more to do
+      return;
+    }
+
+    try {
+      queue.put(END_OF_INPUT);
+    } catch (InterruptedException e) {
+      // The writer has stopped, nothing more to do
+    }
+  }
+
+  /**
+   * Submit a batch of reads to the filter workers.
+   * @param batch the batch to filter
+   * @param queue queue of the filtered batches
+   * @param executor executor of the filter workers
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private void submit(final Batch batch,
+      final BlockingQueue<Future<Batch>> queue, final ExecutorService executor)
+      throws InterruptedException {
+
+    queue.put(executor.submit(() -> filterBatch(batch)));
+  }
+
+  /**
+   * Filter a batch of reads. This method is executed by the filter workers.
+   * @param batch the batch to filter
+   * @return the filtered batch
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private Batch filterBatch(final Batch batch) throws InterruptedException {
+
+    final ReadFilter filter = this.filters.take();
+
+    try {
+      for (int i = 0; i < batch.size; i++) {
+
+        batch.accepted[i] = batch.reads2 == null
+            ? filter.accept(batch.reads1[i])
+            : filter.accept(batch.reads1[i], batch.reads2[i]);
+      }
+    } finally {
+      this.filters.add(filter);
+    }
+
+    return batch;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param threadCount number of filter workers
+   * @param counterGroup counter group
+   * @param filterFactory factory for the read filters
+   * @throws EoulsanException if an error occurs while creating the filters
+   */
+  ReadsFilterPipeline(final int threadCount, final String counterGroup,
+      final ReadFilterFactory filterFactory) throws EoulsanException {
+
+    this(threadCount, DEFAULT_BATCH_SIZE, counterGroup, filterFactory);
+  }
+
+  /**
+   * Constructor.
+   * @param threadCount number of filter workers
+   * @param batchSize number of reads in a batch
+   * @param counterGroup counter group
+   * @param filterFactory factory for the read filters
+   * @throws EoulsanException if an error occurs while creating the filters
+   */
+  ReadsFilterPipeline(final int threadCount, final int batchSize,
+      final String counterGroup, final ReadFilterFactory filterFactory)
+      throws EoulsanException {
+
+    if (threadCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid thread count: " + threadCount);
+    }
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+
+    if (counterGroup == null) {
+      throw new NullPointerException("counterGroup argument cannot be null");
+    }
+
+    if (filterFactory == null) {
+      throw new NullPointerException("filterFactory argument cannot be null");
+    }
+
+    this.threadCount = threadCount;
+    this.batchSize = batchSize;
+    this.counterGroup = counterGroup;
+    this.filters = new ArrayBlockingQueue<>(threadCount);
+
+    for (int i = 0; i < threadCount; i++) {
+
+      final LocalReporter filterReporter = new LocalReporter();
+      this.filterReporters.add(filterReporter);
+      this.filters.add(filterFactory.create(filterReporter));
+    }
+  }
+
+}
@@ -31,21 +31,20 @@ import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.SAMUtils;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.FileMapping;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.Mapper;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndex;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndexCache;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperInstance;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.STARMapperProvider;
@@ -61,11 +60,9 @@ import fr.ens.biologie.genomique.eoulsan.data.Data;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters;
-import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
 import fr.ens.biologie.genomique.eoulsan.util.Reporter;
 import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
-import fr.ens.biologie.genomique.eoulsan.util.UnSynchronizedBufferedWriter;
 
 /**
  * This class define a module for reads mapping.
@@ -107,10 +104,12 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
   public TaskResult execute(final TaskContext context,
       final TaskStatus status) {
 
+    MapperIndexCache.CachedIndex cachedIndex = null;
+
     try {
 
       // Create the reporter
-      final Reporter reporter = new LocalReporter();
+      final LocalReporter reporter = new LocalReporter();
 
       final DataFile archiveIndexFile =
           context.getInputData(getMapper().getArchiveFormat()).getDataFile();
@@ -145,9 +144,13 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
       // Get FASTQ format
       final FastqFormat fastqFormat = inData.getMetadata().getFastqFormat();
 
+      // Get the unpacked index from the node-local cache if enabled
+      cachedIndex = MapperIndexCache.acquire(context.getSettings(),
+          getMapperName(), archiveIndexFile);
+
       // Initialize the mapper
       final FileMapping mapper = initMapper(context, fastqFormat,
-          archiveIndexFile, indexDir, reporter);
+          archiveIndexFile, indexDir, cachedIndex, reporter);
 
       if (inData.getDataFileCount() < 1) {
         throw new IOException("No reads file found.");
@@ -237,6 +240,8 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
 
       return status.createTaskResult(e,
           "Error while mapping reads: " + e.getMessage());
+    } finally {
+      MapperIndexCache.closeQuietly(cachedIndex);
     }
 
     return status.createTaskResult();
@@ -248,12 +253,14 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
    * @param format FASTQ format
    * @param archiveIndexFile genome index for the mapper as a ZIP file
    * @param indexDir uncompressed directory for the genome index
+   * @param cachedIndex genome index from the node-local cache, can be null
    * @param reporter reporter
    * @throws IOException if an error while initializing the mapper
    */
   private FileMapping initMapper(final TaskContext context,
       final FastqFormat format, final DataFile archiveIndexFile,
-      final File indexDir, final Reporter reporter) throws IOException {
+      final File indexDir, final MapperIndexCache.CachedIndex cachedIndex,
+      final Reporter reporter) throws IOException {
 
     // Get the mapper object
     final Mapper mapper = getMapper();
@@ -270,12 +277,13 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
         mapper.newMapperInstance(getMapperVersion(), getMapperFlavor(),
             isUseBundledBinaries(), getMapperDockerImage());
 
-    // Create the MapperIndex object
-    final MapperIndex mapperIndex =
-        mapperInstance.newMapperIndex(archiveIndexFile.open(), indexDir);
+    // Create the MapperIndex object, from the node-local cache if enabled
+    final MapperIndex mapperIndex = cachedIndex != null
+        ? mapperInstance.newMapperIndex(cachedIndex)
+        : mapperInstance.newMapperIndex(archiveIndexFile.open(), indexDir);
 
     // Get the number of threads to use
-    int mapperThreads = getMapperLocalThreads();
+    int mapperThreads = getMapperLocalThreads(context);
     if (mapperThreads > Runtime.getRuntime().availableProcessors()
         || mapperThreads < 1) {
       mapperThreads = Runtime.getRuntime().availableProcessors();
@@ -285,8 +293,10 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
         getMapperArguments(), mapperThreads, false, reporter, COUNTER_GROUP);
 
     // Delete the index directory at the end of the workflow
-    context.getWorkflow()
-        .deleteOnExit(new DataFile(mapperIndex.getIndexDirectory()));
+    if (cachedIndex == null) {
+      context.getWorkflow()
+          .deleteOnExit(new DataFile(mapperIndex.getIndexDirectory()));
+    }
 
     return mapping;
   }
@@ -299,41 +309,18 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
    * @throws IOException if an error occurs while reading the sAM file
    */
   private void parseSAMResults(final InputStream samFileInputStream,
-      final File samFile, final Reporter reporter) throws IOException {
-
-    String line;
-
-    // Parse SAM result file
-    final BufferedReader readerResults =
-        FileUtils.createBufferedReader(samFileInputStream);
-    final Writer writer =
-        new UnSynchronizedBufferedWriter(new OutputStreamWriter(
-            new FileOutputStream(samFile), StandardCharsets.ISO_8859_1));
-
-    int entriesParsed = 0;
-
-    while ((line = readerResults.readLine()) != null) {
+      final File samFile, final LocalReporter reporter) throws IOException {
 
-      writer.write(line);
-      writer.write('\n');
-
-      final String trimmedLine = line.trim();
-      if ("".equals(trimmedLine) || trimmedLine.startsWith("@")) {
-        continue;
-      }
-
-      final int tabPos = trimmedLine.indexOf('\t');
-
-      if (tabPos != -1) {
-
-        entriesParsed++;
-        reporter.incrCounter(COUNTER_GROUP,
-            MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName(), 1);
-      }
+    // Copy the SAM data and count the alignments without decoding the lines
+    final long entriesParsed;
+    try (InputStream is = samFileInputStream;
+        OutputStream os = new FileOutputStream(samFile)) {
+      entriesParsed = SAMUtils.copyAndCountAlignments(is, os);
     }
 
-    readerResults.close();
-    writer.close();
+    reporter.incrCounter(COUNTER_GROUP,
+        MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName(),
+        entriesParsed);
 
     getLogger().info(entriesParsed
         + " entries parsed in " + getMapperName() + " output file");
@@ -32,6 +32,8 @@ import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,6 +54,8 @@ import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractSAMFilterModule;
 import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
 import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMFormatException;
@@ -85,13 +89,20 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
       getLogger().info("Read alignments filters to apply: "
           + Joiner.on(", ").join(filter.getFilterNames()));
 
-      filterSample(context, reporter, status, filter);
+      // Create the multithreaded pipeline if more than one thread is required
+      final int threads = getLocalThreads();
+      final SAMFilterPipeline pipeline = threads > 1
+          ? new SAMFilterPipeline(threads, COUNTER_GROUP,
+              r -> getAlignmentsFilter(r, COUNTER_GROUP))
+          : null;
+
+      filterSample(context, reporter, status, filter, pipeline);
 
     } catch (IOException e) {
-      status.createTaskResult(e,
+      return status.createTaskResult(e,
           "Error while filtering alignments: " + e.getMessage());
     } catch (EoulsanException e) {
-      status.createTaskResult(e,
+      return status.createTaskResult(e,
           "Error while initializing filter: " + e.getMessage());
     }
 
@@ -104,11 +115,13 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
    * @param reporter reporter to use
    * @param status task status
    * @param filter alignments filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
    * @throws IOException if an error occurs while filtering reads
    */
   private static void filterSample(final TaskContext context,
       final Reporter reporter, final TaskStatus status,
-      final ReadAlignmentsFilter filter) throws IOException {
+      final ReadAlignmentsFilter filter, final SAMFilterPipeline pipeline)
+      throws IOException {
 
     // Get input and output data
     final Data inData = context.getInputData(DataFormats.MAPPER_RESULTS_SAM);
@@ -122,7 +135,7 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
     final DataFile outFile = outData.getDataFile();
 
     // Filter alignments in single-end mode or in paired-end mode
-    filterFile(inFile, outFile, reporter, filter,
+    filterFile(inFile, outFile, reporter, filter, pipeline,
         context.getLocalTempDirectory());
 
     // Set the description of the context
@@ -139,33 +152,65 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
    * @param outFile output file
    * @param reporter reporter to use
    * @param filter alignments filter to use
+   * @param pipeline multithreaded pipeline to use, null for single thread
    * @param tmpDir temporary directory
    * @throws IOException if an error occurs while filtering data
    */
   private static void filterFile(final DataFile inFile, final DataFile outFile,
       final Reporter reporter, final ReadAlignmentsFilter filter,
-      final File tmpDir) throws IOException {
+      final SAMFilterPipeline pipeline, final File tmpDir) throws IOException {
+
+    getLogger().info("Filter SAM file: " + inFile);
+
+    if (pipeline != null) {
+      pipeline.filter(inFile.open(), outFile.create(), reporter, tmpDir);
+      return;
+    }
+
+    filterAlignments(inFile.open(), outFile.create(), reporter, COUNTER_GROUP,
+        filter, tmpDir);
+  }
+
+  /**
+   * Filter alignments in single-end mode or paired-end mode. The input and the
+   * output streams are closed at the end of the filtering.
+   * @param in SAM input stream
+   * @param out SAM output stream
+   * @param reporter reporter to use
+   * @param counterGroup counter group
+   * @param filter alignments filter to use
+   * @param tmpDir temporary directory
+   * @return the number of SAM entries read, including the invalid ones
+   * @throws IOException if an error occurs while filtering data
+   */
+  static long filterAlignments(final InputStream in, final OutputStream out,
+      final Reporter reporter, final String counterGroup,
+      final ReadAlignmentsFilter filter, final File tmpDir)
+      throws IOException {
 
     final List<SAMRecord> records = new ArrayList<>();
-    int counterInput = 0;
-    int counterOutput = 0;
-    int counterInvalid = 0;
+    long counterInput = 0;
+    long counterOutput = 0;
+    long counterInvalid = 0;
     boolean pairedEnd = false;
 
     // Creation of a buffer object to store alignments with the same read name
     final ReadAlignmentsFilterBuffer rafb =
         new ReadAlignmentsFilterBuffer(filter);
 
-    getLogger().info("Filter SAM file: " + inFile);
-
     // Get reader
     final SamReader inputSam =
-        SamReaderFactory.makeDefault().open(SamInputResource.of(inFile.open()));
+        SamReaderFactory.makeDefault().open(SamInputResource.of(in));
+    final SAMFileHeader header = inputSam.getFileHeader();
 
     // Get Writer
-    final SAMFileWriter outputSam =
-        new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeSAMWriter(inputSam.getFileHeader(), false, outFile.create());
+    final SAMFileWriter outputSam = createWriter(header, out, tmpDir);
+
+    // Alignments of the reads of a sorted input must keep the input order
+    final boolean sortAlignments = !isPresorted(header);
+
+    // Comparator for the alignments of a read
+    final SAMComparator comparator = new SAMComparator();
 
     final SAMRecordIterator it = inputSam.iterator();
 
@@ -199,7 +244,9 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
         records.addAll(rafb.getFilteredAlignments());
 
         // sort alignments of the current read
-        records.sort(new SAMComparator());
+        if (sortAlignments) {
+          records.sort(comparator);
+        }
 
         // writing records
         for (SAMRecord r : records) {
@@ -217,7 +264,9 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
     records.addAll(rafb.getFilteredAlignments());
 
     // sort alignments of the last read
-    records.sort(new SAMComparator());
+    if (sortAlignments) {
+      records.sort(comparator);
+    }
 
     // writing records
     for (SAMRecord r : records) {
@@ -225,36 +274,89 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
       counterOutput++;
     }
 
+    incrementCounters(reporter, counterGroup, pairedEnd, counterInput,
+        counterOutput, counterInvalid);
+
+    // Close files
+    inputSam.close();
+    outputSam.close();
+
+    return counterInput + counterInvalid;
+  }
+
+  /**
+   * Test if the filtered alignments are already sorted as declared in the SAM
+   * header. The filtering keeps the input order of the alignments, so the
+   * alignments of an input sorted by coordinate or by query name remain sorted
+   * if the alignments of a read are not sorted again after filtering.
+   * @param header SAM header
+   * @return true if the alignments do not need to be sorted by the writer
+   */
+  static boolean isPresorted(final SAMFileHeader header) {
+
+    final SortOrder sortOrder = header.getSortOrder();
+
+    return sortOrder == SortOrder.coordinate
+        || sortOrder == SortOrder.queryname;
+  }
+
+  /**
+   * Create the SAM writer. The writer is declared as presorted for the inputs
+   * sorted by coordinate or by query name to avoid sorting again the
+   * alignments using temporary files.
+   * @param header SAM header
+   * @param out output stream
+   * @param tmpDir temporary directory
+   * @return a new SAMFileWriter object
+   */
+  static SAMFileWriter createWriter(final SAMFileHeader header,
+      final OutputStream out, final File tmpDir) {
+
+    return new SAMFileWriterFactory().setTempDirectory(tmpDir)
+        .makeSAMWriter(header, isPresorted(header), out);
+  }
+
+  /**
+   * Increment the counters of the alignments filtering.
+   * @param reporter reporter to use
+   * @param counterGroup counter group
+   * @param pairedEnd true if the alignments are paired-end alignments
+   * @param counterInput number of valid input alignments
+   * @param counterOutput number of output alignments
+   * @param counterInvalid number of invalid input alignments
+   */
+  static void incrementCounters(final Reporter reporter,
+      final String counterGroup, final boolean pairedEnd,
+      final long counterInput, final long counterOutput,
+      final long counterInvalid) {
+
     // paired-end mode
     if (pairedEnd) {
-      int nbInput = counterInput / 2;
-      int nbOutput = counterOutput / 2;
-      reporter.incrCounter(COUNTER_GROUP,
+      long nbInput = counterInput / 2;
+      long nbOutput = counterOutput / 2;
+      reporter.incrCounter(counterGroup,
           INPUT_ALIGNMENTS_COUNTER.counterName(), nbInput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           OUTPUT_FILTERED_ALIGNMENTS_COUNTER.counterName(), nbOutput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_WITH_INVALID_SAM_FORMAT.counterName(), counterInvalid / 2);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_REJECTED_BY_FILTERS_COUNTER.counterName(),
           nbInput - nbOutput);
     }
 
     // single-end mode
     else {
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           INPUT_ALIGNMENTS_COUNTER.counterName(), counterInput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           OUTPUT_FILTERED_ALIGNMENTS_COUNTER.counterName(), counterOutput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_WITH_INVALID_SAM_FORMAT.counterName(), counterInvalid);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_REJECTED_BY_FILTERS_COUNTER.counterName(),
           counterInput - counterOutput);
     }
-
-    // Close files
-    inputSam.close();
-    outputSam.close();
   }
+
 }
@@ -0,0 +1,427 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.SAMComparator;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFormatException;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+/**
+ * This class define a multithreaded pipeline for alignments filtering. A
+ * reader thread parses the input SAM data, groups the alignments by read name
+ * and creates batches of groups, the batches are filtered by a pool of worker
+ * threads and the current thread writes the batches in the input order. As
+ * alignments filters are not thread safe, each worker use its own filter
+ * instance and its own reporter. The counters of these reporters are merged in
+ * the reporter of the task at the end of the process.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+final class SAMFilterPipeline {
+
+  /** Minimal number of alignments in a batch. */
+  static final int DEFAULT_BATCH_SIZE = 10000;
+
+  /** Marker for the end of the input. */
+  private static final Future<Batch> END_OF_INPUT =
+      CompletableFuture.completedFuture(null);
+
+  private final String counterGroup;
+  private final int threadCount;
+  private final int batchSize;
+  private final BlockingQueue<ReadAlignmentsFilter> filters;
+  private final List<LocalReporter> filterReporters = new ArrayList<>();
+
+  private volatile Exception readerException;
+
+  // Only modified by the reader thread, read after the end of this thread
+  private long invalidCount;
+  private boolean pairedEnd;
+
+  /**
+   * This interface define a factory for alignments filters.
+   */
+  interface ReadAlignmentsFilterFactory {
+
+    /**
+     * Create a new alignments filter.
+     * @param reporter reporter to use by the filter
+     * @return a new ReadAlignmentsFilter object
+     * @throws EoulsanException if an error occurs while creating the filter
+     */
+    ReadAlignmentsFilter create(Reporter reporter) throws EoulsanException;
+  }
+
+  /**
+   * This class define a batch of alignments grouped by read name.
+   */
+  private static final class Batch {
+
+    private final List<List<SAMRecord>> groups = new ArrayList<>();
+    private int alignmentCount;
+
+    private void add(final List<SAMRecord> group) {
+
+      this.groups.add(group);
+      this.alignmentCount += group.size();
+    }
+  }
+
+  //
+  // Filtering methods
+  //
+
+  /**
+   * Filter alignments in single-end mode or paired-end mode. The input and the
+   * output streams are closed at the end of the filtering.
+   * @param in SAM input stream
+   * @param out SAM output stream
+   * @param reporter reporter to use
+   * @param tmpDir temporary directory
+   * @return the number of SAM entries read, including the invalid ones
+   * @throws IOException if an error occurs while filtering data
+   */
+  long filter(final InputStream in, final OutputStream out,
+      final Reporter reporter, final File tmpDir) throws IOException {
+
+    final BlockingQueue<Future<Batch>> queue =
+        new ArrayBlockingQueue<>(2 * this.threadCount);
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(this.threadCount);
+
+    // Get reader
+    final SamReader inputSam =
+        SamReaderFactory.makeDefault().open(SamInputResource.of(in));
+
+    // Get Writer
+    final SAMFileWriter outputSam = SAMFilterLocalModule
+        .createWriter(inputSam.getFileHeader(), out, tmpDir);
+
+    // Alignments of the reads of a sorted input must keep the input order
+    final boolean sortAlignments =
+        !SAMFilterLocalModule.isPresorted(inputSam.getFileHeader());
+
+    final Thread readerThread = new Thread(
+        () -> readInput(inputSam.iterator(), queue, executor, sortAlignments),
+        "filtersam-reader");
+
+    long counterInput = 0;
+    long counterOutput = 0;
+
+    try {
+
+      readerThread.start();
+
+      Future<Batch> future;
+      while ((future = queue.take()) != END_OF_INPUT) {
+
+        final Batch batch = future.get();
+
+        for (List<SAMRecord> group : batch.groups) {
+          for (SAMRecord r : group) {
+            outputSam.addAlignment(r);
+            counterOutput++;
+          }
+        }
+
+        counterInput += batch.alignmentCount;
+      }
+
+      readerThread.join();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Alignments filtering has been interrupted", e);
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+
+    } finally {
+      executor.shutdownNow();
+      readerThread.interrupt();
+
+      // Close files, also on error to release the temporary files of the
+      // sorting writer
+      try {
+        inputSam.close();
+      } finally {
+        outputSam.close();
+      }
+    }
+
+    // Throw the exception caught by the reader thread
+    final Exception exception = this.readerException;
+    if (exception instanceof IOException) {
+      throw (IOException) exception;
+    }
+    if (exception instanceof RuntimeException) {
+      throw (RuntimeException) exception;
+    }
+
+    SAMFilterLocalModule.incrementCounters(reporter, this.counterGroup,
+        this.pairedEnd, counterInput, counterOutput, this.invalidCount);
+
+    // Merge the counters of the filters
+    for (LocalReporter filterReporter : this.filterReporters) {
+      for (String counterName : filterReporter
+          .getCounterNames(this.counterGroup)) {
+        reporter.incrCounter(this.counterGroup, counterName,
+            filterReporter.getCounterValue(this.counterGroup, counterName));
+      }
+    }
+
+    return counterInput + this.invalidCount;
+  }
+
+  /**
+   * Read the input alignments and submit the batches of alignments to the
+   * filter workers. This method is executed by the reader thread.
+   * @param it iterator on the input alignments
+   * @param queue queue of the filtered batches
+   * @param executor executor of the filter workers
+   * @param sortAlignments true if the alignments of a read must be sorted
+   */
+  private void readInput(final SAMRecordIterator it,
+      final BlockingQueue<Future<Batch>> queue, final ExecutorService executor,
+      final boolean sortAlignments) {
+
+    try {
+
+      Batch batch = new Batch();
+      List<SAMRecord> group = new ArrayList<>();
+      String currentName = null;
+      boolean first = true;
+
+      while (it.hasNext()) {
+
+        final SAMRecord samRecord;
+
+        // Check if SAM entry is correct
+        try {
+          samRecord = it.next();
+        } catch (SAMFormatException e) {
+          this.invalidCount++;
+          continue;
+        }
+
+        // single-end or paired-end mode ?
+        if (first) {
+          this.pairedEnd = samRecord.getReadPairedFlag();
+          first = false;
+        }
+
+        final String name = parseAlignmentName(samRecord);
+
+        // The current alignment has a new read name
+        if (currentName != null && !currentName.equals(name)) {
+
+          batch.add(group);
+          group = new ArrayList<>();
+
+          if (batch.alignmentCount >= this.batchSize) {
+            submit(batch, queue, executor, sortAlignments);
+            batch = new Batch();
+          }
+        }
+
+        currentName = name;
+        group.add(samRecord);
+      }
+
+      // Treatment of the last read
+      if (!group.isEmpty()) {
+        batch.add(group);
+      }
+
+      if (!batch.groups.isEmpty()) {
+        submit(batch, queue, executor, sortAlignments);
+      }
+
+    } catch (RuntimeException e) {
+      this.readerException = e;
+    } catch (InterruptedException e) {
+      // The writer has stopped, nothing more to do
+      return;
+    }
+
+    try {
+      queue.put(END_OF_INPUT);
+    } catch (InterruptedException e) {
+      // The writer has stopped, nothing more to do
+    }
+  }
+
+  /**
+   * Submit a batch of alignments to the filter workers.
+   * @param batch the batch to filter
+   * @param queue queue of the filtered batches
+   * @param executor executor of the filter workers
+   * @param sortAlignments true if the alignments of a read must be sorted
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private void submit(final Batch batch,
+      final BlockingQueue<Future<Batch>> queue, final ExecutorService executor,
+      final boolean sortAlignments) throws InterruptedException {
+
+    queue.put(executor.submit(() -> filterBatch(batch, sortAlignments)));
+  }
+
+  /**
+   * Filter a batch of alignments. This method is executed by the filter
+   * workers.
+   * @param batch the batch to filter
+   * @param sortAlignments true if the alignments of a read must be sorted
+   * @return the filtered batch
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private Batch filterBatch(final Batch batch, final boolean sortAlignments)
+      throws InterruptedException {
+
+    final ReadAlignmentsFilter filter = this.filters.take();
+    final SAMComparator comparator = new SAMComparator();
+
+    try {
+      for (List<SAMRecord> group : batch.groups) {
+
+        filter.filterReadAlignments(group);
+
+        // sort alignments of the current read
+        if (sortAlignments) {
+          group.sort(comparator);
+        }
+      }
+    } finally {
+      this.filters.add(filter);
+    }
+
+    return batch;
+  }
+
+  /**
+   * Parse alignment name.
+   * @param alignment the alignment
+   * @return the name of the sequence in the alignment
+   */
+  private static String parseAlignmentName(final SAMRecord alignment) {
+
+    final String alignmentName = alignment.getReadName();
+    final int spaceIndex = alignmentName.indexOf(' ');
+
+    if (spaceIndex == -1) {
+      return alignmentName;
+    }
+
+    return alignmentName.substring(0, spaceIndex);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param threadCount number of filter workers
+   * @param counterGroup counter group
+   * @param filterFactory factory for the alignments filters
+   * @throws EoulsanException if an error occurs while creating the filters
+   */
+  SAMFilterPipeline(final int threadCount, final String counterGroup,
+      final ReadAlignmentsFilterFactory filterFactory)
+      throws EoulsanException {
+
+    this(threadCount, DEFAULT_BATCH_SIZE, counterGroup, filterFactory);
+  }
+
+  /**
+   * Constructor.
+   * @param threadCount number of filter workers
+   * @param batchSize minimal number of alignments in a batch
+   * @param counterGroup counter group
+   * @param filterFactory factory for the alignments filters
+   * @throws EoulsanException if an error occurs while creating the filters
+   */
+  SAMFilterPipeline(final int threadCount, final int batchSize,
+      final String counterGroup,
+      final ReadAlignmentsFilterFactory filterFactory)
+      throws EoulsanException {
+
+    if (threadCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid thread count: " + threadCount);
+    }
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+
+    if (counterGroup == null) {
+      throw new NullPointerException("counterGroup argument cannot be null");
+    }
+
+    if (filterFactory == null) {
+      throw new NullPointerException("filterFactory argument cannot be null");
+    }
+
+    this.threadCount = threadCount;
+    this.batchSize = batchSize;
+    this.counterGroup = counterGroup;
+    this.filters = new ArrayBlockingQueue<>(threadCount);
+
+    for (int i = 0; i < threadCount; i++) {
+
+      final LocalReporter filterReporter = new LocalReporter();
+      this.filterReporters.add(filterReporter);
+      this.filters.add(filterFactory.create(filterReporter));
+    }
+  }
+
+}
@@ -16,7 +16,7 @@ import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractSplice2BEDModule;
 import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
-import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter.Counter;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
@@ -39,7 +39,7 @@ public class Splice2BEDModule extends AbstractSplice2BEDModule {
     try {
 
       // Create the reporter
-      final Reporter reporter = new LocalReporter();
+      final LocalReporter reporter = new LocalReporter();
 
       // Get input SAM data
       final Data inData = context.getInputData(DataFormats.MAPPER_RESULTS_SAM);
@@ -77,7 +77,10 @@ public class Splice2BEDModule extends AbstractSplice2BEDModule {
   private static void convert(final DataFile samDataFile,
       final DataFile bedDataFile, final String trackName,
       final String trackDescription, final String trackColor,
-      final Reporter reporter) throws IOException {
+      final LocalReporter reporter) throws IOException {
+
+    final Counter processedCounter =
+        reporter.getCounter(COUNTER_GROUP, "alignments processed");
 
     try (
         final SamReader samReader = SamReaderFactory.makeDefault()
@@ -120,7 +123,7 @@ public class Splice2BEDModule extends AbstractSplice2BEDModule {
         // Write BED entry
         bedWriter.write(entry);
 
-        reporter.incrCounter(COUNTER_GROUP, "alignments processed", 1);
+        processedCounter.increment();
       }
     }
   }
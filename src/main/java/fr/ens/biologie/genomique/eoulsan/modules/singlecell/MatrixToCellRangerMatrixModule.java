@@ -144,17 +144,28 @@ public class MatrixToCellRangerMatrixModule extends AbstractModule {
         }
       }
 
-      // Load matrix
-      final ExpressionMatrix matrix = this.inputMatrices
-          ? mergeMatrices(matrices) : mergeExpressionResults(matrices);
-
       // Write the matrix
       try (CellRangerExpressionMatrixWriter writer =
           new CellRangerExpressionMatrixWriter(
               context.getStepOutputDirectory().toFile(), geneAnnotation,
               this.featureAnnotationFieldName, this.cellRangerMatrixFormat,
               this.featureAnnotationType)) {
-        writer.write(matrix);
+
+        if (StreamingMatrixMerger.isStreamable(matrices, this.inputMatrices)) {
+
+          // Merge the inputs without loading them in memory
+          context.getLogger().fine("Merge the inputs in streaming");
+          new StreamingMatrixMerger(matrices, this.inputMatrices)
+              .write(writer);
+
+        } else {
+
+          // Load matrix
+          final ExpressionMatrix matrix = this.inputMatrices
+              ? mergeMatrices(matrices) : mergeExpressionResults(matrices);
+
+          writer.write(matrix);
+        }
       }
 
     } catch (IOException e) {
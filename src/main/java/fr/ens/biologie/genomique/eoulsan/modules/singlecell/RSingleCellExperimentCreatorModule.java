@@ -25,9 +25,9 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.Globals;
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.bio.AnnotationMatrix;
+import fr.ens.biologie.genomique.eoulsan.bio.CSCExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.DenseAnnotationMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.ExpressionMatrix;
-import fr.ens.biologie.genomique.eoulsan.bio.SparseExpressionMatrix;
 import fr.ens.biologie.genomique.eoulsan.bio.io.AnnotationMatrixReader;
 import fr.ens.biologie.genomique.eoulsan.bio.io.AnnotationMatrixWriter;
 import fr.ens.biologie.genomique.eoulsan.bio.io.CountsReader;
@@ -79,7 +79,7 @@ public class RSingleCellExperimentCreatorModule extends AbstractModule {
   private final Set<Requirement> requirements = new HashSet<>();
   private RExecutor executor;
 
-  private static final char CELL_SEPARATOR = '_';
+  static final char CELL_SEPARATOR = '_';
 
   private boolean inputMatrices = true;
   private boolean mergeMatrices = true;
@@ -327,7 +327,7 @@ public class RSingleCellExperimentCreatorModule extends AbstractModule {
 
     requireNonNull(matrices, "matrices argument cannot be null");
 
-    final ExpressionMatrix result = new SparseExpressionMatrix();
+    final ExpressionMatrix result = new CSCExpressionMatrix();
 
     for (Data matrixData : matrices.getListElements()) {
       loadMatrix(matrixData, result);
@@ -364,7 +364,7 @@ public class RSingleCellExperimentCreatorModule extends AbstractModule {
 
         // Read matrix
         ExpressionMatrix loadedMatrix = reader.read(
-            resultMatrix == null ? new SparseExpressionMatrix() : resultMatrix);
+            resultMatrix == null ? new CSCExpressionMatrix() : resultMatrix);
 
         // Rename the column with sample name
         for (String colName : loadedMatrix.getColumnNames()) {
@@ -397,7 +397,7 @@ public class RSingleCellExperimentCreatorModule extends AbstractModule {
 
     requireNonNull(matrices, "matrices argument cannot be null");
 
-    final ExpressionMatrix result = new SparseExpressionMatrix();
+    final ExpressionMatrix result = new CSCExpressionMatrix();
 
     for (Data matrixData : matrices.getListElements()) {
 
@@ -0,0 +1,179 @@
+package fr.ens.biologie.genomique.eoulsan.modules.singlecell;
+
+import static fr.ens.biologie.genomique.eoulsan.modules.singlecell.RSingleCellExperimentCreatorModule.CELL_SEPARATOR;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.ens.biologie.genomique.eoulsan.bio.io.CellRangerExpressionMatrixWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.CountsReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.ExpressionMatrixFormatFinderInputStream;
+import fr.ens.biologie.genomique.eoulsan.bio.io.ExpressionMatrixFormatFinderInputStream.MatrixFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.io.MarketMatrixEntryWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.SparseExpressionMatrixReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.SparseExpressionMatrixReader.EntryHandler;
+import fr.ens.biologie.genomique.eoulsan.bio.io.TSVCountsReader;
+import fr.ens.biologie.genomique.eoulsan.data.Data;
+
+/**
+ * This class allow to merge expression results or sparse expression matrices
+ * in a Cell Ranger matrix without storing the merged matrix in memory. The
+ * input files are read twice: the first pass collects the names of the rows
+ * and of the columns and counts the entries, and the second pass writes the
+ * entries. The memory used only depends on the number of rows and columns.
+ * The rows and the columns are in the same order as in the matrices created by
+ * RSingleCellExperimentCreatorModule.mergeMatrices() and
+ * RSingleCellExperimentCreatorModule.mergeExpressionResults().
+ * @author Laurent Jourdren
+ * @since 2.5
+ */
+final class StreamingMatrixMerger {
+
+  private final Data inputs;
+  private final boolean inputMatrices;
+
+  private final Map<String, Integer> rowNumbers = new LinkedHashMap<>();
+  private final Map<String, Integer> columnNumbers = new LinkedHashMap<>();
+  private long entryCount;
+
+  /**
+   * Test if the inputs can be merged in streaming. Expression results can
+   * always be merged in streaming, expression matrices only if they are all in
+   * sparse format.
+   * @param inputs the input data
+   * @param inputMatrices true if the inputs are expression matrices
+   * @return true if the inputs can be merged in streaming
+   * @throws IOException if an error occurs while reading the inputs
+   */
+  static boolean isStreamable(final Data inputs, final boolean inputMatrices)
+      throws IOException {
+
+    requireNonNull(inputs, "inputs argument cannot be null");
+
+    if (!inputMatrices) {
+      return true;
+    }
+
+    for (Data matrixData : inputs.getListElements()) {
+
+      try (ExpressionMatrixFormatFinderInputStream in =
+          new ExpressionMatrixFormatFinderInputStream(
+              matrixData.getDataFile().open())) {
+
+        if (in.getExpressionMatrixFormat() != MatrixFormat.SPARSE) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Merge the inputs and write the result.
+   * @param writer the Cell Ranger matrix writer
+   * @throws IOException if an error occurs while reading the inputs or while
+   *           writing the result
+   */
+  void write(final CellRangerExpressionMatrixWriter writer)
+      throws IOException {
+
+    requireNonNull(writer, "writer argument cannot be null");
+
+    // First pass: collect the names and count the entries
+    readEntries((rowName, columnName, value) -> {
+
+      if (!this.rowNumbers.containsKey(rowName)) {
+        this.rowNumbers.put(rowName, this.rowNumbers.size() + 1);
+      }
+
+      if (!this.columnNumbers.containsKey(columnName)) {
+        this.columnNumbers.put(columnName, this.columnNumbers.size() + 1);
+      }
+
+      if (value != 0) {
+        this.entryCount++;
+      }
+    });
+
+    // Second pass: write the entries
+    try (MarketMatrixEntryWriter entryWriter = writer.createEntryWriter(
+        new ArrayList<>(this.rowNumbers.keySet()),
+        new ArrayList<>(this.columnNumbers.keySet()), this.entryCount, true)) {
+
+      readEntries((rowName, columnName, value) -> {
+
+        if (value != 0) {
+          entryWriter.write(this.rowNumbers.get(rowName),
+              this.columnNumbers.get(columnName), value);
+        }
+      });
+    }
+  }
+
+  /**
+   * Read the entries of all the inputs.
+   * @param handler the handler of the entries
+   * @throws IOException if an error occurs while reading the inputs
+   */
+  private void readEntries(final EntryHandler handler) throws IOException {
+
+    for (Data data : this.inputs.getListElements()) {
+
+      final String sampleName = data.getName();
+
+      if (this.inputMatrices) {
+
+        // Avoid to create the name of the renamed column for each entry
+        final Map<String, String> columnNames = new HashMap<>();
+
+        try (SparseExpressionMatrixReader reader =
+            new SparseExpressionMatrixReader(data.getDataFile().open())) {
+
+          reader.read((rowName, columnName, value) -> {
+
+            String newColumnName = columnNames.get(columnName);
+            if (newColumnName == null) {
+              newColumnName = sampleName + CELL_SEPARATOR + columnName;
+              columnNames.put(columnName, newColumnName);
+            }
+
+            handler.handle(rowName, newColumnName, value);
+          });
+        }
+
+      } else {
+
+        try (CountsReader reader =
+            new TSVCountsReader(data.getDataFile().open())) {
+
+          for (Map.Entry<String, Integer> e : reader.read().entrySet()) {
+            handler.handle(e.getKey(), sampleName, e.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param inputs the input data
+   * @param inputMatrices true if the inputs are expression matrices
+   */
+  StreamingMatrixMerger(final Data inputs, final boolean inputMatrices) {
+
+    requireNonNull(inputs, "inputs argument cannot be null");
+
+    this.inputs = inputs;
+    this.inputMatrices = inputMatrices;
+  }
+
+}
@@ -0,0 +1,520 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+/**
+ * This class define an abstract merger for SAM and BAM files. The input files
+ * are decoded in background threads while the entries are written. If the
+ * header of the first input file declares a coordinate or a queryname sort
+ * order, the entries of all the input files are merged using a k-way merge
+ * that keeps this order. Otherwise the input files are concatenated in the
+ * order of the iterator.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public abstract class AbstractSAMMerger implements Merger {
+
+  // Number of entries decoded at once by a decoder thread
+  private static final int BATCH_SIZE = 512;
+
+  // Number of decoded batches waiting in the queue of a decoder
+  private static final int QUEUE_BATCHES = 2;
+
+  private static final AtomicInteger DECODER_COUNT = new AtomicInteger();
+
+  private int threads = -1;
+
+  /**
+   * This interface define a writer of SAM entries.
+   */
+  protected interface SAMEntryWriter extends Closeable {
+
+    /**
+     * Write an entry.
+     * @param record the entry to write
+     * @throws IOException if an error occurs while writing the entry
+     */
+    void write(SAMRecord record) throws IOException;
+  }
+
+  /**
+   * This class decode the entries of an input file in a background thread.
+   */
+  private static final class Decoder implements Closeable {
+
+    /** Marker for the end of the input file. */
+    private static final List<SAMRecord> END = Collections.emptyList();
+
+    private final int index;
+    private final String name;
+    private final SamReader reader;
+    private final Semaphore permits;
+    private final BlockingQueue<List<SAMRecord>> queue =
+        new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final Thread thread;
+    private volatile IOException exception;
+
+    private List<SAMRecord> batch = Collections.emptyList();
+    private int pos;
+    private boolean end;
+    private SAMRecord current;
+
+    /**
+     * Get the header of the input file.
+     * @return the header of the input file
+     */
+    SAMFileHeader getFileHeader() {
+
+      return this.reader.getFileHeader();
+    }
+
+    /**
+     * Get the current entry.
+     * @return the current entry
+     */
+    SAMRecord current() {
+
+      return this.current;
+    }
+
+    /**
+     * Read the next entry.
+     * @return false if there is no more entries
+     * @throws IOException if an error occurs while decoding the input file
+     */
+    boolean advance() throws IOException {
+
+      while (this.pos == this.batch.size()) {
+
+        if (this.end) {
+          this.current = null;
+          return false;
+        }
+
+        try {
+          this.batch = this.queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(
+              "Interrupted while decoding " + this.name);
+        }
+        this.pos = 0;
+
+        if (this.batch == END) {
+
+          this.end = true;
+
+          if (this.exception != null) {
+            throw this.exception;
+          }
+        }
+      }
+
+      this.current = this.batch.get(this.pos++);
+
+      return true;
+    }
+
+    /**
+     * Decode the entries of the input file. This method is executed by the
+     * background thread.
+     */
+    private void decode() {
+
+      try {
+
+        final Iterator<SAMRecord> it = this.reader.iterator();
+        boolean more = true;
+
+        while (more) {
+
+          final List<SAMRecord> batch = new ArrayList<>(BATCH_SIZE);
+
+          // Limit the number of threads that decode entries at the same time
+          this.permits.acquire();
+          try {
+            while (batch.size() < BATCH_SIZE && (more = it.hasNext())) {
+
+              final SAMRecord record = it.next();
+              record.eagerDecode();
+              batch.add(record);
+            }
+          } finally {
+            this.permits.release();
+          }
+
+          if (!batch.isEmpty()) {
+            this.queue.put(batch);
+          }
+        }
+
+      } catch (InterruptedException e) {
+        // The decoder has been closed
+        return;
+      } catch (RuntimeException e) {
+        this.exception =
+            new IOException("Error while decoding " + this.name, e);
+      }
+
+      try {
+        this.queue.put(END);
+      } catch (InterruptedException e) {
+        // The decoder has been closed
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.thread.interrupt();
+      try {
+        this.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      this.reader.close();
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param index index of the input file
+     * @param inFile input file
+     * @param permits permits to decode entries
+     * @throws IOException if an error occurs while opening the input file
+     */
+    Decoder(final int index, final DataFile inFile, final Semaphore permits)
+        throws IOException {
+
+      this.index = index;
+      this.name = inFile.getName();
+      this.permits = permits;
+      this.reader = SamReaderFactory.makeDefault()
+          .open(SamInputResource.of(inFile.open()));
+
+      this.thread = new Thread(this::decode,
+          "sam-merger-decoder-" + DECODER_COUNT.incrementAndGet());
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+  }
+
+  //
+  // Abstract methods
+  //
+
+  /**
+   * Create the writer of the output file.
+   * @param header header of the output file
+   * @param presorted true if the entries will be written in the sort order of
+   *          the header
+   * @param outFile output file
+   * @return a new SAMEntryWriter object
+   * @throws IOException if an error occurs while creating the writer
+   */
+  protected abstract SAMEntryWriter createWriter(SAMFileHeader header,
+      boolean presorted, DataFile outFile) throws IOException;
+
+  //
+  // Configuration
+  //
+
+  @Override
+  public void configure(final Set<Parameter> conf) throws EoulsanException {
+
+    for (Parameter p : conf) {
+
+      if (!configureParameter(p)) {
+        throw new EoulsanException("Unknown parameter for "
+            + getFormat().getName() + " merger: " + p.getName());
+      }
+    }
+  }
+
+  /**
+   * Configure a parameter of the merger.
+   * @param p the parameter
+   * @return false if the parameter is unknown
+   * @throws EoulsanException if the value of the parameter is invalid
+   */
+  protected boolean configureParameter(final Parameter p)
+      throws EoulsanException {
+
+    switch (p.getName()) {
+
+    case "threads":
+      this.threads = p.getIntValueGreaterOrEqualsTo(1);
+      return true;
+
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Get the number of threads used to decode the input files.
+   * @return the number of threads
+   */
+  protected int getThreads() {
+
+    return this.threads > 0
+        ? this.threads : EoulsanRuntime.getSettings().getLocalThreadsNumber();
+  }
+
+  //
+  // Merge
+  //
+
+  @Override
+  public void merge(final Iterator<DataFile> inFileIterator,
+      final DataFile outFile) throws IOException {
+
+    final List<DataFile> inFiles = new ArrayList<>();
+    while (inFileIterator.hasNext()) {
+      inFiles.add(inFileIterator.next());
+    }
+
+    if (inFiles.isEmpty()) {
+      throw new IOException("No file to merge to " + outFile.getName());
+    }
+
+    final int threads = getThreads();
+    final Semaphore permits = new Semaphore(threads);
+    final Deque<Decoder> decoders = new ArrayDeque<>();
+    SAMEntryWriter writer = null;
+    boolean success = false;
+
+    try {
+
+      // The header of the first file is the header of the output file
+      decoders.add(new Decoder(0, inFiles.get(0), permits));
+      final SAMFileHeader header = decoders.getFirst().getFileHeader();
+      final Comparator<SAMRecord> comparator =
+          getComparator(header.getSortOrder());
+
+      writer = createWriter(header, comparator != null, outFile);
+
+      if (comparator != null) {
+
+        getLogger().info("Merge "
+            + inFiles.size() + " files to " + outFile.getName()
+            + " keeping the " + header.getSortOrder() + " sort order");
+
+        for (int i = 1; i < inFiles.size(); i++) {
+          decoders.add(new Decoder(i, inFiles.get(i), permits));
+        }
+
+        mergeSorted(decoders, comparator, writer);
+
+      } else {
+
+        int next = 1;
+
+        for (DataFile inFile : inFiles) {
+
+          // Decode the next files while the current file is written
+          while (next < inFiles.size() && decoders.size() < threads) {
+            decoders.add(new Decoder(next, inFiles.get(next), permits));
+            next++;
+          }
+
+          getLogger()
+              .info("Merge " + inFile.getName() + " to " + outFile.getName());
+
+          final Decoder decoder = decoders.removeFirst();
+          try {
+            while (decoder.advance()) {
+              writer.write(decoder.current());
+            }
+          } finally {
+            decoder.close();
+          }
+        }
+      }
+
+      success = true;
+
+    } finally {
+
+      for (Decoder decoder : decoders) {
+        decoder.close();
+      }
+
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException | RuntimeException e) {
+
+          // Do not hide the cause of the failure of the merge
+          if (success) {
+            throw e;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Merge sorted input files.
+   * @param decoders decoders of the input files
+   * @param comparator comparator of the entries
+   * @param writer writer of the entries
+   * @throws IOException if an error occurs while merging the files
+   */
+  private static void mergeSorted(final Collection<Decoder> decoders,
+      final Comparator<SAMRecord> comparator, final SAMEntryWriter writer)
+      throws IOException {
+
+    // For equal entries, the entries of the first files are written first
+    final PriorityQueue<Decoder> queue =
+        new PriorityQueue<>(decoders.size(), (a, b) -> {
+          final int result = comparator.compare(a.current(), b.current());
+          return result != 0 ? result : Integer.compare(a.index, b.index);
+        });
+
+    for (Decoder decoder : decoders) {
+      if (decoder.advance()) {
+        queue.add(decoder);
+      }
+    }
+
+    Decoder decoder;
+    while ((decoder = queue.poll()) != null) {
+
+      writer.write(decoder.current());
+
+      if (decoder.advance()) {
+        queue.add(decoder);
+      }
+    }
+  }
+
+  /**
+   * Get the comparator of the entries for a sort order.
+   * @param sortOrder the sort order
+   * @return a comparator or null if the entries cannot be merged in the sort
+   *         order
+   */
+  private static Comparator<SAMRecord> getComparator(
+      final SortOrder sortOrder) {
+
+    if (sortOrder == null) {
+      return null;
+    }
+
+    switch (sortOrder) {
+
+    case coordinate:
+      return new SAMRecordCoordinateComparator();
+
+    case queryname:
+      return new SAMRecordQueryNameComparator();
+
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Test if a writer must sort the entries to follow the sort order of the
+   * header.
+   * @param header the header
+   * @param presorted true if the entries will be written in the sort order of
+   *          the header
+   * @return true if the writer must sort the entries
+   */
+  protected static boolean isSortRequired(final SAMFileHeader header,
+      final boolean presorted) {
+
+    final SortOrder sortOrder = header.getSortOrder();
+
+    return !presorted
+        && sortOrder != null && sortOrder != SortOrder.unsorted
+        && sortOrder != SortOrder.unknown;
+  }
+
+  /**
+   * Convert a SAMFileWriter to a SAMEntryWriter.
+   * @param writer the writer to convert
+   * @return a SAMEntryWriter object
+   */
+  protected static SAMEntryWriter toEntryWriter(final SAMFileWriter writer) {
+
+    return new SAMEntryWriter() {
+
+      @Override
+      public void write(final SAMRecord record) {
+
+        writer.addAlignment(record);
+      }
+
+      @Override
+      public void close() {
+
+        writer.close();
+      }
+    };
+  }
+
+}
@@ -26,29 +26,24 @@ package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Set;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
-import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
 import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
-import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriterFactory;
-import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.SamInputResource;
-import htsjdk.samtools.SamReader;
-import htsjdk.samtools.SamReaderFactory;
 
 /**
- * This class define a merger class for SAM files.
+ * This class define a merger class for BAM files.
  * @author Laurent Jourdren
  * @since 2.0
  */
-public class BAMMerger implements Merger {
+public class BAMMerger extends AbstractSAMMerger {
+
+  private int compressionThreads = -1;
 
   @Override
   public DataFormat getFormat() {
@@ -57,52 +52,47 @@ public class BAMMerger implements Merger {
   }
 
   @Override
-  public void configure(final Set<Parameter> conf) throws EoulsanException {
-
-    // The merge does not need any parameter
-    for (Parameter p : conf) {
-      throw new EoulsanException("Unknown parameter for "
-          + getFormat().getName() + " merger: " + p.getName());
-    }
-  }
-
-  @Override
-  public void merge(final Iterator<DataFile> inFileIterator,
-      final DataFile outFile) throws IOException {
-
-    // Get temporary directory
-    final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
+  protected boolean configureParameter(final Parameter p)
+      throws EoulsanException {
 
-    SAMFileWriter outputSam = null;
+    switch (p.getName()) {
 
-    while (inFileIterator.hasNext()) {
+    case "compression.threads":
+      this.compressionThreads = p.getIntValueGreaterOrEqualsTo(1);
+      return true;
 
-      // Get input file
-      final DataFile inFile = inFileIterator.next();
-
-      EoulsanLogger.getLogger()
-          .info("Merge " + inFile.getName() + " to " + outFile.getName());
+    default:
+      return super.configureParameter(p);
+    }
+  }
 
-      // Get reader
-      final SamReader inputSam = SamReaderFactory.makeDefault()
-          .open(SamInputResource.of(inFile.open()));
+  /**
+   * Get the number of threads used to compress the output file.
+   * @return the number of threads
+   */
+  private int getCompressionThreads() {
 
-      // Get Writer
-      if (outputSam == null) {
+    return this.compressionThreads > 0
+        ? this.compressionThreads : getThreads();
+  }
 
-        outputSam = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeBAMWriter(inputSam.getFileHeader(), false, outFile.create());
-      }
+  @Override
+  protected SAMEntryWriter createWriter(final SAMFileHeader header,
+      final boolean presorted, final DataFile outFile) throws IOException {
 
-      // Write all the entries of the input file to the output file
-      for (SAMRecord samRecord : inputSam) {
-        outputSam.addAlignment(samRecord);
-      }
+    final int compressionThreads = getCompressionThreads();
 
-      inputSam.close();
+    // The parallel writer cannot sort the entries
+    if (compressionThreads > 1 && !isSortRequired(header, presorted)) {
+      return new ParallelBAMWriter(header, outFile.create(),
+          compressionThreads);
     }
 
-    outputSam.close();
+    // Get temporary directory
+    final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
+
+    return toEntryWriter(new SAMFileWriterFactory().setTempDirectory(tmpDir)
+        .makeBAMWriter(header, presorted, outFile.create()));
   }
 
 }
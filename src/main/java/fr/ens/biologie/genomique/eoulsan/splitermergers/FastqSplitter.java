@@ -25,27 +25,43 @@
 package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.Set;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqIndex;
 import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
+import fr.ens.biologie.genomique.eoulsan.io.MaxByteInputStream;
 
 /**
- * This class define a splitter class for FASTQ files.
+ * This class define a splitter class for FASTQ files. If the input file is a
+ * block compressed FASTQ file with an index and the output files are gzip
+ * files, the compressed blocks are copied without being decompressed. In this
+ * case the splits contain whole blocks and the number of entries of a split
+ * can be lower than the maximal number of entries.
+ * @see FastqIndex
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class FastqSplitter implements Splitter {
 
   private static final int DEFAULT_SPLIT_MAX_ENTRIES = 1000000;
+  private static final int COPY_BUFFER_SIZE = 1024 * 1024;
 
   private int splitMaxEntries = DEFAULT_SPLIT_MAX_ENTRIES;
 
@@ -77,7 +93,40 @@ public class FastqSplitter implements Splitter {
   public void split(final DataFile inFile,
       final Iterator<DataFile> outFileIterator) throws IOException {
 
-    final FastqReader reader = new FastqReader(inFile.open());
+    final FastqIndex index = FastqIndex.loadIndexIfExists(inFile);
+
+    // Ignore the stale indexes, like FastqInputFormat.getSplits()
+    if (index == null
+        || index.getReadCount() == 0
+        || index.getFileLength() != inFile.getMetaData().getContentLength()) {
+      splitEntries(inFile, outFileIterator);
+      return;
+    }
+
+    final PeekingIterator<DataFile> it =
+        Iterators.peekingIterator(outFileIterator);
+
+    if (it.peek().getCompressionType() == CompressionType.GZIP) {
+      splitBlocks(inFile, index, it);
+    } else {
+      splitEntries(inFile, it);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Split a FASTQ file by reading its entries.
+   * @param inFile input file
+   * @param outFileIterator iterator over the files to create
+   * @throws IOException if an error occurs while splitting the file
+   */
+  private void splitEntries(final DataFile inFile,
+      final Iterator<DataFile> outFileIterator) throws IOException {
+
+    final FastqByteReader reader = new FastqByteReader(inFile.open(), true);
 
     final int max = this.splitMaxEntries;
     int entryCount = 0;
@@ -114,4 +163,103 @@ public class FastqSplitter implements Splitter {
 
   }
 
+  /**
+   * Split a block compressed FASTQ file by copying its compressed blocks.
+   * @param inFile input file
+   * @param index index of the input file
+   * @param outFileIterator iterator over the files to create
+   * @throws IOException if an error occurs while splitting the file
+   */
+  private void splitBlocks(final DataFile inFile, final FastqIndex index,
+      final Iterator<DataFile> outFileIterator) throws IOException {
+
+    final int blockCount = index.getBlockCount();
+    int first = 0;
+
+    while (first < blockCount) {
+
+      // A split contains at least one block
+      int end = first + 1;
+      while (end < blockCount
+          && index.getBlockFirstRead(end + 1)
+              - index.getBlockFirstRead(first) <= this.splitMaxEntries) {
+        end++;
+      }
+
+      // Ignore the ranges without entries
+      if (index.getBlockFirstRead(end) > index.getBlockFirstRead(first)) {
+        copyRange(inFile, index.getBlockOffset(first),
+            index.getBlockOffset(end), outFileIterator.next());
+      }
+
+      first = end;
+    }
+  }
+
+  /**
+   * Copy a range of bytes of a file in another file.
+   * @param inFile input file
+   * @param start start of the range
+   * @param end end of the range
+   * @param outFile output file
+   * @throws IOException if an error occurs while copying the data
+   */
+  private static void copyRange(final DataFile inFile, final long start,
+      final long end, final DataFile outFile) throws IOException {
+
+    // Let the kernel copy the data between local files
+    if (inFile.isLocalFile() && outFile.isLocalFile()) {
+
+      try (
+          FileChannel in = FileChannel.open(inFile.toFile().toPath(),
+              StandardOpenOption.READ);
+          FileChannel out =
+              FileChannel.open(outFile.toFile().toPath(),
+                  StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                  StandardOpenOption.TRUNCATE_EXISTING)) {
+
+        long pos = start;
+        while (pos < end) {
+
+          final long n = in.transferTo(pos, end - pos, out);
+          if (n <= 0) {
+            throw new IOException("Unexpected end of file: " + inFile);
+          }
+          pos += n;
+        }
+      }
+
+      return;
+    }
+
+    try (InputStream is = inFile.rawOpen();
+        OutputStream os = outFile.rawCreate()) {
+
+      long skipped = 0;
+      while (skipped < start) {
+
+        final long n = is.skip(start - skipped);
+        if (n <= 0) {
+          throw new IOException(
+              "Unable to reach offset " + start + " of file: " + inFile);
+        }
+        skipped += n;
+      }
+
+      final InputStream range = new MaxByteInputStream(is, end - start);
+      final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      long copied = 0;
+      int n;
+
+      while ((n = range.read(buffer)) != -1) {
+        os.write(buffer, 0, n);
+        copied += n;
+      }
+
+      if (copied != end - start) {
+        throw new IOException("Unexpected end of file: " + inFile);
+      }
+    }
+  }
+
 }
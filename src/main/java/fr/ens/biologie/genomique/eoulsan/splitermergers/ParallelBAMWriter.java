@@ -0,0 +1,155 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import fr.ens.biologie.genomique.eoulsan.io.ParallelBGZFOutputStream;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.AbstractSAMMerger.SAMEntryWriter;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+
+/**
+ * This class define a BAM writer that compress the output file using several
+ * threads. The entries are encoded using the htsjdk BAM codec and the BGZF
+ * blocks are compressed by a ParallelBGZFOutputStream. Unlike the htsjdk BAM
+ * writer, this writer does not sort the entries and does not create an index.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+class ParallelBAMWriter implements SAMEntryWriter {
+
+  private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
+
+  private final SAMFileHeader header;
+  private final OutputStream os;
+  private final BAMRecordCodec codec;
+
+  @Override
+  public void write(final SAMRecord record) {
+
+    // Like the htsjdk BAM writer, resolve the reference indexes of the record
+    // with the header of the output file as the record may come from a file
+    // with another sequence dictionary
+    record.setHeader(this.header);
+    record.setReferenceName(record.getReferenceName());
+    record.setMateReferenceName(record.getMateReferenceName());
+    this.codec.encode(record);
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.os.close();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Write the BAM header.
+   * @param header the header to write
+   * @throws IOException if an error occurs while writing the header
+   */
+  private void writeHeader(final SAMFileHeader header) throws IOException {
+
+    final StringWriter headerText = new StringWriter();
+    new SAMTextHeaderCodec().encode(headerText, header);
+
+    this.os.write(BAM_MAGIC);
+
+    // Header text
+    final byte[] text = headerText.toString().getBytes(ISO_8859_1);
+    writeInt(text.length);
+    this.os.write(text);
+
+    // Reference sequences, the names end with a NUL character
+    writeInt(header.getSequenceDictionary().size());
+    for (SAMSequenceRecord sequence : header.getSequenceDictionary()
+        .getSequences()) {
+
+      final byte[] name = sequence.getSequenceName().getBytes(ISO_8859_1);
+      writeInt(name.length + 1);
+      this.os.write(name);
+      this.os.write(0);
+      writeInt(sequence.getSequenceLength());
+    }
+  }
+
+  /**
+   * Write a little endian integer.
+   * @param value the value to write
+   * @throws IOException if an error occurs while writing the value
+   */
+  private void writeInt(final int value) throws IOException {
+
+    this.os.write(value);
+    this.os.write(value >>> 8);
+    this.os.write(value >>> 16);
+    this.os.write(value >>> 24);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param header header of the BAM file
+   * @param os output stream
+   * @param threads number of compression threads
+   * @throws IOException if an error occurs while writing the header
+   */
+  ParallelBAMWriter(final SAMFileHeader header, final OutputStream os,
+      final int threads) throws IOException {
+
+    if (header == null) {
+      throw new NullPointerException("header argument cannot be null");
+    }
+
+    this.header = header;
+    this.os = new ParallelBGZFOutputStream(os, threads);
+
+    try {
+      writeHeader(header);
+    } catch (IOException e) {
+      this.os.close();
+      throw e;
+    }
+
+    this.codec = new BAMRecordCodec(header);
+    this.codec.setOutputStream(this.os);
+  }
+
+}
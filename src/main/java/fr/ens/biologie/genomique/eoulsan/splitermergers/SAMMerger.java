@@ -26,29 +26,20 @@ package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Set;
 
-import fr.ens.biologie.genomique.eoulsan.EoulsanException;
-import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
 import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
-import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
-import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriterFactory;
-import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.SamInputResource;
-import htsjdk.samtools.SamReader;
-import htsjdk.samtools.SamReaderFactory;
 
 /**
  * This class define a merger class for SAM files.
  * @author Laurent Jourdren
  * @since 2.0
  */
-public class SAMMerger implements Merger {
+public class SAMMerger extends AbstractSAMMerger {
 
   @Override
   public DataFormat getFormat() {
@@ -57,52 +48,14 @@ public class SAMMerger implements Merger {
   }
 
   @Override
-  public void configure(final Set<Parameter> conf) throws EoulsanException {
-
-    // The merge does not need any parameter
-    for (Parameter p : conf) {
-      throw new EoulsanException("Unknown parameter for "
-          + getFormat().getName() + " merger: " + p.getName());
-    }
-  }
-
-  @Override
-  public void merge(final Iterator<DataFile> inFileIterator,
-      final DataFile outFile) throws IOException {
+  protected SAMEntryWriter createWriter(final SAMFileHeader header,
+      final boolean presorted, final DataFile outFile) throws IOException {
 
     // Get temporary directory
     final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
 
-    SAMFileWriter outputSam = null;
-
-    while (inFileIterator.hasNext()) {
-
-      // Get input file
-      final DataFile inFile = inFileIterator.next();
-
-      EoulsanLogger.getLogger()
-          .info("Merge " + inFile.getName() + " to " + outFile.getName());
-
-      // Get reader
-      final SamReader inputSam = SamReaderFactory.makeDefault()
-          .open(SamInputResource.of(inFile.open()));
-
-      // Get Writer
-      if (outputSam == null) {
-
-        outputSam = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeSAMWriter(inputSam.getFileHeader(), false, outFile.create());
-      }
-
-      // Write all the entries of the input file to the output file
-      for (SAMRecord samRecord : inputSam) {
-        outputSam.addAlignment(samRecord);
-      }
-
-      inputSam.close();
-    }
-
-    outputSam.close();
+    return toEntryWriter(new SAMFileWriterFactory().setTempDirectory(tmpDir)
+        .makeSAMWriter(header, presorted, outFile.create()));
   }
 
 }
@@ -0,0 +1,681 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.util;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements an external merge sort of key/value entries. The keys
+ * and the values are arrays of bytes and the entries are sorted by key using
+ * an unsigned lexicographic order that does not depend on the locale. When the
+ * memory used by the entries exceeds a budget, the entries are sorted and
+ * written in a binary temporary file called a run. The runs can be sorted and
+ * written by several threads while new entries are added. At the end, the
+ * runs are merged using a heap. The sort is stable: the entries with the same
+ * key are returned in their insertion order, unless the values are also
+ * sorted.
+ * @since 2.5
+ * @author Laurent Jourdren
+ */
+public class ExternalSorter implements Closeable {
+
+  /** Default memory budget in bytes. */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  /** Maximal number of runs merged at the same time. */
+  public static final int MAX_MERGED_RUNS = 64;
+
+  // Estimation of the memory used by an entry without its data
+  private static final int ENTRY_MEMORY_OVERHEAD = 64;
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+  private static final AtomicInteger SORTER_COUNT = new AtomicInteger();
+
+  private final File tmpDir;
+  private final long runMemoryBudget;
+  private final int threads;
+  private final Comparator<Entry> comparator;
+
+  private List<Entry> buffer = new ArrayList<>();
+  private long bufferMemory;
+  private long entryCount;
+
+  private final List<File> runs = new ArrayList<>();
+  private final Deque<Future<File>> pendingRuns = new ArrayDeque<>();
+  private ExecutorService executor;
+
+  private boolean sorted;
+  private boolean closed;
+
+  /**
+   * This class define an entry of the sorter.
+   */
+  public static final class Entry {
+
+    private final byte[] key;
+    private final byte[] value;
+
+    /**
+     * Get the key of the entry.
+     * @return the key of the entry
+     */
+    public byte[] getKey() {
+
+      return this.key;
+    }
+
+    /**
+     * Get the value of the entry.
+     * @return the value of the entry
+     */
+    public byte[] getValue() {
+
+      return this.value;
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param key the key
+     * @param value the value
+     */
+    private Entry(final byte[] key, final byte[] value) {
+
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * This class allow to read the sorted entries.
+   */
+  public static final class SortedEntries implements Closeable {
+
+    private final PriorityQueue<Run> queue;
+    private final List<Run> runs;
+    private final Comparator<Entry> comparator;
+
+    /**
+     * Read the next entry.
+     * @return the next entry or null if there is no more entries
+     * @throws IOException if an error occurs while reading the runs
+     */
+    public Entry next() throws IOException {
+
+      final Run run = this.queue.poll();
+
+      if (run == null) {
+        return null;
+      }
+
+      final Entry result = run.current;
+
+      if (run.next()) {
+        this.queue.add(run);
+      }
+
+      return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.queue.clear();
+      for (Run run : this.runs) {
+        run.close();
+      }
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param runs the runs to merge
+     * @param comparator comparator of the entries
+     * @throws IOException if an error occurs while reading the runs
+     */
+    private SortedEntries(final List<Run> runs,
+        final Comparator<Entry> comparator) throws IOException {
+
+      this.runs = runs;
+      this.comparator = comparator;
+
+      // For entries that are equal, the first run is the first in the queue
+      this.queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+        final int result = this.comparator.compare(a.current, b.current);
+        return result != 0 ? result : Integer.compare(a.index, b.index);
+      });
+
+      for (Run run : runs) {
+        if (run.next()) {
+          this.queue.add(run);
+        }
+      }
+    }
+  }
+
+  /**
+   * This class define a sorted run of entries.
+   */
+  private abstract static class Run implements Closeable {
+
+    final int index;
+    Entry current;
+
+    /**
+     * Read the next entry of the run in the current field.
+     * @return false if there is no more entries
+     * @throws IOException if an error occurs while reading the run
+     */
+    abstract boolean next() throws IOException;
+
+    Run(final int index) {
+
+      this.index = index;
+    }
+  }
+
+  /**
+   * This class define a run in memory.
+   */
+  private static final class MemoryRun extends Run {
+
+    private final Entry[] entries;
+    private int pos;
+
+    @Override
+    boolean next() {
+
+      if (this.pos == this.entries.length) {
+        this.current = null;
+        return false;
+      }
+
+      this.current = this.entries[this.pos++];
+
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    MemoryRun(final int index, final Entry[] entries) {
+
+      super(index);
+      this.entries = entries;
+    }
+  }
+
+  /**
+   * This class define a run in a file.
+   */
+  private static final class FileRun extends Run {
+
+    private final DataInputStream in;
+
+    @Override
+    boolean next() throws IOException {
+
+      final int keyLength;
+      try {
+        keyLength = this.in.readInt();
+      } catch (EOFException e) {
+        this.current = null;
+        return false;
+      }
+
+      final byte[] key = new byte[keyLength];
+      this.in.readFully(key);
+      final byte[] value = new byte[this.in.readInt()];
+      this.in.readFully(value);
+
+      this.current = new Entry(key, value);
+
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.in.close();
+    }
+
+    FileRun(final int index, final File file) throws IOException {
+
+      super(index);
+      this.in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file), IO_BUFFER_SIZE));
+    }
+  }
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the number of entries added to the sorter.
+   * @return the number of entries
+   */
+  public long getEntryCount() {
+
+    return this.entryCount;
+  }
+
+  /**
+   * Get the number of runs written in temporary files.
+   * @return the number of runs
+   */
+  public int getRunCount() {
+
+    return this.runs.size() + this.pendingRuns.size();
+  }
+
+  //
+  // Sort methods
+  //
+
+  /**
+   * Add an entry.
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @throws IOException if an error occurs while writing a run
+   */
+  public void add(final byte[] key, final byte[] value) throws IOException {
+
+    if (key == null) {
+      throw new NullPointerException("key argument cannot be null");
+    }
+
+    if (value == null) {
+      throw new NullPointerException("value argument cannot be null");
+    }
+
+    checkState();
+
+    this.buffer.add(new Entry(key, value));
+    this.bufferMemory +=
+        key.length + value.length + ENTRY_MEMORY_OVERHEAD;
+    this.entryCount++;
+
+    if (this.bufferMemory >= this.runMemoryBudget) {
+      spill();
+    }
+  }
+
+  /**
+   * Sort the entries. No entry can be added after the call of this method.
+   * @return a SortedEntries object to read the sorted entries
+   * @throws IOException if an error occurs while sorting the entries
+   */
+  public SortedEntries sort() throws IOException {
+
+    checkState();
+    this.sorted = true;
+
+    // Sort the entries in memory
+    final Entry[] entries = this.buffer.toArray(new Entry[0]);
+    this.buffer = null;
+    if (this.threads > 1) {
+      Arrays.parallelSort(entries, this.comparator);
+    } else {
+      Arrays.sort(entries, this.comparator);
+    }
+
+    // Wait the end of the writing of the runs
+    while (!this.pendingRuns.isEmpty()) {
+      this.runs.add(waitRun(this.pendingRuns.removeFirst()));
+    }
+
+    if (this.executor != null) {
+      this.executor.shutdown();
+    }
+
+    // Reduce the number of runs to merge
+    while (this.runs.size() >= MAX_MERGED_RUNS) {
+      mergeRuns();
+    }
+
+    final List<Run> runs = new ArrayList<>();
+    try {
+      for (File file : this.runs) {
+        runs.add(new FileRun(runs.size(), file));
+      }
+      runs.add(new MemoryRun(runs.size(), entries));
+
+      return new SortedEntries(runs, this.comparator);
+
+    } catch (IOException e) {
+      for (Run run : runs) {
+        run.close();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    this.buffer = null;
+
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+    }
+
+    // Wait the end of the pending runs before removing the files
+    for (Future<File> future : this.pendingRuns) {
+      try {
+        this.runs.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException e) {
+        // The file of the run has already been removed
+      }
+    }
+    this.pendingRuns.clear();
+
+    for (File file : this.runs) {
+      deleteFile(file);
+    }
+    this.runs.clear();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Check if entries can be added or sorted.
+   */
+  private void checkState() {
+
+    if (this.closed) {
+      throw new IllegalStateException("The sorter has been closed");
+    }
+
+    if (this.sorted) {
+      throw new IllegalStateException("The entries have been already sorted");
+    }
+  }
+
+  /**
+   * Sort the entries in memory and write them in a new run.
+   * @throws IOException if an error occurs while writing the run
+   */
+  private void spill() throws IOException {
+
+    final List<Entry> entries = this.buffer;
+    this.buffer = new ArrayList<>(entries.size());
+    this.bufferMemory = 0;
+
+    // Sort and write the run in the current thread
+    if (this.threads == 1) {
+      this.runs.add(writeRun(entries));
+      return;
+    }
+
+    // Limit the memory used by the runs waiting to be written
+    while (this.pendingRuns.size() >= this.threads - 1) {
+      this.runs.add(waitRun(this.pendingRuns.removeFirst()));
+    }
+
+    if (this.executor == null) {
+
+      final String threadNamePrefix =
+          "external-sort-" + SORTER_COUNT.incrementAndGet() + "-";
+      final AtomicInteger threadCount = new AtomicInteger();
+
+      this.executor = Executors.newFixedThreadPool(this.threads - 1, r -> {
+
+        final Thread t =
+            new Thread(r, threadNamePrefix + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+
+    this.pendingRuns.add(this.executor.submit(() -> writeRun(entries)));
+  }
+
+  /**
+   * Wait the end of the writing of a run.
+   * @param future the future of the run
+   * @return the file of the run
+   * @throws IOException if an error occurs while writing the run
+   */
+  private static File waitRun(final Future<File> future) throws IOException {
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing a run");
+    } catch (ExecutionException e) {
+
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Sort entries and write them in a run.
+   * @param entries the entries to write
+   * @return the file of the run
+   * @throws IOException if an error occurs while writing the run
+   */
+  private File writeRun(final List<Entry> entries) throws IOException {
+
+    entries.sort(this.comparator);
+
+    final File file = File.createTempFile("sort-", ".run", this.tmpDir);
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file), IO_BUFFER_SIZE))) {
+
+      for (Entry e : entries) {
+        out.writeInt(e.key.length);
+        out.write(e.key);
+        out.writeInt(e.value.length);
+        out.write(e.value);
+      }
+
+    } catch (IOException e) {
+      deleteFile(file);
+      throw e;
+    }
+
+    return file;
+  }
+
+  /**
+   * Merge the first runs in a new run.
+   * @throws IOException if an error occurs while merging the runs
+   */
+  private void mergeRuns() throws IOException {
+
+    final List<File> files = this.runs.subList(0, MAX_MERGED_RUNS);
+    final List<Run> runs = new ArrayList<>();
+    final File file = File.createTempFile("sort-", ".run", this.tmpDir);
+
+    try {
+
+      for (File f : files) {
+        runs.add(new FileRun(runs.size(), f));
+      }
+
+      try (SortedEntries entries = new SortedEntries(runs, this.comparator);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+              new FileOutputStream(file), IO_BUFFER_SIZE))) {
+
+        Entry e;
+        while ((e = entries.next()) != null) {
+          out.writeInt(e.key.length);
+          out.write(e.key);
+          out.writeInt(e.value.length);
+          out.write(e.value);
+        }
+      }
+
+    } catch (IOException e) {
+      for (Run run : runs) {
+        run.close();
+      }
+      deleteFile(file);
+      throw e;
+    }
+
+    // The merged run replaces the first runs to keep the sort stable
+    for (File f : files) {
+      deleteFile(f);
+    }
+    files.clear();
+    this.runs.add(0, file);
+  }
+
+  /**
+   * Delete a temporary file.
+   * @param file the file to delete
+   */
+  private static void deleteFile(final File file) {
+
+    if (!file.delete()) {
+      getLogger().warning(
+          "Can not delete sort temporary file: " + file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Compare two arrays of bytes using an unsigned lexicographic order.
+   * @param a the first array
+   * @param b the second array
+   * @return a negative integer, zero, or a positive integer as the first array
+   *         is less than, equal to, or greater than the second array
+   */
+  public static int compare(final byte[] a, final byte[] b) {
+
+    final int length = Math.min(a.length, b.length);
+
+    for (int i = 0; i < length; i++) {
+
+      final int result = (a[i] & 0xff) - (b[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+
+    return a.length - b.length;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param tmpDir temporary directory, can be null to use the default
+   *          temporary directory
+   */
+  public ExternalSorter(final File tmpDir) {
+
+    this(tmpDir, DEFAULT_MEMORY_BUDGET, 1, false);
+  }
+
+  /**
+   * Public constructor.
+   * @param tmpDir temporary directory, can be null to use the default
+   *          temporary directory
+   * @param memoryBudget maximal memory in bytes used by the entries in memory
+   * @param threads number of threads to use to sort the runs
+   * @param sortValues true if the entries with the same key must be sorted by
+   *          value
+   */
+  public ExternalSorter(final File tmpDir, final long memoryBudget,
+      final int threads, final boolean sortValues) {
+
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException(
+          "the memory budget must be greater than 0: " + memoryBudget);
+    }
+
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+          "the number of threads must be greater than 0: " + threads);
+    }
+
+    this.tmpDir = tmpDir;
+    this.threads = threads;
+
+    // The budget is shared by the run being filled and the runs being written
+    this.runMemoryBudget = Math.max(1, memoryBudget / threads);
+
+    if (sortValues) {
+      this.comparator = (a, b) -> {
+        final int result = compare(a.key, b.key);
+        return result != 0 ? result : compare(a.value, b.value);
+      };
+    } else {
+      this.comparator = (a, b) -> compare(a.key, b.key);
+    }
+  }
+
+}
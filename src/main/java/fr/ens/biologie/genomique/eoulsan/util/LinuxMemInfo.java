@@ -50,6 +50,28 @@ public class LinuxMemInfo extends LinuxInfo {
     return get("MemTotal");
   }
 
+  /**
+   * Get the total memory of the system in megabytes.
+   * @return the total memory of the system in megabytes or -1 if unknown
+   */
+  public int getMemTotalInMegaBytes() {
+
+    final String value = getMemTotal();
+
+    if (value == null) {
+      return -1;
+    }
+
+    // The value is in kB
+    final String[] fields = value.trim().split("\\s+");
+
+    try {
+      return (int) (Long.parseLong(fields[0]) / 1024);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
   //
   // Constructor
   //
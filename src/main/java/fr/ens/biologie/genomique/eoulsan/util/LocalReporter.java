@@ -25,47 +25,124 @@
 package fr.ens.biologie.genomique.eoulsan.util;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.google.common.collect.Lists;
 
 /**
- * This class define a local reporter.
+ * This class define a local reporter. The reporter is thread-safe. In loops
+ * that process each record, a counter can be resolved once with
+ * getCounter() to avoid the lookup of the counter at each increment.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class LocalReporter implements Reporter {
 
-  private final Map<String, Map<String, Long>> map = new HashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, Counter>> map =
+      new ConcurrentHashMap<>();
 
-  @Override
-  public void incrCounter(final String counterGroup, final String counter,
-      final long amount) {
+  /**
+   * This class define a counter of the reporter. The counter can be
+   * incremented by several threads. A counter that has never been incremented
+   * does not exist for the reporter.
+   * @since 2.5
+   */
+  public static final class Counter {
 
-    if (counterGroup == null || counter == null || amount <= 0) {
-      return;
+    private final LongAdder value = new LongAdder();
+    private volatile boolean set;
+
+    /**
+     * Increment the counter.
+     */
+    public void increment() {
+
+      add(1);
     }
 
-    final Map<String, Long> group;
+    /**
+     * Add a value to the counter.
+     * @param amount amount to add to the counter
+     */
+    public void add(final long amount) {
+
+      if (amount <= 0) {
+        return;
+      }
 
-    if (!this.map.containsKey(counterGroup)) {
-      group = new HashMap<>();
-      this.map.put(counterGroup, group);
-    } else {
-      group = this.map.get(counterGroup);
+      this.value.add(amount);
+
+      if (!this.set) {
+        this.set = true;
+      }
     }
 
-    long value = 0;
+    /**
+     * Get the value of the counter.
+     * @return the value of the counter
+     */
+    public long getValue() {
 
-    if (group.containsKey(counter)) {
-      value = group.get(counter);
+      return this.value.sum();
     }
 
-    value += amount;
-    group.put(counter, value);
+    /**
+     * Set the value of the counter.
+     * @param value the value of the counter
+     */
+    private void setValue(final long value) {
+
+      this.value.reset();
+      this.value.add(value);
+      this.set = true;
+    }
+
+    /**
+     * Test if the counter has been incremented or set.
+     * @return true if the counter has been incremented or set
+     */
+    private boolean isSet() {
+
+      return this.set;
+    }
+  }
+
+  /**
+   * Get a counter. The counter is created if not exists.
+   * @param counterGroup group of the counter
+   * @param counter the name of the counter
+   * @return a Counter object
+   */
+  public Counter getCounter(final String counterGroup, final String counter) {
+
+    if (counterGroup == null) {
+      throw new NullPointerException("counterGroup argument cannot be null");
+    }
+
+    if (counter == null) {
+      throw new NullPointerException("counter argument cannot be null");
+    }
+
+    return this.map
+        .computeIfAbsent(counterGroup, k -> new ConcurrentHashMap<>())
+        .computeIfAbsent(counter, k -> new Counter());
+  }
+
+  @Override
+  public void incrCounter(final String counterGroup, final String counter,
+      final long amount) {
+
+    if (counterGroup == null || counter == null || amount <= 0) {
+      return;
+    }
+
+    getCounter(counterGroup, counter).add(amount);
   }
 
   /**
@@ -81,16 +158,7 @@ public class LocalReporter implements Reporter {
       return;
     }
 
-    final Map<String, Long> group;
-
-    if (!this.map.containsKey(counterGroup)) {
-      group = new HashMap<>();
-      this.map.put(counterGroup, group);
-    } else {
-      group = this.map.get(counterGroup);
-    }
-
-    group.put(counter, value);
+    getCounter(counterGroup, counter).setValue(value);
   }
 
   @Override
@@ -100,23 +168,36 @@ public class LocalReporter implements Reporter {
       return -1;
     }
 
-    final Map<String, Long> group = this.map.get(counterGroup);
+    final Map<String, Counter> group = this.map.get(counterGroup);
     if (group == null) {
       return -1;
     }
 
-    Long value = group.get(counter);
-    if (value == null) {
+    final Counter value = group.get(counter);
+    if (value == null || !value.isSet()) {
       return -1;
     }
 
-    return value;
+    return value.getValue();
   }
 
   @Override
   public Set<String> getCounterGroups() {
 
-    return Collections.unmodifiableSet(this.map.keySet());
+    final Set<String> result = new TreeSet<>();
+
+    for (Map.Entry<String, ConcurrentMap<String, Counter>> e : this.map
+        .entrySet()) {
+
+      for (Counter counter : e.getValue().values()) {
+        if (counter.isSet()) {
+          result.add(e.getKey());
+          break;
+        }
+      }
+    }
+
+    return Collections.unmodifiableSet(result);
   }
 
   @Override
@@ -126,11 +207,20 @@ public class LocalReporter implements Reporter {
       return Collections.emptySet();
     }
 
-    return Collections.unmodifiableSet(this.map.get(group).keySet());
+    final Set<String> result = new TreeSet<>();
+
+    for (Map.Entry<String, Counter> e : this.map.get(group).entrySet()) {
+      if (e.getValue().isSet()) {
+        result.add(e.getKey());
+      }
+    }
+
+    return Collections.unmodifiableSet(result);
   }
 
   /**
-   * Clear all the counters in the reporter.
+   * Clear all the counters in the reporter. The counters previously returned
+   * by getCounter() are no more linked to the reporter.
    */
   public void clear() {
 
@@ -153,19 +243,16 @@ public class LocalReporter implements Reporter {
       sb.append('\n');
     }
 
-    final Map<String, Long> group = this.map.get(counterGroup);
-    if (group != null) {
+    final List<String> counterNames =
+        Lists.newArrayList(getCounterNames(counterGroup));
+    Collections.sort(counterNames);
 
-      final List<String> counterNames = Lists.newArrayList(group.keySet());
-      Collections.sort(counterNames);
-
-      for (String counterName : counterNames) {
-        sb.append('\t');
-        sb.append(counterName);
-        sb.append('=');
-        sb.append(group.get(counterName));
-        sb.append('\n');
-      }
+    for (String counterName : counterNames) {
+      sb.append('\t');
+      sb.append(counterName);
+      sb.append('=');
+      sb.append(getCounterValue(counterGroup, counterName));
+      sb.append('\n');
     }
 
     return sb.toString();
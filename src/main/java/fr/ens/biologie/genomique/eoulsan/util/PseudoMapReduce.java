@@ -37,13 +37,15 @@ import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * This class implements a pseudo map-reduce framework.
+ * This class implements a pseudo map-reduce framework. The shuffle and sort
+ * phase is performed in the JVM by an ExternalSorter.
  * @since 1.0
  * @author Laurent Jourdren
  */
@@ -54,9 +56,10 @@ public abstract class PseudoMapReduce {
       Charset.forName(System.getProperty("file.encoding"));
 
   private File tmpDir;
-  private final List<File> listMapOutputFile = new ArrayList<>();
+  private long sortMemoryBudget = ExternalSorter.DEFAULT_MEMORY_BUDGET;
+  private int sortThreads = 1;
 
-  private File sortOutputFile;
+  private ExternalSorter sorter;
   private final LocalReporter reporter = new LocalReporter();
 
   /**
@@ -200,17 +203,9 @@ public abstract class PseudoMapReduce {
     doMap(FileUtils.createInputStream(inputFile));
   }
 
-  protected File getMapOutputTempFile() throws IOException {
-
-    final File outputFile = File.createTempFile("map-", ".txt", this.tmpDir);
-    this.listMapOutputFile.add(outputFile);
-
-    return outputFile;
-  }
-
   /**
-   * Execute the map phase with an InputStream as input Create a list of file :
-   * one for each index file used
+   * Execute the map phase with an InputStream as input. The output entries of
+   * the mapper are added to the sorter.
    * @param is input stream for the mapper
    */
   public void doMap(final InputStream is) throws IOException {
@@ -221,32 +216,46 @@ public abstract class PseudoMapReduce {
 
     this.reporter.clear();
 
+    if (this.sorter == null) {
+      this.sorter = new ExternalSorter(this.tmpDir, this.sortMemoryBudget,
+          this.sortThreads, true);
+    }
+
     final BufferedReader br =
         new BufferedReader(new InputStreamReader(is, CHARSET));
-    final UnSynchronizedBufferedWriter bw =
-        FileUtils.createFastBufferedWriter(getMapOutputTempFile());
 
     final List<String> results = new ArrayList<>();
     String line;
 
-    final StringBuilder sb = new StringBuilder();
+    try {
+
+      while ((line = br.readLine()) != null) {
+
+        map(line, results, this.reporter);
 
-    while ((line = br.readLine()) != null) {
+        for (String r : results) {
 
-      map(line, results, this.reporter);
+          final byte[] bytes = r.getBytes(CHARSET);
+          final int indexFirstTab = indexOf(bytes, (byte) '\t');
+
+          // Do not keep entries without key
+          if (indexFirstTab == -1) {
+            continue;
+          }
 
-      for (String r : results) {
-        sb.setLength(0);
-        sb.append(r);
-        sb.append('\n');
-        bw.write(sb.toString());
+          this.sorter.add(Arrays.copyOfRange(bytes, 0, indexFirstTab),
+              Arrays.copyOfRange(bytes, indexFirstTab + 1, bytes.length));
+        }
+
+        results.clear();
       }
 
-      results.clear();
+    } catch (IOException | RuntimeException e) {
+      closeSorter();
+      throw e;
+    } finally {
+      br.close();
     }
-
-    br.close();
-    bw.close();
   }
 
   //
@@ -272,51 +281,86 @@ public abstract class PseudoMapReduce {
   }
 
   /**
-   * Sort several files in sortOutputFile
-   * @return true if success sort
-   * @throws IOException if an error occurs while executing external sort
-   *           command
+   * Set the maximal memory used by the sort before writing data in temporary
+   * files.
+   * @param memoryBudget the memory budget in bytes
+   */
+  public void setSortMemoryBudget(final long memoryBudget) {
+
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException(
+          "the memory budget must be greater than 0: " + memoryBudget);
+    }
+
+    this.sortMemoryBudget = memoryBudget;
+  }
+
+  /**
+   * Get the maximal memory used by the sort before writing data in temporary
+   * files.
+   * @return the memory budget in bytes
    */
-  private boolean sort() throws IOException {
+  public long getSortMemoryBudget() {
 
-    this.sortOutputFile = File.createTempFile("sort-", ".txt", this.tmpDir);
+    return this.sortMemoryBudget;
+  }
 
-    // Create command line to execute
-    final List<String> command = new ArrayList<>();
-    command.add("sort");
+  /**
+   * Set the number of threads used by the sort.
+   * @param threads the number of threads
+   */
+  public void setSortThreads(final int threads) {
 
-    // Set the temporary directory if needed
-    if (this.tmpDir != null) {
-      command.add("-T");
-      command.add(this.tmpDir.getAbsolutePath());
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+          "the number of threads must be greater than 0: " + threads);
     }
 
-    // Set the output file
-    command.add("-o");
-    command.add(this.sortOutputFile.getAbsolutePath());
+    this.sortThreads = threads;
+  }
+
+  /**
+   * Get the number of threads used by the sort.
+   * @return the number of threads
+   */
+  public int getSortThreads() {
+
+    return this.sortThreads;
+  }
 
-    // Set the files to sort
-    for (File mapOutputFile : this.listMapOutputFile) {
-      command.add(mapOutputFile.getAbsolutePath());
+  /**
+   * Close the sorter and remove its temporary files.
+   */
+  private void closeSorter() {
+
+    if (this.sorter == null) {
+      return;
     }
 
-    // Execute command
-    final boolean result;
     try {
-      result = new ProcessBuilder(command).start().waitFor() == 0;
-    } catch (InterruptedException e) {
-      throw new IOException(e);
+      this.sorter.close();
+    } catch (IOException e) {
+      getLogger().warning("Can not remove sort temporary files: "
+          + e.getMessage());
     }
+    this.sorter = null;
+  }
 
-    // Remove temporary map output files
-    for (File mapOutputFile : this.listMapOutputFile) {
-      if (!mapOutputFile.delete()) {
-        getLogger().warning("Can not delete map output file: "
-            + mapOutputFile.getAbsolutePath());
+  /**
+   * Get the index of a byte in an array.
+   * @param bytes the array
+   * @param b the byte to search
+   * @return the index of the byte or -1 if not found
+   */
+  private static int indexOf(final byte[] bytes, final byte b) {
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == b) {
+        return i;
       }
     }
 
-    return result;
+    return -1;
   }
 
   //
@@ -346,73 +390,69 @@ public abstract class PseudoMapReduce {
       throw new NullPointerException("The output stream is null.");
     }
 
-    if (!sort()) {
-      throw new IOException("Unable to sort/shuffle data.");
-    }
-
-    // Create reader
-    final BufferedReader br =
-        FileUtils.createBufferedReader(this.sortOutputFile);
-
     // Create writer
     final BufferedWriter bw =
         new BufferedWriter(new OutputStreamWriter(os, CHARSET));
 
-    String line = null;
+    // An empty sorter is used if no map phase has been executed
+    final ExternalSorter sorter = this.sorter != null
+        ? this.sorter : new ExternalSorter(this.tmpDir);
+    this.sorter = null;
+
     String currentKey = null;
     final List<String> values = new RepeatedEntriesList<>();
     final List<String> results = new ArrayList<>();
 
-    final StringBuilder sb = new StringBuilder();
-
-    while ((line = br.readLine()) != null) {
+    try (ExternalSorter s = sorter;
+        ExternalSorter.SortedEntries entries = s.sort()) {
 
-      final int indexFirstTab = line.indexOf('\t');
+      ExternalSorter.Entry entry;
+      byte[] currentKeyBytes = null;
 
-      // Do not process line
-      if (line.isEmpty() || indexFirstTab == -1) {
-        continue;
-      }
+      while ((entry = entries.next()) != null) {
 
-      final String key = line.substring(0, indexFirstTab);
-      final String value = line.substring(indexFirstTab + 1);
+        if (currentKeyBytes == null) {
+          currentKeyBytes = entry.getKey();
+          currentKey = new String(currentKeyBytes, CHARSET);
+        } else if (!Arrays.equals(currentKeyBytes, entry.getKey())) {
 
-      if (currentKey == null) {
-        currentKey = key;
-      } else if (!key.equals(currentKey)) {
+          reduce(currentKey, values.iterator(), results, this.reporter);
+          writeResults(results, bw);
 
-        reduce(currentKey, values.iterator(), results, this.reporter);
-
-        for (String result : results) {
-          sb.setLength(0);
-          sb.append(result);
-          sb.append('\n');
-          bw.write(sb.toString());
+          values.clear();
+          currentKeyBytes = entry.getKey();
+          currentKey = new String(currentKeyBytes, CHARSET);
         }
 
-        results.clear();
-        values.clear();
-        currentKey = key;
+        values.add(new String(entry.getValue(), CHARSET));
       }
 
-      values.add(value);
-    }
+      // Process lasts values
+      if (currentKey != null) {
+        reduce(currentKey, values.iterator(), results, this.reporter);
+        writeResults(results, bw);
+      }
 
-    // Process lasts values
-    if (currentKey != null) {
-      reduce(currentKey, values.iterator(), results, this.reporter);
+    } finally {
+      bw.close();
     }
+  }
+
+  /**
+   * Write the results of the reducer.
+   * @param results the results to write
+   * @param bw the writer
+   * @throws IOException if an error occurs while writing the results
+   */
+  private static void writeResults(final List<String> results,
+      final BufferedWriter bw) throws IOException {
 
     for (String result : results) {
       bw.write(result);
+      bw.write('\n');
     }
 
-    br.close();
-    bw.close();
-    if (!this.sortOutputFile.delete()) {
-      getLogger().warning("Can not delete sort output file: "
-          + this.sortOutputFile.getAbsolutePath());
-    }
+    results.clear();
   }
 
 }
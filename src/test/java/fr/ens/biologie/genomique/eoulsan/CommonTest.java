@@ -0,0 +1,66 @@
+package fr.ens.biologie.genomique.eoulsan;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommonTest {
+
+  private Settings settings;
+  private int localThreads;
+  private boolean resourceAware;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.settings = EoulsanRuntime.getSettings();
+    this.localThreads = this.settings.getLocalThreadsNumber();
+    this.resourceAware = this.settings.isLocalResourceAwareScheduler();
+
+    this.settings.setLocalThreadsNumber(16);
+  }
+
+  @After
+  public void tearDown() {
+
+    this.settings.setLocalThreadsNumber(this.localThreads);
+    this.settings.setLocalResourceAwareScheduler(this.resourceAware);
+  }
+
+  @Test
+  public void testGetThreadsNumber() {
+
+    assertEquals(16, Common.getThreadsNumber(0, 0));
+    assertEquals(4, Common.getThreadsNumber(4, 0));
+    assertEquals(8, Common.getThreadsNumber(0, 8));
+    assertEquals(4, Common.getThreadsNumber(4, 8));
+    assertEquals(8, Common.getThreadsNumber(12, 8));
+  }
+
+  @Test
+  public void testGetThreadsNumberWithRequiredProcessors() {
+
+    // Without the resource aware scheduler, the required processors are
+    // ignored
+    this.settings.setLocalResourceAwareScheduler(false);
+    assertEquals(16, Common.getThreadsNumber(0, 0, 4));
+    assertEquals(8, Common.getThreadsNumber(8, 0, 4));
+
+    // With the resource aware scheduler, the tasks use by default the
+    // processors reserved by the scheduler and never more
+    this.settings.setLocalResourceAwareScheduler(true);
+    assertEquals(4, Common.getThreadsNumber(0, 0, 4));
+    assertEquals(4, Common.getThreadsNumber(8, 0, 4));
+    assertEquals(2, Common.getThreadsNumber(2, 0, 4));
+    assertEquals(3, Common.getThreadsNumber(0, 3, 4));
+
+    // Without required processors, the step can use all the processors
+    assertEquals(16, Common.getThreadsNumber(0, 0, 0));
+    assertEquals(8, Common.getThreadsNumber(8, 0, -1));
+  }
+
+}
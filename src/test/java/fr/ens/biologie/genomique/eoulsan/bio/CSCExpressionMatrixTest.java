@@ -0,0 +1,61 @@
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CSCExpressionMatrixTest extends AbstractExpressionMatrixTest {
+
+  @Override
+  protected ExpressionMatrix createMatrix() {
+
+    return new CSCExpressionMatrix();
+  }
+
+  @Override
+  protected ExpressionMatrix createMatrix(double defaultValue) {
+
+    return new CSCExpressionMatrix(defaultValue);
+  }
+
+  @Test
+  public void testUnorderedValues() {
+
+    CSCExpressionMatrix matrix = new CSCExpressionMatrix();
+    matrix.addRows("row1", "row2", "row3", "row4");
+
+    matrix.setValue("row3", "col1", 3);
+    matrix.setValue("row1", "col1", 1);
+    matrix.setValue("row4", "col1", 4);
+    matrix.setValue("row2", "col1", 2.5);
+    matrix.setValue("row4", "col1", 0);
+
+    assertEquals(Arrays.asList(1.0, 2.5, 3.0, 0.0),
+        matrix.getColumnValues("col1"));
+    assertEquals(3, matrix.getNonZeroCount());
+    assertEquals(1, matrix.getColumnNonZeroRowIndex(0, 1));
+    assertEquals(2.5, matrix.getColumnNonZeroValue(0, 1), 0.0);
+  }
+
+  @Test
+  public void testIndexesAfterRemoval() {
+
+    CSCExpressionMatrix matrix = new CSCExpressionMatrix();
+    matrix.addColumns("col1", "col2", "col3");
+    matrix.addRows("row1", "row2", "row3");
+
+    matrix.setValue("row3", "col3", 9);
+    matrix.renameColumn("col1", "newcol1");
+    matrix.removeRow("row2");
+    matrix.removeColumn("col2");
+
+    assertEquals(Arrays.asList("newcol1", "col3"), matrix.getColumnNames());
+    assertEquals(Arrays.asList("row1", "row3"), matrix.getRowNames());
+    assertEquals(1, matrix.getColumnNonZeroCount(1));
+    assertEquals(1, matrix.getColumnNonZeroRowIndex(1, 0));
+    assertEquals(9.0, matrix.getValue("row3", "col3"), 0.0);
+  }
+
+}
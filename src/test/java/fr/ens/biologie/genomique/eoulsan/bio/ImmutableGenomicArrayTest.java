@@ -0,0 +1,213 @@
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class ImmutableGenomicArrayTest {
+
+  @Test
+  public void testGetEntries() {
+
+    final ImmutableGenomicArray<String> ga =
+        new ImmutableGenomicArray.Builder<String>()
+            .addEntry(new GenomicInterval("chr1", 10, 50, '.'), "a")
+            .addEntry(new GenomicInterval("chr1", 40, 70, '.'), "b")
+            .addEntry(new GenomicInterval("chr1", 20, 30, '-'), "c")
+            .addChromosome("chr2").build();
+
+    final Map<GenomicInterval, Set<String>> r = ga.getEntries("chr1", 45, 80);
+
+    assertEquals(2, r.get(new GenomicInterval("chr1", 40, 50, '.')).size());
+    assertEquals(Collections.singleton("b"),
+        r.get(new GenomicInterval("chr1", 51, 70, '.')));
+    assertTrue(r.get(new GenomicInterval("chr1", 71, 80, '.')).isEmpty());
+    assertEquals(3, r.size());
+
+    assertEquals(Collections.singleton("c"),
+        ga.getEntries("chr1", 25, 25)
+            .get(new GenomicInterval("chr1", 20, 30, '-')));
+
+    assertTrue(ga.getEntries("chr2", 1, 10).isEmpty());
+    assertNull(ga.getEntries("chr3", 1, 10));
+    assertTrue(ga.containsChromosome("chr2"));
+    assertFalse(ga.containsChromosome("chr3"));
+    assertEquals(3, ga.getFeaturesIds().size());
+  }
+
+  @Test
+  public void testSameEntriesAsGenomicArray() {
+
+    final Random random = new Random(12345);
+    final char[] strands = {'+', '-', '.'};
+
+    for (int test = 0; test < 50; test++) {
+
+      final GenomicArray<String> expected = new GenomicArray<>();
+      final ImmutableGenomicArray.Builder<String> builder =
+          new ImmutableGenomicArray.Builder<>();
+
+      final int intervalCount = 1 + random.nextInt(100);
+      for (int i = 0; i < intervalCount; i++) {
+
+        final String chromosome = "chr" + random.nextInt(3);
+        final int start = 1 + random.nextInt(1000);
+        final int end = start + random.nextInt(200);
+        final char strand = strands[random.nextInt(strands.length)];
+        final String value = "g" + random.nextInt(30);
+
+        final GenomicInterval iv =
+            new GenomicInterval(chromosome, start, end, strand);
+        expected.addEntry(iv, value);
+        builder.addEntry(iv, value);
+      }
+
+      final ImmutableGenomicArray<String> ga = builder.build();
+
+      assertEquals(expected.getFeaturesIds(), ga.getFeaturesIds());
+      assertEquals(expected.getChromosomesNames(), ga.getChromosomesNames());
+
+      for (int i = 0; i < 200; i++) {
+
+        final String chromosome = "chr" + random.nextInt(4);
+        final int start = random.nextInt(1300) - 10;
+        final int end = start + random.nextInt(300);
+
+        assertEquals(expected.getEntries(chromosome, start, end),
+            ga.getEntries(chromosome, start, end));
+      }
+    }
+  }
+
+  @Test
+  public void testGetZones() {
+
+    final Random random = new Random(54321);
+    final char[] strands = {'+', '-', '.'};
+    final ImmutableGenomicArray.Zones zones = new ImmutableGenomicArray.Zones();
+
+    for (int test = 0; test < 50; test++) {
+
+      final ImmutableGenomicArray.Builder<String> builder =
+          new ImmutableGenomicArray.Builder<>();
+
+      final int intervalCount = 1 + random.nextInt(100);
+      for (int i = 0; i < intervalCount; i++) {
+
+        final int start = 1 + random.nextInt(1000);
+        builder.addEntry(new GenomicInterval("chr" + random.nextInt(3), start,
+            start + random.nextInt(200), strands[random.nextInt(3)]),
+            "g" + random.nextInt(30));
+      }
+
+      final ImmutableGenomicArray<String> ga = builder.build();
+
+      for (int i = 0; i < 200; i++) {
+
+        final String chromosome = "chr" + random.nextInt(4);
+        final int start = random.nextInt(1300) - 10;
+        final int end = start + random.nextInt(300);
+
+        final Map<GenomicInterval, Set<String>> entries =
+            ga.getEntries(chromosome, start, end);
+
+        assertEquals(entries != null,
+            ga.getZones(chromosome, start, end, zones));
+
+        if (entries == null) {
+          assertEquals(0, zones.size());
+          continue;
+        }
+
+        // Compare the zones and the entries as lists of strands and values
+        final List<String> expected = new ArrayList<>();
+        for (Map.Entry<GenomicInterval, Set<String>> e : entries.entrySet()) {
+          expected.add(
+              e.getKey().getStrand() + "" + new TreeSet<>(e.getValue()));
+        }
+
+        final List<String> actual = new ArrayList<>();
+        for (int j = 0; j < zones.size(); j++) {
+
+          final Set<String> values = new TreeSet<>();
+          for (int id : zones.getValueIds(j)) {
+            values.add(ga.getValue(id));
+          }
+          actual.add(zones.getStrand(j) + "" + values);
+        }
+
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testSaveLoad() throws IOException {
+
+    final Random random = new Random(6789);
+    final ImmutableGenomicArray.Builder<String> builder =
+        new ImmutableGenomicArray.Builder<>();
+
+    for (int i = 0; i < 500; i++) {
+
+      final int start = 1 + random.nextInt(5000);
+      builder.addEntry(new GenomicInterval("chr" + random.nextInt(5), start,
+          start + random.nextInt(500), random.nextBoolean() ? '+' : '-'),
+          "gène" + random.nextInt(100));
+    }
+    builder.addChromosome("chrM");
+
+    final ImmutableGenomicArray<String> expected = builder.build();
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    expected.save(baos);
+    final ImmutableGenomicArray<String> ga = ImmutableGenomicArray
+        .load(new ByteArrayInputStream(baos.toByteArray()));
+
+    assertEquals(expected.getFeaturesIds(), ga.getFeaturesIds());
+    assertEquals(expected.getChromosomesNames(), ga.getChromosomesNames());
+
+    for (int i = 0; i < 1000; i++) {
+
+      final String chromosome = "chr" + random.nextInt(6);
+      final int start = random.nextInt(6000);
+      final int end = start + random.nextInt(300);
+
+      assertEquals(expected.getEntries(chromosome, start, end),
+          ga.getEntries(chromosome, start, end));
+    }
+  }
+
+  @Test
+  public void testWithChromosomes() {
+
+    final ImmutableGenomicArray<String> ga =
+        new ImmutableGenomicArray.Builder<String>()
+            .addEntry(new GenomicInterval("chr1", 10, 50, '+'), "a").build()
+            .withChromosomes(Arrays.asList("chr1", "chr2"));
+
+    assertTrue(ga.containsChromosome("chr2"));
+    assertTrue(ga.getEntries("chr2", 1, 100).isEmpty());
+    assertEquals(Collections.singleton("a"),
+        ga.getEntries("chr1", 20, 20)
+            .get(new GenomicInterval("chr1", 10, 50, '+')));
+  }
+
+}
@@ -29,7 +29,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -169,4 +175,56 @@ public class SAMUtilsTest {
     assertEquals(159599783, desc.getSequenceLength("chr3"));
   }
 
+  @Test
+  public void copyAndCountAlignmentsTest() throws IOException {
+
+    testCopyAndCountAlignments("");
+    testCopyAndCountAlignments("@HD\tVN:1.4\n");
+    testCopyAndCountAlignments("@HD\tVN:1.4\nread1\t0\tchr1\n\n"
+        + "  read2\t4\n" + "noTab\n" + "trailingTab\t\n" + "\tleadingTab\n"
+        + "  @notAnAlignment\tx\n" + "read3\t16\tchr2");
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (InputStream is =
+        SAMUtilsTest.class.getResourceAsStream("/mapper_results_SE.sam")) {
+
+      int c;
+      while ((c = is.read()) != -1) {
+        baos.write(c);
+      }
+    }
+    testCopyAndCountAlignments(
+        new String(baos.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  private static void testCopyAndCountAlignments(final String sam)
+      throws IOException {
+
+    final byte[] bytes = sam.getBytes(StandardCharsets.ISO_8859_1);
+
+    // Count the alignments by parsing lines
+    long expected = 0;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1))) {
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+
+        final String trimmedLine = line.trim();
+        if (!"".equals(trimmedLine)
+            && !trimmedLine.startsWith("@") && trimmedLine.indexOf('\t') != -1) {
+          expected++;
+        }
+      }
+    }
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    final long count =
+        SAMUtils.copyAndCountAlignments(new ByteArrayInputStream(bytes), os);
+
+    assertEquals(expected, count);
+    assertEquals(sam.isEmpty() || sam.endsWith("\n") ? sam : sam + '\n',
+        new String(os.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
 }
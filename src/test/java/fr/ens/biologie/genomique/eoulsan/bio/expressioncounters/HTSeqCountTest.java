@@ -41,14 +41,18 @@ import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.StrandUsa
 import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.StrandUsage.REVERSE;
 import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.StrandUsage.YES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -305,6 +309,105 @@ public class HTSeqCountTest {
         "/yeast_RNASeq_excerpt_withNH_counts_ignore_secondary.tsv");
   }
 
+  @Test
+  public void testCountMultithreaded()
+      throws EoulsanException, IOException, BadBioEntryException {
+
+    // htseq-count -m intersection-nonempty --nonunique none
+    HTSeqCounter counter = new HTSeqCounter();
+    counter.setParameter(OVERLAP_MODE_PARAMETER_NAME,
+        INTERSECTION_NONEMPTY.getName());
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, YES.getName());
+
+    compareCounts(counter, "/yeast_RNASeq_excerpt_withNH_counts.tsv", 4);
+
+    // htseq-count -m union --nonunique none
+    counter = new HTSeqCounter();
+    counter.setParameter(OVERLAP_MODE_PARAMETER_NAME, UNION.getName());
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, YES.getName());
+
+    compareCounts(counter, "/yeast_RNASeq_excerpt_withNH_counts_union.tsv",
+        3);
+  }
+
+  @Test
+  public void testCountPairedEndMultithreaded()
+      throws EoulsanException, IOException, BadBioEntryException {
+
+    final byte[] sam = createPairedEndSAM();
+
+    // Single thread
+    final HTSeqCounter expectedCounter = createPairedEndCounter();
+    final LocalReporter expectedReporter = new LocalReporter();
+    final Map<String, Integer> expectedCounts = expectedCounter.count(
+        new ByteArrayInputStream(sam), expectedReporter, COUNTER_GROUP);
+
+    assertFalse(expectedCounts.isEmpty());
+
+    for (int threads : new int[] {2, 3, 4}) {
+
+      final HTSeqCounter counter = createPairedEndCounter();
+      final LocalReporter reporter = new LocalReporter();
+      final Map<String, Integer> counts;
+
+      try (SamReader in = SamReaderFactory.makeDefault()
+          .open(SamInputResource.of(new ByteArrayInputStream(sam)))) {
+        counts = counter.count(in, reporter, COUNTER_GROUP, threads);
+      }
+
+      assertEquals(expectedCounts, counts);
+      assertEquals(expectedReporter.getCounterNames(COUNTER_GROUP),
+          reporter.getCounterNames(COUNTER_GROUP));
+      for (String name : expectedReporter.getCounterNames(COUNTER_GROUP)) {
+        assertEquals(name,
+            expectedReporter.getCounterValue(COUNTER_GROUP, name),
+            reporter.getCounterValue(COUNTER_GROUP, name));
+      }
+    }
+  }
+
+  @Test
+  public void testCountInArray()
+      throws EoulsanException, IOException, BadBioEntryException {
+
+    // htseq-count -m intersection-nonempty --nonunique none
+    HTSeqCounter counter = new HTSeqCounter();
+    counter.setParameter(OVERLAP_MODE_PARAMETER_NAME,
+        INTERSECTION_NONEMPTY.getName());
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, YES.getName());
+
+    try (GTFReader reader =
+        new GTFReader(this.getClass().getResourceAsStream(GTF_RESSOURCE))) {
+      counter.init(this.genomeDescription, reader);
+    }
+
+    // Count the entries one by one as in the Hadoop mapper
+    LocalReporter reporter = new LocalReporter();
+    final long[] array = new long[counter.getFeatureCount()];
+    try (SamReader in = SamReaderFactory.makeDefault().open(SamInputResource
+        .of(this.getClass().getResourceAsStream(SAM_RESSOURCE)))) {
+
+      for (SAMRecord record : in) {
+        counter.count(Collections.singletonList(record), array, reporter,
+            COUNTER_GROUP);
+      }
+    }
+
+    final Map<String, Integer> counts = new HashMap<>();
+    for (int id = 0; id < array.length; id++) {
+      counts.put(counter.getFeatureName(id), (int) array[id]);
+    }
+
+    compareCounts(counts, reporter,
+        HTSEQ_RESSOURCE_DIR + "/yeast_RNASeq_excerpt_withNH_counts.tsv");
+  }
+
   @Test
   public void testCountSamOutput()
       throws EoulsanException, IOException, BadBioEntryException {
@@ -372,6 +475,35 @@ public class HTSeqCountTest {
     compareCounts(counts, reporter, HTSEQ_RESSOURCE_DIR + expectedRessource);
   }
 
+  /**
+   * Compare counts using several threads.
+   * @param counter counter
+   * @param expectedRessource expected counts resources
+   * @param threads number of threads to use
+   * @throws IOException if an error occurs while reading the expected counts
+   * @throws EoulsanException if an error occurs while counting
+   */
+  private void compareCounts(HTSeqCounter counter,
+      final String expectedRessource, final int threads)
+      throws IOException, EoulsanException {
+
+    try (GTFReader reader =
+        new GTFReader(this.getClass().getResourceAsStream(GTF_RESSOURCE))) {
+      counter.init(this.genomeDescription, reader);
+    }
+
+    LocalReporter reporter = new LocalReporter();
+    Map<String, Integer> counts = null;
+    try (SamReader in = SamReaderFactory.makeDefault().open(SamInputResource
+        .of(this.getClass().getResourceAsStream(SAM_RESSOURCE)))) {
+      counts = counter.count(in, reporter, COUNTER_GROUP, threads);
+    }
+
+    counter.addZeroCountFeatures(counts);
+
+    compareCounts(counts, reporter, HTSEQ_RESSOURCE_DIR + expectedRessource);
+  }
+
   /**
    * Compare counts with values in a ressource file.
    * @param counts the count to compare
@@ -459,6 +591,129 @@ public class HTSeqCountTest {
     }
   }
 
+  /**
+   * Create a paired-end counter.
+   * @return a new initialized counter
+   * @throws IOException if an error occurs while reading the annotation
+   * @throws EoulsanException if an error occurs while initializing the counter
+   */
+  private HTSeqCounter createPairedEndCounter()
+      throws IOException, EoulsanException {
+
+    // htseq-count -m union --nonunique none --stranded no
+    final HTSeqCounter counter = new HTSeqCounter();
+    counter.setParameter(OVERLAP_MODE_PARAMETER_NAME, UNION.getName());
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, NO.getName());
+
+    try (GTFReader reader =
+        new GTFReader(this.getClass().getResourceAsStream(GTF_RESSOURCE))) {
+      counter.init(this.genomeDescription, reader);
+    }
+
+    return counter;
+  }
+
+  /**
+   * Create paired-end SAM data from the single-end SAM ressource. Each
+   * single-end entry becomes a pair of mates. Some mates are unmapped and
+   * some mates are missing.
+   * @return the paired-end SAM data
+   * @throws IOException if an error occurs while reading the ressource
+   */
+  private byte[] createPairedEndSAM() throws IOException {
+
+    final StringBuilder sb = new StringBuilder();
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        this.getClass().getResourceAsStream(SAM_RESSOURCE)))) {
+
+      String line;
+      int count = 0;
+      while ((line = reader.readLine()) != null) {
+
+        if (line.startsWith("@")) {
+          sb.append(line);
+          sb.append('\n');
+          continue;
+        }
+
+        count++;
+        final String[] fields = line.split("\t", 12);
+        final int flags = Integer.parseInt(fields[1]);
+        final String tags = fields.length > 11 ? "\t" + fields[11] : "";
+
+        // Unmapped pair
+        if ((flags & 0x4) != 0) {
+          appendMate(sb, fields, 0x1 | 0x4 | 0x8 | 0x40, "*", "0", "*", "0",
+              "*", tags);
+          appendMate(sb, fields, 0x1 | 0x4 | 0x8 | 0x80, "*", "0", "*", "0",
+              "*", tags);
+          continue;
+        }
+
+        final int pos = Integer.parseInt(fields[3]);
+        final int matePos = pos > 200 ? pos - 150 : pos + 150;
+        final boolean reverse = (flags & 0x10) != 0;
+        final int common = 0x1 | (flags & 0x100);
+        final int flags1 = common | 0x40 | (reverse ? 0x10 : 0x20);
+        final int flags2 = common | 0x80 | (reverse ? 0x20 : 0x10);
+
+        if (count % 97 == 0) {
+
+          // Missing second mate
+          appendMate(sb, fields, flags1, fields[2], fields[3], "=",
+              "" + matePos, fields[5], tags);
+
+        } else if (count % 41 == 0) {
+
+          // Unmapped second mate
+          appendMate(sb, fields, flags1 | 0x8, fields[2], fields[3], "=",
+              fields[3], fields[5], tags);
+          appendMate(sb, fields, (flags2 & ~0x110) | 0x4, fields[2],
+              fields[3], "=", fields[3], "*", "");
+
+        } else {
+          appendMate(sb, fields, flags1 | 0x2, fields[2], fields[3], "=",
+              "" + matePos, fields[5], tags);
+          appendMate(sb, fields, flags2 | 0x2, fields[2], "" + matePos, "=",
+              fields[3], fields[5], tags);
+        }
+      }
+    }
+
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void appendMate(final StringBuilder sb,
+      final String[] fields, final int flags, final String rname,
+      final String pos, final String rnext, final String pnext,
+      final String cigar, final String tags) {
+
+    sb.append(fields[0]);
+    sb.append('\t');
+    sb.append(flags);
+    sb.append('\t');
+    sb.append(rname);
+    sb.append('\t');
+    sb.append(pos);
+    sb.append('\t');
+    sb.append("*".equals(cigar) ? "0" : fields[4]);
+    sb.append('\t');
+    sb.append(cigar);
+    sb.append('\t');
+    sb.append(rnext);
+    sb.append('\t');
+    sb.append(pnext);
+    sb.append("\t0\t");
+    sb.append(fields[9]);
+    sb.append('\t');
+    sb.append(fields[10]);
+    sb.append(tags);
+    sb.append('\n');
+  }
+
   /**
    * Load genome description from GTF ressource.
    * @return a GenomeDescription object
@@ -24,12 +24,15 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Before;
@@ -38,6 +41,7 @@ import org.junit.Test;
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
+import fr.ens.biologie.genomique.eoulsan.bio.ImmutableGenomicArray;
 
 public class HTSeqUtilsTest {
 
@@ -168,4 +172,73 @@ public class HTSeqUtilsTest {
     assertFalse(results.contains("b"));
   }
 
+  @Test
+  public void testFeaturesOverlappedIds() throws EoulsanException {
+
+    final Random random = new Random(2468);
+    final char[] strands = {'+', '-'};
+    final AlignmentIntervals intervals = new AlignmentIntervals();
+    final ImmutableGenomicArray.Zones zones = new ImmutableGenomicArray.Zones();
+    final FeatureIdSet ids = new FeatureIdSet();
+
+    for (int test = 0; test < 30; test++) {
+
+      final GenomicArray<String> annot = new GenomicArray<>();
+      final ImmutableGenomicArray.Builder<String> builder =
+          new ImmutableGenomicArray.Builder<>();
+
+      for (int i = 0; i < 50; i++) {
+
+        final int start = 1 + random.nextInt(1000);
+        final GenomicInterval iv =
+            new GenomicInterval("chr" + random.nextInt(2), start,
+                start + random.nextInt(200), strands[random.nextInt(2)]);
+        final String value = "g" + random.nextInt(20);
+
+        annot.addEntry(iv, value);
+        builder.addEntry(iv, value);
+      }
+      annot.addChromosome("chr0");
+      annot.addChromosome("chr1");
+      final ImmutableGenomicArray<String> features =
+          builder.addChromosome("chr0").addChromosome("chr1").build();
+
+      for (int i = 0; i < 100; i++) {
+
+        final List<GenomicInterval> ivSeq = new ArrayList<>();
+        intervals.clear();
+
+        final String chromosome = "chr" + random.nextInt(2);
+        final char strand = strands[random.nextInt(2)];
+        int pos = 1 + random.nextInt(1100);
+        for (int j = random.nextInt(3); j >= 0; j--) {
+
+          final int end = pos + random.nextInt(100);
+          ivSeq.add(new GenomicInterval(chromosome, pos, end, strand));
+          intervals.add(chromosome, pos, end, strand);
+          pos = end + 1 + random.nextInt(50);
+        }
+
+        for (OverlapMode mode : OverlapMode.values()) {
+          for (StrandUsage stranded : StrandUsage.values()) {
+
+            final Set<String> expected = HTSeqUtils.featuresOverlapped(ivSeq,
+                annot, mode, stranded);
+
+            HTSeqUtils.featuresOverlapped(intervals, features, mode,
+                stranded, zones, ids);
+
+            final Set<String> actual = new HashSet<>();
+            for (int j = 0; j < ids.size(); j++) {
+              actual.add(features.getValue(ids.get(j)));
+            }
+
+            assertEquals(expected.size(), ids.size());
+            assertEquals(expected, actual);
+          }
+        }
+      }
+    }
+  }
+
 }
@@ -0,0 +1,148 @@
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+public class FastqByteReaderTest {
+
+  private static final String FASTQ = "@read1 1:N:0:1\n"
+      + "ATGC\n" + "+\n" + "IIII\n" + "@read2\r\n" + "GGTTA\r\n" + "+read2\r\n"
+      + "!!!!!\r\n" + "\n" + "@read3\n" + "A\n" + "+\n" + "#";
+
+  @Test
+  public void testReadEntries() throws IOException, BadBioEntryException {
+
+    for (int bufferSize : new int[] {1, 3, 7, 64, 1024}) {
+
+      try (FastqByteReader reader = new FastqByteReader(
+          toStream(FASTQ), false, bufferSize)) {
+
+        assertTrue(reader.hasNext());
+        ReadSequence read = reader.next();
+        assertEquals("read1 1:N:0:1", read.getName());
+        assertEquals("ATGC", read.getSequence());
+        assertEquals("IIII", read.getQuality());
+
+        assertTrue(reader.hasNext());
+        read = reader.next();
+        assertEquals("read2", read.getName());
+        assertEquals("GGTTA", read.getSequence());
+        assertEquals("!!!!!", read.getQuality());
+
+        assertTrue(reader.hasNext());
+        read = reader.next();
+        assertEquals("read3", read.getName());
+        assertEquals("A", read.getSequence());
+        assertEquals("#", read.getQuality());
+
+        assertFalse(reader.hasNext());
+        reader.throwException();
+      }
+    }
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+
+    try (FastqByteReader reader =
+        new FastqByteReader(toStream(FASTQ), true, 5)) {
+
+      ReadSequence first = null;
+      int count = 0;
+      for (ReadSequence read : reader) {
+
+        if (first == null) {
+          first = read;
+        }
+        assertSame(first, read);
+        count++;
+      }
+
+      assertEquals(3, count);
+      assertEquals("read3", first.getName());
+    }
+  }
+
+  @Test
+  public void testInvalidEntries() throws IOException {
+
+    testInvalidEntry("read1\nATGC\n+\nIIII\n");
+    testInvalidEntry("@read1\nATGC\n-\nIIII\n");
+  }
+
+  @Test
+  public void testSameResultAsFastqReader()
+      throws IOException, BadBioEntryException {
+
+    testFile("/illumina_1_8.fastq");
+    testFile("/fast5/alexander_PC_20161027_R9-4_1D_template.fastq");
+  }
+
+  private void testInvalidEntry(final String s) throws IOException {
+
+    try (FastqByteReader reader = new FastqByteReader(toStream(s))) {
+
+      assertFalse(reader.hasNext());
+      reader.throwException();
+      fail();
+    } catch (BadBioEntryException e) {
+      assertNotNull(e.getEntry());
+    }
+  }
+
+  private void testFile(final String resourcePath)
+      throws IOException, BadBioEntryException {
+
+    try (
+        ReadSequenceReader expectedReader =
+            new FastqReader(getResource(resourcePath));
+        ReadSequenceReader reader =
+            new FastqByteReader(getResource(resourcePath), true, 100)) {
+
+      for (ReadSequence expected : expectedReader) {
+
+        assertTrue(reader.hasNext());
+        final ReadSequence read = reader.next();
+        assertEquals(expected.getName(), read.getName());
+        assertEquals(expected.getSequence(), read.getSequence());
+        assertEquals(expected.getQuality(), read.getQuality());
+      }
+
+      assertFalse(reader.hasNext());
+      expectedReader.throwException();
+      reader.throwException();
+    }
+  }
+
+  private InputStream getResource(final String resourcePath)
+      throws IOException {
+
+    final InputStream is = this.getClass().getResourceAsStream(resourcePath);
+
+    if (is == null) {
+      throw new IOException("resource not found: " + resourcePath);
+    }
+
+    return is;
+  }
+
+  private static InputStream toStream(final String s) {
+
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+}
@@ -0,0 +1,153 @@
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+public class FastqIndexTest {
+
+  private static final int READ_COUNT = 1000;
+  private static final int READS_PER_BLOCK = 64;
+
+  @Test
+  public void testIndex() throws IOException, BadBioEntryException {
+
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    final FastqIndex index = write(data, READ_COUNT, READS_PER_BLOCK);
+    final byte[] bytes = data.toByteArray();
+
+    final int blockCount = (READ_COUNT + READS_PER_BLOCK - 1) / READS_PER_BLOCK;
+    assertEquals(blockCount, index.getBlockCount());
+    assertEquals(READ_COUNT, index.getReadCount());
+    assertEquals(bytes.length, index.getFileLength());
+    assertEquals(0, index.getBlockOffset(0));
+
+    for (int i = 0; i <= blockCount; i++) {
+      assertEquals(Math.min(READ_COUNT, i * READS_PER_BLOCK),
+          index.getBlockFirstRead(i));
+      assertEquals(i, index.getBlockAtOffset(index.getBlockOffset(i)));
+    }
+    assertEquals(-1, index.getBlockAtOffset(1));
+
+    assertEquals(0, index.getBlockOfRead(0));
+    assertEquals(1, index.getBlockOfRead(READS_PER_BLOCK));
+    assertEquals(blockCount - 1, index.getBlockOfRead(READ_COUNT - 1));
+
+    // The file can be read by a standard gzip reader
+    assertReads(new GZIPInputStream(new ByteArrayInputStream(bytes)), 0,
+        READ_COUNT);
+
+    // Read ranges of blocks
+    for (int first = 0; first < blockCount; first += 3) {
+      for (int end = first; end <= blockCount; end += 2) {
+
+        final InputStream is = new ByteArrayInputStream(bytes);
+        assertEquals(index.getBlockOffset(first),
+            is.skip(index.getBlockOffset(first)));
+
+        assertReads(index.openBlocks(is, first, end),
+            index.getBlockFirstRead(first), index.getBlockFirstRead(end));
+      }
+    }
+  }
+
+  @Test
+  public void testSaveLoad() throws IOException {
+
+    final FastqIndex index =
+        write(new ByteArrayOutputStream(), READ_COUNT, READS_PER_BLOCK);
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    index.save(os);
+    final FastqIndex index2 =
+        FastqIndex.load(new ByteArrayInputStream(os.toByteArray()));
+
+    assertEquals(index.getBlockCount(), index2.getBlockCount());
+    for (int i = 0; i <= index.getBlockCount(); i++) {
+      assertEquals(index.getBlockFirstRead(i), index2.getBlockFirstRead(i));
+      assertEquals(index.getBlockOffset(i), index2.getBlockOffset(i));
+    }
+
+    try {
+      FastqIndex.load(new ByteArrayInputStream("1\t2\n".getBytes()));
+      fail();
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException, BadBioEntryException {
+
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    final FastqIndex index = write(data, 0, READS_PER_BLOCK);
+
+    assertEquals(1, index.getBlockCount());
+    assertEquals(0, index.getReadCount());
+    assertReads(new GZIPInputStream(
+        new ByteArrayInputStream(data.toByteArray())), 0, 0);
+  }
+
+  private static FastqIndex write(final ByteArrayOutputStream data,
+      final int readCount, final int readsPerBlock) throws IOException {
+
+    final ByteArrayOutputStream index = new ByteArrayOutputStream();
+
+    try (BlockCompressedFastqWriter writer =
+        new BlockCompressedFastqWriter(data, index, readsPerBlock)) {
+
+      for (int i = 0; i < readCount; i++) {
+        writer.write(createRead(i));
+      }
+    }
+
+    return FastqIndex.load(new ByteArrayInputStream(index.toByteArray()));
+  }
+
+  private static void assertReads(final InputStream is, final long first,
+      final long end) throws IOException, BadBioEntryException {
+
+    try (FastqByteReader reader = new FastqByteReader(is)) {
+
+      for (long i = first; i < end; i++) {
+
+        assertTrue(reader.hasNext());
+        final ReadSequence read = reader.next();
+        final ReadSequence expected = createRead((int) i);
+        assertEquals(expected.getName(), read.getName());
+        assertEquals(expected.getSequence(), read.getSequence());
+        assertEquals(expected.getQuality(), read.getQuality());
+      }
+
+      assertFalse(reader.hasNext());
+      reader.throwException();
+    }
+  }
+
+  private static ReadSequence createRead(final int i) {
+
+    final StringBuilder sequence = new StringBuilder();
+    final StringBuilder quality = new StringBuilder();
+
+    for (int j = 0; j < 20 + i % 30; j++) {
+      sequence.append("ACGT".charAt((i + j) % 4));
+      quality.append((char) ('!' + (i * j) % 40));
+    }
+
+    return new ReadSequence("read" + i + " 1:N:0:1", sequence.toString(),
+        quality.toString());
+  }
+
+}
@@ -0,0 +1,157 @@
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MarketMatrixEntryReaderTest {
+
+  private static final String MATRIX = "%%MatrixMarket matrix coordinate "
+      + "real general\n" + "% comment\n" + "\n" + "3 2 4\n" + "1 1 3\n"
+      + "3 1 -0.25\r\n" + "2 2 1.5e3\n" + "3  2\t0.1";
+
+  @Test
+  public void testRead() throws IOException {
+
+    try (MarketMatrixEntryReader reader =
+        new MarketMatrixEntryReader(toStream(MATRIX))) {
+
+      assertEquals(3, reader.getRowCount());
+      assertEquals(2, reader.getColumnCount());
+      assertEquals(4, reader.getEntryCount());
+      assertFalse(reader.isIntegerMatrix());
+
+      assertEntry(reader, 1, 1, 3.0);
+      assertEntry(reader, 3, 1, -0.25);
+      assertEntry(reader, 2, 2, 1500.0);
+      assertEntry(reader, 3, 2, 0.1);
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void testInvalidFiles() {
+
+    testInvalidFile("%%MatrixMarket vector coordinate real general\n1 1 0\n");
+    testInvalidFile("%%MatrixMarket matrix coordinate real symmetric\n");
+    testInvalidFile(
+        "%%MatrixMarket matrix coordinate real general\n2 2 2\n1 1 1\n");
+    testInvalidFile(
+        "%%MatrixMarket matrix coordinate real general\n2 2 1\n3 1 1\n");
+    testInvalidFile(
+        "%%MatrixMarket matrix coordinate real general\n2 2 1\n1 1 a\n");
+    testInvalidFile(
+        "%%MatrixMarket matrix coordinate real general\n2 2 1\n1 1\n");
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+
+    final Random random = new Random(0);
+    final int entryCount = 100000;
+    final double[] values = new double[entryCount];
+
+    for (int i = 0; i < entryCount; i++) {
+      switch (i % 4) {
+      case 0:
+        values[i] = random.nextInt(1000);
+        break;
+      case 1:
+        values[i] = random.nextDouble();
+        break;
+      case 2:
+        values[i] = Math.round(random.nextGaussian() * 1e6) / 1000.0;
+        break;
+      default:
+        values[i] = random.nextGaussian() * 1e-30;
+        break;
+      }
+    }
+
+    // Values are written with Double.toString() and must be read back exactly
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (MarketMatrixEntryWriter writer =
+        new MarketMatrixEntryWriter(os, 1000, 100, entryCount, false)) {
+
+      for (int i = 0; i < entryCount; i++) {
+        writer.write(i % 1000 + 1, i % 100 + 1, values[i]);
+      }
+    }
+
+    try (MarketMatrixEntryReader reader = new MarketMatrixEntryReader(
+        new ByteArrayInputStream(os.toByteArray()))) {
+
+      assertEquals(1000, reader.getRowCount());
+      assertEquals(100, reader.getColumnCount());
+      assertEquals(entryCount, reader.getEntryCount());
+
+      for (int i = 0; i < entryCount; i++) {
+        assertEntry(reader, i % 1000 + 1, i % 100 + 1, values[i]);
+      }
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void testWriteInteger() throws IOException {
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (MarketMatrixEntryWriter writer =
+        new MarketMatrixEntryWriter(os, 2, 3, 2, true)) {
+      writer.write(1, 3, 42);
+      writer.write(2, 1, -7);
+    }
+
+    assertEquals(
+        "%%MatrixMarket matrix coordinate integer general\n"
+            + "2 3 2\n" + "1 3 42\n" + "2 1 -7\n",
+        new String(os.toByteArray(), StandardCharsets.US_ASCII));
+
+    try {
+      new MarketMatrixEntryWriter(new ByteArrayOutputStream(), 2, 3, 2, true)
+          .close();
+      fail();
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  private static void assertEntry(final MarketMatrixEntryReader reader,
+      final int row, final int column, final double value) throws IOException {
+
+    assertTrue(reader.next());
+    assertEquals(row, reader.getRowNumber());
+    assertEquals(column, reader.getColumnNumber());
+    assertEquals(value, reader.getValue(), 0.0);
+  }
+
+  private static void testInvalidFile(final String s) {
+
+    try (MarketMatrixEntryReader reader =
+        new MarketMatrixEntryReader(toStream(s))) {
+
+      while (reader.next()) {
+        // Read all the entries
+      }
+      fail();
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  private static InputStream toStream(final String s) {
+
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII));
+  }
+
+}
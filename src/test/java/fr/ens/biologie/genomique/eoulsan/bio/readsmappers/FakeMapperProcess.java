@@ -0,0 +1,85 @@
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class define a fake mapper process for the tests. The command line of
+ * the fake mapper is executed from the PATH and the "{input}" arguments of the
+ * command line are replaced by the path of the named pipe of the reads.
+ * @author Laurent Jourdren
+ */
+public class FakeMapperProcess extends MapperProcess {
+
+  private static final String INPUT_PLACEHOLDER = "{input}";
+
+  private final List<String> command;
+  private volatile boolean destroyed;
+
+  @Override
+  protected List<List<String>> createCommandLines() {
+
+    final List<String> result = new ArrayList<>();
+
+    for (String arg : this.command) {
+      result.add(arg.replace(INPUT_PLACEHOLDER,
+          getNamedPipeFile1().getAbsolutePath()));
+    }
+
+    return Collections.singletonList(result);
+  }
+
+  @Override
+  public void destroy() throws IOException {
+
+    this.destroyed = true;
+    super.destroy();
+  }
+
+  /**
+   * Test if the process has been destroyed.
+   * @return true if the process has been destroyed
+   */
+  public boolean isDestroyed() {
+
+    return this.destroyed;
+  }
+
+  //
+  // Static method
+  //
+
+  /**
+   * Start a fake mapper process in single-end mode.
+   * @param temporaryDirectory temporary directory
+   * @param command command line of the fake mapper
+   * @return a new FakeMapperProcess object
+   * @throws IOException if an error occurs while starting the process
+   */
+  public static FakeMapperProcess start(final File temporaryDirectory,
+      final String... command) throws IOException {
+
+    final FakeMapperProcess result =
+        new FakeMapperProcess(temporaryDirectory, Arrays.asList(command));
+    result.startProcess();
+
+    return result;
+  }
+
+  //
+  // Constructor
+  //
+
+  private FakeMapperProcess(final File temporaryDirectory,
+      final List<String> command) throws IOException {
+
+    super("fake", new PathMapperExecutor(), temporaryDirectory, null, false);
+
+    this.command = command;
+  }
+
+}
@@ -0,0 +1,217 @@
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndexCache.CachedIndex;
+
+public class MapperIndexCacheTest {
+
+  private static final int ENTRY_SIZE = 800 * 1024;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSharedIndex() throws IOException {
+
+    final File archive1 = createArchive("index1.zip", (byte) 1);
+    final File archive2 = createArchive("index2.zip", (byte) 1);
+    final MapperIndexCache cache =
+        MapperIndexCache.getInstance(this.folder.newFolder("cache"), 0);
+
+    try (CachedIndex index1 = cache.acquire("bowtie", archive1);
+        CachedIndex index2 = cache.acquire("bowtie", archive2)) {
+
+      // Two copies of the same archive share the same index
+      assertEquals(index1.getIndexDirectory(), index2.getIndexDirectory());
+
+      final File f = new File(index1.getIndexDirectory(), "genome.idx");
+      assertTrue(f.isFile());
+      assertArrayEquals(createContent((byte) 1),
+          Files.readAllBytes(f.toPath()));
+    }
+
+    // A cached index is not unpacked again
+    final File marker;
+    try (CachedIndex index = cache.acquire("bowtie", archive1)) {
+      marker = new File(index.getIndexDirectory(), "marker");
+      assertTrue(marker.createNewFile());
+    }
+
+    try (CachedIndex index = cache.acquire("bowtie", archive1)) {
+      assertTrue(marker.exists());
+    }
+
+    // The key depends on the mapper
+    try (CachedIndex index1 = cache.acquire("bowtie", archive1);
+        CachedIndex index2 = cache.acquire("star", archive1)) {
+      assertNotEquals(index1.getIndexDirectory(), index2.getIndexDirectory());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+
+    final File archive1 = createArchive("index1.zip", (byte) 1);
+    final File archive2 = createArchive("index2.zip", (byte) 2);
+    final File archive3 = createArchive("index3.zip", (byte) 3);
+
+    // Only two indexes fit in the cache
+    final MapperIndexCache cache =
+        MapperIndexCache.getInstance(this.folder.newFolder("cache"), 2);
+
+    final File dir1 = acquire(cache, archive1);
+    final File dir2 = acquire(cache, archive2);
+
+    // The first index has been used again after the second one
+    assertEquals(dir1, acquire(cache, archive1));
+    setLastUse(dir2, 2);
+    setLastUse(dir1, 1);
+
+    // Only the least recently used index is removed
+    final File dir3 = acquire(cache, archive3);
+    assertEquals(set(dir1, dir3), indexDirectories(dir3));
+    assertFalse(dir2.exists());
+
+    try (CachedIndex index1 = cache.acquire("bowtie", archive1)) {
+
+      // An index in use cannot be removed, even if it is the least recently
+      // used index
+      setLastUse(dir1, 2);
+      setLastUse(dir3, 1);
+
+      final File newDir2 = acquire(cache, archive2);
+      assertEquals(dir2, newDir2);
+      assertEquals(set(dir1, dir2), indexDirectories(dir2));
+      assertTrue(index1.getIndexDirectory().isDirectory());
+      assertFalse(dir3.exists());
+    }
+  }
+
+  @Test
+  public void testConcurrentAcquire() throws Exception {
+
+    final File archive = createArchive("index.zip", (byte) 1);
+    final MapperIndexCache cache =
+        MapperIndexCache.getInstance(this.folder.newFolder("cache"), 0);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final List<Future<File>> futures = new ArrayList<>();
+
+    try {
+
+      for (int i = 0; i < 32; i++) {
+        futures.add(executor.submit(() -> {
+          try (CachedIndex index = cache.acquire("bowtie", archive)) {
+            return index.getIndexDirectory();
+          }
+        }));
+      }
+
+      final File dir = futures.get(0).get(60, TimeUnit.SECONDS);
+      for (Future<File> f : futures) {
+        assertEquals(dir, f.get(60, TimeUnit.SECONDS));
+      }
+
+      assertEquals(1, dir.getParentFile().listFiles(File::isDirectory).length);
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Acquire an index and release it immediately.
+   * @param cache the cache
+   * @param archive the archive of the index
+   * @return the directory of the index
+   */
+  private static File acquire(final MapperIndexCache cache,
+      final File archive) throws IOException {
+
+    try (CachedIndex index = cache.acquire("bowtie", archive)) {
+      assertTrue(index.getIndexDirectory().isDirectory());
+      return index.getIndexDirectory();
+    }
+  }
+
+  /**
+   * Set the time of the last usage of an index in the past.
+   * @param dir the directory of the index
+   * @param minutes number of minutes since the last usage
+   */
+  private static void setLastUse(final File dir, final int minutes) {
+
+    final File useFile = new File(dir.getParentFile(),
+        dir.getName() + MapperIndexCache.USE_EXTENSION);
+    assertTrue(useFile.setLastModified(
+        System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)));
+  }
+
+  /**
+   * Get the index directories of a cache.
+   * @param dir the directory of an index of the cache
+   * @return a set with the index directories
+   */
+  private static Set<File> indexDirectories(final File dir) {
+
+    return set(dir.getParentFile().listFiles(
+        f -> f.isDirectory() && !f.getName().endsWith(".tmp")));
+  }
+
+  private static Set<File> set(final File... files) {
+
+    return new HashSet<>(Arrays.asList(files));
+  }
+
+  private File createArchive(final String filename, final byte value)
+      throws IOException {
+
+    final File file = new File(this.folder.getRoot(), filename);
+
+    try (ZipOutputStream out =
+        new ZipOutputStream(new FileOutputStream(file))) {
+      out.putNextEntry(new ZipEntry("genome.idx"));
+      out.write(createContent(value));
+      out.closeEntry();
+    }
+
+    return file;
+  }
+
+  private static byte[] createContent(final byte value) {
+
+    final byte[] result = new byte[ENTRY_SIZE];
+    Arrays.fill(result, value);
+
+    return result;
+  }
+
+}
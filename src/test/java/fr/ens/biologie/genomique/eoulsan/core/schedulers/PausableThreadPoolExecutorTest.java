@@ -0,0 +1,148 @@
+package fr.ens.biologie.genomique.eoulsan.core.schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class PausableThreadPoolExecutorTest {
+
+  private static final int THREADS = 4;
+
+  /** Former delay between two checks of the free threads in milliseconds. */
+  private static final long FORMER_POLLING_DELAY = 1000;
+
+  @Test
+  public void testRequiredProcessors() throws Exception {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+    final AtomicInteger used = new AtomicInteger();
+    final AtomicInteger max = new AtomicInteger();
+
+    try {
+
+      final List<Future<Integer>> futures = new ArrayList<>();
+
+      for (int i = 0; i < 1000; i++) {
+
+        // Requirements greater than the number of threads are allowed
+        final int required = i % (THREADS + 1) + 1;
+        final int effective = Math.min(required, THREADS);
+
+        futures.add(executor.submit(() -> {
+
+          max.accumulateAndGet(used.addAndGet(effective), Math::max);
+          Thread.yield();
+          used.addAndGet(-effective);
+        }, i, required));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertTrue(max.get() <= THREADS);
+    assertEquals(0, used.get());
+  }
+
+  @Test
+  public void testPause() throws Exception {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    try {
+
+      executor.pause();
+      final Future<Boolean> future = executor.submit(() -> {
+      }, true, 1);
+
+      Thread.sleep(100);
+      assertFalse(future.isDone());
+
+      executor.resume();
+      assertTrue(future.get(10, TimeUnit.SECONDS));
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Run 10000 chained tasks, each task submitting the next one when it ends.
+   * The tasks require half of the threads, so they often wait for threads
+   * released by the other chains. The dispatch latency of a task is the delay
+   * between its submission and its start. Without event driven wake up, each
+   * wait costs a polling delay.
+   */
+  @Test
+  public void testChainedTasksDispatchLatency() throws Exception {
+
+    final int taskCount = 10000;
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+    final AtomicInteger remaining = new AtomicInteger(taskCount);
+    final CountDownLatch latch = new CountDownLatch(taskCount);
+    final AtomicLong totalLatency = new AtomicLong();
+    final AtomicLong maxLatency = new AtomicLong();
+
+    try {
+
+      for (int i = 0; i < THREADS; i++) {
+        submitNext(executor, remaining, latch, totalLatency, maxLatency);
+      }
+
+      assertTrue(latch.await(60, TimeUnit.SECONDS));
+
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertTrue(remaining.get() <= 0);
+
+    final long meanLatency =
+        TimeUnit.NANOSECONDS.toMicros(totalLatency.get() / taskCount);
+    final long worstLatency = TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+
+    assertTrue("Mean dispatch latency: " + meanLatency + " us",
+        meanLatency < 10000);
+    assertTrue("Max dispatch latency: " + worstLatency + " ms",
+        worstLatency < FORMER_POLLING_DELAY / 2);
+  }
+
+  private static void submitNext(final PausableThreadPoolExecutor executor,
+      final AtomicInteger remaining, final CountDownLatch latch,
+      final AtomicLong totalLatency, final AtomicLong maxLatency) {
+
+    if (remaining.getAndDecrement() <= 0) {
+      return;
+    }
+
+    final long submitTime = System.nanoTime();
+
+    executor.submit(() -> {
+
+      final long latency = System.nanoTime() - submitTime;
+      totalLatency.addAndGet(latency);
+      maxLatency.accumulateAndGet(latency, Math::max);
+
+      latch.countDown();
+      submitNext(executor, remaining, latch, totalLatency, maxLatency);
+    }, null, THREADS / 2);
+  }
+
+}
@@ -0,0 +1,214 @@
+package fr.ens.biologie.genomique.eoulsan.core.schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ResourceAwareTaskSchedulerTest {
+
+  private static final int PROCESSORS = 4;
+  private static final int MEMORY = 1000;
+
+  private ResourceAwareTaskScheduler scheduler;
+
+  /**
+   * This class count the resources used by the running tasks.
+   */
+  private static final class Usage {
+
+    private final AtomicInteger processors = new AtomicInteger();
+    private final AtomicInteger memory = new AtomicInteger();
+    private final AtomicInteger maxProcessors = new AtomicInteger();
+    private final AtomicInteger maxMemory = new AtomicInteger();
+
+    private void run(final int processors, final int memory) {
+
+      this.maxProcessors.accumulateAndGet(
+          this.processors.addAndGet(processors), Math::max);
+      this.maxMemory.accumulateAndGet(this.memory.addAndGet(memory),
+          Math::max);
+      Thread.yield();
+      this.processors.addAndGet(-processors);
+      this.memory.addAndGet(-memory);
+    }
+  }
+
+  @After
+  public void tearDown() {
+
+    if (this.scheduler != null) {
+      this.scheduler.stop();
+    }
+  }
+
+  @Test
+  public void testProcessorAdmission() throws InterruptedException {
+
+    final Usage usage = new Usage();
+    final int taskCount = 1000;
+    final CountDownLatch latch = new CountDownLatch(taskCount);
+
+    start(PROCESSORS, MEMORY);
+
+    for (int i = 0; i < taskCount; i++) {
+
+      final int processors = i % PROCESSORS + 1;
+      execute(() -> usage.run(processors, 0), processors, 0, i % 3, latch);
+    }
+
+    assertTrue(latch.await(60, TimeUnit.SECONDS));
+    assertTrue(usage.maxProcessors.get() <= PROCESSORS);
+    assertEquals(0, usage.processors.get());
+  }
+
+  @Test
+  public void testMemoryAdmission() throws InterruptedException {
+
+    final Usage usage = new Usage();
+    final int taskCount = 1000;
+    final CountDownLatch latch = new CountDownLatch(taskCount);
+
+    start(PROCESSORS, MEMORY);
+
+    for (int i = 0; i < taskCount; i++) {
+
+      // Only two of these tasks fit in memory at the same time
+      final int memory = 400 + i % 3 * 50;
+      execute(() -> usage.run(1, memory), 1, memory, 0, latch);
+    }
+
+    assertTrue(latch.await(60, TimeUnit.SECONDS));
+    assertTrue(usage.maxMemory.get() <= MEMORY);
+    assertTrue(usage.maxProcessors.get() <= 2);
+    assertEquals(0, usage.memory.get());
+  }
+
+  @Test(timeout = 60000)
+  public void testTaskLargerThanBudget() throws InterruptedException {
+
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch latch = new CountDownLatch(2);
+    final AtomicInteger started = new AtomicInteger();
+
+    start(PROCESSORS, MEMORY);
+
+    // The task is started with all the resources of the scheduler
+    execute(() -> {
+      running.countDown();
+      await(release);
+    }, PROCESSORS * 2, MEMORY * 2, 0, latch);
+
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+
+    // No other task can be started while the large task is running
+    execute(started::incrementAndGet, 1, 0, 0, latch);
+    Thread.sleep(100);
+    assertEquals(0, started.get());
+
+    release.countDown();
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertEquals(1, started.get());
+  }
+
+  @Test(timeout = 60000)
+  public void testReleaseOnCompletion() throws InterruptedException {
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch latch = new CountDownLatch(3);
+    final AtomicInteger started = new AtomicInteger();
+
+    start(2, MEMORY);
+
+    execute(() -> await(release), 1, MEMORY / 2, 0, latch);
+    execute(() -> await(release), 1, MEMORY / 2, 0, latch);
+
+    // The first tasks use all the resources
+    execute(started::incrementAndGet, 1, 1, 0, latch);
+    Thread.sleep(100);
+    assertEquals(0, started.get());
+
+    // The resources of the first tasks are released when they end
+    release.countDown();
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertEquals(1, started.get());
+  }
+
+  @Test(timeout = 60000)
+  public void testReleaseOnFailure() throws InterruptedException {
+
+    final int taskCount = 10;
+    final CountDownLatch latch = new CountDownLatch(taskCount);
+
+    start(1, MEMORY);
+
+    // Each task requires all the resources, the next task can only be started
+    // if the resources of the failed task have been released
+    for (int i = 0; i < taskCount; i++) {
+      this.scheduler.execute(() -> {
+        latch.countDown();
+        throw new IllegalStateException("Task failure");
+      }, 1, MEMORY, 0);
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 60000)
+  public void testPriority() throws InterruptedException {
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch latch = new CountDownLatch(3);
+    final StringBuffer order = new StringBuffer();
+
+    start(1, MEMORY);
+
+    execute(() -> await(release), 1, 0, 0, latch);
+
+    // The task with the lower priority is started first
+    execute(() -> order.append('b'), 1, 0, 2, latch);
+    execute(() -> order.append('a'), 1, 0, 1, latch);
+
+    release.countDown();
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertEquals("ab", order.toString());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private void start(final int processors, final int memory) {
+
+    this.scheduler = new ResourceAwareTaskScheduler(processors, memory);
+    this.scheduler.start();
+  }
+
+  private void execute(final Runnable runnable, final int processors,
+      final int memory, final int priority, final CountDownLatch latch) {
+
+    this.scheduler.execute(() -> {
+      try {
+        runnable.run();
+      } finally {
+        latch.countDown();
+      }
+    }, processors, memory, priority);
+  }
+
+  private static void await(final CountDownLatch latch) {
+
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
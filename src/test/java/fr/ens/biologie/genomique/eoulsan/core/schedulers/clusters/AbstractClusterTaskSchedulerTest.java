@@ -0,0 +1,96 @@
+package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
+
+import static fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.AbstractClusterTaskScheduler.MAX_UNKNOWN_WORKER_STATUS;
+import static fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.AbstractClusterTaskScheduler.getExitedWorkerJobs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler.StatusResult;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler.StatusValue;
+
+public class AbstractClusterTaskSchedulerTest {
+
+  private static final List<String> WORKER_JOBS =
+      Arrays.asList("1", "2", "3", "4", "5", "6");
+
+  @Test
+  public void testExitedWorkerJobs() {
+
+    final Map<String, Integer> counts = new HashMap<>();
+    final Map<String, StatusResult> statuses = new HashMap<>();
+    statuses.put("1", new StatusResult(StatusValue.RUNNING));
+    statuses.put("2", new StatusResult(StatusValue.WAITING));
+    statuses.put("3", new StatusResult(StatusValue.COMPLETE, 0));
+    statuses.put("4", new StatusResult(StatusValue.COMPLETE, 137));
+    statuses.put("5", new StatusResult(StatusValue.UNKNOWN));
+    statuses.put("6", null);
+
+    // The complete jobs have exited
+    assertEquals(Arrays.asList("3", "4"),
+        getExitedWorkerJobs(WORKER_JOBS, statuses, counts));
+
+    // The jobs with an unknown status have exited after several updates
+    for (int i = 1; i < MAX_UNKNOWN_WORKER_STATUS - 1; i++) {
+      assertTrue(getExitedWorkerJobs(Arrays.asList("1", "2", "5", "6"),
+          statuses, counts).isEmpty());
+    }
+    assertEquals(Arrays.asList("5", "6"), getExitedWorkerJobs(
+        Arrays.asList("1", "2", "5", "6"), statuses, counts));
+    assertTrue(counts.isEmpty());
+  }
+
+  @Test
+  public void testMissingWorkerJobs() {
+
+    final Map<String, Integer> counts = new HashMap<>();
+    final Map<String, StatusResult> statuses = new HashMap<>();
+    statuses.put("1", new StatusResult(StatusValue.RUNNING));
+
+    // The workers missing from the status results have exited after several
+    // updates
+    for (int i = 1; i < MAX_UNKNOWN_WORKER_STATUS; i++) {
+      assertTrue(getExitedWorkerJobs(WORKER_JOBS, statuses, counts).isEmpty());
+    }
+    assertEquals(WORKER_JOBS.subList(1, WORKER_JOBS.size()),
+        getExitedWorkerJobs(WORKER_JOBS, statuses, counts));
+
+    // Without status results, all the workers have exited
+    for (int i = 1; i < MAX_UNKNOWN_WORKER_STATUS; i++) {
+      assertTrue(getExitedWorkerJobs(WORKER_JOBS,
+          Collections.<String, StatusResult> emptyMap(), counts).isEmpty());
+    }
+    assertEquals(WORKER_JOBS, getExitedWorkerJobs(WORKER_JOBS,
+        Collections.<String, StatusResult> emptyMap(), counts));
+  }
+
+  @Test
+  public void testTransientUnknownStatus() {
+
+    final Map<String, Integer> counts = new HashMap<>();
+    final List<String> workerJobs = Collections.singletonList("1");
+    final Map<String, StatusResult> running =
+        Collections.singletonMap("1", new StatusResult(StatusValue.RUNNING));
+    final Map<String, StatusResult> unknown =
+        Collections.singletonMap("1", new StatusResult(StatusValue.UNKNOWN));
+
+    // A known status resets the count of unknown statuses
+    for (int i = 0; i < 10; i++) {
+
+      for (int j = 1; j < MAX_UNKNOWN_WORKER_STATUS; j++) {
+        assertTrue(getExitedWorkerJobs(workerJobs, unknown, counts).isEmpty());
+      }
+      assertTrue(getExitedWorkerJobs(workerJobs, running, counts).isEmpty());
+    }
+
+    assertTrue(counts.isEmpty());
+  }
+
+}
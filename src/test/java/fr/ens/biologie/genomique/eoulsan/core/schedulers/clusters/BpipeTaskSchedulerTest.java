@@ -0,0 +1,209 @@
+package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler.StatusResult;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler.StatusValue;
+
+public class BpipeTaskSchedulerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Fake scheduler that use a shell script as Bpipe command wrapper.
+   */
+  private static final class FakeTaskScheduler extends BpipeTaskScheduler {
+
+    private final File wrapper;
+
+    @Override
+    public String getSchedulerName() {
+      return "fake";
+    }
+
+    @Override
+    protected File getBpipeCommandWrapper() {
+      return this.wrapper;
+    }
+
+    FakeTaskScheduler(final File wrapper) {
+      this.wrapper = wrapper;
+    }
+  }
+
+  /**
+   * Create a fake Bpipe command wrapper. Each call to the wrapper is logged in
+   * a file.
+   * @param statusAll true if the wrapper support the statusall command
+   * @return the wrapper file
+   * @throws IOException if an error occurs while creating the wrapper
+   */
+  private File createWrapper(final boolean statusAll) throws IOException {
+
+    final File wrapper = this.folder.newFile("bpipe-fake.sh");
+    final File calls = new File(this.folder.getRoot(), "calls.txt");
+
+    try (PrintWriter out = new PrintWriter(wrapper)) {
+
+      out.println("#!/bin/bash");
+      out.println("echo \"$1\" >> " + calls.getAbsolutePath());
+      out.println("job_status () {");
+      out.println("   case \"$1\" in");
+      out.println("      1) echo RUNNING;;");
+      out.println("      2) echo COMPLETE 0;;");
+      out.println("      3) echo COMPLETE 2;;");
+      out.println("      4) echo WAITING;;");
+      out.println("      6) echo COMPLETE 3;;");
+      out.println("      *) echo UNKNOWN;;");
+      out.println("   esac");
+      out.println("}");
+      out.println("case \"$1\" in");
+      out.println("   status) job_status \"$2\";;");
+      if (statusAll) {
+        out.println("   statusall) while read id; do");
+        out.println("      if [[ $id == 6 ]]; then");
+        out.println("         echo \"$id COMPLETE\"");
+        out.println("      elif [[ $id != 5 ]]; then");
+        out.println("         echo \"$id $(job_status $id)\"");
+        out.println("      fi");
+        out.println("   done;;");
+      }
+      out.println("   *) exit 1;;");
+      out.println("esac");
+    }
+
+    assertTrue(wrapper.setExecutable(true));
+
+    return wrapper;
+  }
+
+  private List<String> getCalls() throws IOException {
+
+    return Files.readAllLines(new File(this.folder.getRoot(), "calls.txt")
+        .toPath(), StandardCharsets.UTF_8);
+  }
+
+  private static void assertStatus(final StatusValue value, final int exitCode,
+      final StatusResult status) {
+
+    assertEquals(value, status.getStatusValue());
+    assertEquals(exitCode, status.getExitCode());
+  }
+
+  @Test
+  public void testStatusJobs() throws IOException {
+
+    final BpipeTaskScheduler scheduler =
+        new FakeTaskScheduler(createWrapper(true));
+
+    final Map<String, StatusResult> result =
+        scheduler.statusJobs(Arrays.asList("1", "2", "3", "4", "5"));
+
+    assertEquals(5, result.size());
+    assertStatus(StatusValue.RUNNING, 0, result.get("1"));
+    assertStatus(StatusValue.COMPLETE, 0, result.get("2"));
+    assertStatus(StatusValue.COMPLETE, 2, result.get("3"));
+    assertStatus(StatusValue.WAITING, 0, result.get("4"));
+    assertStatus(StatusValue.UNKNOWN, 0, result.get("5"));
+
+    // The status of all the jobs must be obtained with a single call
+    assertEquals(Arrays.asList("statusall"), getCalls());
+  }
+
+  @Test
+  public void testStatusJobsUnsupported() throws IOException {
+
+    final BpipeTaskScheduler scheduler =
+        new FakeTaskScheduler(createWrapper(false));
+
+    Map<String, StatusResult> result =
+        scheduler.statusJobs(Arrays.asList("1", "2", "3"));
+
+    assertEquals(3, result.size());
+    assertStatus(StatusValue.RUNNING, 0, result.get("1"));
+    assertStatus(StatusValue.COMPLETE, 0, result.get("2"));
+    assertStatus(StatusValue.COMPLETE, 2, result.get("3"));
+    assertEquals(Arrays.asList("statusall", "status", "status", "status"),
+        getCalls());
+
+    // The statusall command must not be called another time
+    result = scheduler.statusJobs(Arrays.asList("4"));
+    assertStatus(StatusValue.WAITING, 0, result.get("4"));
+    assertEquals(
+        Arrays.asList("statusall", "status", "status", "status", "status"),
+        getCalls());
+  }
+
+  @Test
+  public void testManyJobs() throws IOException {
+
+    final BpipeTaskScheduler scheduler =
+        new FakeTaskScheduler(createWrapper(true));
+
+    final String[] jobIds = new String[20000];
+    for (int i = 0; i < jobIds.length; i++) {
+      jobIds[i] = "" + (i % 4 + 1);
+    }
+
+    final Map<String, StatusResult> result =
+        scheduler.statusJobs(Arrays.asList(jobIds));
+
+    assertEquals(4, result.size());
+    assertEquals(1, getCalls().size());
+  }
+
+  @Test
+  public void testInvalidStatusLine() throws IOException {
+
+    final BpipeTaskScheduler scheduler =
+        new FakeTaskScheduler(createWrapper(true));
+
+    final Map<String, StatusResult> result =
+        scheduler.statusJobs(Arrays.asList("1", "6", "4"));
+
+    // Only the job with an invalid status is queried again
+    assertEquals(3, result.size());
+    assertStatus(StatusValue.RUNNING, 0, result.get("1"));
+    assertStatus(StatusValue.COMPLETE, 3, result.get("6"));
+    assertStatus(StatusValue.WAITING, 0, result.get("4"));
+    assertEquals(Arrays.asList("statusall", "status"), getCalls());
+  }
+
+  @Test
+  public void testInvalidStatus() throws IOException {
+
+    final File wrapper = this.folder.newFile("bpipe-invalid.sh");
+    try (PrintWriter out = new PrintWriter(wrapper)) {
+      out.println("#!/bin/bash");
+      out.println("case \"$1\" in");
+      out.println("   status) echo FOO;;");
+      out.println("   statusall) while read id; do echo \"$id FOO\"; done;;");
+      out.println("esac");
+    }
+    assertTrue(wrapper.setExecutable(true));
+
+    // The invalid status of a job does not fail the other jobs
+    final Map<String, StatusResult> result =
+        new FakeTaskScheduler(wrapper).statusJobs(Arrays.asList("1", "2"));
+
+    assertEquals(2, result.size());
+    assertStatus(StatusValue.UNKNOWN, 0, result.get("1"));
+    assertStatus(StatusValue.UNKNOWN, 0, result.get("2"));
+  }
+
+}
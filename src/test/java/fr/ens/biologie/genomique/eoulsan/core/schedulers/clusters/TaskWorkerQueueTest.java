@@ -0,0 +1,147 @@
+package fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.TaskWorkerQueue.TaskState;
+import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.TaskWorkerQueue.TaskStatus;
+
+public class TaskWorkerQueueTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testTaskStates() throws IOException {
+
+    final TaskWorkerQueue queue = new TaskWorkerQueue(this.folder.getRoot());
+    final File contextFile = new File(this.folder.getRoot(), "t1.ctx");
+
+    queue.enqueue("t1", contextFile);
+    queue.enqueue("t2", contextFile);
+    queue.enqueue("t3", contextFile);
+
+    Map<String, TaskStatus> statuses = queue.getTaskStatuses();
+    assertEquals(3, statuses.size());
+    assertEquals(TaskState.WAITING, statuses.get("t1").getState());
+
+    final String t1 = queue.claim(7);
+    final String t2 = queue.claim(8);
+    assertTrue(t1 != null && t2 != null && !t1.equals(t2));
+    assertEquals(contextFile.getAbsoluteFile(),
+        queue.getTaskContextFile(t1, 7));
+
+    statuses = queue.getTaskStatuses();
+    assertEquals(TaskState.RUNNING, statuses.get(t1).getState());
+    assertEquals(7, statuses.get(t1).getWorkerId());
+    assertEquals(8, statuses.get(t2).getWorkerId());
+
+    queue.done(t1, 7);
+    queue.failed(t2, 8, "Error message");
+
+    statuses = queue.getTaskStatuses();
+    assertEquals(TaskState.DONE, statuses.get(t1).getState());
+    assertEquals(TaskState.FAILED, statuses.get(t2).getState());
+    assertEquals("Error message", queue.getFailureMessage(t2));
+
+    queue.remove(t1);
+    queue.remove(t2);
+    assertEquals(1, queue.getTaskStatuses().size());
+
+    // Cancel the last waiting task
+    assertTrue(queue.cancel("t3"));
+    assertFalse(queue.cancel("t3"));
+    assertTrue(queue.getTaskStatuses().isEmpty());
+    assertNull(queue.claim(7));
+  }
+
+  @Test
+  public void testConcurrentClaims() throws Exception {
+
+    final TaskWorkerQueue queue = new TaskWorkerQueue(this.folder.getRoot());
+    final int taskCount = 500;
+    final int workerCount = 8;
+
+    for (int i = 0; i < taskCount; i++) {
+      queue.enqueue("task" + i, new File("task" + i + ".ctx"));
+    }
+
+    final Set<String> claimed = ConcurrentHashMap.newKeySet();
+    final ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+    final List<Future<Integer>> futures = new ArrayList<>();
+
+    try {
+
+      for (int i = 0; i < workerCount; i++) {
+
+        final int workerId = i;
+        futures.add(executor.submit(() -> {
+
+          int count = 0;
+          String taskName;
+          while ((taskName = queue.claim(workerId)) != null) {
+
+            // A task must be claimed only once
+            assertTrue(claimed.add(taskName));
+            queue.done(taskName, workerId);
+            count++;
+          }
+          return count;
+        }));
+      }
+
+      int count = 0;
+      for (Future<Integer> f : futures) {
+        count += f.get(60, TimeUnit.SECONDS);
+      }
+      assertEquals(taskCount, count);
+
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final Map<String, TaskStatus> statuses = queue.getTaskStatuses();
+    assertEquals(taskCount, statuses.size());
+    for (TaskStatus status : statuses.values()) {
+      assertEquals(TaskState.DONE, status.getState());
+    }
+  }
+
+  @Test
+  public void testStopWorkers() throws IOException {
+
+    final TaskWorkerQueue queue = new TaskWorkerQueue(this.folder.getRoot());
+
+    assertFalse(queue.isStopped());
+    queue.stopWorkers();
+    assertTrue(queue.isStopped());
+
+    // The stop file is not a task
+    assertTrue(queue.getTaskStatuses().isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingDirectory() throws IOException {
+
+    new TaskWorkerQueue(new File(this.folder.getRoot(), "missing"));
+  }
+
+}
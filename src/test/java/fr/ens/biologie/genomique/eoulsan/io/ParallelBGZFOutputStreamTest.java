@@ -0,0 +1,208 @@
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class ParallelBGZFOutputStreamTest {
+
+  @Test
+  public void testCompression() throws IOException {
+
+    for (int threads : new int[] {1, 2, 4}) {
+      for (int level : new int[] {0, 1, 5, 9}) {
+        testCompression(createData(3000000, false), threads, level);
+      }
+
+      // Random data cannot be compressed
+      testCompression(createData(300000, true), threads, 9);
+    }
+  }
+
+  @Test
+  public void testEmptyData() throws IOException {
+
+    final byte[] compressed = compress(new byte[0], 2, 5);
+
+    assertEquals(28, compressed.length);
+    assertEquals(1, checkBlocks(compressed));
+    assertEquals(0, uncompress(compressed).length);
+  }
+
+  @Test
+  public void testSingleByteWrite() throws IOException {
+
+    final byte[] data = createData(200000, false);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream os = new ParallelBGZFOutputStream(baos, 3)) {
+      for (byte b : data) {
+        os.write(b);
+      }
+    }
+
+    assertArrayEquals(data, uncompress(baos.toByteArray()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws IOException {
+
+    final OutputStream os =
+        new ParallelBGZFOutputStream(new ByteArrayOutputStream(), 1);
+    os.close();
+    os.write(0);
+  }
+
+  @Test
+  public void testCloseWithWriteError() throws IOException {
+
+    final boolean[] closed = new boolean[1];
+    final OutputStream failing = new OutputStream() {
+
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("Write error");
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len)
+          throws IOException {
+        throw new IOException("Write error");
+      }
+
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+        throw new IOException("Close error");
+      }
+    };
+
+    final OutputStream os = new ParallelBGZFOutputStream(failing, 2);
+    os.write(createData(1000, false));
+
+    try {
+      os.close();
+      fail();
+    } catch (IOException e) {
+
+      // The write error is not hidden by the close error
+      assertEquals("Write error", e.getMessage());
+      assertEquals(1, e.getSuppressed().length);
+    }
+
+    assertTrue(closed[0]);
+  }
+
+  private static void testCompression(final byte[] data, final int threads,
+      final int level) throws IOException {
+
+    final byte[] compressed = compress(data, threads, level);
+
+    // Data blocks and end of file block
+    final int blockSize = ParallelBGZFOutputStream.BLOCK_SIZE;
+    assertEquals((data.length + blockSize - 1) / blockSize + 1,
+        checkBlocks(compressed));
+    assertArrayEquals(data, uncompress(compressed));
+  }
+
+  /**
+   * Check the size of the BGZF blocks.
+   * @param data compressed data
+   * @return the number of blocks
+   */
+  private static int checkBlocks(final byte[] data) {
+
+    int pos = 0;
+    int count = 0;
+
+    while (pos < data.length) {
+
+      assertEquals(0x1f, data[pos] & 0xff);
+      assertEquals(0x8b, data[pos + 1] & 0xff);
+      assertEquals(4, data[pos + 3]);
+      assertEquals('B', data[pos + 12]);
+      assertEquals('C', data[pos + 13]);
+
+      final int blockLength =
+          (data[pos + 16] & 0xff) + ((data[pos + 17] & 0xff) << 8) + 1;
+      assertTrue(blockLength <= 0x10000);
+
+      pos += blockLength;
+      count++;
+    }
+
+    assertEquals(data.length, pos);
+
+    return count;
+  }
+
+  private static byte[] createData(final int length, final boolean random) {
+
+    final Random r = new Random(0);
+    final byte[] result = new byte[length];
+
+    if (random) {
+      r.nextBytes(result);
+      return result;
+    }
+
+    final byte[] alphabet = "ACGTN\n".getBytes();
+
+    for (int i = 0; i < length; i++) {
+      result[i] = alphabet[r.nextInt(alphabet.length)];
+    }
+
+    return result;
+  }
+
+  private static byte[] compress(final byte[] data, final int threads,
+      final int level) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream os =
+        new ParallelBGZFOutputStream(baos, threads, level)) {
+
+      // Write the data in chunks of various sizes
+      int offset = 0;
+      int chunk = 1;
+      while (offset < data.length) {
+        final int len = Math.min(chunk, data.length - offset);
+        os.write(data, offset, len);
+        offset += len;
+        chunk = chunk * 3 % 100003 + 1;
+      }
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] uncompress(final byte[] data) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (InputStream is =
+        new GZIPInputStream(new ByteArrayInputStream(data))) {
+
+      final byte[] buffer = new byte[4096];
+      int n;
+      while ((n = is.read(buffer)) != -1) {
+        baos.write(buffer, 0, n);
+      }
+    }
+
+    return baos.toByteArray();
+  }
+
+}
@@ -0,0 +1,163 @@
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class ParallelGZIPOutputStreamTest {
+
+  @Test
+  public void testCompression() throws IOException {
+
+    final byte[] data = createData(1000000);
+
+    for (int threads : new int[] {1, 2, 4}) {
+      for (int blockSize : new int[] {1, 1000, 65536, 2000000}) {
+        testCompression(data, threads, blockSize);
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyData() throws IOException {
+
+    final byte[] compressed = compress(new byte[0], 2, 1000);
+
+    assertTrue(compressed.length > 0);
+    assertEquals(0, uncompress(compressed).length);
+  }
+
+  @Test
+  public void testSingleByteWrite() throws IOException {
+
+    final byte[] data = createData(10000);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream os = new ParallelGZIPOutputStream(baos, 3, 100)) {
+      for (byte b : data) {
+        os.write(b);
+      }
+    }
+
+    assertArrayEquals(data, uncompress(baos.toByteArray()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws IOException {
+
+    final OutputStream os =
+        new ParallelGZIPOutputStream(new ByteArrayOutputStream(), 1);
+    os.close();
+    os.write(0);
+  }
+
+  @Test
+  public void testCloseWithWriteError() throws IOException {
+
+    final boolean[] closed = new boolean[1];
+    final OutputStream failing = new OutputStream() {
+
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("Write error");
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len)
+          throws IOException {
+        throw new IOException("Write error");
+      }
+
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+        throw new IOException("Close error");
+      }
+    };
+
+    final OutputStream os = new ParallelGZIPOutputStream(failing, 2);
+    os.write(createData(1000));
+
+    try {
+      os.close();
+      fail();
+    } catch (IOException e) {
+
+      // The write error is not hidden by the close error
+      assertEquals("Write error", e.getMessage());
+      assertEquals(1, e.getSuppressed().length);
+    }
+
+    assertTrue(closed[0]);
+  }
+
+  private static void testCompression(final byte[] data, final int threads,
+      final int blockSize) throws IOException {
+
+    assertArrayEquals(data, uncompress(compress(data, threads, blockSize)));
+  }
+
+  private static byte[] createData(final int length) {
+
+    final Random random = new Random(0);
+    final byte[] result = new byte[length];
+    final byte[] alphabet = "ACGTN\n".getBytes();
+
+    for (int i = 0; i < length; i++) {
+      result[i] = alphabet[random.nextInt(alphabet.length)];
+    }
+
+    return result;
+  }
+
+  private static byte[] compress(final byte[] data, final int threads,
+      final int blockSize) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream os =
+        new ParallelGZIPOutputStream(baos, threads, blockSize)) {
+
+      // Write the data in chunks of various sizes
+      int offset = 0;
+      int chunk = 1;
+      while (offset < data.length) {
+        final int len = Math.min(chunk, data.length - offset);
+        os.write(data, offset, len);
+        offset += len;
+        chunk = chunk * 3 % 100003 + 1;
+      }
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] uncompress(final byte[] data) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (InputStream is =
+        new GZIPInputStream(new ByteArrayInputStream(data))) {
+
+      final byte[] buffer = new byte[4096];
+      int n;
+      while ((n = is.read(buffer)) != -1) {
+        baos.write(buffer, 0, n);
+      }
+    }
+
+    return baos.toByteArray();
+  }
+
+}
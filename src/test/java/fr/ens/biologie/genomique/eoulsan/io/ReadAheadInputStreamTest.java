@@ -0,0 +1,151 @@
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+  @Test
+  public void testRead() throws IOException {
+
+    final byte[] data = createData(100000);
+
+    for (int bufferCount : new int[] {1, 2, 4}) {
+      for (int bufferSize : new int[] {1, 1000, 200000}) {
+
+        try (ReadAheadInputStream is = new ReadAheadInputStream(
+            new ByteArrayInputStream(data), bufferCount, bufferSize)) {
+
+          assertArrayEquals(data, readAll(is));
+          assertEquals(data.length, is.getBytesRead());
+          assertTrue(is.getStallTime() >= 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSingleByteRead() throws IOException {
+
+    final byte[] data = createData(5000);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (InputStream is =
+        new ReadAheadInputStream(new ByteArrayInputStream(data), 3, 100)) {
+
+      int b;
+      while ((b = is.read()) != -1) {
+        baos.write(b);
+      }
+    }
+
+    assertArrayEquals(data, baos.toByteArray());
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+
+    try (InputStream is =
+        new ReadAheadInputStream(new ByteArrayInputStream(new byte[0]))) {
+
+      assertEquals(-1, is.read());
+      assertEquals(-1, is.read(new byte[10], 0, 10));
+    }
+  }
+
+  @Test
+  public void testGZipStream() throws IOException {
+
+    final byte[] data = createData(300000);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream os = new GZIPOutputStream(baos)) {
+      os.write(data);
+    }
+
+    try (InputStream is = CompressionType.createReadAheadInputStream(
+        new ByteArrayInputStream(baos.toByteArray()), CompressionType.GZIP,
+        4096)) {
+
+      assertArrayEquals(data, readAll(is));
+    }
+  }
+
+  @Test
+  public void testException() throws IOException {
+
+    final InputStream source = new InputStream() {
+
+      private int count;
+
+      @Override
+      public int read() throws IOException {
+
+        if (++this.count > 1000) {
+          throw new IOException("Read error");
+        }
+        return 0;
+      }
+    };
+
+    try (InputStream is = new ReadAheadInputStream(source, 2, 100)) {
+      readAll(is);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Read error", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseBeforeEnd() throws IOException {
+
+    final byte[] data = createData(100000);
+
+    final InputStream is =
+        new ReadAheadInputStream(new ByteArrayInputStream(data), 2, 100);
+    assertEquals(data[0] & 0xff, is.read());
+    is.close();
+
+    try {
+      is.read();
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+  }
+
+  private static byte[] createData(final int length) {
+
+    final Random random = new Random(0);
+    final byte[] result = new byte[length];
+    random.nextBytes(result);
+
+    return result;
+  }
+
+  private static byte[] readAll(final InputStream is) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[777];
+
+    int n;
+    while ((n = is.read(buffer, 0, buffer.length)) != -1) {
+      baos.write(buffer, 0, n);
+    }
+
+    return baos.toByteArray();
+  }
+
+}
@@ -0,0 +1,155 @@
+package fr.ens.biologie.genomique.eoulsan.io.comparators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MultisetDigestTest {
+
+  private final MessageDigest md = MultisetDigest.newMessageDigest();
+
+  @Test
+  public void testOrderIndependence() {
+
+    final MultisetDigest d1 = digest("a", "b", "c", "d");
+    final MultisetDigest d2 = digest("d", "c", "a", "b");
+
+    assertEquals(4, d1.getCount());
+    assertNull(d1.differingBuckets(d2));
+    assertNull(d2.differingBuckets(d1));
+  }
+
+  @Test
+  public void testMultiplicity() {
+
+    // The xor of a duplicated record is null, but not its sum
+    final MultisetDigest d1 = digest("a", "b");
+    final MultisetDigest d2 = digest("a", "b", "c", "c");
+    final MultisetDigest d3 = digest("a", "a", "b");
+
+    final boolean[] buckets = d1.differingBuckets(d2);
+    assertNotNull(buckets);
+    assertTrue(buckets[MultisetDigest.hash(this.md, "c").getBucket()]);
+    assertNotNull(d1.differingBuckets(d3));
+  }
+
+  @Test
+  public void testDifferentRecords() {
+
+    final MultisetDigest d1 = digest("a", "b", "c");
+    final MultisetDigest d2 = digest("a", "b", "e");
+
+    final boolean[] buckets = d1.differingBuckets(d2);
+    assertNotNull(buckets);
+    assertTrue(buckets[MultisetDigest.hash(this.md, "c").getBucket()]);
+    assertTrue(buckets[MultisetDigest.hash(this.md, "e").getBucket()]);
+
+    int count = 0;
+    for (boolean b : buckets) {
+      if (b) {
+        count++;
+      }
+    }
+    assertTrue(count <= 2);
+  }
+
+  @Test
+  public void testMerge() {
+
+    final MultisetDigest d1 = digest("a", "b");
+    d1.merge(digest("c", "d", "e"));
+
+    assertEquals(5, d1.getCount());
+    assertNull(d1.differingBuckets(digest("e", "d", "c", "b", "a")));
+
+    d1.merge(new MultisetDigest());
+    assertNull(d1.differingBuckets(digest("e", "d", "c", "b", "a")));
+  }
+
+  @Test
+  public void testRecordHash() {
+
+    assertEquals(MultisetDigest.hash(this.md, "a"),
+        MultisetDigest.hash(this.md, "a"));
+    assertFalse(MultisetDigest.hash(this.md, "a")
+        .equals(MultisetDigest.hash(this.md, "b")));
+  }
+
+  @Test
+  public void testLimitedDifferingBuckets() {
+
+    final int count = 10000;
+    final String[] recordsA = new String[count];
+    final String[] recordsB = new String[count];
+    final int[] bucketCounts = new int[MultisetDigest.BUCKET_COUNT];
+
+    for (int i = 0; i < count; i++) {
+      recordsA[i] = "a" + i;
+      recordsB[i] = "b" + i;
+      bucketCounts[MultisetDigest.hash(this.md, recordsA[i]).getBucket()]++;
+    }
+
+    final MultisetDigest d1 = digest(recordsA);
+    final MultisetDigest d2 = digest(recordsB);
+
+    // All the buckets differ
+    final boolean[] all = d1.differingBuckets(d2);
+    assertEquals(MultisetDigest.BUCKET_COUNT, countBuckets(all));
+    assertTrue(
+        Arrays.equals(all, d1.differingBuckets(d2, Long.MAX_VALUE)));
+
+    // The first differing bucket is always selected
+    final boolean[] first = d1.differingBuckets(d2, 0);
+    assertEquals(1, countBuckets(first));
+    assertTrue(first[0]);
+
+    // The records of the selected buckets do not exceed the limit
+    final int maxRecords = count / 10;
+    final boolean[] limited = d1.differingBuckets(d2, maxRecords);
+    int records = 0;
+    for (int i = 0; i < limited.length; i++) {
+      if (limited[i]) {
+        records += bucketCounts[i];
+      }
+    }
+    assertTrue(countBuckets(limited) > 1);
+    assertTrue(records <= maxRecords);
+
+    assertNull(d1.differingBuckets(digest(recordsA), 0));
+  }
+
+  //
+  // Utility methods
+  //
+
+  private MultisetDigest digest(final String... records) {
+
+    final MultisetDigest result = new MultisetDigest();
+
+    for (String r : records) {
+      result.add(MultisetDigest.hash(this.md, r));
+    }
+
+    return result;
+  }
+
+  private static int countBuckets(final boolean[] buckets) {
+
+    int result = 0;
+    for (boolean b : buckets) {
+      if (b) {
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+}
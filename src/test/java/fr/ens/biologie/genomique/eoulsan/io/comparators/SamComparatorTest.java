@@ -35,6 +35,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -119,6 +122,41 @@ public class SamComparatorTest {
     }
   }
 
+  @Test
+  public void testExactComparison() throws Exception {
+
+    final SAMComparator comparator = new SAMComparator(false, "PG");
+    comparator.setExactComparison(true);
+
+    assertTrue("files are same without tag header @PG",
+        comparator.compareFiles(this.fileA, this.fileB));
+
+    // The order of the records does not matter
+    final File shuffled = new File(this.dir, "shuffled.sam");
+    final List<String> lines = Files.readAllLines(this.fileA.toPath());
+    Collections.reverse(lines);
+    Files.write(shuffled.toPath(), lines);
+
+    try {
+      assertTrue("files are same in a different order",
+          comparator.compareFiles(this.fileA, shuffled));
+
+      // A duplicated record is a difference
+      lines.add(lines.get(0));
+      Files.write(shuffled.toPath(), lines);
+      assertFalse("files are different: duplicate SAM line",
+          comparator.compareFiles(this.fileA, shuffled));
+      assertTrue(comparator.getCauseFailComparison() != null);
+    } finally {
+      shuffled.delete();
+    }
+
+    final SAMComparator comparator2 = new SAMComparator(false);
+    comparator2.setExactComparison(true);
+    assertFalse("files are different with all tag header",
+        comparator2.compareFiles(this.fileA, this.fileB));
+  }
+
   private void modifyFile(final int typeModification) throws IOException {
     this.fileC = new File(this.dir, "modify.sam");
 
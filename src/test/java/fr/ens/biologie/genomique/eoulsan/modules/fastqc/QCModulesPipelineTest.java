@@ -0,0 +1,323 @@
+package fr.ens.biologie.genomique.eoulsan.modules.fastqc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.swing.JPanel;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import uk.ac.babraham.FastQC.Modules.AbstractQCModule;
+import uk.ac.babraham.FastQC.Modules.AdapterContent;
+import uk.ac.babraham.FastQC.Modules.BasicStats;
+import uk.ac.babraham.FastQC.Modules.KmerContent;
+import uk.ac.babraham.FastQC.Modules.NContent;
+import uk.ac.babraham.FastQC.Modules.OverRepresentedSeqs;
+import uk.ac.babraham.FastQC.Modules.PerBaseQualityScores;
+import uk.ac.babraham.FastQC.Modules.PerBaseSequenceContent;
+import uk.ac.babraham.FastQC.Modules.PerSequenceGCContent;
+import uk.ac.babraham.FastQC.Modules.PerSequenceQualityScores;
+import uk.ac.babraham.FastQC.Modules.PerTileQualityScores;
+import uk.ac.babraham.FastQC.Modules.QCModule;
+import uk.ac.babraham.FastQC.Modules.SequenceLengthDistribution;
+import uk.ac.babraham.FastQC.Report.HTMLReportArchive;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
+public class QCModulesPipelineTest {
+
+  private static final int READ_COUNT = 2000;
+  private static final int BATCH_SIZE = 7;
+  private static final int[] THREAD_COUNTS = {1, 2, 3, 5, 16};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DataFile inFile;
+
+  /**
+   * This class define the modules of a FastQC report.
+   */
+  private static final class ReportModules {
+
+    private final List<AbstractQCModule> all;
+    private final List<AbstractQCModule> sampled;
+
+    private ReportModules() {
+
+      final OverRepresentedSeqs os = new OverRepresentedSeqs();
+      final PerBaseSequenceContent pbsc = new PerBaseSequenceContent();
+      final PerSequenceGCContent psgc = new PerSequenceGCContent();
+      final AdapterContent ac = new AdapterContent();
+
+      // Same modules as in FastQCModule
+      this.all = Arrays.asList(new BasicStats(), new PerBaseQualityScores(),
+          new PerTileQualityScores(), new PerSequenceQualityScores(), pbsc,
+          psgc, new NContent(), new SequenceLengthDistribution(),
+          os.duplicationLevelModule(), os, ac, new KmerContent());
+      this.sampled = Arrays.asList(pbsc, psgc, ac);
+    }
+  }
+
+  @BeforeClass
+  public static void setUpClass() throws EoulsanException {
+
+    System.setProperty("java.awt.headless", "true");
+    FastQCRuntimePatcher.patchFastQC();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.inFile = new DataFile(this.folder.newFile("in.fastq"));
+    createInput(this.inFile);
+  }
+
+  @Test
+  public void testSameResults() throws Exception {
+
+    // Sequential processing
+    final ReportModules expected = new ReportModules();
+    final FastqSequenceFile expectedSeqFile =
+        new FastqSequenceFile(this.inFile);
+    while (expectedSeqFile.hasNext()) {
+
+      final Sequence seq = expectedSeqFile.next();
+      for (QCModule module : expected.all) {
+        module.processSequence(seq);
+      }
+    }
+    final String expectedReport =
+        report(expected, expectedSeqFile, "expected");
+
+    for (int threads : THREAD_COUNTS) {
+
+      // Without sampling
+      assertEquals("threads: " + threads, expectedReport,
+          processWithPipeline(threads, 0));
+
+      // A sample larger than the input contains all the sequences
+      assertEquals("threads: " + threads + " with sampling", expectedReport,
+          processWithPipeline(threads, READ_COUNT + 1));
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testWorkerFailure() throws IOException, SequenceFormatException {
+
+    for (int threads : THREAD_COUNTS) {
+
+      final List<AbstractQCModule> modules =
+          Arrays.asList(new BasicStats(), new FailingModule(READ_COUNT / 4),
+              new NContent(), new SequenceLengthDistribution());
+
+      try {
+        new QCModulesPipeline(threads, BATCH_SIZE, 0).process(modules,
+            Collections.emptyList(), new FastqSequenceFile(this.inFile));
+        fail();
+      } catch (IllegalStateException e) {
+        assertEquals("Invalid sequence", e.getMessage());
+      }
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private String processWithPipeline(final int threads, final int sampleSize)
+      throws Exception {
+
+    final ReportModules modules = new ReportModules();
+    final FastqSequenceFile seqFile = new FastqSequenceFile(this.inFile);
+
+    new QCModulesPipeline(threads, BATCH_SIZE, sampleSize)
+        .process(modules.all, modules.sampled, seqFile);
+
+    return report(modules, seqFile, "pipeline" + threads + "-" + sampleSize);
+  }
+
+  /**
+   * Create the FastQC report of the modules and get the content of the data
+   * file of the report.
+   * @param modules the modules
+   * @param seqFile the processed sequence file
+   * @param name name of the report
+   * @return the content of the data file of the report
+   */
+  private String report(final ReportModules modules,
+      final FastqSequenceFile seqFile, final String name)
+      throws IOException, XMLStreamException {
+
+    final File dir = this.folder.newFolder(name);
+    final File reportFile = new File(dir, "report.html");
+
+    new HTMLReportArchive(seqFile, modules.all.toArray(new QCModule[0]),
+        reportFile);
+
+    try (ZipFile zip = new ZipFile(new File(dir, "report.zip"))) {
+
+      final Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+
+        final ZipEntry entry = entries.nextElement();
+        if (entry.getName().endsWith("/fastqc_data.txt")) {
+          return read(zip.getInputStream(entry));
+        }
+      }
+    }
+
+    fail("No data file found in the report");
+    return null;
+  }
+
+  private static String read(final InputStream is) throws IOException {
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int n;
+
+    try (InputStream in = is) {
+      while ((n = in.read(buffer)) != -1) {
+        os.write(buffer, 0, n);
+      }
+    }
+
+    return new String(os.toByteArray(), Globals.DEFAULT_CHARSET);
+  }
+
+  /**
+   * Create an input file with sequences of different lengths, N bases and
+   * duplicated sequences.
+   * @param file the file to create
+   */
+  private static void createInput(final DataFile file) throws IOException {
+
+    final List<String> sequences = new ArrayList<>();
+
+    try (FastqWriter writer = new FastqWriter(file.create())) {
+
+      for (int i = 0; i < READ_COUNT; i++) {
+
+        final String sequence;
+
+        if (i % 5 == 0 && !sequences.isEmpty()) {
+
+          // Duplicated sequence
+          sequence = sequences.get((i * 7) % sequences.size());
+        } else {
+
+          final int length = 30 + (i * 13) % 40;
+          final StringBuilder sb = new StringBuilder();
+          for (int j = 0; j < length; j++) {
+            sb.append(
+                (i + j) % 17 == 0 ? 'N' : "ACGT".charAt((i * j + j) % 4));
+          }
+          sequence = sb.toString();
+          sequences.add(sequence);
+        }
+
+        final StringBuilder quality = new StringBuilder();
+        for (int j = 0; j < sequence.length(); j++) {
+          quality.append((char) ('#' + (i + j * 3) % 38));
+        }
+
+        writer.write(new ReadSequence(
+            "HWI-ST:1:FC:" + (1 + i % 3) + ":" + (1101 + i % 4) + ":" + i
+                + ":" + (i * 3),
+            sequence, quality.toString()));
+      }
+    }
+  }
+
+  /**
+   * This class define a module that fails on a sequence.
+   */
+  private static final class FailingModule extends AbstractQCModule {
+
+    private final int failingSequence;
+    private int count;
+
+    @Override
+    public void processSequence(final Sequence sequence) {
+
+      if (++this.count == this.failingSequence) {
+        throw new IllegalStateException("Invalid sequence");
+      }
+    }
+
+    @Override
+    public String name() {
+      return "Failing module";
+    }
+
+    @Override
+    public String description() {
+      return "A module that fails";
+    }
+
+    @Override
+    public JPanel getResultsPanel() {
+      return new JPanel();
+    }
+
+    @Override
+    public void reset() {
+      this.count = 0;
+    }
+
+    @Override
+    public boolean ignoreFilteredSequences() {
+      return false;
+    }
+
+    @Override
+    public boolean raisesError() {
+      return false;
+    }
+
+    @Override
+    public boolean raisesWarning() {
+      return false;
+    }
+
+    @Override
+    public boolean ignoreInReport() {
+      return true;
+    }
+
+    @Override
+    public void makeReport(final HTMLReportArchive report) {
+    }
+
+    private FailingModule(final int failingSequence) {
+      this.failingSequence = failingSequence;
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_RAW_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.LengthReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.FakeMapperProcess;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+
+public class FilterAndMapReadsLocalModuleTest {
+
+  private static final String COUNTER_GROUP = "filter_and_map";
+  private static final int READ_COUNT = 100000;
+  private static final String FEEDER_THREAD_NAME =
+      "filter-and-map-reads-feeder";
+
+  /** Fake mapper that converts the reads to unmapped SAM alignments. */
+  private static final String[] FAKE_MAPPER = {"awk",
+      "BEGIN { print \"@HD\\tVN:1.4\" } "
+          + "NR % 4 == 1 { name = substr($1, 2) } "
+          + "NR % 4 == 2 { print name "
+          + "\"\\t4\\t*\\t0\\t0\\t*\\t*\\t0\\t0\\t\" $0 \"\\t*\" }",
+      "{input}"};
+
+  /** Fake mapper that never reads its input and never writes its output. */
+  private static final String[] BLOCKED_MAPPER = {"sleep", "600"};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DataFile inFile;
+  private List<String> acceptedReads;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.inFile = new DataFile(this.folder.newFile("in.fastq"));
+    this.acceptedReads = createInput(this.inFile, READ_COUNT);
+  }
+
+  @Test(timeout = 60000)
+  public void testFilterAndMapReads()
+      throws IOException, InterruptedException, EoulsanException {
+
+    final FakeMapperProcess process =
+        FakeMapperProcess.start(this.folder.getRoot(), FAKE_MAPPER);
+    final File outFile = new File(this.folder.getRoot(), "out.sam");
+    final LocalReporter reporter = new LocalReporter();
+
+    FilterAndMapReadsLocalModule.filterAndMapReads(this.inFile, null,
+        FastqFormat.FASTQ_SANGER, createFilter(), process,
+        new DataFile(outFile), reporter, COUNTER_GROUP, null,
+        this.folder.getRoot());
+
+    assertFalse(process.isDestroyed());
+    assertFalse(isFeederAlive());
+
+    // Check the output alignments
+    final List<String> names = new ArrayList<>();
+    for (String line : Files.readAllLines(outFile.toPath())) {
+      if (!line.startsWith("@")) {
+        names.add(line.substring(0, line.indexOf('\t')));
+      }
+    }
+    assertEquals(this.acceptedReads, names);
+
+    // Check the counters
+    assertEquals(READ_COUNT, reporter.getCounterValue(COUNTER_GROUP,
+        INPUT_RAW_READS_COUNTER.counterName()));
+    assertEquals(this.acceptedReads.size(), reporter.getCounterValue(
+        COUNTER_GROUP, OUTPUT_FILTERED_READS_COUNTER.counterName()));
+    assertEquals(this.acceptedReads.size(), reporter.getCounterValue(
+        COUNTER_GROUP, OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName()));
+  }
+
+  @Test(timeout = 60000)
+  public void testParseFailure()
+      throws IOException, InterruptedException, EoulsanException {
+
+    final FakeMapperProcess process =
+        FakeMapperProcess.start(this.folder.getRoot(), BLOCKED_MAPPER);
+
+    // A directory cannot be used as output file
+    final DataFile outFile = new DataFile(this.folder.newFolder("out.sam"));
+
+    try {
+      FilterAndMapReadsLocalModule.filterAndMapReads(this.inFile, null,
+          FastqFormat.FASTQ_SANGER, createFilter(), process, outFile,
+          new LocalReporter(), COUNTER_GROUP, null, this.folder.getRoot());
+      fail();
+    } catch (IOException e) {
+
+      // The mapper has been killed and the reads feeder has been stopped
+      assertTrue(process.isDestroyed());
+      assertFalse(isFeederAlive());
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static boolean isFeederAlive() {
+
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (FEEDER_THREAD_NAME.equals(t.getName()) && t.isAlive()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static ReadFilter createFilter() throws EoulsanException {
+
+    final ReadFilter filter = new LengthReadFilter();
+    filter.setParameter("minimal.length.threshold", "30");
+    filter.init();
+
+    return filter;
+  }
+
+  private static List<String> createInput(final DataFile file,
+      final int count) throws IOException {
+
+    final List<String> accepted = new ArrayList<>();
+
+    try (FastqWriter writer = new FastqWriter(file.create())) {
+
+      for (int i = 0; i < count; i++) {
+
+        final int length = 10 + i % 50;
+        final StringBuilder sequence = new StringBuilder();
+        final StringBuilder quality = new StringBuilder();
+
+        for (int j = 0; j < length; j++) {
+          sequence.append("ACGT".charAt((i + j) % 4));
+          quality.append((char) ('!' + (i * j) % 40));
+        }
+
+        final String name = "read" + i;
+        writer.write(new ReadSequence(name, sequence.toString(),
+            quality.toString()));
+
+        if (length > 30) {
+          accepted.add(name);
+        }
+      }
+    }
+
+    return accepted;
+  }
+
+}
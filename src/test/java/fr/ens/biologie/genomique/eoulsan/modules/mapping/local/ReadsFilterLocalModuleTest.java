@@ -0,0 +1,242 @@
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqByteReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqIndex;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.LengthReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.FastqSplitter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+
+public class ReadsFilterLocalModuleTest {
+
+  private static final int READ_COUNT = 25000;
+  private static final int SPLIT_MAX_ENTRIES = 12000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+  }
+
+  @Test
+  public void testIndexedOutput()
+      throws IOException, BadBioEntryException, EoulsanException {
+
+    final DataFile inFile = new DataFile(this.folder.newFile("in.fastq"));
+    final List<String> expected = createInput(inFile);
+
+    // Single thread
+    checkIndexedOutput(inFile, null, expected);
+
+    // Multithreaded pipeline
+    checkIndexedOutput(inFile,
+        new ReadsFilterPipeline(3, 1000, "group", r -> createFilter()),
+        expected);
+  }
+
+  @Test
+  public void testUncompressedIndexedOutput()
+      throws IOException, BadBioEntryException, EoulsanException {
+
+    final DataFile inFile = new DataFile(this.folder.newFile("in.fastq"));
+    final List<String> expected = createInput(inFile);
+    final DataFile outFile =
+        new DataFile(this.folder.getRoot(), "out.fastq");
+
+    // No index for files that are not gzip files
+    ReadsFilterLocalModule.filterFile(inFile, outFile, new LocalReporter(),
+        createFilter(), null, FastqFormat.FASTQ_SANGER, true);
+
+    assertNull(FastqIndex.loadIndexIfExists(outFile));
+    assertEquals(expected, readNames(outFile));
+  }
+
+  @Test
+  public void testStaleIndex()
+      throws IOException, BadBioEntryException, EoulsanException {
+
+    final DataFile inFile = new DataFile(this.folder.newFile("in.fastq"));
+    final List<String> expected = createInput(inFile);
+    final DataFile outFile =
+        new DataFile(this.folder.getRoot(), "out.fastq.gz");
+    final DataFile indexFile = FastqIndex.getIndexFile(outFile);
+
+    ReadsFilterLocalModule.filterFile(inFile, outFile, new LocalReporter(),
+        createFilter(), null, FastqFormat.FASTQ_SANGER, true);
+    final byte[] index = Files.readAllBytes(indexFile.toFile().toPath());
+
+    // The index of the previous output file is removed
+    ReadsFilterLocalModule.filterFile(inFile, outFile, new LocalReporter(),
+        createFilter(), null, FastqFormat.FASTQ_SANGER, false);
+    assertFalse(indexFile.exists());
+    assertEquals(expected, readNames(outFile));
+
+    // A stale index is ignored by the splitter
+    Files.write(indexFile.toFile().toPath(), index);
+    assertEquals(expected, split(outFile));
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Filter a file with indexed output, then split the output like the split
+   * step and check that no read has been lost.
+   */
+  private void checkIndexedOutput(final DataFile inFile,
+      final ReadsFilterPipeline pipeline, final List<String> expected)
+      throws IOException, BadBioEntryException, EoulsanException {
+
+    final DataFile outFile = new DataFile(
+        this.folder.newFolder(pipeline == null ? "single" : "pipeline"),
+        "out.fastq.gz");
+
+    if (pipeline != null) {
+      pipeline.setIndexedOutput(true);
+    }
+
+    ReadsFilterLocalModule.filterFile(inFile, outFile, new LocalReporter(),
+        createFilter(), pipeline, FastqFormat.FASTQ_SANGER, true);
+
+    // The output file is a valid gzip file with an index
+    final FastqIndex index = FastqIndex.loadIndexIfExists(outFile);
+    assertNotNull(index);
+    assertEquals(expected.size(), index.getReadCount());
+    assertEquals(outFile.toFile().length(), index.getFileLength());
+    assertTrue(index.getBlockCount() > 1);
+    assertEquals(expected, readNames(outFile));
+
+    // Split the output file using the index
+    assertEquals(expected, split(outFile));
+  }
+
+  /**
+   * Split a file like the split step.
+   * @param file the file to split
+   * @return the names of the reads of the split files
+   */
+  private static List<String> split(final DataFile file)
+      throws IOException, BadBioEntryException, EoulsanException {
+
+    final FastqSplitter splitter = new FastqSplitter();
+    splitter.configure(Collections.singleton(
+        new Parameter("max.entries", "" + SPLIT_MAX_ENTRIES)));
+
+    final List<DataFile> splitFiles = new ArrayList<>();
+    splitter.split(file, new Iterator<DataFile>() {
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public DataFile next() {
+
+        final DataFile f = new DataFile(file.getParent(),
+            "split" + splitFiles.size() + ".fastq.gz");
+        splitFiles.add(f);
+        return f;
+      }
+    });
+
+    assertTrue(splitFiles.size() > 1);
+
+    final List<String> names = new ArrayList<>();
+    for (DataFile f : splitFiles) {
+
+      final List<String> splitNames = readNames(f);
+      assertFalse(splitNames.isEmpty());
+      names.addAll(splitNames);
+    }
+
+    return names;
+  }
+
+  private static List<String> createInput(final DataFile file)
+      throws IOException {
+
+    final List<String> accepted = new ArrayList<>();
+
+    try (FastqWriter writer = new FastqWriter(file.create())) {
+
+      for (int i = 0; i < READ_COUNT; i++) {
+
+        final int length = 10 + i % 50;
+        final StringBuilder sequence = new StringBuilder();
+        final StringBuilder quality = new StringBuilder();
+
+        for (int j = 0; j < length; j++) {
+          sequence.append("ACGT".charAt((i + j) % 4));
+          quality.append((char) ('!' + (i * j) % 40));
+        }
+
+        final String name = "read" + i;
+        writer.write(new ReadSequence(name, sequence.toString(),
+            quality.toString()));
+
+        if (length > 30) {
+          accepted.add(name);
+        }
+      }
+    }
+
+    return accepted;
+  }
+
+  private static ReadFilter createFilter() throws EoulsanException {
+
+    final ReadFilter filter = new LengthReadFilter();
+    filter.setParameter("minimal.length.threshold", "30");
+    filter.init();
+
+    return filter;
+  }
+
+  private static List<String> readNames(final DataFile file)
+      throws IOException, BadBioEntryException {
+
+    final List<String> result = new ArrayList<>();
+
+    try (FastqByteReader reader = new FastqByteReader(file.open())) {
+
+      for (ReadSequence read : reader) {
+        result.add(read.getName());
+      }
+      reader.throwException();
+    }
+
+    return result;
+  }
+
+}
@@ -0,0 +1,220 @@
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.AbstractReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.LengthReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.TrimPolyNEndReadFilter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
+
+public class ReadsFilterPipelineTest {
+
+  private static final String COUNTER_GROUP = "reads_filtering";
+  private static final int READ_COUNT = 5000;
+  private static final int BATCH_SIZE = 97;
+  private static final int[] THREAD_COUNTS = {1, 2, 4};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DataFile inFile1;
+  private DataFile inFile2;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.inFile1 = new DataFile(this.folder.newFile("in_1.fastq"));
+    this.inFile2 = new DataFile(this.folder.newFile("in_2.fastq"));
+    createInput(this.inFile1, 0);
+    createInput(this.inFile2, 1);
+  }
+
+  @Test
+  public void testSingleEnd() throws IOException, EoulsanException {
+
+    // Single thread
+    final DataFile expectedFile = newFile("expected.fastq");
+    final LocalReporter expectedReporter = new LocalReporter();
+    ReadsFilterLocalModule.filterFile(this.inFile1, expectedFile,
+        expectedReporter, createFilter(expectedReporter), null,
+        FastqFormat.FASTQ_SANGER, false);
+
+    for (int threads : THREAD_COUNTS) {
+
+      final DataFile outFile = newFile("out" + threads + ".fastq");
+      final LocalReporter reporter = new LocalReporter();
+
+      ReadsFilterLocalModule.filterFile(this.inFile1, outFile, reporter,
+          createFilter(reporter), createPipeline(threads),
+          FastqFormat.FASTQ_SANGER, false);
+
+      assertSameFile(expectedFile, outFile);
+      assertSameCounters(expectedReporter, reporter);
+    }
+  }
+
+  @Test
+  public void testPairedEnd() throws IOException, EoulsanException {
+
+    // Single thread
+    final DataFile expectedFile1 = newFile("expected_1.fastq");
+    final DataFile expectedFile2 = newFile("expected_2.fastq");
+    final LocalReporter expectedReporter = new LocalReporter();
+    ReadsFilterLocalModule.filterFile(this.inFile1, this.inFile2,
+        expectedFile1, expectedFile2, expectedReporter,
+        createFilter(expectedReporter), null, FastqFormat.FASTQ_SANGER,
+        false);
+
+    for (int threads : THREAD_COUNTS) {
+
+      final DataFile outFile1 = newFile("out" + threads + "_1.fastq");
+      final DataFile outFile2 = newFile("out" + threads + "_2.fastq");
+      final LocalReporter reporter = new LocalReporter();
+
+      ReadsFilterLocalModule.filterFile(this.inFile1, this.inFile2, outFile1,
+          outFile2, reporter, createFilter(reporter), createPipeline(threads),
+          FastqFormat.FASTQ_SANGER, false);
+
+      assertSameFile(expectedFile1, outFile1);
+      assertSameFile(expectedFile2, outFile2);
+      assertSameCounters(expectedReporter, reporter);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testFilterFailure() throws IOException, EoulsanException {
+
+    final ReadsFilterPipeline pipeline = new ReadsFilterPipeline(2,
+        BATCH_SIZE, COUNTER_GROUP, r -> new AbstractReadFilter() {
+
+          @Override
+          public boolean accept(final ReadSequence read) {
+
+            if (read.getName().startsWith("read2000 ")) {
+              throw new IllegalStateException("Invalid read");
+            }
+            return true;
+          }
+
+          @Override
+          public String getName() {
+            return "failure";
+          }
+
+          @Override
+          public String getDescription() {
+            return "Failure filter";
+          }
+        });
+
+    try {
+      ReadsFilterLocalModule.filterFile(this.inFile1, newFile("out.fastq"),
+          new LocalReporter(), null, pipeline, FastqFormat.FASTQ_SANGER,
+          false);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Invalid read", e.getMessage());
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private DataFile newFile(final String filename) {
+
+    return new DataFile(new File(this.folder.getRoot(), filename));
+  }
+
+  private static ReadsFilterPipeline createPipeline(final int threads)
+      throws EoulsanException {
+
+    return new ReadsFilterPipeline(threads, BATCH_SIZE, COUNTER_GROUP,
+        r -> createFilter(r));
+  }
+
+  private static ReadFilter createFilter(final ReporterIncrementer incrementer)
+      throws EoulsanException {
+
+    final ReadFilter length = new LengthReadFilter();
+    length.setParameter("minimal.length.threshold", "25");
+    length.init();
+
+    final ReadFilter trim = new TrimPolyNEndReadFilter();
+    trim.init();
+
+    return new MultiReadFilter(incrementer, COUNTER_GROUP,
+        Arrays.asList(trim, length));
+  }
+
+  private static void createInput(final DataFile file, final int mate)
+      throws IOException {
+
+    try (FastqWriter writer = new FastqWriter(file.create())) {
+
+      for (int i = 0; i < READ_COUNT; i++) {
+
+        final int length = 20 + (i * (mate + 3)) % 40;
+        final int polyN = i % 7 == 0 ? (i + mate) % 15 : 0;
+        final StringBuilder sequence = new StringBuilder();
+        final StringBuilder quality = new StringBuilder();
+
+        for (int j = 0; j < length; j++) {
+          sequence
+              .append(j < length - polyN ? "ACGT".charAt((i + j) % 4) : 'N');
+          quality.append((char) ('!' + (i * j) % 40));
+        }
+
+        writer.write(
+            new ReadSequence("read" + i + " " + (mate + 1) + ":N:0:1",
+                sequence.toString(), quality.toString()));
+      }
+    }
+  }
+
+  private static void assertSameFile(final DataFile expected,
+      final DataFile actual) throws IOException {
+
+    final byte[] expectedBytes = Files.readAllBytes(expected.toFile().toPath());
+    assertTrue(expectedBytes.length > 0);
+    assertArrayEquals(expectedBytes,
+        Files.readAllBytes(actual.toFile().toPath()));
+  }
+
+  private static void assertSameCounters(final LocalReporter expected,
+      final LocalReporter actual) {
+
+    assertEquals(expected.getCounterNames(COUNTER_GROUP),
+        actual.getCounterNames(COUNTER_GROUP));
+
+    for (String counter : expected.getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counter, expected.getCounterValue(COUNTER_GROUP, counter),
+          actual.getCounterValue(COUNTER_GROUP, counter));
+    }
+  }
+
+}
@@ -0,0 +1,234 @@
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_ALIGNMENTS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_ALIGNMENTS_COUNTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.KeepOneMatchReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.QualityReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
+
+public class SAMFilterPipelineTest {
+
+  private static final String COUNTER_GROUP = "sam_filtering";
+  private static final int READ_COUNT = 3000;
+  private static final int BATCH_SIZE = 101;
+  private static final int[] THREAD_COUNTS = {1, 2, 4};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testUnsortedSingleEnd() throws IOException, EoulsanException {
+
+    checkPipeline(createInput("unsorted", false));
+  }
+
+  @Test
+  public void testUnsortedPairedEnd() throws IOException, EoulsanException {
+
+    checkPipeline(createInput("unsorted", true));
+  }
+
+  @Test
+  public void testQueryNameSorted() throws IOException, EoulsanException {
+
+    final String input = createInput("queryname", false);
+    final String output = checkPipeline(input);
+
+    // The filtered alignments keep the input order
+    assertInputOrder(input, output);
+  }
+
+  @Test
+  public void testCoordinateSorted() throws IOException, EoulsanException {
+
+    final String input = createInput("coordinate", false);
+    final String output = checkPipeline(input);
+
+    // The filtered alignments keep the input order
+    assertInputOrder(input, output);
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Filter the input with the single thread filtering and with the pipeline
+   * using several thread counts and check that the outputs and the counters
+   * are the same.
+   * @param input SAM input
+   * @return the filtered SAM data
+   */
+  private String checkPipeline(final String input)
+      throws IOException, EoulsanException {
+
+    // Single thread
+    final LocalReporter expectedReporter = new LocalReporter();
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final long expectedCount = SAMFilterLocalModule.filterAlignments(
+        toInputStream(input), expected, expectedReporter, COUNTER_GROUP,
+        createFilter(expectedReporter), this.folder.getRoot());
+
+    final String expectedOutput = toString(expected);
+    assertTrue(expectedCount > 0);
+
+    for (int threads : THREAD_COUNTS) {
+
+      final LocalReporter reporter = new LocalReporter();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      final SAMFilterPipeline pipeline = new SAMFilterPipeline(threads,
+          BATCH_SIZE, COUNTER_GROUP, r -> createFilter(r));
+
+      assertEquals(expectedCount, pipeline.filter(toInputStream(input), out,
+          reporter, this.folder.getRoot()));
+      assertEquals(expectedOutput, toString(out));
+      assertSameCounters(expectedReporter, reporter);
+    }
+
+    // Some alignments have been removed
+    final long outputCount = expectedReporter.getCounterValue(COUNTER_GROUP,
+        OUTPUT_FILTERED_ALIGNMENTS_COUNTER.counterName());
+    assertTrue(outputCount > 0);
+    assertTrue(outputCount < expectedReporter.getCounterValue(COUNTER_GROUP,
+        INPUT_ALIGNMENTS_COUNTER.counterName()));
+
+    return expectedOutput;
+  }
+
+  private static ReadAlignmentsFilter createFilter(
+      final ReporterIncrementer incrementer) throws EoulsanException {
+
+    final ReadAlignmentsFilter quality = new QualityReadAlignmentsFilter();
+    quality.setParameter("threshold", "20");
+    quality.init();
+
+    final ReadAlignmentsFilter keepOneMatch =
+        new KeepOneMatchReadAlignmentsFilter();
+    keepOneMatch.init();
+
+    return new MultiReadAlignmentsFilter(incrementer, COUNTER_GROUP,
+        Arrays.asList(quality, keepOneMatch));
+  }
+
+  /**
+   * Create a SAM input where the reads have one to three alignments. The
+   * alignments are sorted both by query name and by coordinate, but the
+   * alignments of a read are not sorted by mapping quality.
+   * @param sortOrder sort order of the header
+   * @param pairedEnd true to create paired-end alignments
+   * @return a string with the SAM data
+   */
+  private static String createInput(final String sortOrder,
+      final boolean pairedEnd) {
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append("@HD\tVN:1.4\tSO:");
+    sb.append(sortOrder);
+    sb.append("\n@SQ\tSN:chr1\tLN:100000000\n");
+
+    int pos = 1;
+    for (int i = 0; i < READ_COUNT; i++) {
+
+      final String name = String.format("read%05d", i);
+      final int alignments = 1 + i % 3;
+
+      for (int j = 0; j < alignments; j++) {
+
+        final int quality = (i * 7 + j * 23) % 60;
+        final int secondary = j == 0 ? 0 : 256;
+
+        if (pairedEnd) {
+          sb.append(alignment(name, 99 + secondary, pos, quality, pos + 50));
+          sb.append(
+              alignment(name, 147 + secondary, pos + 50, quality, pos));
+        } else {
+          sb.append(alignment(name, secondary, pos, quality, 0));
+        }
+
+        pos += 100;
+      }
+    }
+
+    return sb.toString();
+  }
+
+  private static String alignment(final String name, final int flags,
+      final int pos, final int quality, final int matePos) {
+
+    return name
+        + '\t' + flags + "\tchr1\t" + pos + '\t' + quality + "\t10M\t"
+        + (matePos == 0 ? "*\t0\t0" : "=\t" + matePos + "\t0")
+        + "\tACGTACGTAC\tIIIIIIIIII\n";
+  }
+
+  private static ByteArrayInputStream toInputStream(final String s) {
+
+    return new ByteArrayInputStream(s.getBytes(Globals.DEFAULT_CHARSET));
+  }
+
+  private static String toString(final ByteArrayOutputStream out) {
+
+    return new String(out.toByteArray(), Globals.DEFAULT_CHARSET);
+  }
+
+  private static void assertInputOrder(final String input,
+      final String output) {
+
+    final List<String> inputRecords = records(input);
+    final List<String> outputRecords = records(output);
+
+    int last = -1;
+    for (String r : outputRecords) {
+
+      final int index = inputRecords.indexOf(r);
+      assertTrue(r, index > last);
+      last = index;
+    }
+  }
+
+  private static List<String> records(final String sam) {
+
+    final List<String> result = new ArrayList<>();
+
+    for (String line : sam.split("\n")) {
+      if (!line.startsWith("@")) {
+        result.add(line);
+      }
+    }
+
+    return result;
+  }
+
+  private static void assertSameCounters(final LocalReporter expected,
+      final LocalReporter actual) {
+
+    assertEquals(expected.getCounterNames(COUNTER_GROUP),
+        actual.getCounterNames(COUNTER_GROUP));
+
+    for (String counter : expected.getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counter, expected.getCounterValue(COUNTER_GROUP, counter),
+          actual.getCounterValue(COUNTER_GROUP, counter));
+    }
+  }
+
+}
@@ -0,0 +1,284 @@
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+public class AbstractSAMMergerTest {
+
+  private static final int INPUT_COUNT = 5;
+  private static final int RECORD_COUNT = 20000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+  }
+
+  @Test
+  public void testSAMCoordinate() throws IOException, EoulsanException {
+
+    checkSortedMerge(new SAMMerger(), SortOrder.coordinate, false, "2");
+  }
+
+  @Test
+  public void testSAMQueryName() throws IOException, EoulsanException {
+
+    checkSortedMerge(new SAMMerger(), SortOrder.queryname, false, "2");
+  }
+
+  @Test
+  public void testBAMCoordinate() throws IOException, EoulsanException {
+
+    // With the htsjdk writer and with the parallel writer
+    for (String compressionThreads : new String[] {"1", "3"}) {
+      checkSortedMerge(new BAMMerger(), SortOrder.coordinate, true,
+          compressionThreads);
+    }
+  }
+
+  @Test
+  public void testBAMQueryName() throws IOException, EoulsanException {
+
+    // With the htsjdk writer and with the parallel writer
+    for (String compressionThreads : new String[] {"1", "3"}) {
+      checkSortedMerge(new BAMMerger(), SortOrder.queryname, true,
+          compressionThreads);
+    }
+  }
+
+  @Test
+  public void testUnsorted() throws IOException, EoulsanException {
+
+    final List<DataFile> inFiles =
+        createInputs(SortOrder.unsorted, false, "unsorted");
+
+    final Merger merger = new SAMMerger();
+    merger.configure(parameters("2", null));
+
+    final DataFile outFile = newFile("unsorted-merged.sam");
+    merger.merge(inFiles.iterator(), outFile);
+
+    // The entries of the files are concatenated
+    final List<String> expected = new ArrayList<>();
+    for (DataFile inFile : inFiles) {
+      expected.addAll(read(inFile, null));
+    }
+
+    assertEquals(expected, read(outFile, SortOrder.unsorted));
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Merge sorted inputs and check that the output is sorted and that no entry
+   * has been lost.
+   * @param merger the merger
+   * @param sortOrder sort order of the inputs
+   * @param bam true to create BAM inputs
+   * @param compressionThreads number of compression threads for the BAM
+   *          merger
+   */
+  private void checkSortedMerge(final Merger merger, final SortOrder sortOrder,
+      final boolean bam, final String compressionThreads)
+      throws IOException, EoulsanException {
+
+    final String name = sortOrder + "-" + compressionThreads;
+    final List<DataFile> inFiles = createInputs(sortOrder, bam, name);
+
+    merger.configure(parameters("2", bam ? compressionThreads : null));
+
+    final DataFile outFile =
+        newFile(name + "-merged" + (bam ? ".bam" : ".sam"));
+    merger.merge(inFiles.iterator(), outFile);
+
+    final List<String> expected = new ArrayList<>();
+    for (DataFile inFile : inFiles) {
+      expected.addAll(read(inFile, sortOrder));
+    }
+
+    final List<String> actual = read(outFile, sortOrder);
+
+    // No entry has been lost
+    assertEquals(RECORD_COUNT, actual.size());
+    Collections.sort(expected);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Create the input files. The last input file only contains a header.
+   * @param sortOrder sort order of the inputs
+   * @param bam true to create BAM files
+   * @param name prefix of the input files
+   * @return a list with the input files
+   */
+  private List<DataFile> createInputs(final SortOrder sortOrder,
+      final boolean bam, final String name) {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.addSequence(new SAMSequenceRecord("chr1", 1000000));
+    header.addSequence(new SAMSequenceRecord("chr2", 500000));
+    header.setSortOrder(sortOrder);
+
+    final List<List<SAMRecord>> inputs = new ArrayList<>();
+    for (int i = 0; i < INPUT_COUNT; i++) {
+      inputs.add(new ArrayList<>());
+    }
+
+    // Some entries have the same name or the same position
+    final Random random = new Random(INPUT_COUNT);
+    for (int i = 0; i < RECORD_COUNT; i++) {
+
+      final SAMRecord record = new SAMRecord(header);
+      record.setReadName(String.format("read%05d", random.nextInt(5000)));
+      record.setFlags(random.nextBoolean() ? 0 : 16);
+      record.setReferenceName(random.nextBoolean() ? "chr1" : "chr2");
+      record.setAlignmentStart(1 + random.nextInt(10000));
+      record.setMappingQuality(random.nextInt(60));
+      record.setCigarString("10M");
+      record.setReadString("ACGTACGTAC");
+      record.setBaseQualityString("IIIIIIIIII");
+
+      inputs.get(random.nextInt(INPUT_COUNT - 1)).add(record);
+    }
+
+    final Comparator<SAMRecord> comparator = getComparator(sortOrder);
+    final List<DataFile> result = new ArrayList<>();
+
+    for (int i = 0; i < INPUT_COUNT; i++) {
+
+      final List<SAMRecord> records = inputs.get(i);
+      if (comparator != null) {
+        records.sort(comparator);
+      }
+
+      final DataFile inFile =
+          newFile(name + "-" + i + (bam ? ".bam" : ".sam"));
+      final File file = inFile.toFile();
+      final SAMFileWriterFactory factory = new SAMFileWriterFactory();
+
+      final SAMFileWriter writer = bam
+          ? factory.makeBAMWriter(header, true, file)
+          : factory.makeSAMWriter(header, true, file);
+
+      for (SAMRecord record : records) {
+        writer.addAlignment(record);
+      }
+      writer.close();
+
+      result.add(inFile);
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the entries of a file and check their order.
+   * @param file the file to read
+   * @param sortOrder expected sort order of the file or null if the sort
+   *          order must not be checked
+   * @return a list with the entries in SAM format
+   */
+  private static List<String> read(final DataFile file,
+      final SortOrder sortOrder) throws IOException {
+
+    final List<String> result = new ArrayList<>();
+
+    try (SamReader reader =
+        SamReaderFactory.makeDefault().open(file.toFile())) {
+
+      final Comparator<SAMRecord> comparator;
+
+      if (sortOrder != null) {
+        assertEquals(sortOrder, reader.getFileHeader().getSortOrder());
+        comparator = getComparator(sortOrder);
+      } else {
+        comparator = null;
+      }
+
+      SAMRecord previous = null;
+      for (SAMRecord record : reader) {
+
+        if (comparator != null && previous != null) {
+          assertTrue(record.getSAMString(),
+              comparator.compare(previous, record) <= 0);
+        }
+
+        result.add(record.getSAMString());
+        previous = record;
+      }
+    }
+
+    return result;
+  }
+
+  private static Comparator<SAMRecord> getComparator(
+      final SortOrder sortOrder) {
+
+    switch (sortOrder) {
+
+    case coordinate:
+      return new SAMRecordCoordinateComparator();
+
+    case queryname:
+      return new SAMRecordQueryNameComparator();
+
+    default:
+      return null;
+    }
+  }
+
+  private static Set<Parameter> parameters(final String threads,
+      final String compressionThreads) {
+
+    final Set<Parameter> result = new HashSet<>();
+    result.add(new Parameter("threads", threads));
+
+    if (compressionThreads != null) {
+      result.add(new Parameter("compression.threads", compressionThreads));
+    }
+
+    return result;
+  }
+
+  private DataFile newFile(final String filename) {
+
+    return new DataFile(new File(this.folder.getRoot(), filename));
+  }
+
+}
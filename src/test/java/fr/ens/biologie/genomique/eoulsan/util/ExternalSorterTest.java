@@ -0,0 +1,203 @@
+package fr.ens.biologie.genomique.eoulsan.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExternalSorterTest {
+
+  @Test
+  public void testCompare() {
+
+    assertEquals(0, ExternalSorter.compare(bytes(""), bytes("")));
+    assertTrue(ExternalSorter.compare(bytes("a"), bytes("b")) < 0);
+    assertTrue(ExternalSorter.compare(bytes("ab"), bytes("a")) > 0);
+    assertTrue(ExternalSorter.compare(bytes("a"), bytes("ab")) < 0);
+
+    // Bytes are unsigned
+    assertTrue(
+        ExternalSorter.compare(new byte[] {(byte) 0xe9}, bytes("z")) > 0);
+  }
+
+  @Test
+  public void testInMemory() throws IOException {
+
+    testSort(1000, ExternalSorter.DEFAULT_MEMORY_BUDGET, 1, false, 0);
+    testSort(1000, ExternalSorter.DEFAULT_MEMORY_BUDGET, 4, true, 0);
+  }
+
+  @Test
+  public void testSpill() throws IOException {
+
+    testSort(10000, 10 * 1024, 1, false, 2);
+    testSort(10000, 10 * 1024, 4, false, 2);
+    testSort(10000, 10 * 1024, 1, true, 2);
+    testSort(10000, 10 * 1024, 4, true, 2);
+  }
+
+  @Test
+  public void testManyRuns() throws IOException {
+
+    // More runs than the maximal number of runs merged at the same time
+    testSort(20000, 1024, 1, false, ExternalSorter.MAX_MERGED_RUNS + 1);
+    testSort(20000, 1024, 3, true, ExternalSorter.MAX_MERGED_RUNS + 1);
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+
+    try (ExternalSorter sorter = new ExternalSorter(null);
+        ExternalSorter.SortedEntries entries = sorter.sort()) {
+      assertNull(entries.next());
+    }
+  }
+
+  @Test
+  public void testState() throws IOException {
+
+    final ExternalSorter sorter = new ExternalSorter(null);
+    sorter.add(bytes("a"), bytes("1"));
+    sorter.sort().close();
+
+    try {
+      sorter.add(bytes("b"), bytes("2"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(true);
+    }
+
+    sorter.close();
+
+    try {
+      sorter.sort();
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testPseudoMapReduce() throws IOException {
+
+    final PseudoMapReduce pmr = new PseudoMapReduce() {
+
+      @Override
+      public void map(final String value, final List<String> output,
+          final Reporter reporter) {
+
+        for (String word : value.split(" ")) {
+          if (!word.isEmpty()) {
+            output.add(word + '\t' + 1);
+          }
+        }
+      }
+
+      @Override
+      public void reduce(final String key, final Iterator<String> values,
+          final List<String> output, final Reporter reporter) {
+
+        int count = 0;
+        while (values.hasNext()) {
+          count += Integer.parseInt(values.next());
+        }
+        output.add(key + '=' + count);
+      }
+    };
+
+    final File tmpDir = createTempDirectory();
+    pmr.setMapReduceTemporaryDirectory(tmpDir);
+    pmr.setSortMemoryBudget(100);
+    pmr.setSortThreads(2);
+
+    final String text = "b a c\nc b\n\nc";
+    pmr.doMap(new ByteArrayInputStream(bytes(text)));
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    pmr.doReduce(os);
+
+    assertEquals("a=1\nb=2\nc=3\n",
+        new String(os.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(0, tmpDir.list().length);
+    tmpDir.delete();
+  }
+
+  private void testSort(final int count, final long memoryBudget,
+      final int threads, final boolean sortValues, final int minRuns)
+      throws IOException {
+
+    final File tmpDir = createTempDirectory();
+    final Random random = new Random(count + threads);
+    final List<String[]> expected = new ArrayList<>();
+
+    try (ExternalSorter sorter =
+        new ExternalSorter(tmpDir, memoryBudget, threads, sortValues)) {
+
+      for (int i = 0; i < count; i++) {
+
+        // Many duplicated keys to check the stability of the sort
+        final String key = "key" + random.nextInt(count / 10);
+        final String value = sortValues
+            ? "value" + random.nextInt(count) : "value" + i;
+
+        expected.add(new String[] {key, value});
+        sorter.add(bytes(key), bytes(value));
+      }
+
+      assertEquals(count, sorter.getEntryCount());
+      assertTrue(sorter.getRunCount() >= minRuns);
+
+      // Collections.sort() is a stable sort
+      Collections.sort(expected, (a, b) -> {
+        final int result = a[0].compareTo(b[0]);
+        return result != 0 || !sortValues ? result : a[1].compareTo(b[1]);
+      });
+
+      try (ExternalSorter.SortedEntries entries = sorter.sort()) {
+
+        for (String[] e : expected) {
+
+          final ExternalSorter.Entry entry = entries.next();
+          assertEquals(e[0], string(entry.getKey()));
+          assertEquals(e[1], string(entry.getValue()));
+        }
+
+        assertNull(entries.next());
+      }
+    }
+
+    // The temporary files must be removed
+    assertEquals(0, tmpDir.list().length);
+    tmpDir.delete();
+  }
+
+  private static File createTempDirectory() throws IOException {
+
+    return Files.createTempDirectory("junit-").toFile();
+  }
+
+  private static byte[] bytes(final String s) {
+
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(final byte[] bytes) {
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,97 @@
+package fr.ens.biologie.genomique.eoulsan.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter.Counter;
+
+public class LocalReporterTest {
+
+  @Test
+  public void testIncrCounter() {
+
+    final LocalReporter reporter = new LocalReporter();
+
+    assertEquals(-1, reporter.getCounterValue("group", "a"));
+
+    reporter.incrCounter("group", "a", 2);
+    reporter.incrCounter("group", "a", 3);
+    reporter.incrCounter("group", "b", 0);
+    reporter.incrCounter(null, "b", 1);
+
+    assertEquals(5, reporter.getCounterValue("group", "a"));
+    assertEquals(-1, reporter.getCounterValue("group", "b"));
+    assertEquals(1, reporter.getCounterGroups().size());
+    assertEquals(1, reporter.getCounterNames("group").size());
+
+    reporter.setCounter("group", "a", 42);
+    assertEquals(42, reporter.getCounterValue("group", "a"));
+
+    reporter.clear();
+    assertEquals(-1, reporter.getCounterValue("group", "a"));
+    assertTrue(reporter.getCounterGroups().isEmpty());
+  }
+
+  @Test
+  public void testGetCounter() {
+
+    final LocalReporter reporter = new LocalReporter();
+
+    final Counter counter = reporter.getCounter("group", "a");
+    assertSame(counter, reporter.getCounter("group", "a"));
+
+    // A counter never incremented does not exist
+    assertEquals(-1, reporter.getCounterValue("group", "a"));
+    assertFalse(reporter.getCounterGroups().contains("group"));
+    assertFalse(reporter.getCounterNames("group").contains("a"));
+
+    counter.increment();
+    counter.add(9);
+    reporter.incrCounter("group", "a", 10);
+
+    assertEquals(20, counter.getValue());
+    assertEquals(20, reporter.getCounterValue("group", "a"));
+    assertTrue(reporter.getCounterNames("group").contains("a"));
+    assertEquals("group\n\ta=20\n", reporter.toString());
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws InterruptedException {
+
+    final LocalReporter reporter = new LocalReporter();
+    final int threadCount = 8;
+    final int increments = 100000;
+    final List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < threadCount; i++) {
+
+      final Thread t = new Thread(() -> {
+
+        final Counter counter = reporter.getCounter("group", "handle");
+        for (int j = 0; j < increments; j++) {
+          counter.increment();
+          reporter.incrCounter("group", "direct", 1);
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    assertEquals((long) threadCount * increments,
+        reporter.getCounterValue("group", "handle"));
+    assertEquals((long) threadCount * increments,
+        reporter.getCounterValue("group", "direct"));
+  }
+
+}